@@ -0,0 +1,34 @@
+package language.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import language.model.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the define phase (model creation including the registration of
+ * the created objects) of both expression builders.
+ * @author Milan
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefineBenchmark {
+    
+    @Benchmark
+    public Test testBuilder(TestShape shape) {
+        return new SyntheticTestBuilder(shape.questions, shape.answers, shape.pairs).build();
+    }
+    
+    @Benchmark
+    public Test nestedFunctions(TestShape shape) {
+        return new SyntheticNestedFunctions(shape.questions, shape.answers, shape.pairs).build();
+    }
+}
@@ -0,0 +1,57 @@
+package language.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import language.model.PageRenderer;
+import language.model.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering of a validated test into a string, into a reused
+ * buffer and into encoded chunks.
+ * @author Milan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    
+    private Test test;
+    
+    private final StringBuilder buffer = new StringBuilder();
+    
+    @Setup
+    public void setUp(TestShape shape) {
+        test = SyntheticTests.create(shape.questions, shape.answers, shape.pairs);
+    }
+    
+    @Benchmark
+    public String toHTML() {
+        return test.toHTML();
+    }
+    
+    @Benchmark
+    public int renderIntoBuffer() throws IOException {
+        buffer.setLength(0);
+        new PageRenderer(test).render(buffer);
+        return buffer.length();
+    }
+    
+    @Benchmark
+    public ByteBuffer[] toByteBuffers() {
+        return new PageRenderer(test).toByteBuffers();
+    }
+}
@@ -0,0 +1,72 @@
+package language.benchmark;
+
+import language.builder.NestedFunctionsTestBuilder;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.Question;
+import language.model.Test;
+
+/**
+ * Synthetic test definition using the nested functions.
+ * @author Milan
+ */
+public class SyntheticNestedFunctions extends NestedFunctionsTestBuilder {
+    
+    private final int questions;
+    
+    private final int answers;
+    
+    private final int pairs;
+
+    public SyntheticNestedFunctions(int questions, int answers, int pairs) {
+        this.questions = questions;
+        this.answers = answers;
+        this.pairs = pairs;
+    }
+
+    @Override
+    protected void define() {
+        Question[] defined = new Question[questions];
+        for (int q = 0; q < questions; q++) {
+            String text = SyntheticTests.questionText(q);
+            int points = SyntheticTests.points(q);
+            switch (q % 4) {
+                case 0:
+                    defined[q] = single_choice_question(text, points, answers(q));
+                    break;
+                case 1:
+                    defined[q] = multiple_choice_question(text, points, answers(q));
+                    break;
+                case 2:
+                    defined[q] = open_answer_question(text, points, SyntheticTests.answerText(q, 0));
+                    break;
+                default:
+                    MatchingPair[] defPairs = new MatchingPair[pairs];
+                    for (int p = 0; p < pairs; p++) {
+                        defPairs[p] = pair(SyntheticTests.leftText(q, p), SyntheticTests.rightText(q, p));
+                    }
+                    defined[q] = pairing_question(text, points, defPairs);
+            }
+        }
+        create_test(SyntheticTests.title(), 0, defined);
+    }
+    
+    private Answer[] answers(int q) {
+        Answer[] defAnswers = new Answer[answers];
+        for (int a = 0; a < answers; a++) {
+            defAnswers[a] = SyntheticTests.isCorrect(q, a) 
+                    ? correct_answer(SyntheticTests.answerText(q, a)) 
+                    : incorrect_answer(SyntheticTests.answerText(q, a));
+        }
+        return defAnswers;
+    }
+    
+    /**
+     * Runs the definition and returns the defined test.
+     * @return Defined test.
+     */
+    public Test build() {
+        define();
+        return getTest();
+    }
+}
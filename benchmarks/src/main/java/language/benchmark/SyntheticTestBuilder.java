@@ -0,0 +1,69 @@
+package language.benchmark;
+
+import language.builder.TestBuilder;
+import language.model.Test;
+
+/**
+ * Synthetic test definition using the TestBuilder call sequence.
+ * @author Milan
+ */
+public class SyntheticTestBuilder extends TestBuilder {
+    
+    private final int questions;
+    
+    private final int answers;
+    
+    private final int pairs;
+
+    public SyntheticTestBuilder(int questions, int answers, int pairs) {
+        this.questions = questions;
+        this.answers = answers;
+        this.pairs = pairs;
+    }
+
+    @Override
+    protected void define() {
+        create_test(SyntheticTests.title(), 0);
+        for (int q = 0; q < questions; q++) {
+            String text = SyntheticTests.questionText(q);
+            int points = SyntheticTests.points(q);
+            switch (q % 4) {
+                case 0:
+                    single_choice_question(text, points);
+                    defineAnswers(q);
+                    break;
+                case 1:
+                    multiple_choice_question(text, points);
+                    defineAnswers(q);
+                    break;
+                case 2:
+                    open_answer_question(text, points, SyntheticTests.answerText(q, 0));
+                    break;
+                default:
+                    pairing_question(text, points);
+                    for (int p = 0; p < pairs; p++) {
+                        pair(SyntheticTests.leftText(q, p), SyntheticTests.rightText(q, p));
+                    }
+            }
+        }
+    }
+    
+    private void defineAnswers(int q) {
+        for (int a = 0; a < answers; a++) {
+            if (SyntheticTests.isCorrect(q, a)) {
+                correct_answer(SyntheticTests.answerText(q, a));
+            } else {
+                incorrect_answer(SyntheticTests.answerText(q, a));
+            }
+        }
+    }
+    
+    /**
+     * Runs the definition and returns the defined test.
+     * @return Defined test.
+     */
+    public Test build() {
+        define();
+        return getTest();
+    }
+}
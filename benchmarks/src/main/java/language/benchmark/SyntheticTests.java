@@ -0,0 +1,57 @@
+package language.benchmark;
+
+import language.model.Test;
+
+/**
+ * Generator of synthetic tests, so that the benchmarks can work with tests of
+ * any size without hand-written definitions. The question types are used in
+ * turns: single choice, multiple choice, open answer and pairing question.
+ * @author Milan
+ */
+public final class SyntheticTests {
+    
+    private SyntheticTests() {
+    }
+    
+    /**
+     * Creates a valid synthetic test using the TestBuilder expression builder.
+     * @param questions Number of questions in the test.
+     * @param answers Number of answers of each choice question (at least two).
+     * @param pairs Number of matching pairs of each pairing question.
+     * @return Defined (but not validated) test.
+     */
+    public static Test create(int questions, int answers, int pairs) {
+        return new SyntheticTestBuilder(questions, answers, pairs).build();
+    }
+    
+    static String title() {
+        return "Synthetic test";
+    }
+    
+    static String questionText(int question) {
+        return "Synthetic question number " + question + "?";
+    }
+    
+    static int points(int question) {
+        return question % 5 + 1;
+    }
+    
+    static String answerText(int question, int answer) {
+        return "Answer " + answer + " of the question " + question;
+    }
+    
+    static boolean isCorrect(int question, int answer) {
+        if (question % 4 == 0) {
+            return answer == 0;
+        }
+        return answer % 2 == 0;
+    }
+    
+    static String leftText(int question, int pair) {
+        return "Left item " + pair + " of the question " + question;
+    }
+    
+    static String rightText(int question, int pair) {
+        return "Right item " + pair + " of the question " + question;
+    }
+}
@@ -0,0 +1,22 @@
+package language.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parameters of the synthetic test shared by all the benchmarks.
+ * @author Milan
+ */
+@State(Scope.Benchmark)
+public class TestShape {
+    
+    @Param({"100", "1000", "10000"})
+    public int questions;
+    
+    @Param({"4"})
+    public int answers;
+    
+    @Param({"5"})
+    public int pairs;
+}
@@ -0,0 +1,41 @@
+package language.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import language.builder.ErrorHandlingUtils;
+import language.builder.ParsingException;
+import language.model.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the validation of a defined test.
+ * @author Milan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateBenchmark {
+    
+    private Test test;
+    
+    @Setup
+    public void setUp(TestShape shape) {
+        test = SyntheticTests.create(shape.questions, shape.answers, shape.pairs);
+    }
+    
+    @Benchmark
+    public boolean validate() throws ParsingException {
+        return test.validate(new ErrorHandlingUtils(SyntheticTestBuilder.class));
+    }
+}
@@ -0,0 +1,53 @@
+package language.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import language.model.PageWriter;
+import language.model.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering and writing of a validated test into a file, the way
+ * the builders generate their output.
+ * @author Milan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+    
+    private Test test;
+    
+    private Path output;
+    
+    @Setup
+    public void setUp(TestShape shape) throws IOException {
+        test = SyntheticTests.create(shape.questions, shape.answers, shape.pairs);
+        output = Files.createTempFile("testdsl-benchmark", ".html");
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+    
+    @Benchmark
+    public void writeTo() throws IOException {
+        new PageWriter(test, null).writeTo(output);
+    }
+}
@@ -0,0 +1,34 @@
+package language.builder;
+
+/**
+ * Finds the frame of the definition class by StackWalker, which stops at
+ * the first matching frame and does not materialize the frames below it.
+ * The captured frame is resolved into its method, file and line only when
+ * it is needed. Compiled for Java 11 apart from the rest of the project,
+ * StackLocator loads it by reflection.
+ * @author Milan
+ */
+final class StackWalkingLocator extends StackLocator {
+
+    private final StackWalker walker = StackWalker.getInstance();
+
+    /**
+     * @return The frame of the definition class, a StackWalker.StackFrame.
+     */
+    @Override
+    Object capture(String builderName, String builderSuffix) {
+        return walker.walk(frames -> frames
+                .filter(frame -> isBuilder(frame.getClassName(), builderName, builderSuffix))
+                .findFirst()
+                .orElse(null));
+    }
+
+    @Override
+    SourceLocation resolve(Object captured, String builderName, String builderSuffix) {
+        if (captured == null) {
+            return null;
+        }
+        StackWalker.StackFrame frame = (StackWalker.StackFrame) captured;
+        return new SourceLocation(frame.getClassName(), frame.getMethodName(), frame.getFileName(), frame.getLineNumber());
+    }
+}
@@ -0,0 +1,152 @@
+package language.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Records a composition as flight recorder events. It is the only class
+ * referring to jdk.jfr, so it is compiled for Java 11 apart from the rest of
+ * the project and Composition loads its factory by reflection only if the
+ * runtime has the flight recorder.
+ * @author Milan
+ */
+final class JfrRecorder implements Recorder {
+
+    private final String definition;
+
+    private final CompositionEvent event;
+
+    private final PhaseEvent[] phases = new PhaseEvent[Phase.values().length];
+
+    private final boolean phasesEnabled;
+
+    private JfrRecorder(String definition, CompositionEvent event, boolean phasesEnabled) {
+        this.definition = definition;
+        this.event = event;
+        this.phasesEnabled = phasesEnabled;
+    }
+
+    @Override
+    public void begin(Phase phase) {
+        if (phasesEnabled) {
+            PhaseEvent phaseEvent = new PhaseEvent();
+            phaseEvent.definition = definition;
+            phaseEvent.phase = phase.name();
+            phaseEvent.begin();
+            phases[phase.ordinal()] = phaseEvent;
+        }
+    }
+
+    @Override
+    public void end(Phase phase) {
+        PhaseEvent phaseEvent = phases[phase.ordinal()];
+        if (phaseEvent != null) {
+            phases[phase.ordinal()] = null;
+            phaseEvent.commit();
+        }
+    }
+
+    @Override
+    public void finish(Composition composition) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.definition = definition;
+        event.title = composition.getTitle();
+        event.successful = composition.isSuccessful();
+        event.defineTime = composition.getNanos(Phase.DEFINE);
+        event.registeredObjects = composition.getRegisteredObjects();
+        event.registrationTime = composition.getRegistrationNanos();
+        event.validateTime = composition.getNanos(Phase.VALIDATE);
+        event.validationErrors = composition.getValidationErrors();
+        event.renderTime = composition.getNanos(Phase.RENDER);
+        event.renderedBytes = composition.getRenderedBytes();
+        event.writeTime = composition.getNanos(Phase.WRITE);
+        event.commit();
+    }
+
+    @Name("language.Composition")
+    @Label("Test Composition")
+    @Category("Test DSL")
+    @Description("Composition of a test from its definition")
+    static final class CompositionEvent extends Event {
+
+        @Label("Definition")
+        String definition;
+
+        @Label("Title")
+        String title;
+
+        @Label("Successful")
+        boolean successful;
+
+        @Label("Define")
+        @Timespan(Timespan.NANOSECONDS)
+        long defineTime;
+
+        @Label("Registered Objects")
+        int registeredObjects;
+
+        @Label("Registration")
+        @Description("Time spent by registering the objects for the error reporting, a part of define")
+        @Timespan(Timespan.NANOSECONDS)
+        long registrationTime;
+
+        @Label("Validate")
+        @Timespan(Timespan.NANOSECONDS)
+        long validateTime;
+
+        @Label("Validation Errors")
+        int validationErrors;
+
+        @Label("Render")
+        @Timespan(Timespan.NANOSECONDS)
+        long renderTime;
+
+        @Label("Rendered Size")
+        @DataAmount
+        long renderedBytes;
+
+        @Label("Write")
+        @Timespan(Timespan.NANOSECONDS)
+        long writeTime;
+    }
+
+    @Name("language.CompositionPhase")
+    @Label("Test Composition Phase")
+    @Category("Test DSL")
+    @Description("Phase of the composition of a test: define, validate, render or write")
+    static final class PhaseEvent extends Event {
+
+        @Label("Definition")
+        String definition;
+
+        @Label("Phase")
+        String phase;
+    }
+
+    /**
+     * Creates the recorders, instantiated by Composition.
+     */
+    static final class Factory implements Recorder.Factory {
+
+        /**
+         * @return The recorder, or null if none of the events is recorded.
+         */
+        @Override
+        public Recorder create(String definition) {
+            CompositionEvent event = new CompositionEvent();
+            boolean phasesEnabled = new PhaseEvent().isEnabled();
+            if (!event.isEnabled() && !phasesEnabled) {
+                return null;
+            }
+            event.begin();
+            return new JfrRecorder(definition, event, phasesEnabled);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package language.assets;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import language.model.ContentHash;
+
+/**
+ * Result of the AssetPipeline: one stylesheet and one script with all the
+ * assets the generated tests need. In the linked mode they are written into
+ * fingerprinted files referenced by the pages, in the inline mode they are
+ * written straight into the pages.
+ * @author Milan
+ */
+public final class AssetBundle {
+
+    private final String css;
+
+    private final String js;
+
+    private final String cssName;
+
+    private final String jsName;
+
+    private final List<String> externalStylesheets;
+
+    private final boolean inline;
+
+    private final String tags;
+
+    private final long hash;
+
+    AssetBundle(String css, String js, List<String> externalStylesheets, boolean inline) {
+        this.css = css;
+        this.js = js;
+        this.externalStylesheets = Collections.unmodifiableList(externalStylesheets);
+        this.inline = inline;
+        this.cssName = AssetPipeline.BUNDLE_DIRECTORY + "/tests-" + fingerprint(css) + ".css";
+        this.jsName = AssetPipeline.BUNDLE_DIRECTORY + "/tests-" + fingerprint(js) + ".js";
+        this.tags = inline ? inlineTags() : linkedTags();
+        this.hash = new ContentHash().add(tags).get();
+    }
+
+    private static String fingerprint(String content) {
+        return ContentHash.toHex(new ContentHash().add(content.getBytes(StandardCharsets.UTF_8)).get());
+    }
+
+    private String linkedTags() {
+        StringBuilder sb = new StringBuilder();
+        for (String stylesheet : externalStylesheets) {
+            sb.append("    <link rel='stylesheet' href='").append(stylesheet).append("' type='text/css'>\n");
+        }
+        sb.append("    <link rel='stylesheet' href='").append(cssName).append("' type='text/css'>\n");
+        sb.append("    <script src='").append(jsName).append("'></script>\n\n");
+        return sb.toString();
+    }
+
+    private String inlineTags() {
+        return "    <style>\n" + css.replaceAll("(?i)</style", "<\\\\/style") + "\n    </style>\n"
+                + "    <script>\n" + js.replaceAll("(?i)</script", "<\\\\/script") + "\n    </script>\n\n";
+    }
+
+    /**
+     * @return The tags (or the inlined content) written into the head of the
+     * generated pages instead of the separate assets.
+     */
+    public String getTags() {
+        return tags;
+    }
+
+    public String getCss() {
+        return css;
+    }
+
+    public String getJs() {
+        return js;
+    }
+
+    /**
+     * @return Path of the stylesheet relative to the asset directory.
+     */
+    public String getCssName() {
+        return cssName;
+    }
+
+    /**
+     * @return Path of the script relative to the asset directory.
+     */
+    public String getJsName() {
+        return jsName;
+    }
+
+    public boolean isInline() {
+        return inline;
+    }
+
+    /**
+     * @return Hash of the content written into the generated pages.
+     */
+    public long contentHash() {
+        return hash;
+    }
+
+    /**
+     * Writes the bundled files into the asset directory. The files are
+     * fingerprinted, so an existing file already has the right content.
+     * Nothing is written in the inline mode.
+     * @param assetDirectory Asset directory (normally html/).
+     * @throws IOException
+     */
+    public void writeTo(Path assetDirectory) throws IOException {
+        if (inline) {
+            return;
+        }
+        write(assetDirectory.resolve(cssName), css);
+        write(assetDirectory.resolve(jsName), js);
+    }
+
+    private static void write(Path file, String content) throws IOException {
+        if (Files.isRegularFile(file)) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return "AssetBundle{" + "cssName=" + cssName + ", jsName=" + jsName + ", inline=" + inline
+                + ", css=" + css.length() + " chars, js=" + js.length() + " chars}";
+    }
+}
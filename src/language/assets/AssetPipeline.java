@@ -0,0 +1,405 @@
+package language.assets;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import language.builder.BatchCompiler;
+import language.builder.NestedFunctionsTestBuilder;
+import language.builder.ParsingException;
+import language.builder.TestBuilder;
+import language.model.PageRenderer;
+import language.model.PageWriter;
+import language.model.RenderOptions;
+import language.model.Test;
+
+/**
+ * Build step that bundles the assets referenced by the generated tests. It
+ * finds out which of the assets the pages actually use, concatenates and
+ * minifies them into one stylesheet and one script and fingerprints them
+ * (see AssetBundle). The bundle is then used through RenderOptions.
+ *
+ * In the inline mode the bundle is written straight into the pages, together
+ * with the small resources the stylesheets refer to (as data URIs), so a page
+ * works offline as a single file. The web fonts are not available offline,
+ * the pages fall back to the system fonts.
+ *
+ * Usage: AssetPipeline [-a assetDirectory] [-o outputDirectory] [-inline] [package ...]
+ * @author Milan
+ */
+public class AssetPipeline {
+
+    /**
+     * Directory of the bundled files, relative to the asset directory. It is
+     * one level deep like css/ and js/, so the relative URLs in the bundled
+     * stylesheets stay short.
+     */
+    public static final String BUNDLE_DIRECTORY = "bundle";
+
+    /**
+     * Resources referenced from the stylesheets larger than this are not
+     * inlined, they would make the page too large (e.g. the old font formats,
+     * browsers use the first one they support).
+     */
+    private static final int MAX_INLINED_RESOURCE = 32 * 1024;
+
+    private static final String FONTS_URL = "http://fonts.googleapis.com/css?family=";
+
+    private static final Pattern CLASS_ATTRIBUTE = Pattern.compile("class\\s*=\\s*['\"]([^'\"]*)['\"]");
+
+    private static final Pattern INLINE_SCRIPT = Pattern.compile("<script>(.*?)</script>", Pattern.DOTALL);
+
+    private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+
+    private static final Map<String, String> MEDIA_TYPES = new HashMap<>();
+
+    static {
+        MEDIA_TYPES.put("woff2", "font/woff2");
+        MEDIA_TYPES.put("woff", "font/woff");
+        MEDIA_TYPES.put("ttf", "font/ttf");
+        MEDIA_TYPES.put("otf", "font/otf");
+        MEDIA_TYPES.put("eot", "application/vnd.ms-fontobject");
+        MEDIA_TYPES.put("svg", "image/svg+xml");
+        MEDIA_TYPES.put("png", "image/png");
+        MEDIA_TYPES.put("jpg", "image/jpeg");
+        MEDIA_TYPES.put("gif", "image/gif");
+    }
+
+    /**
+     * The assets the generated page refers to, in the order of the page. An
+     * asset is needed if the page uses any of its markers (".name" is a class
+     * used in the page, "@name" an attribute, anything else a text in the
+     * inline scripts), if it has no markers at all, or if a needed asset
+     * requires it.
+     */
+    private static final List<Asset> ASSETS = Arrays.asList(
+            Asset.stylesheet("css/bootstrap.min.css", null),
+            Asset.external(FONTS_URL + "Open+Sans:300italic,400italic,600italic,700italic,800italic,400,300,600,700,800"),
+            Asset.external(FONTS_URL + "Merriweather:400,300,300italic,400italic,700,700italic,900,900italic"),
+            Asset.stylesheet("font-awesome/css/font-awesome.min.css", new String[]{".fa"}),
+            Asset.stylesheet("css/animate.min.css", new String[]{".animated", ".wow"}),
+            Asset.stylesheet("css/creative.css", null,
+                    FONTS_URL + "Open+Sans:300italic,400italic,600italic,700italic,800italic,400,300,600,700,800",
+                    FONTS_URL + "Merriweather:400,300,300italic,400italic,700,700italic,900,900italic"),
+            Asset.script("js/jquery.js", new String[]{"$(", "jQuery"}),
+            Asset.script("js/bootstrap.min.js", new String[]{"@data-toggle", "@data-spy", "modal("}, "js/jquery.js"),
+            Asset.script("js/jquery.easing.min.js", new String[]{"easeInOut"}, "js/jquery.js"),
+            Asset.script("js/jquery.fittext.js", new String[]{"fitText("}, "js/jquery.js"),
+            Asset.script("js/wow.min.js", new String[]{".wow"}),
+            Asset.script("js/bootbox.min.js", new String[]{"bootbox."}, "js/bootstrap.min.js"),
+            Asset.script("js/creative.js", new String[]{".page-scroll", ".navbar-fixed-top"},
+                    "js/jquery.easing.min.js", "js/jquery.fittext.js", "js/wow.min.js", "js/bootstrap.min.js"));
+
+    private final Path assetDirectory;
+
+    /**
+     * @param assetDirectory Directory with the assets (normally html/).
+     */
+    public AssetPipeline(Path assetDirectory) {
+        this.assetDirectory = assetDirectory;
+    }
+
+    /**
+     * Finds out which assets the given pages need.
+     * @param pages Pages generated without a bundle.
+     * @return Paths (or URLs) of the needed assets in the order of the page.
+     */
+    public List<String> getNeededAssets(Collection<String> pages) {
+        Set<String> classes = new HashSet<>();
+        StringBuilder scripts = new StringBuilder();
+        StringBuilder html = new StringBuilder();
+        for (String page : pages) {
+            Matcher matcher = CLASS_ATTRIBUTE.matcher(page);
+            while (matcher.find()) {
+                classes.addAll(Arrays.asList(matcher.group(1).trim().split("\\s+")));
+            }
+            matcher = INLINE_SCRIPT.matcher(page);
+            while (matcher.find()) {
+                scripts.append(matcher.group(1)).append('\n');
+            }
+            html.append(page);
+        }
+
+        Set<String> needed = new HashSet<>();
+        for (Asset asset : ASSETS) {
+            if (asset.isUsed(classes, scripts, html)) {
+                needed.add(asset.path);
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Asset asset : ASSETS) {
+                if (needed.contains(asset.path)) {
+                    changed |= needed.addAll(Arrays.asList(asset.requires));
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (Asset asset : ASSETS) {
+            if (needed.contains(asset.path)) {
+                result.add(asset.path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bundles the assets needed by the given tests.
+     * @param tests Tests that will use the bundle.
+     * @param options Options the tests are generated with, null for the
+     * default ones.
+     * @param inline True to write the bundle into the pages.
+     * @return The bundle.
+     * @throws IOException
+     */
+    public AssetBundle bundle(Collection<Test> tests, RenderOptions options, boolean inline) throws IOException {
+        RenderOptions analysis = new RenderOptions();
+        if (options != null) {
+            analysis.setSharedMatchingOptions(options.isSharedMatchingOptions());
+        }
+        List<String> pages = new ArrayList<>();
+        for (Test test : tests) {
+            StringBuilder page = new StringBuilder();
+            new PageRenderer(test, analysis).render(page);
+            pages.add(page.toString());
+        }
+        return bundle(getNeededAssets(pages), inline);
+    }
+
+    /**
+     * Bundles the given assets.
+     * @param assets Paths of the assets relative to the asset directory, or
+     * URLs of external stylesheets.
+     * @param inline True to write the bundle into the pages.
+     * @return The bundle.
+     * @throws IOException
+     */
+    public AssetBundle bundle(List<String> assets, boolean inline) throws IOException {
+        StringBuilder css = new StringBuilder();
+        StringBuilder js = new StringBuilder();
+        List<String> external = new ArrayList<>();
+        // inlined stylesheets are a part of the pages, which are in the asset directory
+        Path bundleDirectory = inline ? assetDirectory : assetDirectory.resolve(BUNDLE_DIRECTORY);
+        for (String asset : assets) {
+            if (asset.startsWith("http:") || asset.startsWith("https:")) {
+                external.add(asset);
+                continue;
+            }
+            Path file = assetDirectory.resolve(asset);
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            boolean minified = Minifier.isMinified(asset, content);
+            if (asset.endsWith(".css")) {
+                content = rewriteUrls(content, file.getParent(), bundleDirectory, inline);
+                css.append(minified ? content : Minifier.css(content)).append('\n');
+            } else {
+                // the semicolon protects against files not ending with one
+                js.append(minified ? content : Minifier.js(content)).append("\n;\n");
+            }
+        }
+        if (inline) {
+            external.clear();
+        }
+        return new AssetBundle(css.toString(), js.toString(), combineFonts(external), inline);
+    }
+
+    /**
+     * Combines the Google Fonts stylesheets into one, so that the web fonts
+     * are loaded by a single request (the families are separated by '|').
+     */
+    private static List<String> combineFonts(List<String> urls) {
+        StringBuilder sb = new StringBuilder(FONTS_URL);
+        for (String url : urls) {
+            if (!url.startsWith(FONTS_URL)) {
+                return urls;
+            }
+            if (sb.length() > FONTS_URL.length()) {
+                sb.append("%7C");
+            }
+            sb.append(url.substring(FONTS_URL.length()));
+        }
+        return urls.size() > 1 ? Arrays.asList(sb.toString()) : urls;
+    }
+
+    /**
+     * Rewrites the relative URLs of the stylesheet so that they work from the
+     * bundle directory, or replaces them by data URIs in the inline mode.
+     */
+    private String rewriteUrls(String css, Path sourceDirectory, Path bundleDirectory, boolean inline) throws IOException {
+        Matcher matcher = CSS_URL.matcher(css);
+        StringBuffer sb = new StringBuffer(css.length());
+        while (matcher.find()) {
+            String url = matcher.group(2).trim();
+            if (url.startsWith("data:") || url.startsWith("/") || url.contains("://")) {
+                matcher.appendReplacement(sb, Matcher.quoteReplacement(matcher.group()));
+                continue;
+            }
+            int suffixStart = indexOfAny(url, "?#");
+            String path = suffixStart < 0 ? url : url.substring(0, suffixStart);
+            String suffix = suffixStart < 0 ? "" : url.substring(suffixStart);
+            Path target = sourceDirectory.resolve(path).normalize();
+            String replacement = null;
+            if (inline) {
+                replacement = toDataUri(target, suffix);
+            }
+            if (replacement == null) {
+                replacement = bundleDirectory.relativize(target).toString().replace('\\', '/') + suffix;
+            }
+            matcher.appendReplacement(sb, Matcher.quoteReplacement("url('" + replacement + "')"));
+        }
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    private static int indexOfAny(String text, String chars) {
+        for (int i = 0; i < text.length(); i++) {
+            if (chars.indexOf(text.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String toDataUri(Path file, String suffix) throws IOException {
+        String name = file.getFileName().toString();
+        String mediaType = MEDIA_TYPES.get(name.substring(name.lastIndexOf('.') + 1).toLowerCase());
+        if (mediaType == null || !Files.isRegularFile(file) || Files.size(file) > MAX_INLINED_RESOURCE) {
+            return null;
+        }
+        // fragments (e.g. svg#font) still apply, queries (e.g. ?#iefix) do not
+        String fragment = suffix.startsWith("#") ? suffix : "";
+        return "data:" + mediaType + ";base64," + Base64.getEncoder().encodeToString(Files.readAllBytes(file)) + fragment;
+    }
+
+    public static void main(String[] args) throws IOException, ParsingException, ReflectiveOperationException {
+        Path assets = Paths.get("html");
+        Path outputDirectory = null;
+        boolean inline = false;
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-a".equals(args[i]) && i + 1 < args.length) {
+                assets = Paths.get(args[++i]);
+            } else if ("-o".equals(args[i]) && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else if ("-inline".equals(args[i])) {
+                inline = true;
+            } else {
+                packages.add(args[i]);
+            }
+        }
+        if (outputDirectory == null) {
+            outputDirectory = assets;
+        }
+
+        List<Class<?>> definitions = new ArrayList<>();
+        List<Test> tests = new ArrayList<>();
+        List<RenderOptions> options = new ArrayList<>();
+        for (Class<?> definition : BatchCompiler.discover(packages)) {
+            Object builder = definition.getConstructor().newInstance();
+            Test test;
+            if (builder instanceof TestBuilder) {
+                test = ((TestBuilder) builder).build();
+                options.add(((TestBuilder) builder).getSettings().getRenderOptions());
+            } else {
+                test = ((NestedFunctionsTestBuilder) builder).build();
+                options.add(((NestedFunctionsTestBuilder) builder).getSettings().getRenderOptions());
+            }
+            if (test == null) {
+                System.err.println("Skipping " + definition.getName() + ", there were some errors in its definition.");
+                options.remove(options.size() - 1);
+                continue;
+            }
+            definitions.add(definition);
+            tests.add(test);
+        }
+
+        List<String> pages = new ArrayList<>();
+        for (int i = 0; i < tests.size(); i++) {
+            StringBuilder page = new StringBuilder();
+            new PageRenderer(tests.get(i), options.get(i)).render(page);
+            pages.add(page.toString());
+        }
+        AssetPipeline pipeline = new AssetPipeline(assets);
+        List<String> needed = pipeline.getNeededAssets(pages);
+        AssetBundle bundle = pipeline.bundle(needed, inline);
+        bundle.writeTo(assets);
+        System.out.println("Bundled " + needed + " into " + bundle);
+
+        Files.createDirectories(outputDirectory);
+        for (int i = 0; i < tests.size(); i++) {
+            options.get(i).setAssets(bundle);
+            Path output = outputDirectory.resolve(definitions.get(i).getName() + ".html");
+            new PageWriter(tests.get(i), options.get(i)).writeIfChanged(output);
+            System.out.println(output);
+        }
+    }
+
+    /**
+     * An asset referenced by the generated page.
+     */
+    private static final class Asset {
+
+        private final String path;
+
+        /**
+         * Markers of the use of the asset, null if it is always needed.
+         */
+        private final String[] markers;
+
+        private final String[] requires;
+
+        private Asset(String path, String[] markers, String[] requires) {
+            this.path = path;
+            this.markers = markers;
+            this.requires = requires;
+        }
+
+        static Asset stylesheet(String path, String[] markers, String... requires) {
+            return new Asset(path, markers, requires);
+        }
+
+        static Asset script(String path, String[] markers, String... requires) {
+            return new Asset(path, markers, requires);
+        }
+
+        /**
+         * External assets are needed only if a needed asset requires them.
+         */
+        static Asset external(String url) {
+            return new Asset(url, new String[0], new String[0]);
+        }
+
+        boolean isUsed(Set<String> classes, CharSequence scripts, CharSequence html) {
+            if (markers == null) {
+                return true;
+            }
+            for (String marker : markers) {
+                if (marker.startsWith(".")) {
+                    if (classes.contains(marker.substring(1))) {
+                        return true;
+                    }
+                } else if (marker.startsWith("@")) {
+                    if (html.toString().contains(" " + marker.substring(1) + "=")) {
+                        return true;
+                    }
+                } else if (scripts.toString().contains(marker)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package language.assets;
+
+/**
+ * Simple minification of the bundled stylesheets and scripts. Comments
+ * starting with "/*!" (license banners) are always kept.
+ * @author Milan
+ */
+final class Minifier {
+
+    private Minifier() {
+    }
+
+    /**
+     * Removes the comments and the whitespace that is not needed in CSS. The
+     * strings are copied unchanged. Whitespace before ':' is kept, since it is
+     * significant in selectors (a :hover).
+     * @param css Stylesheet.
+     * @return Minified stylesheet.
+     */
+    static String css(String css) {
+        StringBuilder out = new StringBuilder(css.length());
+        int i = 0;
+        boolean space = false;
+        while (i < css.length()) {
+            char c = css.charAt(i);
+            if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                end = end < 0 ? css.length() : end + 2;
+                if (i + 2 < css.length() && css.charAt(i + 2) == '!') {
+                    appendSpace(out, space);
+                    out.append(css, i, end).append('\n');
+                    space = false;
+                }
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                appendSpace(out, space);
+                space = false;
+                int end = skipString(css, i);
+                out.append(css, i, end);
+                i = end;
+            } else if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+            } else {
+                if (space && out.length() > 0 && "{};,>".indexOf(c) < 0 && "{};,>:\n".indexOf(out.charAt(out.length() - 1)) < 0) {
+                    out.append(' ');
+                }
+                space = false;
+                if (c == '}' && out.length() > 0 && out.charAt(out.length() - 1) == ';') {
+                    out.setLength(out.length() - 1);
+                }
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendSpace(StringBuilder out, boolean space) {
+        if (space && out.length() > 0 && "{};,>:\n".indexOf(out.charAt(out.length() - 1)) < 0) {
+            out.append(' ');
+        }
+    }
+
+    private static int skipString(String text, int start) {
+        char quote = text.charAt(start);
+        int i = start + 1;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote || c == '\n') {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return text.length();
+    }
+
+    /**
+     * Conservative minification of JavaScript: removes the comments that take
+     * whole lines, the indentation and the empty lines. The lines with code
+     * are kept as they are, so the automatic semicolon insertion, strings and
+     * regular expressions are never affected.
+     * @param js Script.
+     * @return Minified script.
+     */
+    static String js(String js) {
+        StringBuilder out = new StringBuilder(js.length());
+        boolean comment = false;
+        boolean banner = false;
+        for (String line : js.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (comment) {
+                if (banner) {
+                    out.append(line).append('\n');
+                }
+                if (trimmed.contains("*/")) {
+                    comment = false;
+                    if (!trimmed.endsWith("*/") && !banner) {
+                        // code after the end of the comment, keep the line
+                        out.append(trimmed.substring(trimmed.indexOf("*/") + 2).trim()).append('\n');
+                    }
+                }
+                continue;
+            }
+            if (trimmed.isEmpty() || trimmed.startsWith("//")) {
+                continue;
+            }
+            if (trimmed.startsWith("/*") && !trimmed.substring(2).contains("*/")) {
+                comment = true;
+                banner = trimmed.startsWith("/*!");
+                if (banner) {
+                    out.append(trimmed).append('\n');
+                }
+                continue;
+            }
+            if (trimmed.startsWith("/*") && trimmed.endsWith("*/") && !trimmed.startsWith("/*!")
+                    && trimmed.indexOf("*/") == trimmed.length() - 2) {
+                continue;
+            }
+            out.append(trimmed).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Detects already minified files, they are taken as they are.
+     * @param name Name of the file.
+     * @param content Content of the file.
+     * @return True if the file looks minified.
+     */
+    static boolean isMinified(String name, String content) {
+        if (name.contains(".min.")) {
+            return true;
+        }
+        int lines = 1;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return content.length() / lines > 500;
+    }
+}
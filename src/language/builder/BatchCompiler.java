@@ -0,0 +1,301 @@
+package language.builder;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import language.metrics.Composition;
+
+/**
+ * Generates all the test definitions (subclasses of TestBuilder and
+ * NestedFunctionsTestBuilder) found on the classpath in a single run.
+ * The definitions are composed in parallel on a bounded pool of threads, each
+ * of them is written into its own file named after the definition class.
+ *
+ * Usage: BatchCompiler [-o outputDirectory] [-t threads] [-m] [package ...]
+ *
+ * Without packages all the classes on the classpath are searched. With -m the
+ * durations of the phases of each composition are printed (see 
+ * language.metrics.Composition, the same metrics are recorded by the flight
+ * recorder).
+ * @author Milan
+ */
+public class BatchCompiler {
+
+    private final Path outputDirectory;
+
+    private final int threads;
+
+    public BatchCompiler(Path outputDirectory, int threads) {
+        this.outputDirectory = outputDirectory;
+        this.threads = threads;
+    }
+
+    /**
+     * Finds the test definitions in the given packages (and their subpackages).
+     * Only concrete classes with a public constructor without parameters are
+     * returned.
+     * @param packages Names of the packages to search, empty to search all.
+     * @return Found definition classes, sorted by name.
+     * @throws IOException
+     */
+    public static List<Class<?>> discover(List<String> packages) throws IOException {
+        TreeSet<String> classNames = new TreeSet<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path path = Paths.get(entry);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    files.filter((f) -> f.toString().endsWith(".class"))
+                            .forEach((f) -> classNames.add(toClassName(path.relativize(f).toString())));
+                }
+            } else if (Files.isRegularFile(path) && entry.endsWith(".jar")) {
+                try (JarFile jar = new JarFile(path.toFile())) {
+                    Enumeration<JarEntry> entries = jar.entries();
+                    while (entries.hasMoreElements()) {
+                        String name = entries.nextElement().getName();
+                        if (name.endsWith(".class")) {
+                            classNames.add(toClassName(name));
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Class<?>> definitions = new ArrayList<>();
+        ClassLoader loader = BatchCompiler.class.getClassLoader();
+        for (String className : classNames) {
+            if (className.contains("$") || !inPackages(className, packages)) {
+                continue;
+            }
+            Class<?> cls;
+            try {
+                cls = Class.forName(className, false, loader);
+            } catch (ClassNotFoundException | LinkageError ex) {
+                continue;
+            }
+            if (isDefinition(cls)) {
+                definitions.add(cls);
+            }
+        }
+        return definitions;
+    }
+
+    private static String toClassName(String file) {
+        return file.substring(0, file.length() - ".class".length()).replace('/', '.').replace('\\', '.');
+    }
+
+    private static boolean inPackages(String className, List<String> packages) {
+        if (packages.isEmpty()) {
+            return true;
+        }
+        for (String pkg : packages) {
+            if (className.startsWith(pkg + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param cls Class to check.
+     * @return True if the class is a test definition that can be composed
+     * (a concrete subclass of an expression builder with a public constructor
+     * without parameters).
+     */
+    public static boolean isDefinition(Class<?> cls) {
+        if (!TestBuilder.class.isAssignableFrom(cls) && !NestedFunctionsTestBuilder.class.isAssignableFrom(cls)) {
+            return false;
+        }
+        if (Modifier.isAbstract(cls.getModifiers()) || !Modifier.isPublic(cls.getModifiers())) {
+            return false;
+        }
+        try {
+            return Modifier.isPublic(cls.getConstructor().getModifiers());
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @param definition Definition class.
+     * @return File the test of the given definition is written to.
+     */
+    public Path getOutput(Class<?> definition) {
+        return outputDirectory.resolve(definition.getName() + ".html");
+    }
+
+    /**
+     * Composes all the given definitions in parallel.
+     * @param definitions Definition classes.
+     * @return Results in the order of the definitions.
+     * @throws InterruptedException
+     */
+    public List<Result> compile(List<Class<?>> definitions) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Class<?> definition : definitions) {
+                futures.add(executor.submit(() -> compile(definition)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException ex) {
+                    // compile(Class) records every Throwable as FAILED, a task cannot fail
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Composes a single definition. Anything thrown by the definition,
+     * including errors like StackOverflowError, fails only this definition.
+     * @param definition Definition class.
+     * @return Result of the composition.
+     */
+    public Result compile(Class<?> definition) {
+        long start = System.nanoTime();
+        Path output = getOutput(definition);
+        Status status;
+        Throwable failure = null;
+        try {
+            Object builder = definition.getConstructor().newInstance();
+            boolean correct;
+            if (builder instanceof TestBuilder) {
+                correct = ((TestBuilder) builder).compose(output);
+            } else {
+                correct = ((NestedFunctionsTestBuilder) builder).compose(output);
+            }
+            status = correct ? Status.GENERATED : Status.INVALID;
+        } catch (Throwable ex) {
+            status = Status.FAILED;
+            failure = ex;
+        }
+        return new Result(definition, output, status, System.nanoTime() - start, failure);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path outputDirectory = Paths.get("html");
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else if ("-t".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("-m".equals(args[i])) {
+                Composition.setSink((composition) -> System.out.println(composition));
+            } else {
+                packages.add(args[i]);
+            }
+        }
+        Files.createDirectories(outputDirectory);
+
+        long start = System.nanoTime();
+        List<Class<?>> definitions = discover(packages);
+        List<Result> results = new BatchCompiler(outputDirectory, threads).compile(definitions);
+        long total = System.nanoTime() - start;
+
+        int generated = 0;
+        int invalid = 0;
+        int failed = 0;
+        for (Result result : results) {
+            System.out.println(result);
+            switch (result.getStatus()) {
+                case GENERATED:
+                    generated++;
+                    break;
+                case INVALID:
+                    invalid++;
+                    break;
+                default:
+                    failed++;
+            }
+        }
+        System.out.println(results.size() + " tests: " + generated + " generated, " + invalid + " invalid, "
+                + failed + " failed in " + (total / 1000000) + " ms (" + threads + " threads).");
+        if (invalid + failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Outcome of composing a single definition.
+     */
+    public static enum Status {
+        GENERATED, INVALID, FAILED
+    }
+
+    /**
+     * Result of composing a single definition.
+     */
+    public static class Result {
+
+        private final Class<?> definition;
+
+        private final Path output;
+
+        private final Status status;
+
+        private final long nanos;
+
+        private final Throwable failure;
+
+        public Result(Class<?> definition, Path output, Status status, long nanos, Throwable failure) {
+            this.definition = definition;
+            this.output = output;
+            this.status = status;
+            this.nanos = nanos;
+            this.failure = failure;
+        }
+
+        public Class<?> getDefinition() {
+            return definition;
+        }
+
+        public Path getOutput() {
+            return output;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            String line = String.format("%-9s %-50s %6d ms", status, definition.getName(), nanos / 1000000);
+            if (status == Status.GENERATED) {
+                return line + "  -> " + output;
+            } else if (failure != null) {
+                return line + "  " + failure;
+            }
+            return line;
+        }
+    }
+}
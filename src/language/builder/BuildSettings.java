@@ -0,0 +1,128 @@
+package language.builder;
+
+import java.util.concurrent.ForkJoinPool;
+import language.model.RenderOptions;
+import language.model.StringPool;
+import language.model.ValidationCache;
+
+/**
+ * Settings of building a test, shared by the builders of the definitions
+ * (TestBuilder, NestedFunctionsTestBuilder) and the importers of the question
+ * banks (TestImporter). All of them are off by default.
+ * @author Milan
+ */
+public class BuildSettings {
+
+    /**
+     * Whether the questions are validated in parallel.
+     */
+    private boolean parallelValidation = false;
+
+    /**
+     * Options of the generated page.
+     */
+    private final RenderOptions renderOptions = new RenderOptions();
+
+    /**
+     * Questions known to be correct from a previous build, null if unused.
+     */
+    private ValidationCache validationCache;
+
+    /**
+     * Pool of the texts of the test, null to keep the texts as they are given.
+     */
+    private StringPool stringPool;
+
+    public RenderOptions getRenderOptions() {
+        return renderOptions;
+    }
+
+    /**
+     * Lets the validation skip the questions found correct in a previous
+     * build of the same definition or file (see TestWatcher).
+     * @param validationCache Cache shared by the builds, null to validate all
+     * the questions.
+     */
+    public void setValidationCache(ValidationCache validationCache) {
+        this.validationCache = validationCache;
+    }
+
+    public ValidationCache getValidationCache() {
+        return validationCache;
+    }
+
+    /**
+     * Lets the texts repeated in the test (answers, items of the pairs) share
+     * a single instance. String literals of a definition are shared by the
+     * JVM anyway, the pool saves the texts computed by the definition (e.g.
+     * read from a file or concatenated in a loop) and the texts read from the
+     * question banks.
+     * @param stringPool Pool of the texts, it can be shared by several
+     * builds, null to keep the texts as they are.
+     */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /**
+     * @param text Text of the test.
+     * @return The pooled instance of the text, if there is a pool.
+     */
+    public String pooled(String text) {
+        return stringPool != null ? stringPool.intern(text) : text;
+    }
+
+    /**
+     * Switches on the parallel validation of the questions (on the common
+     * ForkJoinPool). Worth it only for large tests, the errors are reported
+     * in the same order as in the sequential validation.
+     * @param parallelValidation True to validate the questions in parallel.
+     */
+    public void setParallelValidation(boolean parallelValidation) {
+        this.parallelValidation = parallelValidation;
+    }
+
+    /**
+     * @return Pool to validate the questions on, null to validate them
+     * sequentially.
+     */
+    public ForkJoinPool getValidationPool() {
+        return parallelValidation ? ForkJoinPool.commonPool() : null;
+    }
+
+    /**
+     * Switches on the parallel rendering of the questions (on the common
+     * ForkJoinPool) of the tests with at least
+     * RenderOptions.DEFAULT_PARALLEL_THRESHOLD questions, smaller tests are
+     * rendered sequentially. The page is the same as the sequentially
+     * rendered one.
+     * @param parallelRendering True to render the questions in parallel.
+     */
+    public void setParallelRendering(boolean parallelRendering) {
+        renderOptions.setRenderPool(parallelRendering ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Switches on writing the options of each pairing question only once,
+     * the selection lists are filled in by the page. Worth it for pairing
+     * questions with many pairs.
+     * @param sharedMatchingOptions True to share the options of pairing questions.
+     */
+    public void setSharedMatchingOptions(boolean sharedMatchingOptions) {
+        renderOptions.setSharedMatchingOptions(sharedMatchingOptions);
+    }
+
+    /**
+     * Splits the page of the test into pages of the given number of questions,
+     * the page loads the questions of the other pages only when the student
+     * opens them. Worth it for tests with thousands of questions.
+     * @param pageSize Number of the questions on a page, 0 for a single page.
+     */
+    public void setPageSize(int pageSize) {
+        renderOptions.setPageSize(pageSize);
+    }
+}
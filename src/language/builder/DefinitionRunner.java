@@ -0,0 +1,179 @@
+package language.builder;
+
+import java.awt.Desktop;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import language.metrics.Composition;
+import language.metrics.Phase;
+import language.model.PageWriter;
+import language.model.Test;
+
+/**
+ * Runs the define method of a definition class and validates and generates
+ * its test, the same way for both kinds of the builders (TestBuilder and
+ * NestedFunctionsTestBuilder).
+ * @author Milan
+ */
+final class DefinitionRunner {
+
+    /**
+     * Name of the definition class, used in the metrics.
+     */
+    private final String name;
+
+    private final ErrorHandlingUtils errorHandling;
+
+    private final BuildSettings settings = new BuildSettings();
+
+    /**
+     * The define method of the definition.
+     */
+    private final Runnable definition;
+
+    /**
+     * The test created by the definition.
+     */
+    private final Supplier<Test> test;
+
+    /**
+     * @param definitionClass Definition class, the errors point to it.
+     * @param provenance Determines how the places where the model objects are
+     * created are captured for the error reporting.
+     * @param definition The define method of the definition.
+     * @param test Gives the test created by the definition.
+     */
+    DefinitionRunner(Class<?> definitionClass, ProvenanceMode provenance, Runnable definition, Supplier<Test> test) {
+        this.name = definitionClass.getName();
+        this.errorHandling = new ErrorHandlingUtils(definitionClass, provenance);
+        this.definition = definition;
+        this.test = test;
+    }
+
+    ErrorHandlingUtils getErrorHandling() {
+        return errorHandling;
+    }
+
+    BuildSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Creates and validates the model and generates the test into
+     * html/test.html, which is opened in the browser.
+     * @throws ParsingException
+     */
+    void compose() throws ParsingException {
+        Composition composition = Composition.start(name);
+        boolean correct = false;
+        try {
+            runDefinition(composition);
+            correct = validate(composition);
+            if (correct) {
+                generate(composition);
+            } else {
+                System.err.println("There were some errors, fix them and rerun the program.");
+            }
+        } finally {
+            composition.finish(correct);
+        }
+    }
+
+    /**
+     * Creates and validates the model.
+     * @return The frozen test, or null if there were errors in the definition.
+     * @throws ParsingException
+     */
+    Test build() throws ParsingException {
+        Composition composition = Composition.start(name);
+        boolean correct = false;
+        try {
+            runDefinition(composition);
+            correct = validate(composition);
+            return correct ? test.get().freeze() : null;
+        } finally {
+            composition.finish(correct);
+        }
+    }
+
+    /**
+     * Creates and validates the model and writes the test into the file, if
+     * it does not already contain it.
+     * @return True if the test was correct and it was written.
+     * @throws ParsingException
+     * @throws IOException
+     */
+    boolean compose(Path output) throws ParsingException, IOException {
+        Composition composition = Composition.start(name);
+        boolean generated = false;
+        try {
+            runDefinition(composition);
+            if (!validate(composition)) {
+                return false;
+            }
+            new PageWriter(test.get(), settings.getRenderOptions()).writeIfChanged(output, composition);
+            generated = true;
+            return true;
+        } finally {
+            composition.finish(generated);
+        }
+    }
+
+    /**
+     * Validate method does some validation upon the model. In this particular
+     * case it checks for duplication in entities and in their properties.
+     * For the error reporting ti uses the ErrorHandlingUtils object, whose
+     * captured information is released afterwards.
+     * @throws ParsingException
+     */
+    private boolean validate(Composition composition) throws ParsingException {
+        int errors = errorHandling.getErrorCount();
+        composition.begin(Phase.VALIDATE);
+        try {
+            return test.get().validate(errorHandling, settings.getValidationPool(), settings.getValidationCache());
+        } finally {
+            composition.end(Phase.VALIDATE);
+            composition.addValidationErrors(errorHandling.getErrorCount() - errors);
+            errorHandling.release();
+        }
+    }
+
+    /**
+     * Runs the define method of the definition class and records how long it
+     * took and how many objects it registered (see language.metrics). The
+     * registration is timed only if the metrics are recorded.
+     */
+    private void runDefinition(Composition composition) {
+        errorHandling.setTimed(composition.isEnabled());
+        int registered = errorHandling.getRegisteredCount();
+        long registrationNanos = errorHandling.getRegistrationNanos();
+        composition.begin(Phase.DEFINE);
+        definition.run();
+        composition.end(Phase.DEFINE);
+        composition.addRegistrations(errorHandling.getRegisteredCount() - registered,
+                errorHandling.getRegistrationNanos() - registrationNanos);
+        if (test.get() != null) {
+            composition.setTitle(test.get().getTitle());
+        }
+    }
+
+    private void generate(Composition composition) {
+        File file = new File("html/test.html");
+        try {
+            new PageWriter(test.get(), settings.getRenderOptions()).writeIfChanged(file.toPath(), composition);
+        } catch (IOException ex) {
+            Logger.getLogger(TestBuilder.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        if(Desktop.isDesktopSupported())
+        {
+            try {
+                Desktop.getDesktop().browse(file.toURI());
+            } catch (IOException ex) {
+                Logger.getLogger(TestBuilder.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+}
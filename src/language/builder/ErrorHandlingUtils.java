@@ -1,6 +1,8 @@
 package language.builder;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -12,55 +14,286 @@ public class ErrorHandlingUtils {
      * Expression builder class for finding the right StackTraceElement object
      * in the stack trace.
      */
-    private final Class expressionBuilderClass;
+    private final Class<?> expressionBuilderClass;
+    
+    /**
+     * Name suffix identifying the frames of the expression builder class.
+     */
+    private final String expressionBuilderSuffix;
+    
+    /**
+     * How the creation of the registered objects is captured.
+     */
+    private final ProvenanceMode mode;
 
     /**
-     * Hashtable that maps each created model object to a StackTraceElement object
-     * representing a creation method call that created the given object.
+     * Maps each created model object to the place that created it.
+     */
+    private Map<Object, SourceLocation> debugInfo = new IdentityHashMap<Object, SourceLocation>();
+    
+    /**
+     * Maps each object registered in the LAZY mode to the captured stack of
+     * its creation (see StackLocator.capture()), it is resolved into the
+     * location only when an error of the object is reported.
+     */
+    private Map<Object, Object> captured = new IdentityHashMap<Object, Object>();
+    
+    /**
+     * Error handling the buffered reports are replayed to, null if the reports
+     * are printed right away.
+     */
+    private final ErrorHandlingUtils parent;
+    
+    /**
+     * Reports collected by a buffering instance.
      */
-    private final Map<Object, StackTraceElement> debugInfo = new HashMap<Object, StackTraceElement>();
+    private final List<Report> reports;
 
-    public ErrorHandlingUtils(Class expressionBuilderClass) {
+    /**
+     * Number of the registered objects and of the reported errors, kept for
+     * the metrics of the composition (see language.metrics.Composition).
+     */
+    private int registeredCount;
+
+    private int errorCount;
+
+    /**
+     * If true, the time spent by the registration is measured.
+     */
+    private boolean timed;
+
+    private long registrationNanos;
+
+    public ErrorHandlingUtils(Class<?> expressionBuilderClass) {
+        this(expressionBuilderClass, ProvenanceMode.getDefault());
+    }
+
+    public ErrorHandlingUtils(Class<?> expressionBuilderClass, ProvenanceMode mode) {
         this.expressionBuilderClass = expressionBuilderClass;
+        this.expressionBuilderSuffix = "." + expressionBuilderClass.getSimpleName();
+        this.mode = mode;
+        this.parent = null;
+        this.reports = null;
+    }
+    
+    private ErrorHandlingUtils(ErrorHandlingUtils parent) {
+        this.expressionBuilderClass = parent.expressionBuilderClass;
+        this.expressionBuilderSuffix = parent.expressionBuilderSuffix;
+        this.mode = parent.mode;
+        this.debugInfo = parent.debugInfo;
+        this.captured = parent.captured;
+        this.parent = parent;
+        this.reports = new ArrayList<Report>();
+    }
+    
+    /**
+     * Creates an error handling that collects the reported errors instead of
+     * printing them. It can be used from another thread (e.g. to validate 
+     * questions in parallel), the reports are passed to this object
+     * by calling replay(), so that their order stays deterministic. No objects
+     * should be registered while the buffering error handling is used.
+     * @return Buffering error handling.
+     */
+    public ErrorHandlingUtils buffer() {
+        return new ErrorHandlingUtils(this);
+    }
+    
+    /**
+     * Passes the collected reports to the error handling this buffer was 
+     * created from, in the order in which they were reported.
+     */
+    public void replay() {
+        if (parent == null) {
+            return;
+        }
+        for (Report report : reports) {
+            parent.report(report.cause, report.exception);
+        }
+        reports.clear();
     }
 
+    public ProvenanceMode getMode() {
+        return mode;
+    }
+    
     /**
      * Each created model object has to be registered.
-     * The registration creates an exception to get current stack trace with
-     * method calls. Using the class of the expression builder the method
-     * finds a StackTraceElement object for the proper creation method that created
-     * registered model object. The found StackTraceElement object is than
-     * put into the hashtable.
+     * Using the class of the expression builder the proper creation method 
+     * that created registered model object is found in the stack and kept 
+     * for the error reporting. When it is done depends on the provenance mode:
+     * EAGER finds it right away, LAZY keeps the captured stack and finds it
+     * only for the reported objects.
      * @param <T>
      * @param object
      * @return 
      */
     public <T> T registerObject(T object) {
-        Throwable exp = new Throwable();
-        StackTraceElement[] stes = exp.getStackTrace();
-        for (int i = 0; i < stes.length; i++) {
-            StackTraceElement ste = stes[i];
-            if (ste.getClassName().endsWith("." + expressionBuilderClass.getSimpleName())) {
-                debugInfo.put(object, stes[i]);
+        long start = timed ? System.nanoTime() : 0;
+        switch (mode) {
+            case EAGER:
+                SourceLocation location = locate();
+                if (location != null) {
+                    debugInfo.put(object, location);
+                }
+                break;
+            case LAZY:
+                Object stack = StackLocator.INSTANCE.capture(expressionBuilderClass.getName(), expressionBuilderSuffix);
+                if (stack != null) {
+                    captured.put(object, stack);
+                }
                 break;
-            }
+            default:
         }
+        registered(start);
         return object;
     }
-
+    
+    /**
+     * Registers a model object that was not created by Java code but read from
+     * a file (see TestImporter). The errors of the object point to the given
+     * line of the file instead of a line of the definition class.
+     * @param <T>
+     * @param object Model object.
+     * @param fileName File the object was read from.
+     * @param lineNumber Line of the file where the object starts.
+     * @return The object.
+     */
+    public <T> T registerObject(T object, String fileName, int lineNumber) {
+        return registerObject(object, SourceLocation.of(fileName, lineNumber));
+    }
+    
+    /**
+     * Registers a model object whose location is already known, e.g. it was
+     * parsed from a .test file.
+     * @param <T>
+     * @param object Model object.
+     * @param location Location of the object.
+     * @return The object.
+     */
+    public <T> T registerObject(T object, SourceLocation location) {
+        long start = timed ? System.nanoTime() : 0;
+        if (mode != ProvenanceMode.OFF) {
+            debugInfo.put(object, location);
+        }
+        registered(start);
+        return object;
+    }
+    
+    private void registered(long start) {
+        registeredCount++;
+        if (timed) {
+            registrationNanos += System.nanoTime() - start;
+        }
+    }
+    
+    /**
+     * Switches on measuring the time spent by the registration, it costs two
+     * reads of the clock per registered object.
+     * @param timed True to measure the registration.
+     */
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+    
+    /**
+     * @return Number of the objects registered so far.
+     */
+    public int getRegisteredCount() {
+        return registeredCount;
+    }
+    
+    /**
+     * @return Time spent by the registration while it was measured (see
+     * setTimed()).
+     */
+    public long getRegistrationNanos() {
+        return registrationNanos;
+    }
+    
+    /**
+     * @return Number of the errors reported so far (the buffered ones count
+     * when they are replayed).
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+    
+    /**
+     * Finds the creation place of the given model object.
+     * @param object Registered model object.
+     * @return Location of the creating method call, or null if it is unknown.
+     * The location of an object of the LAZY mode is resolved from its captured
+     * stack on each call, it is not kept.
+     */
+    public SourceLocation getLocation(Object object) {
+        SourceLocation location = debugInfo.get(object);
+        if (location == null && !captured.isEmpty() && object != null) {
+            location = StackLocator.INSTANCE.resolve(captured.get(object), expressionBuilderClass.getName(),
+                    expressionBuilderSuffix);
+        }
+        return location;
+    }
+    
+    /**
+     * Releases the captured information, after the validation it is not needed
+     * anymore. Errors reported later will not point to the source.
+     */
+    public void release() {
+        debugInfo = new IdentityHashMap<Object, SourceLocation>();
+        captured = new IdentityHashMap<Object, Object>();
+    }
+    
+    private SourceLocation locate() {
+        return StackLocator.INSTANCE.locate(expressionBuilderClass.getName(), expressionBuilderSuffix);
+    }
+    
     /**
      * When an error is reported the error is accompanied by the model object
-     * that caused the error. Then this utilities class prints a given
-     * StackTraceElement object that will point to the line where the model 
-     * object was created.
+     * that caused the error. Then this utilities class prints the location 
+     * that will point to the line where the model object was created.
+     * Errors not related to any model object can pass their SourceLocation 
+     * as the cause.
      * @param <T>
      * @param cause
      * @param exception
      * @throws T 
      */
     public <T extends Exception> void reportError(Object cause, T exception) throws T {
-        System.err.println(exception.getMessage());
-        System.err.println("\t at " + debugInfo.get(cause).toString());
+        report(cause, exception);
         //throw exception;
     }
+    
+    private void report(Object cause, Exception exception) {
+        if (reports != null) {
+            reports.add(new Report(cause, exception));
+            return;
+        }
+        errorCount++;
+        SourceLocation location = cause instanceof SourceLocation ? (SourceLocation) cause : getLocation(cause);
+        print(exception, location);
+    }
+    
+    private static void print(Exception exception, SourceLocation location) {
+        // printed at once, so that errors of tests composed in parallel do not mix
+        if (location != null) {
+            System.err.println(exception.getMessage() + System.lineSeparator() + "\t at " + location.toString());
+        } else {
+            System.err.println(exception.getMessage());
+        }
+    }
+    
+    /**
+     * Error reported to a buffering error handling.
+     */
+    private static class Report {
+        
+        private final Object cause;
+        
+        private final Exception exception;
+
+        public Report(Object cause, Exception exception) {
+            this.cause = cause;
+            this.exception = exception;
+        }
+    }
 }
@@ -1,16 +1,8 @@
 package language.builder;
 
-import java.awt.Desktop;
-import java.io.BufferedWriter;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import language.model.Answer;
 import language.model.MatchingPair;
 import language.model.MatchingPairsQuestion;
@@ -21,10 +13,15 @@ import language.model.SingleOptionQuestion;
 import language.model.Test;
 
 public abstract class NestedFunctionsTestBuilder {
+    /**
+     * Runs the definition and validates and generates its test.
+     */
+    private final DefinitionRunner runner;
+    
     /**
      * ErrorHandlingUtils object for advanced error handling.
      */
-    private final ErrorHandlingUtils errorHandling = new ErrorHandlingUtils(this.getClass());
+    private final ErrorHandlingUtils errorHandling;
     
     /**
      * Represents a positive choice for case sensitivity.
@@ -38,6 +35,19 @@ public abstract class NestedFunctionsTestBuilder {
     
     private Test test;
     
+    public NestedFunctionsTestBuilder() {
+        this(ProvenanceMode.getDefault());
+    }
+    
+    /**
+     * @param provenance Determines how the places where the model objects are 
+     * created are captured for the error reporting.
+     */
+    public NestedFunctionsTestBuilder(ProvenanceMode provenance) {
+        this.runner = new DefinitionRunner(this.getClass(), provenance, this::define, () -> test);
+        this.errorHandling = runner.getErrorHandling();
+    }
+    
     /**
      * The abstract define method will get overriden in concrete definition
      * classes.
@@ -48,18 +58,46 @@ public abstract class NestedFunctionsTestBuilder {
         return this.test;
     }
     
+    /**
+     * See TestBuilder.getSettings().
+     * @return Settings of the build of the test.
+     */
+    public BuildSettings getSettings() {
+        return runner.getSettings();
+    }
+    
+    private String pooled(String text) {
+        return runner.getSettings().pooled(text);
+    }
+    
     /**
      * This method is called to create the model. It uses the concrete define
      * method of the definition class to create model and then it validates it.
      * @throws ParsingException 
      */
     public void compose() throws ParsingException {
-        define();
-        if (validate()) {
-            generate();
-        } else {
-            System.err.println("There were some errors, fix them and rerun the program.");
-        }
+        runner.compose();
+    }
+    
+    /**
+     * See TestBuilder.build().
+     * @return The frozen (immutable) test, or null if there were errors in
+     * the definition.
+     * @throws ParsingException 
+     */
+    public Test build() throws ParsingException {
+        return runner.build();
+    }
+    
+    /**
+     * See TestBuilder.compose(Path).
+     * @param output File to write the generated test to.
+     * @return True if the test was correct and it was written.
+     * @throws ParsingException 
+     * @throws IOException 
+     */
+    public boolean compose(Path output) throws ParsingException, IOException {
+        return runner.compose(output);
     }
     
     /**
@@ -85,7 +123,7 @@ public abstract class NestedFunctionsTestBuilder {
      * @return A single choice question.
      */
     protected Question single_choice_question(String text, int points, Answer... answers) {
-        SingleOptionQuestion soq = new SingleOptionQuestion(text, points);
+        SingleOptionQuestion soq = new SingleOptionQuestion(pooled(text), points);
         Arrays.stream(answers).forEach((a) -> soq.addAnswer(a));
         return errorHandling.registerObject(soq);
     }
@@ -101,7 +139,7 @@ public abstract class NestedFunctionsTestBuilder {
      * @return A multiple choice question.
      */
     protected Question multiple_choice_question(String text, int points, Answer... answers) {
-        MultipleOptionsQuestion moq = new MultipleOptionsQuestion(text, points);
+        MultipleOptionsQuestion moq = new MultipleOptionsQuestion(pooled(text), points);
         Arrays.stream(answers).forEach((a) -> moq.addAnswer(a));
         return errorHandling.registerObject(moq);
     }
@@ -115,7 +153,7 @@ public abstract class NestedFunctionsTestBuilder {
      * @return An open answer question.
      */
     protected Question open_answer_question(String text, int points, String correctAnswer) {
-        OpenQuestion oaq = new OpenQuestion(text, points);
+        OpenQuestion oaq = new OpenQuestion(pooled(text), points);
         oaq.setCaseSensitive(NO);
         oaq.addAnswer(correct_answer(correctAnswer));
         return errorHandling.registerObject(oaq);
@@ -131,7 +169,7 @@ public abstract class NestedFunctionsTestBuilder {
      * @return A pairing question.
      */
     protected Question pairing_question(String text, int points, MatchingPair... pairs) {
-        MatchingPairsQuestion mpq = new MatchingPairsQuestion(text, points);
+        MatchingPairsQuestion mpq = new MatchingPairsQuestion(pooled(text), points);
         Arrays.stream(pairs).forEach((p) -> mpq.addPair(p));
         return errorHandling.registerObject(mpq);
     }
@@ -142,7 +180,7 @@ public abstract class NestedFunctionsTestBuilder {
      * @return A correct answer with the given text.
      */
     protected Answer correct_answer(String text) {
-        Answer answer = new Answer(text, true);
+        Answer answer = new Answer(pooled(text), true);
         return errorHandling.registerObject(answer);
     }
     
@@ -152,7 +190,7 @@ public abstract class NestedFunctionsTestBuilder {
      * @return An incorrect answer.
      */
     protected Answer incorrect_answer(String text) {
-        Answer answer = new Answer(text, false);
+        Answer answer = new Answer(pooled(text), false);
         return errorHandling.registerObject(answer);
     }
     
@@ -163,43 +201,7 @@ public abstract class NestedFunctionsTestBuilder {
      * @return A pair that is to be matched.
      */
     protected MatchingPair pair(String firstItem, String secondItem) {
-        MatchingPair pair = new MatchingPair(firstItem, secondItem);
+        MatchingPair pair = new MatchingPair(pooled(firstItem), pooled(secondItem));
         return errorHandling.registerObject(pair);
     }
-    
-    /**
-     * Validate method does some validation upon the model. In this particular
-     * case it checks for duplication in entities and in their properties.
-     * For the error reporting ti uses the ErrorHandlingUtils object.
-     * @throws ParsingException 
-     */
-    private boolean validate() throws ParsingException {
-        return test.validate(errorHandling);
-    }
-    
-    private void generate() {
-        String output = test.toHTML();
-        
-        File file = new File("html/test.html");
-        file.mkdir();
-        if (file.exists()) {
-            file.delete();
-        }
-
-        Path path = Paths.get("html/test.html");
-        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE)) {
-            writer.write(output);
-        } catch (IOException ex) {
-            Logger.getLogger(TestBuilder.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        file = new File("html/test.html");
-        if(Desktop.isDesktopSupported())
-        {
-            try {
-                Desktop.getDesktop().browse(file.toURI());
-            } catch (IOException ex) {
-                Logger.getLogger(TestBuilder.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
-    }
 }
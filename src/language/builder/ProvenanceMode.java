@@ -0,0 +1,48 @@
+package language.builder;
+
+import java.util.Locale;
+
+/**
+ * Determines how ErrorHandlingUtils captures the place where each model
+ * object was created.
+ * @author Milan
+ */
+public enum ProvenanceMode {
+    /**
+     * The creating line is looked up right when the object is registered,
+     * only a compact source location is kept. On Java 9 and newer only the
+     * frames above the definition class are walked, Java 8 captures the
+     * whole stack trace.
+     */
+    EAGER,
+    /**
+     * The stack is captured at the registration but its frames are resolved
+     * into the method, file and line only for the reported objects. On Java 9
+     * and newer a single frame of the definition class is kept per object,
+     * Java 8 keeps a Throwable with the unresolved stack trace. The
+     * definition is never run again.
+     */
+    LAZY,
+    /**
+     * Nothing is captured, errors are reported without links to the source.
+     * Meant for trusted definitions in production.
+     */
+    OFF;
+    
+    /**
+     * Name of the system property that sets the default mode.
+     */
+    public static final String PROPERTY = "testdsl.provenance";
+    
+    /**
+     * @return The mode set by the system property testdsl.provenance
+     * (eager, lazy or off), or EAGER if the property is not set.
+     */
+    public static ProvenanceMode getDefault() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null || value.trim().isEmpty()) {
+            return EAGER;
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
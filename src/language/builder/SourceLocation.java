@@ -0,0 +1,93 @@
+package language.builder;
+
+/**
+ * Compact location of the source code that created a model object.
+ * @author Milan
+ */
+public final class SourceLocation {
+    
+    private final String className;
+    
+    private final String methodName;
+    
+    private final String fileName;
+    
+    private final int lineNumber;
+    
+    /**
+     * Column of the line (starting at 1), 0 if it is unknown.
+     */
+    private final int columnNumber;
+
+    public SourceLocation(String className, String methodName, String fileName, int lineNumber) {
+        this(className, methodName, fileName, lineNumber, 0);
+    }
+
+    private SourceLocation(String className, String methodName, String fileName, int lineNumber, int columnNumber) {
+        this.className = className;
+        this.methodName = methodName;
+        this.fileName = fileName;
+        this.lineNumber = lineNumber;
+        this.columnNumber = columnNumber;
+    }
+    
+    public static SourceLocation of(StackTraceElement ste) {
+        return new SourceLocation(ste.getClassName(), ste.getMethodName(), ste.getFileName(), ste.getLineNumber());
+    }
+
+    /**
+     * @param fileName File the object was read from.
+     * @param lineNumber Line of the file.
+     * @return Location in a file that is not Java source (e.g. imported
+     * question bank), it has no class and method.
+     */
+    public static SourceLocation of(String fileName, int lineNumber) {
+        return new SourceLocation(null, null, fileName, lineNumber, 0);
+    }
+
+    /**
+     * @param fileName File the object was read from.
+     * @param lineNumber Line of the file.
+     * @param columnNumber Column of the line, starting at 1.
+     * @return Location in a file that is not Java source (e.g. a .test file).
+     */
+    public static SourceLocation of(String fileName, int lineNumber, int columnNumber) {
+        return new SourceLocation(null, null, fileName, lineNumber, columnNumber);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int getColumnNumber() {
+        return columnNumber;
+    }
+
+    /**
+     * Uses the same format as StackTraceElement, so that IDEs turn the
+     * reported location into a link. Locations in imported files are written
+     * as file:line or file:line:column.
+     * @return Textual representation of the location.
+     */
+    @Override
+    public String toString() {
+        if (className == null) {
+            return fileName + ":" + lineNumber + (columnNumber > 0 ? ":" + columnNumber : "");
+        }
+        return className + "." + methodName + "(" 
+                + (fileName != null && lineNumber >= 0 ? fileName + ":" + lineNumber 
+                        : (fileName != null ? fileName : "Unknown Source")) + ")";
+    }
+}
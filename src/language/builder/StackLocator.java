@@ -0,0 +1,70 @@
+package language.builder;
+
+/**
+ * Finds the frame of the definition class in the stack of the current
+ * thread. This implementation captures the whole stack trace, which is all
+ * Java 8 offers. On Java 9 and newer StackWalkingLocator (compiled from
+ * src-java11) walks only the frames above the definition and it is loaded
+ * by reflection instead.
+ * @author Milan
+ */
+class StackLocator {
+
+    static final StackLocator INSTANCE = load();
+
+    /**
+     * @param builderName Name of the definition class.
+     * @param builderSuffix Suffix of the names of the definition class frames
+     * (its simple name after a dot).
+     * @return Location of the innermost frame of the definition class, or
+     * null if it is not in the stack.
+     */
+    SourceLocation locate(String builderName, String builderSuffix) {
+        return resolve(capture(builderName, builderSuffix), builderName, builderSuffix);
+    }
+
+    /**
+     * Captures the stack of the current thread without resolving its frames
+     * into the names of the classes, methods and files (LAZY mode).
+     * @param builderName Name of the definition class.
+     * @param builderSuffix Suffix of the names of the definition class frames.
+     * @return Captured stack to be passed to resolve(), null if the
+     * definition class is known not to be in the stack.
+     */
+    Object capture(String builderName, String builderSuffix) {
+        return new Throwable();
+    }
+
+    /**
+     * @param captured Stack returned by capture(), null for none.
+     * @param builderName Name of the definition class.
+     * @param builderSuffix Suffix of the names of the definition class frames.
+     * @return Location of the innermost frame of the definition class in the
+     * captured stack, or null if it is not there.
+     */
+    SourceLocation resolve(Object captured, String builderName, String builderSuffix) {
+        if (captured == null) {
+            return null;
+        }
+        for (StackTraceElement ste : ((Throwable) captured).getStackTrace()) {
+            if (isBuilder(ste.getClassName(), builderName, builderSuffix)) {
+                return SourceLocation.of(ste);
+            }
+        }
+        return null;
+    }
+
+    static boolean isBuilder(String className, String builderName, String builderSuffix) {
+        return className.endsWith(builderSuffix) || className.equals(builderName);
+    }
+
+    private static StackLocator load() {
+        try {
+            return Class.forName("language.builder.StackWalkingLocator", true, StackLocator.class.getClassLoader())
+                    .asSubclass(StackLocator.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            // a Java 8 runtime, or no StackWalkingLocator built
+            return new StackLocator();
+        }
+    }
+}
@@ -1,15 +1,7 @@
 package language.builder;
 
-import java.awt.Desktop;
-import java.io.BufferedWriter;
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import language.model.Answer;
 import language.model.MatchingPair;
 import language.model.MatchingPairsQuestion;
@@ -23,10 +15,15 @@ import language.model.Test;
  * @author Milan
  */
 public abstract class TestBuilder {
+    /**
+     * Runs the definition and validates and generates its test.
+     */
+    private final DefinitionRunner runner;
+    
     /**
      * ErrorHandlingUtils object for advanced error handling.
      */
-    private final ErrorHandlingUtils errorHandling = new ErrorHandlingUtils(this.getClass());
+    private final ErrorHandlingUtils errorHandling;
     
     /**
      * Represents a positive choice for case sensitivity.
@@ -40,6 +37,19 @@ public abstract class TestBuilder {
     
     private Test test;
     
+    public TestBuilder() {
+        this(ProvenanceMode.getDefault());
+    }
+    
+    /**
+     * @param provenance Determines how the places where the model objects are 
+     * created are captured for the error reporting.
+     */
+    public TestBuilder(ProvenanceMode provenance) {
+        this.runner = new DefinitionRunner(this.getClass(), provenance, this::define, () -> test);
+        this.errorHandling = runner.getErrorHandling();
+    }
+    
     /**
      * The abstract define method will get overriden in concrete definition
      * classes.
@@ -50,18 +60,51 @@ public abstract class TestBuilder {
         return this.test;
     }
     
+    /**
+     * @return Settings of the build of the test (parallel validation and
+     * rendering, pages, caches), a definition can change them in its
+     * constructor or define().
+     */
+    public BuildSettings getSettings() {
+        return runner.getSettings();
+    }
+    
+    private String pooled(String text) {
+        return runner.getSettings().pooled(text);
+    }
+    
     /**
      * This method is called to create the model. It uses the concrete define
      * method of the definition class to create model and then it validates it.
      * @throws ParsingException 
      */
     public void compose() throws ParsingException {
-        define();
-        if (validate()) {
-            generate();
-        } else {
-            System.err.println("There were some errors, fix them and rerun the program.");
-        }
+        runner.compose();
+    }
+    
+    /**
+     * Creates and validates the model like compose(), but does not generate
+     * anything. Used to serve the test from memory (see TestServer).
+     * @return The frozen (immutable) test, or null if there were errors in
+     * the definition.
+     * @throws ParsingException 
+     */
+    public Test build() throws ParsingException {
+        return runner.build();
+    }
+    
+    /**
+     * Creates and validates the model like compose(), but writes the generated
+     * test into the given file and does not open it. Used to generate many 
+     * tests at once (see BatchCompiler). The file is not rewritten if it
+     * already contains the test generated from the same definition.
+     * @param output File to write the generated test to.
+     * @return True if the test was correct and it was written.
+     * @throws ParsingException 
+     * @throws IOException 
+     */
+    public boolean compose(Path output) throws ParsingException, IOException {
+        return runner.compose(output);
     }
     
     /**
@@ -83,7 +126,7 @@ public abstract class TestBuilder {
      * @param points Positive number of points for the question.
      */
     protected void single_choice_question(String text, int points) {
-        SingleOptionQuestion soq = new SingleOptionQuestion(text, points);
+        SingleOptionQuestion soq = new SingleOptionQuestion(pooled(text), points);
         errorHandling.registerObject(soq);
         test.addQuestion(soq);
     }
@@ -97,7 +140,7 @@ public abstract class TestBuilder {
      * @param points Positive number of points for the question.
      */
     protected void multiple_choice_question(String text, int points) {
-        MultipleOptionsQuestion moq = new MultipleOptionsQuestion(text, points);
+        MultipleOptionsQuestion moq = new MultipleOptionsQuestion(pooled(text), points);
         errorHandling.registerObject(moq);
         test.addQuestion(moq);
     }
@@ -110,7 +153,7 @@ public abstract class TestBuilder {
      * @param correctAnswer The correct answer to the question.
      */
     protected void open_answer_question(String text, int points, String correctAnswer) {
-        OpenQuestion oaq = new OpenQuestion(text, points);
+        OpenQuestion oaq = new OpenQuestion(pooled(text), points);
         oaq.setCaseSensitive(NO);
         errorHandling.registerObject(oaq);
         test.addQuestion(oaq);
@@ -125,7 +168,7 @@ public abstract class TestBuilder {
      * @param points Positive number of points for the question.
      */
     protected void pairing_question(String text, int points) {
-        MatchingPairsQuestion mpq = new MatchingPairsQuestion(text, points);
+        MatchingPairsQuestion mpq = new MatchingPairsQuestion(pooled(text), points);
         errorHandling.registerObject(mpq);
         test.addQuestion(mpq);
     }
@@ -135,7 +178,7 @@ public abstract class TestBuilder {
      * @param text Answer's text in quotation marks.
      */
     protected void correct_answer(String text) {
-        Answer answer = new Answer(text, true);
+        Answer answer = new Answer(pooled(text), true);
         errorHandling.registerObject(answer);
         test.getLastQuestion().addAnswer(answer);
     }
@@ -145,7 +188,7 @@ public abstract class TestBuilder {
      * @param text Answer's text in quotation marks.
      */
     protected void incorrect_answer(String text) {
-        Answer answer = new Answer(text, false);
+        Answer answer = new Answer(pooled(text), false);
         errorHandling.registerObject(answer);
         test.getLastQuestion().addAnswer(answer);
     }
@@ -156,44 +199,8 @@ public abstract class TestBuilder {
      * @param secondItem Item to be included in the selection list.
      */
     protected void pair(String firstItem, String secondItem) {
-        MatchingPair pair = new MatchingPair(firstItem, secondItem);
+        MatchingPair pair = new MatchingPair(pooled(firstItem), pooled(secondItem));
         errorHandling.registerObject(pair);
         test.getLastQuestion().addPair(pair);
     }
-    
-    /**
-     * Validate method does some validation upon the model. In this particular
-     * case it checks for duplication in entities and in their properties.
-     * For the error reporting ti uses the ErrorHandlingUtils object.
-     * @throws ParsingException 
-     */
-    private boolean validate() throws ParsingException {
-        return test.validate(errorHandling);
-    }
-    
-    private void generate() {
-        String output = test.toHTML();
-        
-        File file = new File("html/test.html");
-        file.mkdir();
-        if (file.exists()) {
-            file.delete();
-        }
-
-        Path path = Paths.get("html/test.html");
-        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE)) {
-            writer.write(output);
-        } catch (IOException ex) {
-            Logger.getLogger(TestBuilder.class.getName()).log(Level.SEVERE, null, ex);
-        }
-        file = new File("html/test.html");
-        if(Desktop.isDesktopSupported())
-        {
-            try {
-                Desktop.getDesktop().browse(file.toURI());
-            } catch (IOException ex) {
-                Logger.getLogger(TestBuilder.class.getName()).log(Level.SEVERE, null, ex);
-            }
-        }
-    }
 }
@@ -0,0 +1,361 @@
+package language.grading;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+import language.variant.Variant;
+
+/**
+ * Answer key compiled from a test, it grades submissions using the same 
+ * rules as the scoring functions in the generated page (scoreOptions,
+ * scoreText and scorePairs), including their proportional scoring and
+ * rounding to two decimal places. The answers of the open questions are
+ * matched by their AnswerMatcher, which normalizes them as the question sets
+ * (the page mirrors it in matchText).
+ * The key is immutable, it can be shared by threads, and grading a submission
+ * allocates only the result (and the normalized open answers).
+ * @author Milan
+ */
+public final class AnswerKey {
+    
+    private static final byte SINGLE = 1;
+    
+    private static final byte MULTIPLE = 2;
+    
+    private static final byte OPEN = 3;
+    
+    private static final byte PAIRING = 4;
+    
+    private final int fullPoints;
+    
+    private final int passingMinimum;
+    
+    private final byte[] types;
+    
+    private final int[] points;
+    
+    /**
+     * Bitmasks of the correct answers of the option questions.
+     */
+    private final long[][] correct;
+    
+    /**
+     * Number of answers of the option questions.
+     */
+    private final int[] answerCounts;
+    
+    /**
+     * Number of correct answers of the multiple choice questions.
+     */
+    private final int[] correctCounts;
+    
+    /**
+     * Compiled correct answers of the open questions.
+     */
+    private final AnswerMatcher[] openAnswers;
+    
+    /**
+     * Index of the correct option for each pair of the matching questions.
+     */
+    private final int[][] correctOptions;
+    
+    /**
+     * Indices of the options of the matching questions, null for the other
+     * questions.
+     */
+    private final List<Map<String, Integer>> optionIndices;
+
+    /**
+     * Compiles the key, the case insensitive answers are compared in the root
+     * locale.
+     * @param test Validated test.
+     */
+    public AnswerKey(Test test) {
+        this(test, Locale.ROOT);
+    }
+    
+    /**
+     * Compiles the key.
+     * @param test Validated test.
+     * @param locale Locale used to upper case the case insensitive answers 
+     * (the page uses the locale of the browser).
+     */
+    public AnswerKey(Test test, Locale locale) {
+        List<AbstractMap.SimpleEntry<String, Question>> questions = test.getQuestions();
+        int n = questions.size();
+        this.fullPoints = test.getTotalPoints();
+        this.passingMinimum = test.getPassingMinimum();
+        this.types = new byte[n];
+        this.points = new int[n];
+        this.correct = new long[n][];
+        this.answerCounts = new int[n];
+        this.correctCounts = new int[n];
+        this.openAnswers = new AnswerMatcher[n];
+        this.correctOptions = new int[n][];
+        this.optionIndices = new ArrayList<>(n);
+        
+        int index = 0;
+        for (AbstractMap.SimpleEntry<String, Question> entry : questions) {
+            Question q = entry.getValue();
+            Map<String, Integer> options = null;
+            points[index] = q.getPoints();
+            if (q instanceof SingleOptionQuestion || q instanceof MultipleOptionsQuestion) {
+                types[index] = q instanceof SingleOptionQuestion ? SINGLE : MULTIPLE;
+                List<Answer> answers = q.getAnswers();
+                long[] mask = new long[(answers.size() >> 6) + 1];
+                int a = 0;
+                for (Answer answer : answers) {
+                    if (answer.isCorrect()) {
+                        mask[a >> 6] |= 1L << a;
+                        correctCounts[index]++;
+                    }
+                    a++;
+                }
+                correct[index] = mask;
+                answerCounts[index] = answers.size();
+            } else if (q instanceof OpenQuestion) {
+                types[index] = OPEN;
+                openAnswers[index] = new AnswerMatcher((OpenQuestion) q, locale);
+            } else if (q instanceof MatchingPairsQuestion) {
+                types[index] = PAIRING;
+                options = new HashMap<>();
+                for (String option : ((MatchingPairsQuestion) q).getAllMatchingOptions()) {
+                    options.put(option, options.size());
+                }
+                List<MatchingPair> pairs = q.getPairs();
+                int[] pairOptions = new int[pairs.size()];
+                int p = 0;
+                for (MatchingPair pair : pairs) {
+                    pairOptions[p++] = options.get(pair.getRight());
+                }
+                correctOptions[index] = pairOptions;
+            } else {
+                throw new IllegalArgumentException("Unsupported question type: " + q.getClass().getName());
+            }
+            optionIndices.add(options);
+            index++;
+        }
+    }
+    
+    public int getQuestionCount() {
+        return types.length;
+    }
+    
+    /**
+     * Finds the index of an option of a matching question.
+     * @param question Index of the question.
+     * @param option Value of the option.
+     * @return Index of the option in the order in which the options are shown,
+     * or -1 if there is no such option.
+     */
+    public int getOptionIndex(int question, String option) {
+        Map<String, Integer> options = optionIndices.get(question);
+        Integer index = options == null ? null : options.get(option);
+        return index == null ? -1 : index;
+    }
+    
+    /**
+     * Grades the whole submission.
+     * @param submission Answers of the student.
+     * @return Points for each question and the total.
+     */
+    public GradingResult grade(Submission submission) {
+        double[] result = new double[types.length];
+        double total = 0;
+        for (int q = 0; q < types.length; q++) {
+            result[q] = grade(q, submission);
+            total += result[q];
+        }
+        return new GradingResult(result, total, fullPoints, passingMinimum);
+    }
+    
+    /**
+     * Grades the submission of a student who was given a variant of the test.
+     * @param variant Variant of the test (see VariantGenerator).
+     * @param submission Answers of the student in the order of the variant:
+     * questions, answers and matching options as they were shown.
+     * @return Points for each question of the variant, the total and the
+     * pass/fail result against the passing minimum of the variant.
+     */
+    public GradingResult grade(Variant variant, Submission submission) {
+        int n = variant.getQuestionCount();
+        Submission original = new Submission(types.length);
+        double[] result = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            int q = variant.getQuestion(i);
+            int[] order = variant.getOrder(i);
+            switch (types[q]) {
+                case SINGLE:
+                case MULTIPLE:
+                    int[] checked = new int[answerCounts[q]];
+                    int count = 0;
+                    for (int a = 0; a < answerCounts[q]; a++) {
+                        if (submission.isChecked(i, a)) {
+                            checked[count++] = order == null ? a : order[a];
+                        }
+                    }
+                    // the page checks the answers from the top, the last checked one decides
+                    original.select(q, Arrays.copyOf(checked, count));
+                    if (types[q] == SINGLE && count > 1) {
+                        original.select(q, checked[count - 1]);
+                    }
+                    break;
+                case OPEN:
+                    original.answer(q, submission.getText(i));
+                    break;
+                default:
+                    int[] matched = submission.getMatched(i);
+                    if (matched != null) {
+                        // the pairs missing at the end were not touched, they have the first shown option
+                        int[] mapped = new int[Math.max(matched.length, correctOptions[q].length)];
+                        Arrays.fill(mapped, order == null ? 0 : order[0]);
+                        for (int p = 0; p < matched.length; p++) {
+                            mapped[p] = order == null || matched[p] < 0 || matched[p] >= order.length ? matched[p] : order[matched[p]];
+                        }
+                        original.match(q, mapped);
+                    } else if (submission.getMatchedValues(i) != null) {
+                        original.match(q, submission.getMatchedValues(i));
+                    } else if (order != null) {
+                        // untouched selection lists have the first shown option selected
+                        int[] mapped = new int[correctOptions[q].length];
+                        Arrays.fill(mapped, order[0]);
+                        original.match(q, mapped);
+                    }
+            }
+            result[i] = grade(q, original);
+            total += result[i];
+        }
+        return new GradingResult(result, total, variant.getTotalPoints(), variant.getPassingMinimum());
+    }
+    
+    /**
+     * Grades a single question of the submission.
+     * @param question Index of the question.
+     * @param submission Answers of the student.
+     * @return Points for the question.
+     */
+    public double grade(int question, Submission submission) {
+        switch (types[question]) {
+            case SINGLE:
+                return gradeSingle(question, submission);
+            case MULTIPLE:
+                return gradeMultiple(question, submission);
+            case OPEN:
+                return gradeOpen(question, submission);
+            default:
+                return gradePairing(question, submission);
+        }
+    }
+    
+    private double gradeSingle(int q, Submission submission) {
+        // as in scoreOptions the last checked option decides
+        boolean selectedCorrect = false;
+        for (int a = 0; a < answerCounts[q]; a++) {
+            if (submission.isChecked(q, a)) {
+                selectedCorrect = isCorrect(q, a);
+            }
+        }
+        return round(selectedCorrect ? points[q] : 0);
+    }
+    
+    private double gradeMultiple(int q, Submission submission) {
+        int selectedCorrect = 0;
+        for (int a = 0; a < answerCounts[q]; a++) {
+            if (submission.isChecked(q, a)) {
+                if (isCorrect(q, a)) {
+                    selectedCorrect++;
+                } else {
+                    return 0;
+                }
+            }
+        }
+        return round((selectedCorrect * (double) points[q]) / correctCounts[q]);
+    }
+    
+    private double gradeOpen(int q, Submission submission) {
+        return round(openAnswers[q].matches(submission.getText(q)) ? points[q] : 0);
+    }
+    
+    private double gradePairing(int q, Submission submission) {
+        int[] correctOption = correctOptions[q];
+        int[] matched = submission.getMatched(q);
+        String[] matchedValues = submission.getMatchedValues(q);
+        int correctMatches = 0;
+        for (int p = 0; p < correctOption.length; p++) {
+            if (getSelectedOption(q, p, matched, matchedValues) == correctOption[p]) {
+                correctMatches++;
+            }
+        }
+        return round((correctMatches * (double) points[q]) / correctOption.length);
+    }
+    
+    /**
+     * @return Index of the option selected for the pair of the matching 
+     * question, -1 if the value is not an option.
+     */
+    int getSelectedOption(int q, int p, int[] matched, String[] matchedValues) {
+        // an untouched selection list has its first option selected
+        int selected = 0;
+        if (matched != null) {
+            if (p < matched.length) {
+                selected = matched[p];
+            }
+        } else if (matchedValues != null && p < matchedValues.length) {
+            selected = getOptionIndex(q, matchedValues[p]);
+        }
+        return selected;
+    }
+    
+    int getPoints(int question) {
+        return points[question];
+    }
+    
+    /**
+     * @return Number of answers of the single or multiple choice question, 0
+     * for the other questions.
+     */
+    int getAnswerCount(int question) {
+        return answerCounts[question];
+    }
+    
+    /**
+     * @return Number of pairs of the matching question, 0 for the other
+     * questions.
+     */
+    int getPairCount(int question) {
+        return correctOptions[question] == null ? 0 : correctOptions[question].length;
+    }
+    
+    /**
+     * @return Number of options of the matching question, 0 for the other
+     * questions.
+     */
+    int getOptionCount(int question) {
+        Map<String, Integer> options = optionIndices.get(question);
+        return options == null ? 0 : options.size();
+    }
+    
+    private boolean isCorrect(int q, int a) {
+        return (correct[q][a >> 6] & (1L << a)) != 0;
+    }
+    
+    /**
+     * Rounds the points the same way as the page does: Math.round(points * 100) / 100.
+     */
+    private static double round(double points) {
+        return Math.round(points * 100) / 100.0;
+    }
+}
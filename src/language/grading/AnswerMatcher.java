@@ -0,0 +1,393 @@
+package language.grading;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import language.model.Answer;
+import language.model.OpenQuestion;
+
+/**
+ * Matcher of the answers to an open question, compiled once from the question.
+ * Both the correct answers and the answers of the students are normalized:
+ * to the composed Unicode form (NFC), without the diacritical marks, with the
+ * white space collapsed and upper cased, as the question sets. The correct
+ * answers are normalized (or compiled to patterns) only here, so matching an
+ * answer normalizes just the answer.
+ *
+ * Typos are tolerated by computing the edit (Levenshtein) distance with the
+ * bit-parallel algorithm of Myers, which simulates the Levenshtein automaton
+ * of the correct answer 64 states at a time, stopping as soon as the distance
+ * cannot fall under the limit. The matcher is immutable and can be shared by
+ * threads.
+ * @author Milan
+ */
+public final class AnswerMatcher {
+
+    /**
+     * The characters below the combining marks are in the composed form, the
+     * table maps them to their base letters (e.g. 'ó' to 'o').
+     */
+    private static final int LATIN_END = 0x300;
+
+    private static final char[] BASE_LETTERS = new char[LATIN_END];
+
+    static {
+        for (char c = 0; c < LATIN_END; c++) {
+            String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            BASE_LETTERS[c] = decomposed.length() > 0 && decomposed.charAt(0) < LATIN_END ? decomposed.charAt(0) : c;
+        }
+    }
+
+    private final Locale locale;
+
+    private final boolean caseSensitive;
+
+    private final boolean ignoreDiacritics;
+
+    private final boolean normalizeWhitespace;
+
+    private final int maxEditDistance;
+
+    /**
+     * Normalized correct answers, null for the regular expressions.
+     */
+    private final String[] answers;
+
+    private final Pattern[] patterns;
+
+    /**
+     * Compiled answers for the edit distance, null for the exact matching.
+     */
+    private final Approximate[] approximate;
+
+    /**
+     * Compiles the matcher.
+     * @param question Validated question.
+     * @param locale Locale used to upper case the case insensitive answers.
+     */
+    public AnswerMatcher(OpenQuestion question, Locale locale) {
+        this.locale = locale;
+        this.caseSensitive = question.isCaseSensitive();
+        this.ignoreDiacritics = question.isIgnoreDiacritics();
+        this.normalizeWhitespace = question.isNormalizeWhitespace();
+        this.maxEditDistance = question.getMaxEditDistance();
+        List<Answer> correct = question.getAnswers();
+        if (question.isRegularExpression()) {
+            this.answers = null;
+            this.approximate = null;
+            this.patterns = new Pattern[correct.size()];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = compilePattern(question, correct.get(i).getText());
+            }
+        } else {
+            this.patterns = null;
+            this.answers = new String[correct.size()];
+            for (int i = 0; i < answers.length; i++) {
+                answers[i] = normalize(correct.get(i).getText());
+            }
+            if (maxEditDistance > 0) {
+                this.approximate = new Approximate[answers.length];
+                for (int i = 0; i < answers.length; i++) {
+                    approximate[i] = new Approximate(answers[i]);
+                }
+            } else {
+                this.approximate = null;
+            }
+        }
+    }
+
+    /**
+     * Compiles a correct answer of the question as a regular expression, 
+     * normalized like the page does it before passing it to RegExp.
+     * @param question Question matching its answers as regular expressions.
+     * @param answer Correct answer.
+     * @return Pattern matching the same answers as the page.
+     * @throws PatternSyntaxException If the answer is not a regular 
+     * expression in the syntax shared by Java and JS (see AnswerPattern).
+     */
+    public static Pattern compilePattern(OpenQuestion question, String answer) {
+        String regex = toNFC(answer);
+        return AnswerPattern.compile(question.isIgnoreDiacritics() ? removeDiacritics(regex) : regex, 
+                !question.isCaseSensitive());
+    }
+
+    /**
+     * @param answer Answer of the student, null for an empty one.
+     * @return True if the answer matches one of the correct answers.
+     */
+    public boolean matches(String answer) {
+        if (patterns != null) {
+            // the patterns are case insensitive themselves, upper casing could break them
+            String normalized = normalize(answer, false);
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(normalized).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String normalized = normalize(answer);
+        for (String correct : answers) {
+            if (correct.equals(normalized)) {
+                return true;
+            }
+        }
+        if (approximate != null) {
+            for (Approximate correct : approximate) {
+                if (correct.distance(normalized, maxEditDistance) <= maxEditDistance) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalizes the text as the answers of the question are compared.
+     * @param text Text to normalize, null for an empty one.
+     * @return Normalized text.
+     */
+    public String normalize(String text) {
+        return normalize(text, !caseSensitive);
+    }
+
+    private String normalize(String text, boolean upperCase) {
+        if (text == null) {
+            return "";
+        }
+        int max = maxChar(text);
+        if (max >= LATIN_END) {
+            text = toNFC(text);
+            if (ignoreDiacritics) {
+                text = removeDiacritics(text);
+            }
+        } else if (max >= 0x80 && ignoreDiacritics) {
+            text = removeLatinDiacritics(text);
+        }
+        if (normalizeWhitespace) {
+            text = collapseWhitespace(text);
+        }
+        // returns the same string if there is nothing to upper case
+        return upperCase ? text.toUpperCase(locale) : text;
+    }
+
+    private static int maxChar(String text) {
+        int max = 0;
+        for (int i = 0; i < text.length(); i++) {
+            max = Math.max(max, text.charAt(i));
+        }
+        return max;
+    }
+
+    private static String toNFC(String text) {
+        return Normalizer.isNormalized(text, Normalizer.Form.NFC) ? text : Normalizer.normalize(text, Normalizer.Form.NFC);
+    }
+
+    private static String removeLatinDiacritics(String text) {
+        char[] letters = new char[text.length()];
+        for (int i = 0; i < letters.length; i++) {
+            letters[i] = BASE_LETTERS[text.charAt(i)];
+        }
+        return new String(letters);
+    }
+
+    private static String removeDiacritics(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder result = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            int type = Character.getType(c);
+            if (type != Character.NON_SPACING_MARK && type != Character.COMBINING_SPACING_MARK && type != Character.ENCLOSING_MARK) {
+                result.append(c);
+            }
+        }
+        return Normalizer.normalize(result, Normalizer.Form.NFC);
+    }
+
+    private static String collapseWhitespace(String text) {
+        if (isCollapsed(text)) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                space = result.length() > 0;
+            } else {
+                if (space) {
+                    result.append(' ');
+                    space = false;
+                }
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return True if the words of the text are separated by single spaces
+     * and there is no white space around them.
+     */
+    private static boolean isCollapsed(String text) {
+        char previous = ' ';
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c) && (c != ' ' || previous == ' ')) {
+                return false;
+            }
+            previous = c;
+        }
+        return previous != ' ' || text.isEmpty();
+    }
+
+    /**
+     * The white space of the page (\s of JS and the separators below the
+     * space), so that the page and the key collapse the same characters.
+     */
+    private static boolean isWhitespace(char c) {
+        return Character.isWhitespace(c) || Character.isSpaceChar(c) || c == '\uFEFF';
+    }
+
+    /**
+     * Correct answer compiled for the edit distance.
+     */
+    private static final class Approximate {
+
+        private final String text;
+
+        /**
+         * Bit masks of the positions of the ASCII characters in the answer.
+         */
+        private final long[] asciiMasks = new long[128];
+
+        /**
+         * The other characters of the answer (sorted) and their masks.
+         */
+        private final char[] characters;
+
+        private final long[] masks;
+
+        Approximate(String text) {
+            this.text = text;
+            if (text.length() > Long.SIZE) {
+                // longer answers use the dynamic programming in distance()
+                this.characters = new char[0];
+                this.masks = new long[0];
+                return;
+            }
+            char[] others = new char[text.length()];
+            int count = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c < 128) {
+                    asciiMasks[c] |= 1L << i;
+                } else {
+                    others[count++] = c;
+                }
+            }
+            Arrays.sort(others, 0, count);
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (distinct == 0 || others[distinct - 1] != others[i]) {
+                    others[distinct++] = others[i];
+                }
+            }
+            this.characters = Arrays.copyOf(others, distinct);
+            this.masks = new long[distinct];
+            for (int i = 0; i < text.length(); i++) {
+                int index = Arrays.binarySearch(characters, text.charAt(i));
+                if (index >= 0) {
+                    masks[index] |= 1L << i;
+                }
+            }
+        }
+
+        private long mask(char c) {
+            if (c < 128) {
+                return asciiMasks[c];
+            }
+            int index = Arrays.binarySearch(characters, c);
+            return index >= 0 ? masks[index] : 0;
+        }
+
+        /**
+         * Computes the edit distance of the answer to the text.
+         * @param limit Largest distance of interest.
+         * @return The distance, or a value greater than the limit if the
+         * distance is greater.
+         */
+        int distance(String other, int limit) {
+            int m = text.length();
+            int n = other.length();
+            if (Math.abs(m - n) > limit) {
+                return limit + 1;
+            }
+            if (m == 0) {
+                return n;
+            }
+            if (m > Long.SIZE) {
+                return distanceLong(other, limit);
+            }
+            // Myers (1999) as formulated by Hyyrö: the vertical deltas of the
+            // column of the DP matrix are kept as bit vectors
+            long last = 1L << (m - 1);
+            long positive = m == Long.SIZE ? -1L : (1L << m) - 1;
+            long negative = 0;
+            int score = m;
+            for (int j = 0; j < n; j++) {
+                long equal = mask(other.charAt(j));
+                long xv = equal | negative;
+                long xh = (((equal & positive) + positive) ^ positive) | equal;
+                long ph = negative | ~(xh | positive);
+                long mh = positive & xh;
+                if ((ph & last) != 0) {
+                    score++;
+                } else if ((mh & last) != 0) {
+                    score--;
+                }
+                if (score - (n - j - 1) > limit) {
+                    return limit + 1;
+                }
+                ph = (ph << 1) | 1;
+                mh = mh << 1;
+                positive = mh | ~(xv | ph);
+                negative = ph & xv;
+            }
+            return score;
+        }
+
+        /**
+         * Edit distance by the dynamic programming, for the answers longer
+         * than the bit vectors.
+         */
+        private int distanceLong(String other, int limit) {
+            int m = text.length();
+            int[] previous = new int[m + 1];
+            int[] current = new int[m + 1];
+            for (int i = 0; i <= m; i++) {
+                previous[i] = i;
+            }
+            for (int j = 1; j <= other.length(); j++) {
+                current[0] = j;
+                int minimum = j;
+                char c = other.charAt(j - 1);
+                for (int i = 1; i <= m; i++) {
+                    int cost = text.charAt(i - 1) == c ? 0 : 1;
+                    current[i] = Math.min(Math.min(current[i - 1], previous[i]) + 1, previous[i - 1] + cost);
+                    minimum = Math.min(minimum, current[i]);
+                }
+                if (minimum > limit) {
+                    return limit + 1;
+                }
+                int[] swap = previous;
+                previous = current;
+                current = swap;
+            }
+            return previous[m];
+        }
+    }
+}
@@ -0,0 +1,464 @@
+package language.grading;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiles the correct answers of the open questions matched as regular
+ * expressions. The page matches the same answers by JS RegExp (see matchText
+ * in Test), so only the syntax both of them read the same way is accepted:
+ * literals, the classes [...] with ranges, ., \d, \w, \s and their negations,
+ * the escapes \t \n \r \f \xhh \\uhhhh and of the syntax characters, the
+ * groups (...) and (?:...), the lookaheads (?=...) and (?!...), the anchors
+ * ^ $ \b \B, alternatives and the greedy and lazy quantifiers. Everything
+ * else (inline flags, possessive quantifiers, \p, \A, \Z, backreferences,
+ * lookbehinds, named groups, nested classes and intersections, ...) is
+ * rejected by PatternSyntaxException.
+ *
+ * The accepted pattern is translated to Java, so that it matches what the
+ * page matches with the flags u (and i if the question is case insensitive):
+ * the whitespace of \s, the line terminators excluded by ., the end of the
+ * input matched by $ and the word characters of \w and \b are those of JS.
+ * @author Milan
+ */
+final class AnswerPattern {
+
+    /**
+     * Characters of \s in JS: white space, line terminators and the space
+     * separators.
+     */
+    private static final String WHITESPACE = "\\t\\n\\u000B\\f\\r \\u00A0\\u1680\\u2000-\\u200A\\u2028\\u2029\\u202F\\u205F\\u3000\\uFEFF";
+
+    private static final String DOT = "[^\\n\\r\\u2028\\u2029]";
+
+    /**
+     * Letters that JS matches by \w when the matching is case insensitive,
+     * they are case variants of s and k.
+     */
+    private static final String FOLDED_WORD = "\\u017F\\u212A";
+
+    private static final String SYNTAX_CHARACTERS = "^$\\.*+?()[]{}|/";
+
+    private final String regex;
+
+    private final boolean caseInsensitive;
+
+    private final StringBuilder java;
+
+    private int pos;
+
+    private AnswerPattern(String regex, boolean caseInsensitive) {
+        this.regex = regex;
+        this.caseInsensitive = caseInsensitive;
+        this.java = new StringBuilder(regex.length() + 16);
+    }
+
+    /**
+     * @param regex Answer in the syntax common to Java and JS.
+     * @param caseInsensitive True to match the case variants of the letters.
+     * @return Pattern matching the same texts as the page does.
+     * @throws PatternSyntaxException If the answer is not a regular
+     * expression or it uses syntax the page does not read the same way.
+     */
+    static Pattern compile(String regex, boolean caseInsensitive) {
+        AnswerPattern pattern = new AnswerPattern(regex, caseInsensitive);
+        pattern.disjunction();
+        if (pattern.pos < regex.length()) {
+            throw pattern.error("Unmatched closing ')'");
+        }
+        int flags = caseInsensitive ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+        return Pattern.compile(pattern.java.toString(), flags);
+    }
+
+    private void disjunction() {
+        alternative();
+        while (pos < regex.length() && regex.charAt(pos) == '|') {
+            java.append('|');
+            pos++;
+            alternative();
+        }
+    }
+
+    private void alternative() {
+        while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+            term();
+        }
+    }
+
+    private void term() {
+        char c = regex.charAt(pos);
+        switch (c) {
+            case '^':
+                pos++;
+                java.append('^');
+                assertion();
+                return;
+            case '$':
+                pos++;
+                // $ of JS does not match before a final line terminator
+                java.append("\\z");
+                assertion();
+                return;
+            case '(':
+                group();
+                return;
+            case '[':
+                characterClass();
+                break;
+            case '.':
+                pos++;
+                java.append(DOT);
+                break;
+            case '\\':
+                if (!atomEscape()) {
+                    assertion();
+                    return;
+                }
+                break;
+            case '*':
+            case '+':
+            case '?':
+                throw error("Dangling meta character '" + c + "', there is nothing to repeat");
+            case '{':
+            case '}':
+            case ']':
+                throw error("Unescaped '" + c + "', write it as '\\" + c + "'");
+            default:
+                literal();
+        }
+        quantifier();
+    }
+
+    /**
+     * An assertion cannot be repeated in JS.
+     */
+    private void assertion() {
+        if (pos < regex.length() && isQuantifier(regex.charAt(pos))) {
+            throw error("An assertion cannot be repeated");
+        }
+    }
+
+    private static boolean isQuantifier(char c) {
+        return c == '*' || c == '+' || c == '?' || c == '{';
+    }
+
+    private void group() {
+        int start = pos;
+        pos++;
+        boolean lookahead = false;
+        if (regex.startsWith("?:", pos)) {
+            java.append("(?:");
+            pos += 2;
+        } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+            java.append("(?").append(regex.charAt(pos + 1));
+            pos += 2;
+            lookahead = true;
+        } else if (pos < regex.length() && regex.charAt(pos) == '?') {
+            throw error("Only the groups (...), (?:...), (?=...) and (?!...) are supported, not inline flags, "
+                    + "lookbehinds, named or atomic groups");
+        } else {
+            java.append('(');
+        }
+        disjunction();
+        if (pos >= regex.length()) {
+            pos = start;
+            throw error("Unclosed group");
+        }
+        pos++;
+        java.append(')');
+        if (lookahead) {
+            assertion();
+        } else {
+            quantifier();
+        }
+    }
+
+    private void quantifier() {
+        if (pos >= regex.length()) {
+            return;
+        }
+        char c = regex.charAt(pos);
+        if (c == '*' || c == '+' || c == '?') {
+            java.append(c);
+            pos++;
+        } else if (c == '{') {
+            int start = pos;
+            pos++;
+            int min = number();
+            int max = min;
+            if (pos < regex.length() && regex.charAt(pos) == ',') {
+                pos++;
+                max = pos < regex.length() && regex.charAt(pos) == '}' ? -1 : number();
+            }
+            if (pos >= regex.length() || regex.charAt(pos) != '}') {
+                pos = start;
+                throw error("Malformed repetition, use {n}, {n,} or {n,m}, or escape the '{'");
+            }
+            pos++;
+            if (max >= 0 && max < min) {
+                pos = start;
+                throw error("Illegal repetition range, the minimum is greater than the maximum");
+            }
+            java.append(regex, start, pos);
+        } else {
+            return;
+        }
+        if (pos < regex.length() && regex.charAt(pos) == '?') {
+            java.append('?');
+            pos++;
+        }
+        if (pos < regex.length() && isQuantifier(regex.charAt(pos))) {
+            throw error("Possessive and repeated quantifiers are not supported");
+        }
+    }
+
+    private int number() {
+        int start = pos;
+        while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '9') {
+            pos++;
+        }
+        if (pos == start || pos - start > 6) {
+            pos = start;
+            throw error("Malformed repetition, expected a count of up to 6 digits");
+        }
+        return Integer.parseInt(regex.substring(start, pos));
+    }
+
+    private void literal() {
+        int c = codePoint();
+        appendLiteral(c);
+    }
+
+    private void appendLiteral(int c) {
+        // the syntax characters are escaped, & and the others too for the classes
+        if (c < 0x80 && !Character.isLetterOrDigit(c) && c != ' ' && c != '_') {
+            java.append('\\');
+        }
+        java.appendCodePoint(c);
+    }
+
+    /**
+     * Reads a code point of the pattern, the unpaired surrogates are not read
+     * the same way by Java and JS.
+     */
+    private int codePoint() {
+        int c = regex.codePointAt(pos);
+        if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+            throw error("Unpaired surrogate character");
+        }
+        pos += Character.charCount(c);
+        return c;
+    }
+
+    /**
+     * Translates an escape outside of a class.
+     * @return False if it was an assertion (\b or \B).
+     */
+    private boolean atomEscape() {
+        char c = escaped();
+        switch (c) {
+            case 'b':
+                java.append("(?:(?<=").append(word(false)).append(")(?!").append(word(false))
+                        .append(")|(?<!").append(word(false)).append(")(?=").append(word(false)).append("))");
+                return false;
+            case 'B':
+                java.append("(?:(?<=").append(word(false)).append(")(?=").append(word(false))
+                        .append(")|(?<!").append(word(false)).append(")(?!").append(word(false)).append("))");
+                return false;
+            default:
+                if (!classEscape(c, false)) {
+                    appendLiteral(characterEscape(c));
+                }
+                return true;
+        }
+    }
+
+    /**
+     * Skips the backslash and reads the escaped character.
+     */
+    private char escaped() {
+        pos++;
+        if (pos >= regex.length()) {
+            pos--;
+            throw error("Unexpected backslash at the end");
+        }
+        return regex.charAt(pos++);
+    }
+
+    /**
+     * Translates \d, \D, \w, \W, \s or \S.
+     * @param inClass True inside a class, where the negated ones are nested.
+     * @return False if it is another escape.
+     */
+    private boolean classEscape(char c, boolean inClass) {
+        switch (c) {
+            case 'd':
+                java.append("\\d");
+                return true;
+            case 'D':
+                java.append(inClass ? "[^\\d]" : "\\D");
+                return true;
+            case 'w':
+                java.append(inClass && caseInsensitive ? "\\w" + FOLDED_WORD : word(false));
+                return true;
+            case 'W':
+                java.append(word(true));
+                return true;
+            case 's':
+                java.append(inClass ? WHITESPACE : "[" + WHITESPACE + "]");
+                return true;
+            case 'S':
+                java.append("[^" + WHITESPACE + "]");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return Class of the word characters of JS, or of the other characters.
+     */
+    private String word(boolean negated) {
+        if (!caseInsensitive) {
+            return negated ? "[^\\w]" : "\\w";
+        }
+        return negated ? "[^\\w" + FOLDED_WORD + "]" : "[\\w" + FOLDED_WORD + "]";
+    }
+
+    /**
+     * Reads an escape of a single character, the backslash and the character
+     * after it are already read.
+     * @return Code point of the character.
+     */
+    private int characterEscape(char c) {
+        switch (c) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 'f':
+                return '\f';
+            case 'x':
+                return hex(2);
+            case 'u':
+                int value = hex(4);
+                if (value >= Character.MIN_SURROGATE && value <= Character.MAX_SURROGATE) {
+                    pos -= 6;
+                    throw error("Escaped surrogate character, write the character itself");
+                }
+                return value;
+            default:
+                if (SYNTAX_CHARACTERS.indexOf(c) >= 0) {
+                    return c;
+                }
+                pos -= 2;
+                if (c >= '0' && c <= '9') {
+                    throw error("Backreferences and octal escapes are not supported");
+                }
+                throw error("Escape \\" + c + " is not supported, only \\d \\D \\w \\W \\s \\S \\b \\B \\t \\n \\r \\f "
+                        + "\\xhh \\uhhhh and the escapes of ^ $ \\ . * + ? ( ) [ ] { } | / are");
+        }
+    }
+
+    private int hex(int digits) {
+        if (pos + digits > regex.length()) {
+            throw error("Expected " + digits + " hexadecimal digits");
+        }
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            int digit = Character.digit(regex.charAt(pos + i), 16);
+            if (digit < 0 || regex.charAt(pos + i) > 'f') {
+                throw error("Expected " + digits + " hexadecimal digits");
+            }
+            value = value * 16 + digit;
+        }
+        pos += digits;
+        return value;
+    }
+
+    /**
+     * Translates a class, a negated one is written as a negative lookahead
+     * followed by any character, so that the nested negated classes of \D,
+     * \W and \S stay unions on Java 8 too.
+     */
+    private void characterClass() {
+        int start = pos;
+        pos++;
+        boolean negated = pos < regex.length() && regex.charAt(pos) == '^';
+        if (negated) {
+            pos++;
+            java.append("(?:(?![");
+        } else {
+            java.append('[');
+        }
+        if (pos < regex.length() && regex.charAt(pos) == ']') {
+            throw error("Empty character class");
+        }
+        boolean first = true;
+        while (true) {
+            if (pos >= regex.length()) {
+                pos = start;
+                throw error("Unclosed character class");
+            }
+            if (regex.charAt(pos) == ']') {
+                break;
+            }
+            int itemStart = pos;
+            int from = classAtom(first);
+            if (pos + 1 < regex.length() && regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                pos++;
+                java.append('-');
+                int to = classAtom(false);
+                if (from < 0 || to < 0) {
+                    pos = itemStart;
+                    throw error("A range cannot start or end with a class like \\d, \\w or \\s");
+                }
+                if (to < from) {
+                    pos = itemStart;
+                    throw error("Illegal character range, it ends before it starts");
+                }
+            }
+            first = false;
+        }
+        pos++;
+        java.append(negated ? "])(?s:.))" : "]");
+    }
+
+    /**
+     * Reads a character of a class, or a class escape.
+     * @param first True for the first item of the class, where a hyphen is
+     * a literal.
+     * @return Code point of the character, -1 for a class escape.
+     */
+    private int classAtom(boolean first) {
+        char c = regex.charAt(pos);
+        if (c == '\\') {
+            char e = escaped();
+            if (classEscape(e, true)) {
+                return -1;
+            }
+            if (e == 'b' || e == 'B') {
+                pos -= 2;
+                throw error("Escape \\" + e + " is not supported in a class");
+            }
+            int value = e == '-' ? '-' : characterEscape(e);
+            appendLiteral(value);
+            return value;
+        }
+        if (c == '[') {
+            throw error("Unescaped '[' in a class, nested classes and intersections are not supported");
+        }
+        if (c == '-' && !first && (pos + 1 >= regex.length() || regex.charAt(pos + 1) != ']')) {
+            throw error("Unescaped '-' in a class, write it first, last or as '\\-'");
+        }
+        int value = codePoint();
+        appendLiteral(value);
+        return value;
+    }
+
+    private PatternSyntaxException error(String description) {
+        return new PatternSyntaxException(description, regex, pos);
+    }
+}
@@ -0,0 +1,59 @@
+package language.grading;
+
+import java.util.Arrays;
+
+/**
+ * Points of a graded submission.
+ * @author Milan
+ */
+public class GradingResult {
+    
+    private final double[] points;
+    
+    private final double total;
+    
+    private final int fullPoints;
+    
+    private final int passingMinimum;
+
+    public GradingResult(double[] points, double total, int fullPoints, int passingMinimum) {
+        this.points = points;
+        this.total = total;
+        this.fullPoints = fullPoints;
+        this.passingMinimum = passingMinimum;
+    }
+    
+    /**
+     * @param question Index of the question.
+     * @return Points received for the question.
+     */
+    public double getPoints(int question) {
+        return points[question];
+    }
+    
+    public int getQuestionCount() {
+        return points.length;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public int getFullPoints() {
+        return fullPoints;
+    }
+
+    public int getPassingMinimum() {
+        return passingMinimum;
+    }
+    
+    public boolean isPassed() {
+        return total >= passingMinimum;
+    }
+
+    @Override
+    public String toString() {
+        return "GradingResult{" + "points=" + Arrays.toString(points) + ", total=" + total + ", fullPoints=" + fullPoints 
+                + ", passingMinimum=" + passingMinimum + ", passed=" + isPassed() + '}';
+    }
+}
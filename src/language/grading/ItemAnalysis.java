@@ -0,0 +1,314 @@
+package language.grading;
+
+import java.util.stream.Stream;
+
+/**
+ * Item analysis of a graded test: difficulty and discrimination of each
+ * question, frequencies of its answers (distractors), confusion of the
+ * matching pairs and the reliability of the whole test (Cronbach's alpha).
+ *
+ * The submissions are added one by one and only the sums the statistics are
+ * computed from are kept, in primitive arrays indexed by question and answer,
+ * so the memory does not grow with the number of submissions. A single
+ * analysis is not thread safe, the input is split by analyzing its parts
+ * separately and merging the results (see analyze()). The scores are the
+ * points computed by the AnswerKey, partially correct answers included.
+ * @author Milan
+ */
+public final class ItemAnalysis {
+
+    private final AnswerKey key;
+
+    private long count;
+
+    private double sumTotal;
+
+    private double sumTotalSquares;
+
+    /**
+     * Sums of the points of each question, of their squares and of their
+     * products with the total points.
+     */
+    private final double[] sumPoints;
+
+    private final double[] sumPointSquares;
+
+    private final double[] sumPointTotals;
+
+    /**
+     * Number of the submissions leaving the question unanswered (nothing
+     * checked or an empty text, a matching question is always answered).
+     */
+    private final long[] omissions;
+
+    /**
+     * Where the answers of each option question start in selections.
+     */
+    private final int[] answerOffsets;
+
+    /**
+     * How many times each answer was checked.
+     */
+    private final long[] selections;
+
+    /**
+     * Where the matrix of each matching question starts in confusions.
+     */
+    private final int[] pairOffsets;
+
+    /**
+     * How many times each option was selected for each pair, a row per pair
+     * with a column per option and a last column for invalid values.
+     */
+    private final long[] confusions;
+
+    /**
+     * Points of the submission being added.
+     */
+    private final double[] scratch;
+
+    /**
+     * @param key Key the submissions are graded by.
+     */
+    public ItemAnalysis(AnswerKey key) {
+        this.key = key;
+        int n = key.getQuestionCount();
+        this.sumPoints = new double[n];
+        this.sumPointSquares = new double[n];
+        this.sumPointTotals = new double[n];
+        this.omissions = new long[n];
+        this.scratch = new double[n];
+        this.answerOffsets = new int[n + 1];
+        this.pairOffsets = new int[n + 1];
+        for (int q = 0; q < n; q++) {
+            answerOffsets[q + 1] = answerOffsets[q] + key.getAnswerCount(q);
+            pairOffsets[q + 1] = pairOffsets[q] + key.getPairCount(q) * (key.getOptionCount(q) + 1);
+        }
+        this.selections = new long[answerOffsets[n]];
+        this.confusions = new long[pairOffsets[n]];
+    }
+
+    /**
+     * Analyzes the submissions, in parallel if the stream is parallel.
+     * @param key Key the submissions are graded by.
+     * @param submissions Submissions of the whole test (not its variants).
+     * @return The analysis.
+     */
+    public static ItemAnalysis analyze(AnswerKey key, Stream<Submission> submissions) {
+        return submissions.collect(() -> new ItemAnalysis(key), ItemAnalysis::add, ItemAnalysis::merge);
+    }
+
+    /**
+     * Grades the submission and adds it to the statistics.
+     * @param submission Answers of the student to the whole test.
+     */
+    public void add(Submission submission) {
+        int n = scratch.length;
+        double total = 0;
+        for (int q = 0; q < n; q++) {
+            scratch[q] = key.grade(q, submission);
+            total += scratch[q];
+        }
+        count++;
+        sumTotal += total;
+        sumTotalSquares += total * total;
+        for (int q = 0; q < n; q++) {
+            double points = scratch[q];
+            sumPoints[q] += points;
+            sumPointSquares[q] += points * points;
+            sumPointTotals[q] += points * total;
+            int answers = answerOffsets[q + 1] - answerOffsets[q];
+            if (answers > 0) {
+                boolean answered = false;
+                for (int a = 0; a < answers; a++) {
+                    if (submission.isChecked(q, a)) {
+                        selections[answerOffsets[q] + a]++;
+                        answered = true;
+                    }
+                }
+                if (!answered) {
+                    omissions[q]++;
+                }
+            } else if (pairOffsets[q + 1] > pairOffsets[q]) {
+                addMatches(q, submission);
+            } else {
+                String text = submission.getText(q);
+                if (text == null || text.isEmpty()) {
+                    omissions[q]++;
+                }
+            }
+        }
+    }
+
+    private void addMatches(int q, Submission submission) {
+        int[] matched = submission.getMatched(q);
+        String[] matchedValues = submission.getMatchedValues(q);
+        int options = key.getOptionCount(q);
+        int pairs = key.getPairCount(q);
+        for (int p = 0; p < pairs; p++) {
+            int selected = key.getSelectedOption(q, p, matched, matchedValues);
+            if (selected < 0 || selected >= options) {
+                selected = options;
+            }
+            confusions[pairOffsets[q] + p * (options + 1) + selected]++;
+        }
+    }
+
+    /**
+     * Adds the statistics of another part of the submissions.
+     * @param other Analysis of the other part.
+     * @return This analysis.
+     * @throws IllegalArgumentException If the other analysis uses a different
+     * key.
+     */
+    public ItemAnalysis merge(ItemAnalysis other) {
+        if (other.key != key) {
+            throw new IllegalArgumentException("Only the analyses of the same answer key can be merged.");
+        }
+        count += other.count;
+        sumTotal += other.sumTotal;
+        sumTotalSquares += other.sumTotalSquares;
+        add(sumPoints, other.sumPoints);
+        add(sumPointSquares, other.sumPointSquares);
+        add(sumPointTotals, other.sumPointTotals);
+        add(omissions, other.omissions);
+        add(selections, other.selections);
+        add(confusions, other.confusions);
+        return this;
+    }
+
+    private static void add(double[] to, double[] from) {
+        for (int i = 0; i < to.length; i++) {
+            to[i] += from[i];
+        }
+    }
+
+    private static void add(long[] to, long[] from) {
+        for (int i = 0; i < to.length; i++) {
+            to[i] += from[i];
+        }
+    }
+
+    /**
+     * @return Number of the analyzed submissions.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public int getQuestionCount() {
+        return scratch.length;
+    }
+
+    public double getMeanTotal() {
+        return sumTotal / count;
+    }
+
+    /**
+     * @param question Index of the question.
+     * @return Average points for the question.
+     */
+    public double getMeanPoints(int question) {
+        return sumPoints[question] / count;
+    }
+
+    /**
+     * Difficulty (p-value) of the question, the average share of its points
+     * the students received. Low values mark hard questions.
+     * @param question Index of the question.
+     * @return Value from 0 to 1, NaN if there are no submissions.
+     */
+    public double getDifficulty(int question) {
+        return sumPoints[question] / count / key.getPoints(question);
+    }
+
+    /**
+     * Discrimination of the question, the point-biserial (for partially
+     * scored questions Pearson) correlation of its points with the points for
+     * the rest of the test. The question itself is left out of the total so
+     * that it does not correlate with itself.
+     * @param question Index of the question.
+     * @return Value from -1 to 1, NaN if the points of the question or of the
+     * rest of the test do not vary.
+     */
+    public double getDiscrimination(int question) {
+        double sx = sumPoints[question];
+        double sxx = sumPointSquares[question];
+        double sxy = sumPointTotals[question];
+        double sr = sumTotal - sx;
+        double srr = sumTotalSquares - 2 * sxy + sxx;
+        double sxr = sxy - sxx;
+        double covariance = count * sxr - sx * sr;
+        double varianceProduct = (count * sxx - sx * sx) * (count * srr - sr * sr);
+        return varianceProduct > 0 ? covariance / Math.sqrt(varianceProduct) : Double.NaN;
+    }
+
+    /**
+     * @param question Index of the single or multiple choice question.
+     * @param answer Index of the answer.
+     * @return Number of the submissions that checked the answer.
+     */
+    public long getSelections(int question, int answer) {
+        if (answer < 0 || answer >= answerOffsets[question + 1] - answerOffsets[question]) {
+            throw new IndexOutOfBoundsException("Question " + question + " has no answer " + answer + ".");
+        }
+        return selections[answerOffsets[question] + answer];
+    }
+
+    /**
+     * @param question Index of the question.
+     * @return Number of the submissions that left the question unanswered.
+     */
+    public long getOmissions(int question) {
+        return omissions[question];
+    }
+
+    /**
+     * Confusion matrix of the matching question: how many times the option
+     * was selected for the pair. The correct options lie on the positions of
+     * MatchingPairsQuestion.getAllMatchingOptions() matching the pairs.
+     * @param question Index of the matching question.
+     * @param pair Index of the pair.
+     * @param option Index of the option (in the order of
+     * MatchingPairsQuestion.getAllMatchingOptions()), or the number of the
+     * options for the values that are not options.
+     * @return Number of the submissions that selected the option.
+     */
+    public long getMatches(int question, int pair, int option) {
+        int options = key.getOptionCount(question);
+        if (pair < 0 || pair >= key.getPairCount(question) || option < 0 || option > options) {
+            throw new IndexOutOfBoundsException("Question " + question + " has no pair " + pair + " or option " + option + ".");
+        }
+        return confusions[pairOffsets[question] + pair * (options + 1) + option];
+    }
+
+    /**
+     * Reliability of the test as Cronbach's alpha: how consistently the
+     * questions measure the same ability.
+     * @return Value up to 1 (usually from 0), NaN for a test with a single
+     * question or if the total points do not vary.
+     */
+    public double getCronbachAlpha() {
+        int n = scratch.length;
+        double totalVariance = variance(sumTotal, sumTotalSquares);
+        if (n < 2 || !(totalVariance > 0)) {
+            return Double.NaN;
+        }
+        double questionVariances = 0;
+        for (int q = 0; q < n; q++) {
+            questionVariances += variance(sumPoints[q], sumPointSquares[q]);
+        }
+        return n / (n - 1.0) * (1 - questionVariances / totalVariance);
+    }
+
+    private double variance(double sum, double sumSquares) {
+        double mean = sum / count;
+        return Math.max(0, sumSquares / count - mean * mean);
+    }
+
+    @Override
+    public String toString() {
+        return "ItemAnalysis{" + "count=" + count + ", questions=" + scratch.length + ", meanTotal=" + getMeanTotal()
+                + ", cronbachAlpha=" + getCronbachAlpha() + '}';
+    }
+}
@@ -0,0 +1,129 @@
+package language.grading;
+
+import java.util.Arrays;
+
+/**
+ * Answers of a single student to a test. Questions are identified by their
+ * position in the test (starting from 0, the question with the id 'question1'
+ * has the index 0), answers by their position in the question.
+ * Questions without a response are graded the same way as the untouched
+ * form in the generated page.
+ * @author Milan
+ */
+public class Submission {
+    
+    /**
+     * Bitmasks of the selected answers of the option questions.
+     */
+    private final long[][] selected;
+    
+    /**
+     * Texts filled in the open questions.
+     */
+    private final String[] texts;
+    
+    /**
+     * Indices of the selected options (in the order in which they are shown 
+     * in the page) for each pair of the matching questions.
+     */
+    private final int[][] matched;
+    
+    /**
+     * Selected option values for each pair of the matching questions, used if
+     * the indices were not given.
+     */
+    private final String[][] matchedValues;
+
+    public Submission(int questionCount) {
+        this.selected = new long[questionCount][];
+        this.texts = new String[questionCount];
+        this.matched = new int[questionCount][];
+        this.matchedValues = new String[questionCount][];
+    }
+    
+    public int getQuestionCount() {
+        return texts.length;
+    }
+    
+    /**
+     * Checks the given answers of a single or multiple choice question.
+     * @param question Index of the question.
+     * @param answers Indices of the checked answers.
+     * @return This submission.
+     */
+    public Submission select(int question, int... answers) {
+        int max = -1;
+        for (int a : answers) {
+            max = Math.max(max, a);
+        }
+        long[] mask = new long[(max >> 6) + 1];
+        for (int a : answers) {
+            mask[a >> 6] |= 1L << a;
+        }
+        selected[question] = mask;
+        return this;
+    }
+    
+    /**
+     * Fills in the answer of an open question.
+     * @param question Index of the question.
+     * @param text Filled in text.
+     * @return This submission.
+     */
+    public Submission answer(int question, String text) {
+        texts[question] = text;
+        return this;
+    }
+    
+    /**
+     * Selects the options for the pairs of a matching question.
+     * @param question Index of the question.
+     * @param options For each pair the index of the selected option (in the
+     * order of MatchingPairsQuestion.getAllMatchingOptions()).
+     * @return This submission.
+     */
+    public Submission match(int question, int... options) {
+        matched[question] = options;
+        return this;
+    }
+    
+    /**
+     * Selects the options for the pairs of a matching question by their values.
+     * @param question Index of the question.
+     * @param values For each pair the selected value.
+     * @return This submission.
+     */
+    public Submission match(int question, String... values) {
+        matchedValues[question] = values;
+        return this;
+    }
+    
+    /**
+     * @param question Index of the question.
+     * @param answer Index of the answer.
+     * @return True if the answer of the option question was checked.
+     */
+    public boolean isChecked(int question, int answer) {
+        long[] mask = selected[question];
+        int word = answer >> 6;
+        return mask != null && word < mask.length && (mask[word] & (1L << answer)) != 0;
+    }
+    
+    public String getText(int question) {
+        return texts[question];
+    }
+    
+    int[] getMatched(int question) {
+        return matched[question];
+    }
+    
+    String[] getMatchedValues(int question) {
+        return matchedValues[question];
+    }
+
+    @Override
+    public String toString() {
+        return "Submission{" + "selected=" + Arrays.deepToString(selected) + ", texts=" + Arrays.toString(texts) 
+                + ", matched=" + Arrays.deepToString(matched) + ", matchedValues=" + Arrays.deepToString(matchedValues) + '}';
+    }
+}
@@ -0,0 +1,52 @@
+package language.io;
+
+/**
+ * Constants of the binary format of tests.
+ * 
+ * stream   := MAGIC version:varint test*
+ * test     := TEST title:string minPoints:zigzag count:varint question*
+ * question := type:byte text:string points:zigzag flags:byte
+ *             [maxEditDistance:zigzag]   (if flags has EDIT_DISTANCE)
+ *             answers:varint (text:string correct:byte)*
+ *             pairs:varint (left:string right:string)*
+ * string   := 0 length:varint utf8-bytes   (new string, appended to the table)
+ *           | index+1:varint               (string already in the table)
+ * 
+ * The string table is shared by all the tests in the stream, so texts 
+ * repeated in the whole stream are stored only once.
+ * @author Milan
+ */
+final class BinaryFormat {
+    
+    static final byte[] MAGIC = {'T', 'D', 'S', 'L'};
+    
+    static final int VERSION = 2;
+    
+    /**
+     * Oldest version that can be read, version 1 has no edit distance.
+     */
+    static final int MIN_VERSION = 1;
+    
+    static final int TEST = 1;
+    
+    static final int SINGLE_OPTION = 1;
+    
+    static final int MULTIPLE_OPTIONS = 2;
+    
+    static final int OPEN = 3;
+    
+    static final int MATCHING_PAIRS = 4;
+    
+    static final int CASE_SENSITIVE = 1;
+    
+    static final int IGNORE_DIACRITICS = 2;
+    
+    static final int NORMALIZE_WHITESPACE = 4;
+    
+    static final int REGULAR_EXPRESSION = 8;
+    
+    static final int EDIT_DISTANCE = 16;
+    
+    private BinaryFormat() {
+    }
+}
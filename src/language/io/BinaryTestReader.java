@@ -0,0 +1,205 @@
+package language.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.SingleOptionQuestion;
+import language.model.StringPool;
+import language.model.Test;
+
+/**
+ * Reads tests written by BinaryTestWriter one by one. The tests are expected
+ * to be validated before they were written, they are not validated again.
+ * A text repeated in the stream is stored once and read as a single instance.
+ * @author Milan
+ */
+public class BinaryTestReader implements Closeable {
+    
+    private final InputStream in;
+    
+    private final List<String> strings = new ArrayList<>();
+    
+    /**
+     * Pool sharing the texts with other streams, null if unused.
+     */
+    private final StringPool stringPool;
+
+    public BinaryTestReader(InputStream in) throws IOException {
+        this(in, null);
+    }
+
+    /**
+     * @param in Stream of the tests.
+     * @param stringPool Pool of the texts shared with other sources of the
+     * model (e.g. other streams), null to share them only within the stream.
+     * @throws IOException 
+     */
+    public BinaryTestReader(InputStream in, StringPool stringPool) throws IOException {
+        this.in = new BufferedInputStream(in);
+        this.stringPool = stringPool;
+        byte[] magic = new byte[BinaryFormat.MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = (byte) readByte();
+        }
+        if (!Arrays.equals(magic, BinaryFormat.MAGIC)) {
+            throw new IOException("The stream does not contain tests in the binary format.");
+        }
+        int version = readVarint();
+        if (version < BinaryFormat.MIN_VERSION || version > BinaryFormat.VERSION) {
+            throw new IOException("Unsupported version of the binary format: " + version + ".");
+        }
+    }
+    
+    /**
+     * Reads the next test from the stream.
+     * @return The test, or null at the end of the stream.
+     * @throws IOException 
+     */
+    public Test read() throws IOException {
+        int tag = in.read();
+        if (tag < 0) {
+            return null;
+        }
+        if (tag != BinaryFormat.TEST) {
+            throw new IOException("Corrupted stream, expected a test but found " + tag + ".");
+        }
+        Test test = new Test(readString(), unzigzag(readVarint()));
+        int count = readCount();
+        for (int i = 0; i < count; i++) {
+            test.addQuestion(readQuestion());
+        }
+        return test;
+    }
+    
+    /**
+     * Reads all the remaining tests.
+     * @return Tests in the order in which they were written.
+     * @throws IOException 
+     */
+    public List<Test> readAll() throws IOException {
+        List<Test> tests = new ArrayList<>();
+        Test test;
+        while ((test = read()) != null) {
+            tests.add(test);
+        }
+        return tests;
+    }
+    
+    private Question readQuestion() throws IOException {
+        int type = readByte();
+        String text = readString();
+        int points = unzigzag(readVarint());
+        int flags = readByte();
+        Question question;
+        switch (type) {
+            case BinaryFormat.SINGLE_OPTION:
+                question = new SingleOptionQuestion(text, points);
+                break;
+            case BinaryFormat.MULTIPLE_OPTIONS:
+                question = new MultipleOptionsQuestion(text, points);
+                break;
+            case BinaryFormat.OPEN:
+                OpenQuestion open = new OpenQuestion(text, points);
+                open.setCaseSensitive((flags & BinaryFormat.CASE_SENSITIVE) != 0);
+                open.setIgnoreDiacritics((flags & BinaryFormat.IGNORE_DIACRITICS) != 0);
+                open.setNormalizeWhitespace((flags & BinaryFormat.NORMALIZE_WHITESPACE) != 0);
+                open.setRegularExpression((flags & BinaryFormat.REGULAR_EXPRESSION) != 0);
+                if ((flags & BinaryFormat.EDIT_DISTANCE) != 0) {
+                    open.setMaxEditDistance(unzigzag(readVarint()));
+                }
+                question = open;
+                break;
+            case BinaryFormat.MATCHING_PAIRS:
+                question = new MatchingPairsQuestion(text, points);
+                break;
+            default:
+                throw new IOException("Corrupted stream, unknown question type " + type + ".");
+        }
+        int answers = readCount();
+        for (int i = 0; i < answers; i++) {
+            String answer = readString();
+            question.addAnswer(new Answer(answer, readByte() != 0));
+        }
+        int pairs = readCount();
+        for (int i = 0; i < pairs; i++) {
+            String left = readString();
+            question.addPair(new MatchingPair(left, readString()));
+        }
+        return question;
+    }
+    
+    private String readString() throws IOException {
+        int ref = readVarint();
+        if (ref > 0) {
+            if (ref > strings.size()) {
+                throw new IOException("Corrupted stream, unknown string " + ref + ".");
+            }
+            return strings.get(ref - 1);
+        }
+        int length = readCount();
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of the stream.");
+            }
+            read += n;
+        }
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        if (stringPool != null) {
+            value = stringPool.intern(value);
+        }
+        strings.add(value);
+        return value;
+    }
+    
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of the stream.");
+        }
+        return b;
+    }
+    
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted stream, malformed number.");
+    }
+    
+    private int readCount() throws IOException {
+        int count = readVarint();
+        if (count < 0) {
+            throw new IOException("Corrupted stream, negative count.");
+        }
+        return count;
+    }
+    
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
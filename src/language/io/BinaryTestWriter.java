@@ -0,0 +1,138 @@
+package language.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+
+/**
+ * Writes tests in the compact binary format (see BinaryFormat). Any number of
+ * tests can be written into a single stream, they are read back by
+ * BinaryTestReader without the need of their definition classes.
+ * @author Milan
+ */
+public class BinaryTestWriter implements Closeable, Flushable {
+    
+    private final OutputStream out;
+    
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    public BinaryTestWriter(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out);
+        this.out.write(BinaryFormat.MAGIC);
+        writeVarint(BinaryFormat.VERSION);
+    }
+    
+    /**
+     * Writes the test into the stream.
+     * @param test Test to write.
+     * @throws IOException 
+     */
+    public void write(Test test) throws IOException {
+        out.write(BinaryFormat.TEST);
+        writeString(test.getTitle());
+        writeVarint(zigzag(test.getMinPoints()));
+        writeVarint(test.getQuestions().size());
+        for (AbstractMap.SimpleEntry<String, Question> entry : test.getQuestions()) {
+            write(entry.getValue());
+        }
+    }
+    
+    private void write(Question question) throws IOException {
+        int flags = 0;
+        if (question instanceof SingleOptionQuestion) {
+            out.write(BinaryFormat.SINGLE_OPTION);
+        } else if (question instanceof MultipleOptionsQuestion) {
+            out.write(BinaryFormat.MULTIPLE_OPTIONS);
+        } else if (question instanceof OpenQuestion) {
+            out.write(BinaryFormat.OPEN);
+            OpenQuestion open = (OpenQuestion) question;
+            if (open.isCaseSensitive()) {
+                flags |= BinaryFormat.CASE_SENSITIVE;
+            }
+            if (open.isIgnoreDiacritics()) {
+                flags |= BinaryFormat.IGNORE_DIACRITICS;
+            }
+            if (open.isNormalizeWhitespace()) {
+                flags |= BinaryFormat.NORMALIZE_WHITESPACE;
+            }
+            if (open.isRegularExpression()) {
+                flags |= BinaryFormat.REGULAR_EXPRESSION;
+            }
+            if (open.getMaxEditDistance() != 0) {
+                flags |= BinaryFormat.EDIT_DISTANCE;
+            }
+        } else if (question instanceof MatchingPairsQuestion) {
+            out.write(BinaryFormat.MATCHING_PAIRS);
+        } else {
+            throw new IOException("Unsupported question type: " + question.getClass().getName());
+        }
+        writeString(question.getText());
+        writeVarint(zigzag(question.getPoints()));
+        out.write(flags);
+        if ((flags & BinaryFormat.EDIT_DISTANCE) != 0) {
+            writeVarint(zigzag(((OpenQuestion) question).getMaxEditDistance()));
+        }
+        writeVarint(question.getAnswers().size());
+        for (Answer answer : question.getAnswers()) {
+            writeString(answer.getText());
+            out.write(answer.isCorrect() ? 1 : 0);
+        }
+        writeVarint(question.getPairs().size());
+        for (MatchingPair pair : question.getPairs()) {
+            writeString(pair.getLeft());
+            writeString(pair.getRight());
+        }
+    }
+    
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            throw new IOException("Texts of the written tests cannot be null.");
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarint(index + 1);
+            return;
+        }
+        strings.put(value, strings.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(0);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+    
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+    
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,275 @@
+package language.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import language.builder.ParsingException;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.Test;
+
+/**
+ * Imports tests from CSV files (RFC 4180, quoted values may contain commas,
+ * quotes and line breaks). Each record starts with its kind:
+ * <pre>
+ * test,Biology test,20
+ * question,multiple,10,Which of the following are herbivores?
+ * answer,false,Lion
+ * answer,true,Sheep
+ * question,open,20,What does a cat say?,no
+ * answer,true,Meow
+ * question,matching,10,Combine males and females:
+ * pair,Lion,Lioness
+ * </pre>
+ * The answers and pairs belong to the last question, the optional fifth value
+ * of an open question is its case sensitivity. Empty records and records
+ * starting with # are skipped.
+ * @author Milan
+ */
+public class CsvTestImporter extends TestImporter {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    protected void parse(Reader in, Test test, Consumer<Question> questions) throws IOException, ParsingException {
+        new Parser(in, test, questions).parse();
+    }
+
+    /**
+     * State of a single import.
+     */
+    private class Parser {
+
+        private final Reader in;
+
+        private final Test test;
+
+        private final Consumer<Question> questions;
+
+        private final char[] buffer = new char[BUFFER_SIZE];
+
+        private int position;
+
+        private int limit;
+
+        private int line = 1;
+
+        /**
+         * Values of the current record, the list is reused.
+         */
+        private final List<String> values = new ArrayList<>();
+
+        private final StringBuilder value = new StringBuilder();
+
+        private Question question;
+
+        /**
+         * Whether the last question record was wrong, its answers and pairs
+         * are skipped without further errors.
+         */
+        private boolean skipped;
+
+        Parser(Reader in, Test test, Consumer<Question> questions) {
+            this.in = in;
+            this.test = test;
+            this.questions = questions;
+        }
+
+        void parse() throws IOException, ParsingException {
+            int start;
+            while ((start = readRecord()) > 0) {
+                if (values.size() == 1 && values.get(0).trim().isEmpty() || values.get(0).startsWith("#")) {
+                    continue;
+                }
+                String kind = values.get(0).trim().toLowerCase(Locale.ROOT);
+                switch (kind) {
+                    case "test":
+                        readTest(start);
+                        break;
+                    case "question":
+                        flush();
+                        readQuestion(start);
+                        break;
+                    case "answer":
+                        readAnswer(start);
+                        break;
+                    case "pair":
+                        readPair(start);
+                        break;
+                    default:
+                        reportError(start, "Unknown kind of record '" + values.get(0) + "', use test, question, answer or pair.");
+                }
+            }
+            flush();
+        }
+
+        private void flush() {
+            if (question != null) {
+                questions.accept(question);
+                question = null;
+            }
+        }
+
+        private void readTest(int start) throws ParsingException {
+            if (!checkCount(start, 3, 3, "test,title,minimal points")) {
+                return;
+            }
+            register(test, start);
+            test.setTitle(values.get(1));
+            Integer minPoints = parseInt(start, values.get(2), "minimal points");
+            if (minPoints != null) {
+                test.setMinPoints(minPoints);
+            }
+        }
+
+        private void readQuestion(int start) throws ParsingException {
+            skipped = true;
+            if (!checkCount(start, 4, 5, "question,type,points,text[,case sensitive]")) {
+                return;
+            }
+            Integer points = parseInt(start, values.get(2), "points");
+            if (points == null) {
+                return;
+            }
+            Question created = createQuestion(values.get(1), values.get(3), points);
+            if (created == null) {
+                reportError(start, "Unknown type of question '" + values.get(1) + "', use single, multiple, open or matching.");
+                return;
+            }
+            if (values.size() == 5) {
+                Boolean caseSensitive = parseBoolean(values.get(4));
+                if (!(created instanceof OpenQuestion) || caseSensitive == null) {
+                    reportError(start, "Only open questions can state the case sensitivity (yes or no), not '" + values.get(4) + "'.");
+                    return;
+                }
+                ((OpenQuestion) created).setCaseSensitive(caseSensitive);
+            }
+            question = register(created, start);
+            skipped = false;
+        }
+
+        private void readAnswer(int start) throws ParsingException {
+            if (!checkCount(start, 3, 3, "answer,correct,text") || !checkQuestion(start)) {
+                return;
+            }
+            Boolean correct = parseBoolean(values.get(1));
+            if (correct == null) {
+                reportError(start, "Answer '" + values.get(2) + "' has to be stated as correct or not (true or false), not '" + values.get(1) + "'.");
+                return;
+            }
+            question.addAnswer(register(new Answer(pooled(values.get(2)), correct), start));
+        }
+
+        private void readPair(int start) throws ParsingException {
+            if (!checkCount(start, 3, 3, "pair,left,right") || !checkQuestion(start)) {
+                return;
+            }
+            question.addPair(register(new MatchingPair(pooled(values.get(1)), pooled(values.get(2))), start));
+        }
+
+        private boolean checkCount(int start, int min, int max, String format) throws ParsingException {
+            if (values.size() < min || values.size() > max) {
+                reportError(start, "The record has " + values.size() + " values, the expected format is '" + format + "'.");
+                return false;
+            }
+            return true;
+        }
+
+        private boolean checkQuestion(int start) throws ParsingException {
+            if (question == null) {
+                if (skipped) {
+                    return false;
+                }
+                reportError(start, "There is no question the " + values.get(0).trim() + " belongs to, define the question first.");
+                return false;
+            }
+            return true;
+        }
+
+        private Integer parseInt(int start, String text, String name) throws ParsingException {
+            try {
+                return Integer.valueOf(text.trim());
+            } catch (NumberFormatException ex) {
+                reportError(start, "The " + name + " have to be a whole number, not '" + text + "'.");
+                return null;
+            }
+        }
+
+        /**
+         * Reads the values of the next record.
+         * @return Line where the record starts, 0 at the end of the file.
+         * @throws IOException
+         * @throws ParsingException If a quoted value is not closed.
+         */
+        private int readRecord() throws IOException, ParsingException {
+            int c = read();
+            if (c < 0) {
+                return 0;
+            }
+            int start = line;
+            values.clear();
+            value.setLength(0);
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            int quoteLine = line;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        throw syntaxError(quoteLine, "The quoted value is not closed.");
+                    } else if (c == '"') {
+                        c = read();
+                        if (c == '"') {
+                            value.append('"');
+                        } else {
+                            quoted = false;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        value.append((char) c);
+                    }
+                } else if (c == '"' && value.length() == 0 && !wasQuoted) {
+                    quoted = true;
+                    wasQuoted = true;
+                    quoteLine = line;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                    wasQuoted = false;
+                } else if (c == '\n' || c < 0) {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    int end = value.length();
+                    if (!wasQuoted && end > 0 && value.charAt(end - 1) == '\r') {
+                        value.setLength(end - 1);
+                    }
+                    values.add(value.toString());
+                    return start;
+                } else if (c != '\r' || !wasQuoted) {
+                    value.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+    }
+}
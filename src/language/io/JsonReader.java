@@ -0,0 +1,410 @@
+package language.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.BiFunction;
+import language.builder.ParsingException;
+
+/**
+ * Pull parser of JSON. The values are read one by one as the caller walks the
+ * document, nothing but the current value is kept, and the line of each value
+ * is known for the error reporting.
+ * @author Milan
+ */
+class JsonReader {
+
+    /**
+     * Kinds of the values.
+     */
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+
+    /**
+     * Creates the exception for a malformed document at the given line.
+     */
+    private final BiFunction<Integer, String, ParsingException> errors;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private int line = 1;
+
+    /**
+     * For each open object or array whether it is an object.
+     */
+    private boolean[] objects = new boolean[16];
+
+    private int depth;
+
+    /**
+     * Whether a value (or name in an object) was already read in the
+     * innermost object or array, so that the next one has to follow a comma.
+     */
+    private boolean hasValue;
+
+    /**
+     * Whether the name of the current member was read and its value follows.
+     */
+    private boolean afterName;
+
+    private Token peeked;
+
+    private int tokenLine;
+
+    private final StringBuilder text = new StringBuilder();
+
+    JsonReader(Reader in, BiFunction<Integer, String, ParsingException> errors) {
+        this.in = in;
+        this.errors = errors;
+    }
+
+    /**
+     * @return Line of the last peeked or read value.
+     */
+    int getLine() {
+        return tokenLine;
+    }
+
+    Token peek() throws IOException, ParsingException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c = skipWhitespace();
+        tokenLine = line;
+        boolean inObject = depth > 0 && objects[depth - 1];
+        if (c == '}' || c == ']') {
+            if (depth == 0 || (c == '}') != inObject || afterName) {
+                throw errors.apply(line, "Unexpected '" + (char) c + "' in the JSON document.");
+            }
+            return peeked = c == '}' ? Token.END_OBJECT : Token.END_ARRAY;
+        }
+        if (depth == 0 && hasValue) {
+            if (c >= 0) {
+                throw errors.apply(line, "Unexpected content after the end of the JSON document.");
+            }
+            return peeked = Token.END;
+        }
+        if (c < 0) {
+            throw errors.apply(line, "Unexpected end of the JSON document.");
+        }
+        if (afterName) {
+            if (c != ':') {
+                throw errors.apply(line, "Expected ':' after the name of the member.");
+            }
+            c = skipWhitespace();
+            tokenLine = line;
+        } else if (hasValue && depth > 0) {
+            if (c != ',') {
+                throw errors.apply(line, "Expected ',' or the end of the " + (inObject ? "object." : "array."));
+            }
+            c = skipWhitespace();
+            tokenLine = line;
+        }
+        if (inObject && !afterName) {
+            if (c != '"') {
+                throw errors.apply(line, "Expected the name of a member in quotes.");
+            }
+            readString();
+            return peeked = Token.NAME;
+        }
+        switch (c) {
+            case '{':
+                return peeked = Token.BEGIN_OBJECT;
+            case '[':
+                return peeked = Token.BEGIN_ARRAY;
+            case '"':
+                readString();
+                return peeked = Token.STRING;
+            case 't':
+                readLiteral(c, "true");
+                return peeked = Token.BOOLEAN;
+            case 'f':
+                readLiteral(c, "false");
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                readLiteral(c, "null");
+                return peeked = Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    return peeked = Token.NUMBER;
+                }
+                throw errors.apply(line, "Unexpected character '" + (char) c + "' in the JSON document.");
+        }
+    }
+
+    void beginObject() throws IOException, ParsingException {
+        expect(Token.BEGIN_OBJECT);
+        push(true);
+    }
+
+    void endObject() throws IOException, ParsingException {
+        expect(Token.END_OBJECT);
+        pop();
+    }
+
+    void beginArray() throws IOException, ParsingException {
+        expect(Token.BEGIN_ARRAY);
+        push(false);
+    }
+
+    void endArray() throws IOException, ParsingException {
+        expect(Token.END_ARRAY);
+        pop();
+    }
+
+    /**
+     * @return True if the current object or array has more members.
+     * @throws IOException
+     * @throws ParsingException
+     */
+    boolean hasNext() throws IOException, ParsingException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END;
+    }
+
+    String nextName() throws IOException, ParsingException {
+        expect(Token.NAME);
+        afterName = true;
+        hasValue = true;
+        return text.toString();
+    }
+
+    /**
+     * @return The string value, numbers and booleans are returned as written.
+     * @throws IOException
+     * @throws ParsingException
+     */
+    String nextString() throws IOException, ParsingException {
+        Token token = peek();
+        if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN) {
+            throw errors.apply(tokenLine, "Expected a string but found " + describe(token) + ".");
+        }
+        consume();
+        return text.toString();
+    }
+
+    int nextInt() throws IOException, ParsingException {
+        expect(Token.NUMBER);
+        try {
+            return Integer.parseInt(text.toString());
+        } catch (NumberFormatException ex) {
+            throw errors.apply(tokenLine, "Expected a whole number but found " + text + ".");
+        }
+    }
+
+    boolean nextBoolean() throws IOException, ParsingException {
+        expect(Token.BOOLEAN);
+        return text.charAt(0) == 't';
+    }
+
+    /**
+     * Skips the next value including all its content.
+     * @throws IOException
+     * @throws ParsingException
+     */
+    void skipValue() throws IOException, ParsingException {
+        int level = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    level++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    level++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    level--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    level--;
+                    break;
+                case NAME:
+                    nextName();
+                    break;
+                default:
+                    consume();
+            }
+        } while (level > 0);
+    }
+
+    private void expect(Token expected) throws IOException, ParsingException {
+        Token token = peek();
+        if (token != expected) {
+            throw errors.apply(tokenLine, "Expected " + describe(expected) + " but found " + describe(token) + ".");
+        }
+        if (token != Token.NAME) {
+            consume();
+        } else {
+            peeked = null;
+        }
+    }
+
+    /**
+     * Marks the peeked value as read.
+     */
+    private void consume() {
+        peeked = null;
+        afterName = false;
+        hasValue = true;
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            boolean[] larger = new boolean[depth * 2];
+            System.arraycopy(objects, 0, larger, 0, depth);
+            objects = larger;
+        }
+        objects[depth++] = object;
+        hasValue = false;
+        afterName = false;
+    }
+
+    private void pop() {
+        depth--;
+        hasValue = true;
+        afterName = false;
+    }
+
+    private static String describe(Token token) {
+        switch (token) {
+            case BEGIN_OBJECT:
+                return "an object";
+            case END_OBJECT:
+                return "the end of an object";
+            case BEGIN_ARRAY:
+                return "an array";
+            case END_ARRAY:
+                return "the end of an array";
+            case NAME:
+                return "a name";
+            case END:
+                return "the end of the document";
+            default:
+                return "a " + token.name().toLowerCase();
+        }
+    }
+
+    private void readString() throws IOException, ParsingException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c < 0 || c == '\n') {
+                throw errors.apply(tokenLine, "The string is not closed.");
+            } else if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        text.append((char) c);
+                        break;
+                    case 'b':
+                        text.append('\b');
+                        break;
+                    case 'f':
+                        text.append('\f');
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                throw errors.apply(line, "Malformed escape sequence \\u in the string.");
+                            }
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                        break;
+                    default:
+                        throw errors.apply(line, "Unknown escape sequence in the string.");
+                }
+            } else {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private void readNumber(int first) throws IOException {
+        text.setLength(0);
+        text.append((char) first);
+        while (true) {
+            int c = peekChar();
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                text.append((char) read());
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void readLiteral(int first, String literal) throws IOException, ParsingException {
+        text.setLength(0);
+        text.append((char) first);
+        for (int i = 1; i < literal.length(); i++) {
+            int c = read();
+            if (c != literal.charAt(i)) {
+                throw errors.apply(line, "Unexpected value in the JSON document, did you mean " + literal + "?");
+            }
+            text.append((char) c);
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '\n') {
+                line++;
+            } else if (c != ' ' && c != '\t' && c != '\r' && c != '\uFEFF') {
+                return c;
+            }
+        }
+    }
+
+    private int peekChar() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,232 @@
+package language.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import language.builder.ParsingException;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.Test;
+
+/**
+ * Imports tests from JSON files of the form:
+ * <pre>
+ * {
+ *   "title": "Biology test",
+ *   "minPoints": 20,
+ *   "questions": [
+ *     {"type": "multiple", "text": "Which of the following are herbivores?", "points": 10,
+ *      "answers": [{"text": "Lion", "correct": false}, {"text": "Sheep", "correct": true}]},
+ *     {"type": "open", "text": "What does a cat say?", "points": 20, "caseSensitive": false,
+ *      "answers": [{"text": "Meow", "correct": true}, {"text": "Mňau", "correct": true}]},
+ *     {"type": "matching", "text": "Combine males and females:", "points": 10,
+ *      "pairs": [{"left": "Lion", "right": "Lioness"}]}
+ *   ]
+ * }
+ * </pre>
+ * The open questions can also state how their answers are matched (see
+ * AnswerMatcher): "ignoreDiacritics", "normalizeWhitespace" and
+ * "regularExpression" (booleans) and "maxEditDistance" (number of typos).
+ * The members can be in any order, unknown members are skipped.
+ * @author Milan
+ */
+public class JsonTestImporter extends TestImporter {
+
+    @Override
+    protected void parse(Reader in, Test test, Consumer<Question> questions) throws IOException, ParsingException {
+        JsonReader json = new JsonReader(in, this::syntaxError);
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            switch (name) {
+                case "title":
+                    register(test, json.getLine());
+                    test.setTitle(json.nextString());
+                    break;
+                case "minPoints":
+                    test.setMinPoints(json.nextInt());
+                    break;
+                case "questions":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        Question question = readQuestion(json);
+                        if (question != null) {
+                            questions.accept(question);
+                        }
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    /**
+     * Reads a question object. The members are collected first, because the
+     * type of the question does not have to come before its answers.
+     * @param json Reader at the question.
+     * @return The question, or null if it was wrong.
+     */
+    private Question readQuestion(JsonReader json) throws IOException, ParsingException {
+        int start = json.getLine();
+        String type = null;
+        String text = null;
+        int points = 0;
+        Boolean caseSensitive = null;
+        boolean ignoreDiacritics = false;
+        boolean normalizeWhitespace = false;
+        boolean regularExpression = false;
+        int maxEditDistance = 0;
+        List<Answer> answers = new ArrayList<>();
+        List<MatchingPair> pairs = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "type":
+                    type = json.nextString();
+                    break;
+                case "text":
+                    text = json.nextString();
+                    break;
+                case "points":
+                    points = json.nextInt();
+                    break;
+                case "caseSensitive":
+                    caseSensitive = json.nextBoolean();
+                    break;
+                case "ignoreDiacritics":
+                    ignoreDiacritics = json.nextBoolean();
+                    break;
+                case "normalizeWhitespace":
+                    normalizeWhitespace = json.nextBoolean();
+                    break;
+                case "regularExpression":
+                    regularExpression = json.nextBoolean();
+                    break;
+                case "maxEditDistance":
+                    maxEditDistance = json.nextInt();
+                    break;
+                case "answers":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        Answer answer = readAnswer(json);
+                        if (answer != null) {
+                            answers.add(answer);
+                        }
+                    }
+                    json.endArray();
+                    break;
+                case "pairs":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        MatchingPair pair = readPair(json);
+                        if (pair != null) {
+                            pairs.add(pair);
+                        }
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (type == null || text == null) {
+            reportError(start, "Every question has to state its type and text.");
+            return null;
+        }
+        Question question = createQuestion(type, text, points);
+        if (question == null) {
+            reportError(start, "Unknown type of question '" + type + "', use single, multiple, open or matching.");
+            return null;
+        }
+        if (caseSensitive != null) {
+            if (!(question instanceof OpenQuestion)) {
+                reportError(start, "Only open questions can state the case sensitivity, question '" + text + "' cannot.");
+                return null;
+            }
+            ((OpenQuestion) question).setCaseSensitive(caseSensitive);
+        }
+        if (ignoreDiacritics || normalizeWhitespace || regularExpression || maxEditDistance != 0) {
+            if (!(question instanceof OpenQuestion)) {
+                reportError(start, "Only open questions can state how their answers are matched, question '" + text + "' cannot.");
+                return null;
+            }
+            OpenQuestion open = (OpenQuestion) question;
+            open.setIgnoreDiacritics(ignoreDiacritics);
+            open.setNormalizeWhitespace(normalizeWhitespace);
+            open.setRegularExpression(regularExpression);
+            open.setMaxEditDistance(maxEditDistance);
+        }
+        for (Answer answer : answers) {
+            question.addAnswer(answer);
+        }
+        for (MatchingPair pair : pairs) {
+            question.addPair(pair);
+        }
+        return register(question, start);
+    }
+
+    /**
+     * @return The answer, or null if it was wrong.
+     */
+    private Answer readAnswer(JsonReader json) throws IOException, ParsingException {
+        int start = json.getLine();
+        String text = null;
+        boolean correct = false;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "text":
+                    text = json.nextString();
+                    break;
+                case "correct":
+                    correct = json.nextBoolean();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (text == null) {
+            reportError(start, "Every answer has to have text.");
+            return null;
+        }
+        return register(new Answer(pooled(text), correct), start);
+    }
+
+    /**
+     * @return The pair, or null if it was wrong.
+     */
+    private MatchingPair readPair(JsonReader json) throws IOException, ParsingException {
+        int start = json.getLine();
+        String left = null;
+        String right = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "left":
+                    left = json.nextString();
+                    break;
+                case "right":
+                    right = json.nextString();
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        if (left == null || right == null) {
+            reportError(start, "Every pair has to have the left and the right side.");
+            return null;
+        }
+        return register(new MatchingPair(pooled(left), pooled(right)), start);
+    }
+}
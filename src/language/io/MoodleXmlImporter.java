@@ -0,0 +1,272 @@
+package language.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import language.builder.ParsingException;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+
+/**
+ * Imports tests from question banks exported from Moodle (Moodle XML format).
+ * The file is read by a StAX stream reader, one question element at a time.
+ *
+ * The question types are mapped to the types of this language: multichoice
+ * and truefalse to option questions (answers with a positive fraction are
+ * correct), shortanswer to an open question with all its fully correct
+ * answers (the * wildcards are not supported) and matching to a pairing question (subquestions without text, which
+ * are only additional wrong options in Moodle, are skipped). The last segment
+ * of the category is used as the title of the test. Descriptions are skipped,
+ * other types are reported as errors.
+ * @author Milan
+ */
+public class MoodleXmlImporter extends TestImporter {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // question banks come from outside, no DTDs and external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    @Override
+    protected void parse(Reader in, Test test, Consumer<Question> questions) throws IOException, ParsingException {
+        XMLStreamReader xml = null;
+        try {
+            synchronized (FACTORY) {
+                xml = FACTORY.createXMLStreamReader(in);
+            }
+            xml.nextTag();
+            if (!"quiz".equals(xml.getLocalName())) {
+                throw syntaxError(xml.getLocation().getLineNumber(), "The file is not a Moodle XML question bank, its root element is '"
+                        + xml.getLocalName() + "' instead of 'quiz'.");
+            }
+            boolean titled = false;
+            while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                int start = xml.getLocation().getLineNumber();
+                if (!"question".equals(xml.getLocalName())) {
+                    skipElement(xml);
+                    continue;
+                }
+                String type = xml.getAttributeValue(null, "type");
+                if ("category".equals(type)) {
+                    String category = readCategory(xml);
+                    if (!titled && category != null) {
+                        register(test, start);
+                        test.setTitle(category);
+                        titled = true;
+                    }
+                    continue;
+                }
+                Question question = readQuestion(xml, type, start);
+                if (question != null) {
+                    questions.accept(question);
+                }
+            }
+        } catch (XMLStreamException ex) {
+            int line = ex.getLocation() != null ? ex.getLocation().getLineNumber() : 0;
+            throw syntaxError(line, "Malformed Moodle XML: " + ex.getMessage());
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ex) {
+                    // the underlying reader is closed by the caller
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Last segment of the category path, null if it is empty.
+     */
+    private String readCategory(XMLStreamReader xml) throws XMLStreamException {
+        String category = null;
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if ("category".equals(xml.getLocalName())) {
+                category = readText(xml);
+            } else {
+                skipElement(xml);
+            }
+        }
+        if (category == null) {
+            return null;
+        }
+        String name = category.substring(category.lastIndexOf('/') + 1).trim();
+        return name.isEmpty() || name.startsWith("$") ? null : name;
+    }
+
+    /**
+     * Reads the content of the question element. The elements are collected
+     * first, because the type specific ones (e.g. single) can come after the
+     * answers.
+     * @return The question, or null if it is skipped or wrong.
+     */
+    private Question readQuestion(XMLStreamReader xml, String type, int start) throws XMLStreamException, ParsingException {
+        String text = "";
+        String grade = "1";
+        boolean single = true;
+        boolean caseSensitive = false;
+        List<Answer> answers = new ArrayList<>();
+        List<Answer> fullAnswers = new ArrayList<>();
+        List<MatchingPair> pairs = new ArrayList<>();
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            int line = xml.getLocation().getLineNumber();
+            switch (xml.getLocalName()) {
+                case "questiontext":
+                    text = readText(xml);
+                    break;
+                case "defaultgrade":
+                    grade = xml.getElementText().trim();
+                    break;
+                case "single":
+                    single = Boolean.parseBoolean(xml.getElementText().trim());
+                    break;
+                case "usecase":
+                    caseSensitive = "1".equals(xml.getElementText().trim());
+                    break;
+                case "answer":
+                    String fraction = xml.getAttributeValue(null, "fraction");
+                    double value = parseFraction(fraction);
+                    Answer answer = register(new Answer(pooled(readText(xml)), value > 0), line);
+                    answers.add(answer);
+                    if (value >= 100) {
+                        fullAnswers.add(answer);
+                    }
+                    break;
+                case "subquestion":
+                    MatchingPair pair = readSubquestion(xml);
+                    if (pair != null) {
+                        pairs.add(register(pair, line));
+                    }
+                    break;
+                default:
+                    skipElement(xml);
+            }
+        }
+
+        if (type == null || "description".equals(type)) {
+            return null;
+        }
+        int points;
+        try {
+            points = (int) Math.round(Double.parseDouble(grade));
+        } catch (NumberFormatException ex) {
+            reportError(start, "The default grade of the question has to be a number, not '" + grade + "'.");
+            return null;
+        }
+        Question question;
+        text = pooled(text);
+        switch (type) {
+            case "multichoice":
+                question = single ? new SingleOptionQuestion(text, points) : new MultipleOptionsQuestion(text, points);
+                addAnswers(question, answers);
+                break;
+            case "truefalse":
+                question = new SingleOptionQuestion(text, points);
+                addAnswers(question, answers);
+                break;
+            case "shortanswer":
+                OpenQuestion open = new OpenQuestion(text, points);
+                open.setCaseSensitive(caseSensitive);
+                for (Answer fullAnswer : fullAnswers) {
+                    open.addAnswer(fullAnswer);
+                }
+                question = open;
+                break;
+            case "matching":
+                question = new MatchingPairsQuestion(text, points);
+                for (MatchingPair pair : pairs) {
+                    question.addPair(pair);
+                }
+                break;
+            default:
+                reportError(start, "Moodle question type '" + type + "' is not supported, remove the question or change its type.");
+                return null;
+        }
+        return register(question, start);
+    }
+
+    private static void addAnswers(Question question, List<Answer> answers) {
+        for (Answer answer : answers) {
+            question.addAnswer(answer);
+        }
+    }
+
+    private static double parseFraction(String fraction) {
+        if (fraction == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(fraction.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return The pair, or null for a subquestion without text (an additional
+     * wrong option).
+     */
+    private MatchingPair readSubquestion(XMLStreamReader xml) throws XMLStreamException {
+        String left = "";
+        String right = "";
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (xml.getLocalName()) {
+                case "text":
+                    left = xml.getElementText().trim();
+                    break;
+                case "answer":
+                    right = readText(xml);
+                    break;
+                default:
+                    skipElement(xml);
+            }
+        }
+        return left.isEmpty() ? null : new MatchingPair(pooled(left), pooled(right));
+    }
+
+    /**
+     * Reads the text child of the current element and skips the rest of it.
+     * @return Trimmed text, empty if there is no text.
+     */
+    private static String readText(XMLStreamReader xml) throws XMLStreamException {
+        String text = "";
+        while (xml.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if ("text".equals(xml.getLocalName())) {
+                text = xml.getElementText().trim();
+            } else {
+                skipElement(xml);
+            }
+        }
+        return text;
+    }
+
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package language.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import language.builder.BuildSettings;
+import language.builder.ErrorHandlingUtils;
+import language.builder.ParsingException;
+import language.builder.ProvenanceMode;
+import language.builder.SourceLocation;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.PageWriter;
+import language.model.Question;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+import language.parser.TestParser;
+
+/**
+ * Imports tests from question banks kept outside Java source (CSV, JSON,
+ * Moodle XML and .test files). The files are parsed as streams, one question at a time,
+ * so apart from the created model the memory used is bounded by the largest
+ * question, not by the size of the file.
+ *
+ * Every imported object is registered in ErrorHandlingUtils with the line of
+ * the file it was read from, so the validation errors point to the file in
+ * the same way the errors of Java definitions point to the definition class.
+ *
+ * Usage: TestImporter [-o outputDirectory] file ...
+ * @author Milan
+ */
+public abstract class TestImporter {
+
+    private final ErrorHandlingUtils errorHandling;
+
+    /**
+     * File being imported, used in the reported locations.
+     */
+    private String fileName;
+
+    /**
+     * Whether no errors were reported during the current import.
+     */
+    private boolean correct;
+
+    /**
+     * Settings of the imports (validation cache, string pool, page options).
+     */
+    private final BuildSettings settings = new BuildSettings();
+
+    protected TestImporter() {
+        this(ProvenanceMode.getDefault());
+    }
+
+    /**
+     * @param provenance OFF to report the errors without the lines of the file.
+     */
+    protected TestImporter(ProvenanceMode provenance) {
+        this.errorHandling = new ErrorHandlingUtils(getClass(), provenance);
+    }
+
+    /**
+     * Creates the importer for the format of the file, determined by its
+     * extension (.csv, .json, .xml or .test).
+     * @param file File to import.
+     * @return Importer of the file.
+     */
+    public static TestImporter forFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return new CsvTestImporter();
+        } else if (name.endsWith(".json")) {
+            return new JsonTestImporter();
+        } else if (name.endsWith(".xml")) {
+            return new MoodleXmlImporter();
+        } else if (name.endsWith(".test")) {
+            return new TestParser();
+        }
+        throw new IllegalArgumentException("Unknown format of the question bank '" + file
+                + "', use .csv, .json, .xml (Moodle XML) or .test.");
+    }
+
+    public ErrorHandlingUtils getErrorHandling() {
+        return errorHandling;
+    }
+
+    public BuildSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return False if some errors were reported during the last import.
+     */
+    public boolean isCorrect() {
+        return correct;
+    }
+
+    /**
+     * Imports and validates the test in the file, like TestBuilder.build().
+     * @param file File to import.
+     * @return The frozen test, or null if there were errors in the file.
+     * @throws IOException
+     * @throws ParsingException If the file is malformed.
+     */
+    public Test load(Path file) throws IOException, ParsingException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return load(in, file.toString());
+        }
+    }
+
+    /**
+     * Imports and validates the test.
+     * @param in Content of the file.
+     * @param fileName Name of the file used in the reported errors.
+     * @return The frozen test, or null if there were errors in the file.
+     * @throws IOException
+     * @throws ParsingException If the file is malformed.
+     */
+    public Test load(Reader in, String fileName) throws IOException, ParsingException {
+        Test test = read(in, fileName);
+        try {
+            boolean valid = test.validate(errorHandling, settings.getValidationPool(), settings.getValidationCache());
+            return valid && correct ? test.freeze() : null;
+        } finally {
+            errorHandling.release();
+        }
+    }
+
+    /**
+     * Imports the test in the file without validating it.
+     * @param file File to import.
+     * @return The test.
+     * @throws IOException
+     * @throws ParsingException If the file is malformed.
+     */
+    public Test read(Path file) throws IOException, ParsingException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return read(in, file.toString());
+        }
+    }
+
+    /**
+     * Imports the test without validating it.
+     * @param in Content of the file.
+     * @param fileName Name of the file used in the reported errors.
+     * @return The test.
+     * @throws IOException
+     * @throws ParsingException If the file is malformed.
+     */
+    public Test read(Reader in, String fileName) throws IOException, ParsingException {
+        Test test = start(fileName);
+        parse(in, test, test::addQuestion);
+        return test;
+    }
+
+    /**
+     * Passes the questions of the file to the consumer one by one without
+     * keeping them, e.g. to convert a large bank into another format. Each
+     * question is validated before it is passed on and only the provenance of
+     * the question being read is kept. The invalid questions are reported and
+     * skipped; the checks across the questions (duplicate texts) and of the
+     * test itself are not done.
+     * @param in Content of the file.
+     * @param fileName Name of the file used in the reported errors.
+     * @param questions Consumer of the valid questions.
+     * @return Test with the title and minimal points of the file, but without
+     * the questions.
+     * @throws IOException
+     * @throws ParsingException If the file is malformed.
+     */
+    public Test stream(Reader in, String fileName, Consumer<Question> questions) throws IOException, ParsingException {
+        Test test = start(fileName);
+        try {
+            parse(in, test, (question) -> {
+                boolean valid;
+                try {
+                    valid = question.validate(errorHandling);
+                } catch (ParsingException ex) {
+                    // the consumer cannot throw it, it is unwrapped below
+                    throw new IllegalStateException(ex);
+                }
+                errorHandling.release();
+                if (valid) {
+                    questions.accept(question);
+                } else {
+                    correct = false;
+                }
+            });
+        } catch (IllegalStateException ex) {
+            if (ex.getCause() instanceof ParsingException) {
+                throw (ParsingException) ex.getCause();
+            }
+            throw ex;
+        } finally {
+            errorHandling.release();
+        }
+        return test;
+    }
+
+    private Test start(String fileName) {
+        this.fileName = fileName;
+        this.correct = true;
+        String title = Paths.get(fileName).getFileName().toString();
+        int dot = title.lastIndexOf('.');
+        // the title of the file is used if the file does not state it
+        return register(new Test(dot > 0 ? title.substring(0, dot) : title, 0), 1);
+    }
+
+    /**
+     * Reads the file. The title and minimal points are set on the given test,
+     * each complete question is passed to the consumer.
+     * @param in Content of the file.
+     * @param test Test to set the title and minimal points of.
+     * @param questions Consumer of the read questions.
+     * @throws IOException
+     * @throws ParsingException If the file is malformed.
+     */
+    protected abstract void parse(Reader in, Test test, Consumer<Question> questions) throws IOException, ParsingException;
+
+    /**
+     * Registers an object read from the given line of the current file.
+     * @param <T>
+     * @param object Model object.
+     * @param line Line of the file.
+     * @return The object.
+     */
+    protected <T> T register(T object, int line) {
+        return errorHandling.registerObject(object, fileName, line);
+    }
+
+    /**
+     * Registers an object read from the given position of the current file.
+     * @param <T>
+     * @param object Model object.
+     * @param line Line of the file.
+     * @param column Column of the line.
+     * @return The object.
+     */
+    protected <T> T register(T object, int line, int column) {
+        return errorHandling.registerObject(object, SourceLocation.of(fileName, line, column));
+    }
+
+    /**
+     * Reports an error in the content of the file, the import goes on but
+     * its result is not correct.
+     * @param line Line of the file.
+     * @param message Message of the error.
+     * @throws ParsingException 
+     */
+    protected void reportError(int line, String message) throws ParsingException {
+        reportError(line, 0, message);
+    }
+
+    /**
+     * Reports an error in the content of the file, the import goes on but
+     * its result is not correct.
+     * @param line Line of the file.
+     * @param column Column of the line, 0 if it is unknown.
+     * @param message Message of the error.
+     * @throws ParsingException 
+     */
+    protected void reportError(int line, int column, String message) throws ParsingException {
+        correct = false;
+        errorHandling.reportError(SourceLocation.of(fileName, line, column), new ParsingException(message));
+    }
+
+    /**
+     * @param line Line of the file.
+     * @param message Description of the problem.
+     * @return Exception for a malformed file, the import cannot go on.
+     */
+    protected ParsingException syntaxError(int line, String message) {
+        return syntaxError(line, 0, message);
+    }
+
+    /**
+     * @param line Line of the file.
+     * @param column Column of the line, 0 if it is unknown.
+     * @param message Description of the problem.
+     * @return Exception for a malformed file, the import cannot go on.
+     */
+    protected ParsingException syntaxError(int line, int column, String message) {
+        return new ParsingException(message + System.lineSeparator() + "\t at " + SourceLocation.of(fileName, line, column));
+    }
+
+    /**
+     * @param text Text read from the file.
+     * @return The pooled instance of the text, if the importer has a pool.
+     */
+    protected String pooled(String text) {
+        return settings.pooled(text);
+    }
+
+    /**
+     * Creates the question of the given type. The types can be given by their
+     * short names (single, multiple, open, matching) or by the names used in
+     * the generated pages.
+     * @param type Type of the question.
+     * @param text Text of the question.
+     * @param points Points for the question.
+     * @return The question, or null for an unknown type.
+     */
+    protected Question createQuestion(String type, String text, int points) {
+        text = pooled(text);
+        switch (type.trim().toLowerCase(Locale.ROOT)) {
+            case "single":
+            case SingleOptionQuestion.NAME:
+                return new SingleOptionQuestion(text, points);
+            case "multiple":
+            case MultipleOptionsQuestion.NAME:
+                return new MultipleOptionsQuestion(text, points);
+            case "open":
+            case OpenQuestion.NAME:
+                return new OpenQuestion(text, points);
+            case "matching":
+            case "pairing":
+            case MatchingPairsQuestion.NAME:
+                return new MatchingPairsQuestion(text, points);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses a boolean value of a file, besides true and false also yes/no
+     * and 1/0 are accepted.
+     * @param value The value.
+     * @return The boolean, or null if the value is not a boolean.
+     */
+    protected static Boolean parseBoolean(String value) {
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "true":
+            case "yes":
+            case "1":
+                return Boolean.TRUE;
+            case "false":
+            case "no":
+            case "0":
+            case "":
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path outputDirectory = Paths.get("html");
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                outputDirectory = Paths.get(args[++i]);
+            } else {
+                files.add(Paths.get(args[i]));
+            }
+        }
+        Files.createDirectories(outputDirectory);
+
+        int failed = 0;
+        for (Path file : files) {
+            long start = System.nanoTime();
+            Test test;
+            try {
+                test = forFile(file).load(file);
+            } catch (ParsingException ex) {
+                System.err.println(ex.getMessage());
+                test = null;
+            }
+            if (test == null) {
+                System.out.println(String.format("%-9s %-50s", "INVALID", file));
+                failed++;
+                continue;
+            }
+            String name = file.getFileName().toString();
+            Path output = outputDirectory.resolve(name.substring(0, name.lastIndexOf('.')) + ".html");
+            new PageWriter(test, null).writeIfChanged(output);
+            System.out.println(String.format("%-9s %-50s %6d ms  %d questions -> %s", "IMPORTED", file,
+                    (System.nanoTime() - start) / 1000000, test.getQuestions().size(), output));
+        }
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+}
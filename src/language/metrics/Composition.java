@@ -0,0 +1,251 @@
+package language.metrics;
+
+/**
+ * Metrics of composing a single test: the durations of its phases, the number
+ * of the objects registered for the error reporting (and the time spent by
+ * registering them), the number of the reported validation errors and the
+ * size of the rendered page.
+ *
+ * The metrics are passed to the sink set by setSink() and recorded as JDK
+ * Flight Recorder events (language.Composition for the whole test and
+ * language.CompositionPhase for each phase), so a production run can be
+ * profiled by starting a recording, e.g. by jcmd JFR.start. The events need
+ * a Java 11 runtime, on Java 8 only the sink receives the metrics. If there
+ * is no sink and no recording of the events, start() returns a disabled
+ * composition that records nothing. A composition is used by a single thread.
+ * @author Milan
+ */
+public final class Composition {
+
+    /**
+     * Factory of the flight recorder events, null if the runtime has no
+     * flight recorder or the project was built without src-java11.
+     */
+    private static final Recorder.Factory JFR = loadJfr();
+
+    /**
+     * Composition that records nothing, shared by all the disabled ones.
+     */
+    public static final Composition DISABLED = new Composition(null, null, null);
+
+    private static volatile MetricsSink sink;
+
+    private final String definition;
+
+    private final MetricsSink target;
+
+    /**
+     * Events of the flight recorder, null if they are not recorded.
+     */
+    private final Recorder jfr;
+
+    private final long start;
+
+    private final long[] phaseStarts = new long[Phase.values().length];
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    private String title;
+
+    private int registeredObjects;
+
+    private long registrationNanos;
+
+    private int validationErrors;
+
+    private long renderedBytes;
+
+    private long totalNanos;
+
+    private boolean successful;
+
+    private Composition(String definition, MetricsSink target, Recorder jfr) {
+        this.definition = definition;
+        this.target = target;
+        this.jfr = jfr;
+        this.start = definition != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Sets the sink receiving the metrics of all the compositions started
+     * from now on.
+     * @param sink The sink, null to pass the metrics only to the flight
+     * recorder.
+     */
+    public static void setSink(MetricsSink sink) {
+        Composition.sink = sink;
+    }
+
+    public static MetricsSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Starts the composition of a test.
+     * @param definition Name of the definition of the test (the class name
+     * of a builder, the file of a question bank).
+     * @return The composition, a disabled one if its metrics would not be
+     * received by anything.
+     */
+    public static Composition start(String definition) {
+        MetricsSink target = sink;
+        Recorder jfr = JFR != null ? JFR.create(definition) : null;
+        if (target == null && jfr == null) {
+            return DISABLED;
+        }
+        return new Composition(definition, target, jfr);
+    }
+
+    private static Recorder.Factory loadJfr() {
+        ClassLoader loader = Composition.class.getClassLoader();
+        try {
+            Class.forName("jdk.jfr.Event", false, loader);
+            return Class.forName("language.metrics.JfrRecorder$Factory", true, loader)
+                    .asSubclass(Recorder.Factory.class).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            // a Java 8 runtime without the flight recorder, or no JfrRecorder built
+            return null;
+        }
+    }
+
+    /**
+     * @return False if the composition records nothing, its callers can skip
+     * measuring.
+     */
+    public boolean isEnabled() {
+        return definition != null;
+    }
+
+    public void begin(Phase phase) {
+        if (definition == null) {
+            return;
+        }
+        phaseStarts[phase.ordinal()] = System.nanoTime();
+        if (jfr != null) {
+            jfr.begin(phase);
+        }
+    }
+
+    /**
+     * Ends the phase, a phase that runs several times (e.g. rendering of the
+     * pages of a test split into pages) adds up its durations.
+     * @param phase The phase started by begin().
+     */
+    public void end(Phase phase) {
+        if (definition == null) {
+            return;
+        }
+        phaseNanos[phase.ordinal()] += System.nanoTime() - phaseStarts[phase.ordinal()];
+        if (jfr != null) {
+            jfr.end(phase);
+        }
+    }
+
+    public void setTitle(String title) {
+        if (definition == null) {
+            return;
+        }
+        this.title = title;
+    }
+
+    /**
+     * @param count Number of the registered objects.
+     * @param nanos Time spent by registering them (a part of DEFINE).
+     */
+    public void addRegistrations(int count, long nanos) {
+        if (definition == null) {
+            return;
+        }
+        registeredObjects += count;
+        registrationNanos += nanos;
+    }
+
+    public void addValidationErrors(int count) {
+        if (definition == null) {
+            return;
+        }
+        validationErrors += count;
+    }
+
+    public void addRenderedBytes(long bytes) {
+        if (definition == null) {
+            return;
+        }
+        renderedBytes += bytes;
+    }
+
+    /**
+     * Finishes the composition and passes its metrics to the sink and to the
+     * flight recorder.
+     * @param successful True if the test was correct and it was generated.
+     */
+    public void finish(boolean successful) {
+        if (definition == null) {
+            return;
+        }
+        this.totalNanos = System.nanoTime() - start;
+        this.successful = successful;
+        if (jfr != null) {
+            jfr.finish(this);
+        }
+        if (target != null) {
+            target.composed(this);
+        }
+    }
+
+    public String getDefinition() {
+        return definition;
+    }
+
+    /**
+     * @return Title of the test, null if the definition did not create one.
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * @param phase Phase of the composition.
+     * @return Duration of the phase in nanoseconds, 0 if it did not run.
+     */
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public int getRegisteredObjects() {
+        return registeredObjects;
+    }
+
+    public long getRegistrationNanos() {
+        return registrationNanos;
+    }
+
+    public int getValidationErrors() {
+        return validationErrors;
+    }
+
+    /**
+     * @return Size of the rendered page in bytes, 0 if the page was up to
+     * date and it was not rendered.
+     */
+    public long getRenderedBytes() {
+        return renderedBytes;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-50s %s %6.1f ms: define %6.1f ms (%d objects registered in %.1f ms), validate %6.1f ms "
+                + "(%d errors), render %6.1f ms (%d B), write %6.1f ms", definition, successful ? "OK     " : "FAILED ",
+                totalNanos / 1e6, getNanos(Phase.DEFINE) / 1e6, registeredObjects, registrationNanos / 1e6,
+                getNanos(Phase.VALIDATE) / 1e6, validationErrors, getNanos(Phase.RENDER) / 1e6, renderedBytes,
+                getNanos(Phase.WRITE) / 1e6);
+    }
+}
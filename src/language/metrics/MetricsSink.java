@@ -0,0 +1,16 @@
+package language.metrics;
+
+/**
+ * Receives the metrics of the composed tests (see Composition.setSink()).
+ * The tests may be composed in parallel (see BatchCompiler), so the sink has
+ * to be thread safe.
+ * @author Milan
+ */
+public interface MetricsSink {
+
+    /**
+     * Called when the composition of a test finished, successfully or not.
+     * @param composition Metrics of the composition.
+     */
+    void composed(Composition composition);
+}
@@ -0,0 +1,22 @@
+package language.metrics;
+
+/**
+ * Phases of composing a test from its definition.
+ * @author Milan
+ */
+public enum Phase {
+    /**
+     * Running define() of the definition, including the registration of the
+     * created objects for the error reporting.
+     */
+    DEFINE,
+    VALIDATE,
+    /**
+     * Rendering the page (and the scripts of its other pages).
+     */
+    RENDER,
+    /**
+     * Writing the rendered page into its file.
+     */
+    WRITE
+}
@@ -0,0 +1,26 @@
+package language.metrics;
+
+/**
+ * Records a composition outside of its metrics, i.e. as flight recorder
+ * events. The flight recorder needs Java 11, its recorder is compiled
+ * separately from src-java11 and it is loaded by reflection (see
+ * Composition), so the rest of the project still builds for Java 8.
+ * @author Milan
+ */
+interface Recorder {
+
+    void begin(Phase phase);
+
+    void end(Phase phase);
+
+    void finish(Composition composition);
+
+    interface Factory {
+
+        /**
+         * @param definition Name of the definition of the test.
+         * @return The recorder, or null if nothing would be recorded.
+         */
+        Recorder create(String definition);
+    }
+}
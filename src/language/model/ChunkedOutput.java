@@ -0,0 +1,91 @@
+package language.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Output collecting a page as a sequence of byte buffers. Static chunks are
+ * added as views of their pre-encoded bytes, dynamic text is buffered and
+ * encoded once per run between two static chunks.
+ * @author Milan
+ */
+public final class ChunkedOutput implements Appendable {
+    
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    
+    private final StringBuilder pending = new StringBuilder();
+    
+    private long size = 0;
+
+    public ChunkedOutput append(HtmlChunk chunk) {
+        flushPending();
+        ByteBuffer buffer = chunk.buffer();
+        size += buffer.remaining();
+        buffers.add(buffer);
+        return this;
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq) {
+        pending.append(csq);
+        return this;
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq, int start, int end) {
+        pending.append(csq, start, end);
+        return this;
+    }
+
+    @Override
+    public ChunkedOutput append(char c) {
+        pending.append(c);
+        return this;
+    }
+    
+    /**
+     * @return All the buffers collected so far, in the order of appending.
+     */
+    public ByteBuffer[] toByteBuffers() {
+        flushPending();
+        return buffers.toArray(new ByteBuffer[buffers.size()]);
+    }
+    
+    /**
+     * @return Number of encoded bytes collected so far.
+     */
+    public long size() {
+        flushPending();
+        return size;
+    }
+    
+    private void flushPending() {
+        if (pending.length() > 0) {
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(pending));
+            size += buffer.remaining();
+            buffers.add(buffer);
+            pending.setLength(0);
+        }
+    }
+    
+    /**
+     * Writes all the buffers into the channel using gathering writes.
+     * @param channel Channel to write to.
+     * @param buffers Buffers to write, their positions are advanced.
+     * @throws IOException 
+     */
+    public static void writeFully(GatheringByteChannel channel, ByteBuffer[] buffers) throws IOException {
+        int first = 0;
+        while (first < buffers.length) {
+            channel.write(buffers, first, buffers.length - first);
+            while (first < buffers.length && !buffers[first].hasRemaining()) {
+                first++;
+            }
+        }
+    }
+}
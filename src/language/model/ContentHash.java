@@ -0,0 +1,66 @@
+package language.model;
+
+/**
+ * Stable 64-bit hash (FNV-1a) of the content of model objects. Unlike
+ * hashCode() of the model objects it does not depend on object identity, so
+ * it stays the same between runs for the same definition.
+ * @author Milan
+ */
+public final class ContentHash {
+    
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    
+    private static final long PRIME = 0x100000001b3L;
+    
+    private long hash = OFFSET_BASIS;
+    
+    public ContentHash add(String value) {
+        if (value == null) {
+            return add(-1);
+        }
+        add(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * PRIME;
+            hash = (hash ^ (c >>> 8)) * PRIME;
+        }
+        return this;
+    }
+    
+    public ContentHash add(int value) {
+        for (int i = 0; i < 32; i += 8) {
+            hash = (hash ^ ((value >>> i) & 0xff)) * PRIME;
+        }
+        return this;
+    }
+    
+    public ContentHash add(long value) {
+        add((int) value);
+        return add((int) (value >>> 32));
+    }
+    
+    public ContentHash add(boolean value) {
+        return add(value ? 1 : 0);
+    }
+    
+    public ContentHash add(byte[] value) {
+        add(value.length);
+        for (byte b : value) {
+            hash = (hash ^ (b & 0xff)) * PRIME;
+        }
+        return this;
+    }
+    
+    public long get() {
+        return hash;
+    }
+    
+    /**
+     * @param hash Hash value.
+     * @return The hash as 16 hexadecimal digits.
+     */
+    public static String toHex(long hash) {
+        String hex = Long.toHexString(hash);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+}
@@ -0,0 +1,149 @@
+package language.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Escapes the texts of the test for the place in the page they are written
+ * to: text of an element, value of a single-quoted attribute or JS string
+ * literal. The value is written straight into the output, the runs of the
+ * characters that need no escaping are copied as they are, so a value with
+ * nothing to escape is appended without allocating anything.
+ * @author Milan
+ */
+public final class Escaper {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Escaper() {
+    }
+
+    /**
+     * Appends the value as the text of an element.
+     * @param out Output to append the escaped value to.
+     * @param value Text to escape.
+     * @throws IOException
+     */
+    public static void appendText(Appendable out, CharSequence value) throws IOException {
+        appendHtml(out, value, false);
+    }
+
+    /**
+     * Appends the value into an attribute, in single or double quotes.
+     * @param out Output to append the escaped value to.
+     * @param value Value of the attribute to escape.
+     * @throws IOException
+     */
+    public static void appendAttribute(Appendable out, CharSequence value) throws IOException {
+        appendHtml(out, value, true);
+    }
+
+    private static void appendHtml(Appendable out, CharSequence value, boolean attribute) throws IOException {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            String replacement;
+            switch (value.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '\'':
+                    replacement = attribute ? "&#39;" : null;
+                    break;
+                case '"':
+                    replacement = attribute ? "&quot;" : null;
+                    break;
+                default:
+                    replacement = null;
+            }
+            if (replacement != null) {
+                appendRun(out, value, start, i);
+                out.append(replacement);
+                start = i + 1;
+            }
+        }
+        appendRun(out, value, start, length);
+    }
+
+    /**
+     * Appends the value as a JS string literal in single quotes that can be
+     * placed into a script element.
+     * @param out Output to append the literal to.
+     * @param value Value of the string.
+     * @throws IOException
+     */
+    public static void appendJsString(Appendable out, CharSequence value) throws IOException {
+        out.append('\'');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '\'' && c != '\\' && c != '<' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            appendRun(out, value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '\'':
+                case '\\':
+                    out.append('\\').append(c);
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '<':
+                    // keeps </script> and <!-- from ending the script element
+                    out.append("\\x3c");
+                    break;
+                default:
+                    out.append("\\u").append(HEX_DIGITS[c >> 12]).append(HEX_DIGITS[(c >> 8) & 0xF])
+                            .append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        appendRun(out, value, start, length);
+        out.append('\'');
+    }
+
+    /**
+     * Appends the value as a JS string literal into the builder.
+     * @param out Builder to append the literal to.
+     * @param value Value of the string.
+     * @return The builder.
+     */
+    public static StringBuilder appendJsString(StringBuilder out, CharSequence value) {
+        try {
+            appendJsString((Appendable) out, value);
+        } catch (IOException ex) {
+            // a builder does not throw
+            throw new UncheckedIOException(ex);
+        }
+        return out;
+    }
+
+    /**
+     * Copies the characters from start to end. Writers get the part of a
+     * string without creating a substring for it.
+     */
+    private static void appendRun(Appendable out, CharSequence value, int start, int end) throws IOException {
+        if (start == end) {
+            return;
+        }
+        if (start == 0 && end == value.length()) {
+            out.append(value);
+        } else if (out instanceof Writer && value instanceof String) {
+            ((Writer) out).write((String) value, start, end - start);
+        } else {
+            out.append(value, start, end);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package language.model;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of rendered question fragments for a single generated page. When the
+ * page is rendered again (e.g. after a part of the definition was edited), the
+ * fragments of the questions whose content and position did not change are
+ * reused instead of rendered again. The cache holds at most one fragment per
+ * question of the page.
+ * @author Milan
+ */
+public class FragmentCache {
+    
+    private final ConcurrentHashMap<String, Fragment> fragments = new ConcurrentHashMap<>();
+    
+    /**
+     * Returns the fragment of the question with the given id, rendering it if
+     * the cached one is missing or belongs to a different content.
+     * @param id Identifier of the question in the page.
+     * @param question Question to render.
+     * @param hash Hash identifying the content of the question and the options
+     * it is rendered with.
+     * @param options Options the question is rendered with.
+     * @return Rendered fragment.
+     */
+    public Fragment get(String id, Question question, long hash, RenderOptions options) {
+        Fragment fragment = fragments.get(id);
+        if (fragment == null || fragment.hash != hash) {
+            fragment = new Fragment(hash, question.toHTML(id, options), question.toJS(id));
+            fragments.put(id, fragment);
+        }
+        return fragment;
+    }
+    
+    /**
+     * Drops the fragments of questions that are not in the page anymore.
+     * @param ids Identifiers of the questions in the page.
+     */
+    public void retain(Collection<String> ids) {
+        fragments.keySet().retainAll(ids);
+    }
+    
+    public int size() {
+        return fragments.size();
+    }
+    
+    /**
+     * Rendered HTML and JS of a single question.
+     */
+    public static final class Fragment {
+        
+        private final long hash;
+        
+        private final String html;
+        
+        private final String js;
+
+        private Fragment(long hash, String html, String js) {
+            this.hash = hash;
+            this.html = html;
+            this.js = js;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+
+        public String getJs() {
+            return js;
+        }
+    }
+}
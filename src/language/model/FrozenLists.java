@@ -0,0 +1,111 @@
+package language.model;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only views of the arrays the frozen questions keep their answers,
+ * pairs and options in. Each element is created when it is read, so changing
+ * it does not change the frozen question.
+ * @author Milan
+ */
+final class FrozenLists {
+
+    private FrozenLists() {
+    }
+
+    /**
+     * Answers kept as their texts and a bitmask of the correct ones (bit i of
+     * word i / 32 for the answer i, see Question.correctAnswers()).
+     */
+    static final class Answers extends AbstractList<Answer> implements RandomAccess {
+
+        private final String[] texts;
+
+        private final int[] correct;
+
+        Answers(List<Answer> answers) {
+            texts = new String[answers.size()];
+            correct = new int[(texts.length >> 5) + 1];
+            int index = 0;
+            for (Answer answer : answers) {
+                texts[index] = answer.getText();
+                if (answer.isCorrect()) {
+                    correct[index >> 5] |= 1 << index;
+                }
+                index++;
+            }
+        }
+
+        /**
+         * @return The bitmask of the correct answers, it must not be modified.
+         */
+        int[] correct() {
+            return correct;
+        }
+
+        @Override
+        public Answer get(int index) {
+            return new Answer(texts[index], (correct[index >> 5] & 1 << index) != 0);
+        }
+
+        @Override
+        public int size() {
+            return texts.length;
+        }
+    }
+
+    /**
+     * Pairs kept as the arrays of their left and right sides.
+     */
+    static final class Pairs extends AbstractList<MatchingPair> implements RandomAccess {
+
+        private final String[] left;
+
+        private final String[] right;
+
+        Pairs(List<MatchingPair> pairs) {
+            left = new String[pairs.size()];
+            right = new String[pairs.size()];
+            int index = 0;
+            for (MatchingPair pair : pairs) {
+                left[index] = pair.getLeft();
+                right[index] = pair.getRight();
+                index++;
+            }
+        }
+
+        @Override
+        public MatchingPair get(int index) {
+            return new MatchingPair(left[index], right[index]);
+        }
+
+        @Override
+        public int size() {
+            return left.length;
+        }
+    }
+
+    /**
+     * Texts kept in an array.
+     */
+    static final class Texts extends AbstractList<String> implements RandomAccess {
+
+        private final String[] texts;
+
+        Texts(List<String> texts) {
+            this.texts = texts.toArray(new String[texts.size()]);
+        }
+
+        @Override
+        public String get(int index) {
+            return texts[index];
+        }
+
+        @Override
+        public int size() {
+            return texts.length;
+        }
+    }
+}
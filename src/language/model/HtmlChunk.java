@@ -0,0 +1,55 @@
+package language.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Immutable piece of static page markup. The text is encoded to UTF-8 only
+ * once, so the page boilerplate can be written without re-encoding it for
+ * every generated test.
+ * @author Milan
+ */
+public final class HtmlChunk {
+    
+    private final String text;
+    
+    private final byte[] bytes;
+
+    public HtmlChunk(String text) {
+        this.text = text;
+        this.bytes = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String getText() {
+        return text;
+    }
+    
+    /**
+     * Returns a read-only view of the encoded chunk. The view has its own
+     * position, so the chunk can be written by several threads at once.
+     * @return Buffer with the UTF-8 encoded text.
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+    
+    /**
+     * Appends the chunk to the output. Chunked outputs get the pre-encoded
+     * bytes, other outputs get the text.
+     * @param out Output to append the chunk to.
+     * @throws IOException 
+     */
+    public void appendTo(Appendable out) throws IOException {
+        if (out instanceof ChunkedOutput) {
+            ((ChunkedOutput) out).append(this);
+        } else {
+            out.append(text);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
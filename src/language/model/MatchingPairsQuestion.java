@@ -1,8 +1,12 @@
 package language.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Collectors;
 import language.builder.ErrorHandlingUtils;
 import language.builder.ParsingException;
@@ -19,12 +23,23 @@ public class MatchingPairsQuestion extends Question {
         this.text = text;
         this.points = points;
     }
+
+    @Override
+    public Question frozenCopy() {
+        return new Frozen(this);
+    }
     
+    /**
+     * Returns the distinct right sides of the pairs in a shuffled order. The
+     * order is derived from the content of the question, so the same question
+     * is always rendered the same way.
+     * @return Shuffled options for the selection lists.
+     */
     public List<String> getAllMatchingOptions() {
-        List<String> list = new LinkedList<>(pairs.stream().map((pair) -> {
+        List<String> list = new ArrayList<>(pairs.stream().map((pair) -> {
             return pair.getRight();
-        }).collect(Collectors.toSet()));
-        Collections.shuffle(list);
+        }).collect(Collectors.toCollection(LinkedHashSet::new)));
+        Collections.shuffle(list, new Random(contentHash()));
         return list;
     }
 
@@ -34,40 +49,160 @@ public class MatchingPairsQuestion extends Question {
     }
 
     @Override
-    public String toHTML(String id) {
-        String allOptionsHtml = getAllMatchingOptions().stream()
-                .map((option) -> {
-                    return "<option value='" + option + "'>" + option + "</option>";
-                }).reduce("", (a, b) -> a + "\n                        " + b);
+    public void render(String id, Appendable out) throws IOException {
+        render(id, out, new RenderOptions());
+    }
+
+    /**
+     * With shared matching options, the options are written only once into
+     * a datalist of the question and each selection list contains just the
+     * first of them (the default selection), so the size of the question grows
+     * linearly with the number of pairs. The lists are filled in from the 
+     * datalist by the page when the student uses them.
+     */
+    @Override
+    public void render(String id, Appendable out, RenderOptions options) throws IOException {
+        boolean shared = options.isSharedMatchingOptions();
+        List<String> allOptions = getAllMatchingOptions();
         
-        String allPairs = pairs.stream().map((pair) -> {
-            return "<div class='form-group'>\n"
-+ "                <label class='col-sm-offset-3 control-label col-sm-3 slimFont'>" + pair.getLeft() + "</label>\n"
+        renderHead(id, shared, out);
+        if (shared) {
+            for (int i = 0; i < allOptions.size(); i++) {
+                renderOption(allOptions.get(i), i, out);
+            }
+            renderDatalistEnd(out);
+        }
+        for (MatchingPair pair : pairs) {
+            renderPairHead(id, pair, shared, out);
+            for (int i = 0; i < (shared ? Math.min(1, allOptions.size()) : allOptions.size()); i++) {
+                renderOption(allOptions.get(i), i, out);
+            }
+            renderPairTail(out);
+        }
+        renderTail(out);
+    }
+
+    /**
+     * The options (in the order of getAllMatchingOptions()) are the 
+     * reorderable items of the template, the same order is used by all the
+     * selection lists of the question.
+     */
+    @Override
+    public QuestionTemplate toTemplate(String id, RenderOptions options) {
+        boolean shared = options.isSharedMatchingOptions();
+        QuestionTemplate.Builder template = new QuestionTemplate.Builder();
+        try {
+            renderHead(id, shared, template.text());
+            if (shared) {
+                template.insertItems(false);
+                renderDatalistEnd(template.text());
+            }
+            for (MatchingPair pair : pairs) {
+                renderPairHead(id, pair, shared, template.text());
+                template.insertItems(shared);
+                renderPairTail(template.text());
+            }
+            renderTail(template.text());
+            List<String> allOptions = getAllMatchingOptions();
+            for (int i = 0; i < allOptions.size(); i++) {
+                StringBuilder item = new StringBuilder();
+                renderOption(allOptions.get(i), i, item);
+                template.addItem(item);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return template.build();
+    }
+    
+    private void renderHead(String id, boolean shared, Appendable out) throws IOException {
+        out.append("    <div style='margin:25px 0 25px 0;'>\n"
++ "        <form class='form-horizontal questionHeader' role='form' id='");
+        Escaper.appendAttribute(out, id);
+        out.append("' points='").append(Integer.toString(points)).append("'>\n"
++ "            <div class='form-group'>\n"
++ "                <label class='control-label col-sm-3'>");
+        Escaper.appendText(out, text);
+        out.append("</label>\n"
++ "                <label class='col-sm-offset-8 control-label col-sm-1 points'>?/").append(Integer.toString(points)).append("</label>\n"
++ "            </div>\n"
++ "\n");
+        if (shared) {
+            out.append("            <datalist id='");
+            Escaper.appendAttribute(out, id);
+            out.append("-options'>");
+        }
+    }
+    
+    private void renderDatalistEnd(Appendable out) throws IOException {
+        out.append("\n            </datalist>\n");
+    }
+    
+    private void renderPairHead(String id, MatchingPair pair, boolean shared, Appendable out) throws IOException {
+        out.append("\n            <div class='form-group'>\n"
++ "                <label class='col-sm-offset-3 control-label col-sm-3 slimFont'>");
+        Escaper.appendText(out, pair.getLeft());
+        out.append("</label>\n"
 + "                <label class=' control-label col-sm-1' style='text-align: center;'>&#x21d0;&#x21d2;</label>\n"
 + "\n"
 + "                <div class='col-sm-4'>\n"
-+ "                    <select class='form-control' correct='" + pair.getRight() + "'>" + allOptionsHtml + "\n"
++ "                    <select class='form-control'");
+        if (shared) {
+            out.append(" options='");
+            Escaper.appendAttribute(out, id);
+            out.append("-options'");
+        }
+        out.append(">");
+    }
+    
+    /**
+     * The value of the option is its index in getAllMatchingOptions(), the
+     * options stay identified when they are shown in a different order.
+     */
+    private void renderOption(String option, int index, Appendable out) throws IOException {
+        out.append("\n                        <option value='").append(Integer.toString(index)).append("'>");
+        Escaper.appendText(out, option);
+        out.append("</option>");
+    }
+    
+    private void renderPairTail(Appendable out) throws IOException {
+        out.append("\n"
 + "                    </select>\n"
 + "                </div>\n"
-+ "            </div>\n";
-        }).reduce("", (a, b) -> a + "\n            " + b);
-        
-        String retVal = "    <div style='margin:25px 0 25px 0;'>\n"
-+ "        <form class='form-horizontal questionHeader' role='form' id='" + id + "' points='" + points + "'>\n"
-+ "            <div class='form-group'>\n"
-+ "                <label class='control-label col-sm-3'>" + text + "</label>\n"
-+ "                <label class='col-sm-offset-8 control-label col-sm-1 points'>?/" + points + "</label>\n"
-+ "            </div>\n"
-+ "\n"
-+ allPairs
-+ "\n        </form>\n"
-+ "    </div>\n";
-        return retVal;
++ "            </div>\n");
+    }
+    
+    private void renderTail(Appendable out) throws IOException {
+        out.append("\n        </form>\n"
++ "    </div>\n");
     }
 
+    /**
+     * Entry of the answer key: [type,'id',points,[option]], the index of the
+     * correct option (in getAllMatchingOptions()) for each pair.
+     */
     @Override
     public String toJS(String id) {
-        return "testPairingAnswer('#" + id + "')";
+        int[] correct = correctOptions();
+        StringBuilder key = startKey(KEY_PAIRING, id).append(",[");
+        for (int i = 0; i < correct.length; i++) {
+            key.append(i > 0 ? "," : "").append(correct[i]);
+        }
+        return key.append("]]").toString();
+    }
+    
+    /**
+     * @return Index of the correct option (in getAllMatchingOptions()) for
+     * each pair.
+     */
+    int[] correctOptions() {
+        List<String> allOptions = getAllMatchingOptions();
+        int[] correct = new int[pairs.size()];
+        int index = 0;
+        for (MatchingPair pair : pairs) {
+            correct[index++] = allOptions.indexOf(pair.getRight());
+        }
+        return correct;
     }
 
     @Override
@@ -83,4 +218,57 @@ public class MatchingPairsQuestion extends Question {
         boolean superCorrect = super.validate(errorHandling);
         return correct && superCorrect;
     }
+
+    /**
+     * Immutable copy of the question, the pairs are kept as the arrays of
+     * their sides and the shuffled options and the correct option of each
+     * pair are computed once.
+     */
+    static final class Frozen extends MatchingPairsQuestion {
+
+        private final List<String> options;
+
+        private final int[] correctOptions;
+
+        private final long contentHash;
+
+        private Frozen(MatchingPairsQuestion source) {
+            super(source.text, source.points);
+            answers = Collections.emptyList();
+            pairs = new FrozenLists.Pairs(source.pairs);
+            options = new FrozenLists.Texts(source.getAllMatchingOptions());
+            correctOptions = source.correctOptions();
+            contentHash = source.contentHash();
+        }
+
+        @Override
+        public Question frozenCopy() {
+            return this;
+        }
+
+        @Override
+        public boolean isFrozen() {
+            return true;
+        }
+
+        @Override
+        protected void checkModifiable() {
+            throw frozenException();
+        }
+
+        @Override
+        public long contentHash() {
+            return contentHash;
+        }
+
+        @Override
+        public List<String> getAllMatchingOptions() {
+            return options;
+        }
+
+        @Override
+        int[] correctOptions() {
+            return correctOptions;
+        }
+    }
 }
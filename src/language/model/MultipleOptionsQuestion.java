@@ -1,5 +1,8 @@
 package language.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
 import language.builder.ErrorHandlingUtils;
 import language.builder.ParsingException;
 
@@ -17,36 +20,83 @@ public class MultipleOptionsQuestion extends Question {
     }
 
     @Override
-    public String toHTML(String id) {
-        String options = answers.stream().map((answer) -> {
-            return "                    <div class='checkbox'>\n"
+    public Question frozenCopy() {
+        return new Frozen(this);
+    }
+
+    @Override
+    public void render(String id, Appendable out) throws IOException {
+        renderHead(id, out);
+        int index = 0;
+        for (Answer answer : answers) {
+            renderAnswer(id, answer, index++, out);
+        }
+        renderTail(out);
+    }
+
+    /**
+     * The answers are the reorderable items of the template.
+     */
+    @Override
+    public QuestionTemplate toTemplate(String id, RenderOptions options) {
+        QuestionTemplate.Builder template = new QuestionTemplate.Builder();
+        try {
+            renderHead(id, template.text());
+            template.insertItems(false);
+            renderTail(template.text());
+            int index = 0;
+            for (Answer answer : answers) {
+                StringBuilder item = new StringBuilder();
+                renderAnswer(id, answer, index++, item);
+                template.addItem(item);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return template.build();
+    }
+    
+    private void renderHead(String id, Appendable out) throws IOException {
+        out.append("    <div style='margin:25px 0 25px 0;'>\n"
++ "        <form class='form-horizontal questionHeader' role='form' id='");
+        Escaper.appendAttribute(out, id);
+        out.append("' points='").append(Integer.toString(points)).append("'>\n"
++ "            <div class='form-group'>\n"
++ "                <label class='control-label col-sm-3'>");
+        Escaper.appendText(out, text);
+        out.append("</label>\n"
++ "\n"
++ "                <div class='col-sm-8'>\n");
+    }
+    
+    /**
+     * The value of the input is the index of the answer, the answers stay
+     * identified when they are shown in a different order.
+     */
+    private void renderAnswer(String id, Answer answer, int index, Appendable out) throws IOException {
+        out.append("                    <div class='checkbox'>\n"
 + "                        <label>\n"
-+ "                            <input type='checkbox' correct='" + answer.isCorrect() + "'> " + answer.getText() + "\n"
++ "                            <input type='checkbox' value='").append(Integer.toString(index)).append("'> ");
+        Escaper.appendText(out, answer.getText());
+        out.append("\n"
 + "                        </label>\n" +
 "                    </div>\n" +
-"\n";
-        }).reduce("", (a, b) -> a + b);
-        
-        String retVal = "    <div style='margin:25px 0 25px 0;'>\n"
-+ "        <form class='form-horizontal questionHeader' role='form' id='" + id + "' points='" + points + "'>\n"
-+ "            <div class='form-group'>\n"
-+ "                <label class='control-label col-sm-3'>" + text + "</label>\n"
-+ "\n"
-+ "                <div class='col-sm-8'>\n"
-+ options
-+ "                    <small class='text-muted'>Watch out, if you select an incorrect option, the whole question will be considered incorrect.</small>\n"
+"\n");
+    }
+    
+    private void renderTail(Appendable out) throws IOException {
+        out.append("                    <small class='text-muted'>Watch out, if you select an incorrect option, the whole question will be considered incorrect.</small>\n"
 + "                </div>\n"
 + "\n"
-+ "                <label class='control-label col-sm-1 points'>?/" + points + "</label>\n"
++ "                <label class='control-label col-sm-1 points'>?/").append(Integer.toString(points)).append("</label>\n"
 + "            </div>\n"
 + "        </form>\n"
-+ "    </div>\n";
-        return retVal;
++ "    </div>\n");
     }
 
     @Override
     public String toJS(String id) {
-        return "testMultipleChoice('#" + id + "')";
+        return optionKey(KEY_MULTIPLE, id);
     }
 
     @Override
@@ -82,4 +132,48 @@ public class MultipleOptionsQuestion extends Question {
         boolean superCorrect = super.validate(errorHandling);
         return correct && superCorrect;
     }
+
+    /**
+     * Immutable copy of the question, the answers are kept as their texts and
+     * a bitmask of the correct ones.
+     */
+    static final class Frozen extends MultipleOptionsQuestion {
+
+        private final FrozenLists.Answers frozenAnswers;
+
+        private final long contentHash;
+
+        private Frozen(MultipleOptionsQuestion source) {
+            super(source.text, source.points);
+            frozenAnswers = new FrozenLists.Answers(source.answers);
+            answers = frozenAnswers;
+            pairs = Collections.emptyList();
+            contentHash = source.contentHash();
+        }
+
+        @Override
+        public Question frozenCopy() {
+            return this;
+        }
+
+        @Override
+        public boolean isFrozen() {
+            return true;
+        }
+
+        @Override
+        protected void checkModifiable() {
+            throw frozenException();
+        }
+
+        @Override
+        public long contentHash() {
+            return contentHash;
+        }
+
+        @Override
+        int[] correctAnswers() {
+            return frozenAnswers.correct();
+        }
+    }
 }
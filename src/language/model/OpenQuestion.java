@@ -1,10 +1,17 @@
 package language.model;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.regex.PatternSyntaxException;
 import language.builder.ErrorHandlingUtils;
 import language.builder.ParsingException;
+import language.grading.AnswerMatcher;
 
 /**
- * Question with open answer.
+ * Question with open answer. It accepts one or more correct answers, the
+ * answers of the students are compared with them after the normalization set
+ * by the question (see AnswerMatcher), or matched against them as regular
+ * expressions.
  * @author Milan
  */
 public class OpenQuestion extends Question {
@@ -12,6 +19,14 @@ public class OpenQuestion extends Question {
     public static final String NAME = "open-answer-question";
     
     private boolean caseSensitive = false;
+    
+    private boolean ignoreDiacritics = false;
+    
+    private boolean normalizeWhitespace = false;
+    
+    private boolean regularExpression = false;
+    
+    private int maxEditDistance = 0;
 
     public OpenQuestion(String text, int points) {
         this.text = text;
@@ -31,41 +46,127 @@ public class OpenQuestion extends Question {
         this.caseSensitive = caseSensitive;
     }
 
+    @Override
+    public Question frozenCopy() {
+        return new Frozen(this);
+    }
+
     public boolean isCaseSensitive() {
         return caseSensitive;
     }
 
     public void setCaseSensitive(boolean caseSensitive) {
+        checkModifiable();
         this.caseSensitive = caseSensitive;
     }
 
+    public boolean isIgnoreDiacritics() {
+        return ignoreDiacritics;
+    }
+
+    /**
+     * @param ignoreDiacritics True to accept the answers written without the
+     * diacritical marks (e.g. "biologie" for "biológie").
+     */
+    public void setIgnoreDiacritics(boolean ignoreDiacritics) {
+        checkModifiable();
+        this.ignoreDiacritics = ignoreDiacritics;
+    }
+
+    public boolean isNormalizeWhitespace() {
+        return normalizeWhitespace;
+    }
+
+    /**
+     * @param normalizeWhitespace True to ignore the white space around the
+     * answer and to take its runs inside the answer as a single space.
+     */
+    public void setNormalizeWhitespace(boolean normalizeWhitespace) {
+        checkModifiable();
+        this.normalizeWhitespace = normalizeWhitespace;
+    }
+
+    public boolean isRegularExpression() {
+        return regularExpression;
+    }
+
+    /**
+     * @param regularExpression True if the correct answers are regular
+     * expressions the whole answer has to match, in the syntax shared by
+     * java.util.regex and JS (see AnswerMatcher.compilePattern()).
+     */
+    public void setRegularExpression(boolean regularExpression) {
+        checkModifiable();
+        this.regularExpression = regularExpression;
+    }
+
+    public int getMaxEditDistance() {
+        return maxEditDistance;
+    }
+
+    /**
+     * @param maxEditDistance Number of typos (inserted, deleted or replaced
+     * characters) an answer can have and still be accepted, 0 for the exact
+     * answers.
+     */
+    public void setMaxEditDistance(int maxEditDistance) {
+        checkModifiable();
+        this.maxEditDistance = maxEditDistance;
+    }
+
     @Override
-    public String toHTML(String id) {
-        String retVal = 
-        "    <div style='margin:25px 0 25px 0;'>\n"
-+ "        <form class='form-horizontal questionHeader' role='form' id='" + id + "' points='" + points + "'>\n"
+    protected void hashContent(ContentHash hash) {
+        super.hashContent(hash);
+        hash.add(caseSensitive);
+        hash.add(ignoreDiacritics).add(normalizeWhitespace).add(regularExpression).add(maxEditDistance);
+    }
+
+    @Override
+    public void render(String id, Appendable out) throws IOException {
+        out.append("    <div style='margin:25px 0 25px 0;'>\n"
++ "        <form class='form-horizontal questionHeader' role='form' id='");
+        Escaper.appendAttribute(out, id);
+        out.append("' points='").append(Integer.toString(points)).append("'>\n"
 + "            <div class='form-group'>\n"
-+ "                <label class='control-label col-sm-3'>" + text + "</label>\n"
++ "                <label class='control-label col-sm-3'>");
+        Escaper.appendText(out, text);
+        out.append("</label>\n"
 + "\n"
 + "                <div class='col-sm-8'>\n"
-+ "                    <input type='text' class='form-control' correctAnswer='" + answers.get(0).getText() + "' caseSensitive='" + caseSensitive + "'>\n"
-+ "                    " + (caseSensitive ? "<small class='text-muted'>Watch out, the question is case sensitive.</small>" : "<small class='text-muted'>Question is not case sensitive.</small>") + "\n"
++ "                    <input type='text' class='form-control'>\n"
++ "                    ").append(caseSensitive ? "<small class='text-muted'>Watch out, the question is case sensitive.</small>" : "<small class='text-muted'>Question is not case sensitive.</small>").append("\n"
 + "                </div>\n"
-+ "                <label class='control-label col-sm-1 points'>?/" + points + "</label>\n"
++ "                <label class='control-label col-sm-1 points'>?/").append(Integer.toString(points)).append("</label>\n"
 + "            </div>\n"
 + "        </form>\n"
-+ "    </div>\n";
-        return retVal;
++ "    </div>\n");
     }
 
+    /**
+     * Entry of the answer key: [type,'id',points,flags,['answer',...],maxEditDistance],
+     * the flags are 1 for case sensitive, 2 for ignored diacritics, 4 for
+     * normalized white space and 8 for regular expressions. The page matches
+     * the answers the same way as AnswerMatcher.
+     */
     @Override
     public String toJS(String id) {
-        return "testFreeAnswer('#" + id + "')";
+        int flags = (caseSensitive ? 1 : 0) | (ignoreDiacritics ? 2 : 0) | (normalizeWhitespace ? 4 : 0) | (regularExpression ? 8 : 0);
+        StringBuilder key = startKey(KEY_OPEN, id).append(',').append(flags).append(",[");
+        int index = 0;
+        for (Answer answer : answers) {
+            if (index++ > 0) {
+                key.append(',');
+            }
+            Escaper.appendJsString(key, answer.getText());
+        }
+        return key.append("],").append(maxEditDistance).append(']').toString();
     }
 
     @Override
     public String toString() {
-        return "OpenQuestion{" + "text=" + text + ", points=" + points + ", answer=" + answers.get(0).getText() + ", caseSensitive=" + caseSensitive + '}';
+        return "OpenQuestion{" + "text=" + text + ", points=" + points + ", answer=" + answers.get(0).getText() + ", caseSensitive=" + caseSensitive 
+                + ", ignoreDiacritics=" + ignoreDiacritics + ", normalizeWhitespace=" + normalizeWhitespace 
+                + ", regularExpression=" + regularExpression + ", maxEditDistance=" + maxEditDistance + '}';
     }
 
     @Override
@@ -77,27 +178,74 @@ public class OpenQuestion extends Question {
             correct = false;
         }
         
-        int numberOfAnswers = 0;
         for (Answer a : answers) {
-            numberOfAnswers++;
-            
-            if (numberOfAnswers == 1) {
-                if (!a.isCorrect()) {
-                    errorHandling.reportError(a, new ParsingException("Open answer question '" + text + "' cannot define an incorrect answer (answer '" + a.getText() + "')!"));
+            if (!a.isCorrect()) {
+                errorHandling.reportError(a, new ParsingException("Open answer question '" + text + "' cannot define an incorrect answer (answer '" + a.getText() + "')!"));
+                correct = false;
+            } else if (regularExpression) {
+                try {
+                    AnswerMatcher.compilePattern(this, a.getText());
+                } catch (PatternSyntaxException ex) {
+                    errorHandling.reportError(a, new ParsingException("Answer '" + a.getText() + "' of open answer question '" + text 
+                            + "' is not a valid regular expression: " + ex.getDescription() + " (index " + ex.getIndex() 
+                            + "). Only the syntax read the same way by Java and by the page (JavaScript) can be used."));
                     correct = false;
                 }
-            } else {
-                errorHandling.reportError(a, new ParsingException("Open answer question '" + text + "' cannot have multiple answers. Remove answer '" + a.getText() + "'."));
-                correct = false;
             }
         }
         
-        if (numberOfAnswers == 0) {
-            errorHandling.reportError(this, new ParsingException("Open answer question '" + text + "' has to have a single correct answer! Add it please."));
+        if (answers.isEmpty()) {
+            errorHandling.reportError(this, new ParsingException("Open answer question '" + text + "' has to have a correct answer! Add it please."));
+            correct = false;
+        }
+        
+        if (maxEditDistance < 0 || maxEditDistance > 0 && regularExpression) {
+            errorHandling.reportError(this, new ParsingException("Open answer question '" + text + "' can tolerate only a non-negative number "
+                    + "of typos and not in regular expressions (max edit distance " + maxEditDistance + ")."));
             correct = false;
         }
         
         boolean superCorrect = super.validate(errorHandling);
         return correct && superCorrect;
     }
+
+    /**
+     * Immutable copy of the question, the answers are kept as their texts.
+     */
+    static final class Frozen extends OpenQuestion {
+
+        private final long contentHash;
+
+        private Frozen(OpenQuestion source) {
+            super(source.text, source.points);
+            answers = new FrozenLists.Answers(source.answers);
+            pairs = Collections.emptyList();
+            super.caseSensitive = source.caseSensitive;
+            super.ignoreDiacritics = source.ignoreDiacritics;
+            super.normalizeWhitespace = source.normalizeWhitespace;
+            super.regularExpression = source.regularExpression;
+            super.maxEditDistance = source.maxEditDistance;
+            contentHash = source.contentHash();
+        }
+
+        @Override
+        public Question frozenCopy() {
+            return this;
+        }
+
+        @Override
+        public boolean isFrozen() {
+            return true;
+        }
+
+        @Override
+        protected void checkModifiable() {
+            throw frozenException();
+        }
+
+        @Override
+        public long contentHash() {
+            return contentHash;
+        }
+    }
 }
@@ -0,0 +1,642 @@
+package language.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import language.variant.Variant;
+
+/**
+ * Renders the page of a test with the given options: the static parts of the
+ * page, the answer key and the fragments of the questions. Of a test split
+ * into pages only the first page is rendered here, the other ones are
+ * rendered by TestPages.
+ * @author Milan
+ */
+public class PageRenderer {
+    
+    /**
+     * Version of the page template, it is a part of the content hash of the
+     * test. Increment it whenever the generated page changes, so that the
+     * pages generated by the previous version are not considered up to date.
+     */
+    static final int PAGE_VERSION = 5;
+    
+    /*
+     * Static parts of the page, they are encoded only once per JVM and shared
+     * by all the generated tests.
+     */
+    private static final HtmlChunk PAGE_START = new HtmlChunk("<!DOCTYPE html>\n"
++ "<!-- content-hash: ");
+    
+    private static final HtmlChunk HEAD_START = new HtmlChunk(" -->\n"
++ "<html lang = 'en'>\n\n"
++ "<head>\n"
++ "    <title>");
+    
+    private static final HtmlChunk TITLE_END = new HtmlChunk("</title>\n\n"
++ "    <meta charset = 'utf-8'>\n"
++ "    <meta http-equiv = 'X-UA-Compatible' content = 'IE = edge'>\n"
++ "    <meta name = 'viewport' content = 'width = device-width, initial-scale = 1'>\n\n\n");
+    
+    /**
+     * The separate stylesheets and scripts, replaced by the tags of the bundle
+     * when the page is generated with bundled assets (see AssetPipeline).
+     */
+    private static final HtmlChunk ASSETS = new HtmlChunk("    <!-- Bootstrap Core CSS -->\n"
++ "    <link rel='stylesheet' href='css/bootstrap.min.css' type='text/css'>\n\n"
++ "    <!-- Custom Fonts -->\n"
++ "    <link href='http://fonts.googleapis.com/css?family=Open+Sans:300italic,400italic,600italic,700italic,800italic,400,300,600,700,800' rel='stylesheet' type='text/css'>\n"
++ "    <link href='http://fonts.googleapis.com/css?family=Merriweather:400,300,300italic,400italic,700,700italic,900,900italic' rel='stylesheet' type='text/css'>\n"
++ "    <link rel='stylesheet' href='font-awesome/css/font-awesome.min.css' type='text/css'>\n\n"
++ "    <!-- Plugin CSS -->\n"
++ "    <link rel='stylesheet' href='css/animate.min.css' type='text/css'>\n\n"
++ "    <!-- Custom CSS -->\n"
++ "    <link rel='stylesheet' href='css/creative.css' type='text/css'>\n\n"
++ "    <!-- HTML5 shim and Respond.js for IE8 support of HTML5 elements and media queries -->\n"
++ "    <!-- WARNING: Respond.js doesn't work if you view the page via file:// -->\n\n"
++ "    <!--[if lt IE 9]>\n"
++ "    <![endif]-->\n"
++ "    <!-- jQuery -->\n"
++ "    <script src='js/jquery.js'></script>\n\n"
++ "    <!-- Bootstrap Core JavaScript -->\n"
++ "    <script src='js/bootstrap.min.js'></script>\n\n"
++ "    <!-- Plugin JavaScript -->\n"
++ "    <script src='js/jquery.easing.min.js'></script>\n"
++ "    <script src='js/jquery.fittext.js'></script>\n"
++ "    <script src='js/wow.min.js'></script>\n\n"
++ "    <script src='js/bootbox.min.js'></script>\n"
++ "    <!-- Custom Theme JavaScript -->\n"
++ "    <script src='js/creative.js'></script>\n\n");
+    
+    /**
+     * The answer key of the page: an entry per question (see Question.toJS())
+     * scored by the functions of the page, the forms carry no answers.
+     */
+    private static final HtmlChunk SCRIPT_START = new HtmlChunk("    <script>\n"
++ "        var full = ");
+    
+    private static final HtmlChunk SCRIPT_LIMIT = new HtmlChunk(";\n"
++ "        var limit = ");
+    
+    private static final HtmlChunk SCRIPT_KEY = new HtmlChunk(";\n"
++ "        var key = [");
+    
+    private static final HtmlChunk SCRIPT_END = new HtmlChunk("\n"
++ "        ];\n"
++ "\n"
++ "        // replaced by the pager of a test split into pages (see RenderOptions.setPageSize())\n"
++ "        var loadPages = function (done) {\n"
++ "            done();\n"
++ "        };\n"
++ "\n"
++ "        function test() {\n"
++ "            bootbox.confirm('Are you sure you want to end your test?', function(result) {\n"
++ "                if (result) {\n"
++ "                    loadPages(function () {\n"
++ "                        window.scrollTo(0, 0);\n"
++ "                        $('#submitBtn').hide();\n"
++ "                        var total = score(key);\n"
++ "\n"
++ "                        $('#information-info').hide();\n"
++ "                        if (total >= limit) {\n"
++ "                            $('#success-points').text(total + '/' + full);\n"
++ "                            $('#success-info').fadeIn();\n"
++ "                        } else {\n"
++ "                            $('#failure-points').text(total + '/' + full);\n"
++ "                            $('#failure-info').fadeIn();\n"
++ "                        }\n"
++ "                    });\n"
++ "                }\n"
++ "            });\n"
++ "        }\n"
++ "\n"
++ "        // entries of the key: [type, id, points, data...], see Question.toJS()\n"
++ "        function score(key) {\n"
++ "            var total = 0, errors = [];\n"
++ "            for (var i = 0; i < key.length; i++) {\n"
++ "                var entry = key[i];\n"
++ "                var form = document.getElementById(entry[1]);\n"
++ "                var points;\n"
++ "                try {\n"
++ "                    points = entry[0] == 4 ? scorePairs(form, entry)\n"
++ "                            : entry[0] == 3 ? scoreText(form, entry) : scoreOptions(form, entry);\n"
++ "                } catch (e) {\n"
++ "                    // not graded rather than graded as wrong, see matchText\n"
++ "                    errors.push(e.message);\n"
++ "                    form.querySelector('.points').textContent = 'not graded/' + entry[2];\n"
++ "                    continue;\n"
++ "                }\n"
++ "                points = Math.round(points * 100) / 100;\n"
++ "                form.querySelector('.points').textContent = points + '/' + entry[2];\n"
++ "                total += points;\n"
++ "            }\n"
++ "            if (errors.length > 0) {\n"
++ "                console.error(errors.join('\\n'));\n"
++ "                bootbox.alert('Some answers could not be graded, please tell the author of the test: ' + errors.join(' '));\n"
++ "            }\n"
++ "            return total;\n"
++ "        }\n"
++ "\n"
++ "        function isCorrect(mask, i) {\n"
++ "            return ((mask[i >> 5] >>> (i & 31)) & 1) == 1;\n"
++ "        }\n"
++ "\n"
++ "        function mark(element, correct) {\n"
++ "            element.className += correct ? ' has-success' : ' has-error';\n"
++ "        }\n"
++ "\n"
++ "        // the value of an input is the index of its answer, the last checked one decides a single choice\n"
++ "        function scoreOptions(form, entry) {\n"
++ "            var allCorrect = 0, selectedCorrect = 0, selectedIncorrect = false, lastCorrect = false;\n"
++ "            for (var i = 0; i < form.elements.length; i++) {\n"
++ "                var input = form.elements[i];\n"
++ "                var correct = isCorrect(entry[3], +input.value);\n"
++ "                mark(input.parentNode.parentNode, correct);\n"
++ "                input.disabled = true;\n"
++ "                if (correct) {\n"
++ "                    allCorrect++;\n"
++ "                }\n"
++ "                if (input.checked) {\n"
++ "                    if (correct) {\n"
++ "                        selectedCorrect++;\n"
++ "                    } else {\n"
++ "                        selectedIncorrect = true;\n"
++ "                    }\n"
++ "                    lastCorrect = correct;\n"
++ "                }\n"
++ "            }\n"
++ "            if (entry[0] == 1) {\n"
++ "                return lastCorrect ? entry[2] : 0;\n"
++ "            }\n"
++ "            return selectedIncorrect ? 0 : selectedCorrect * entry[2] / allCorrect;\n"
++ "        }\n"
++ "\n"
++ "        // the value of an option is its index, entry[3] holds the correct one for each pair\n"
++ "        function scorePairs(form, entry) {\n"
++ "            var correctMatches = 0;\n"
++ "            for (var i = 0; i < form.elements.length; i++) {\n"
++ "                var select = form.elements[i];\n"
++ "                var correct = +select.value == entry[3][i];\n"
++ "                mark(select.parentNode, correct);\n"
++ "                select.disabled = true;\n"
++ "                if (correct) {\n"
++ "                    correctMatches++;\n"
++ "                }\n"
++ "            }\n"
++ "            return correctMatches * entry[2] / entry[3].length;\n"
++ "        }\n"
++ "\n"
++ "        function scoreText(form, entry) {\n"
++ "            var input = form.elements[0];\n"
++ "            input.disabled = true;\n"
++ "            var correct = matchText(input.value, entry[3], entry[4], entry[5]);\n"
++ "            mark(input.parentNode, correct);\n"
++ "            return correct ? entry[2] : 0;\n"
++ "        }\n"
++ "\n"
++ "        var MARKS = (function () {\n"
++ "            try {\n"
++ "                return new RegExp('\\\\p{M}', 'gu');\n"
++ "            } catch (e) {\n"
++ "                return /[\\u0300-\\u036f]/g;\n"
++ "            }\n"
++ "        })();\n"
++ "\n"
++ "        // flags: 1 case sensitive, 2 ignore diacritics, 4 normalize white space, 8 regular expressions\n"
++ "        function normalizeText(text, flags, upperCase) {\n"
++ "            if (text.normalize) {\n"
++ "                text = text.normalize('NFC');\n"
++ "                if (flags & 2) {\n"
++ "                    text = text.normalize('NFD').replace(MARKS, '').normalize('NFC');\n"
++ "                }\n"
++ "            }\n"
++ "            if (flags & 4) {\n"
++ "                text = text.replace(/[\\s\\u001c-\\u001f]+/g, ' ').replace(/^ | $/g, '');\n"
++ "            }\n"
++ "            return upperCase ? text.toLocaleUpperCase() : text;\n"
++ "        }\n"
++ "\n"
++ "        function matchText(text, flags, answers, maxDistance) {\n"
++ "            var regex = (flags & 8) != 0, upperCase = (flags & 1) == 0;\n"
++ "            var value = normalizeText(text, flags, upperCase && !regex);\n"
++ "            for (var i = 0; i < answers.length; i++) {\n"
++ "                if (regex) {\n"
++ "                    // the patterns are validated to read the same in Java and here with the flag u (see AnswerPattern)\n"
++ "                    var pattern;\n"
++ "                    try {\n"
++ "                        pattern = new RegExp('^(?:' + normalizeText(answers[i], flags & 2, false) + ')$', upperCase ? 'iu' : 'u');\n"
++ "                    } catch (e) {\n"
++ "                        throw new Error(\"The answer '\" + answers[i] + \"' cannot be matched by this browser: \" + e.message);\n"
++ "                    }\n"
++ "                    if (pattern.test(value)) {\n"
++ "                        return true;\n"
++ "                    }\n"
++ "                } else {\n"
++ "                    var answer = normalizeText(answers[i], flags, upperCase);\n"
++ "                    if (answer == value || maxDistance > 0 && editDistance(answer, value, maxDistance) <= maxDistance) {\n"
++ "                        return true;\n"
++ "                    }\n"
++ "                }\n"
++ "            }\n"
++ "            return false;\n"
++ "        }\n"
++ "\n"
++ "        function editDistance(a, b, limit) {\n"
++ "            if (Math.abs(a.length - b.length) > limit) {\n"
++ "                return limit + 1;\n"
++ "            }\n"
++ "            var previous = [];\n"
++ "            for (var i = 0; i <= a.length; i++) {\n"
++ "                previous[i] = i;\n"
++ "            }\n"
++ "            for (var j = 1; j <= b.length; j++) {\n"
++ "                var current = [j], minimum = j;\n"
++ "                for (i = 1; i <= a.length; i++) {\n"
++ "                    var cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;\n"
++ "                    current[i] = Math.min(current[i - 1] + 1, previous[i] + 1, previous[i - 1] + cost);\n"
++ "                    minimum = Math.min(minimum, current[i]);\n"
++ "                }\n"
++ "                if (minimum > limit) {\n"
++ "                    return limit + 1;\n"
++ "                }\n"
++ "                previous = current;\n"
++ "            }\n"
++ "            return previous[a.length];\n"
++ "        }\n"
++ "    </script>\n" +
+"\n" +
+"    <style>\n" +
+"        .slimFont {\n" +
+"            min-height: 20px;\n" +
+"            padding-left: 20px;\n" +
+"            margin-bottom: 0;\n" +
+"            font-weight: 400;\n" +
+"            cursor: pointer;\n" +
+"        }\n" +
+"        .questionHeader {\n" +
+"            padding: 10px;\n" +
+"            margin-bottom: 5px;\n" +
+"            border: 1px solid transparent;\n" +
+"            border-radius: 4px;\n" +
+"\n" +
+"            background-color: #e0ebf0;\n" +
+"            border-color: #c6cfe9;\n" +
+"        }\n" +
+"    </style>\n" +
+"</head>\n" +
+"\n" +
+"<body>\n" +
+"<div class = 'container'>\n" +
+"<h1 class='text-center'>");
+    
+    private static final HtmlChunk HEADER_END = new HtmlChunk("</h1>\n" +
+"\n" +
+"    <div class='alert alert-success collapse' id='success-info'>\n" +
+"        <strong>Congratulations!</strong> You have passed with <strong id='success-points'></strong> points.\n" +
+"    </div>\n" +
+"\n" +
+"    <div class='alert alert-danger collapse' id='failure-info'>\n" +
+"        <strong>Failure!</strong> You have failed with <strong id='failure-points'></strong> points (passing limit was at least ");
+    
+    private static final HtmlChunk INFO_MINIMUM = new HtmlChunk(" points).\n" +
+"    </div>\n" +
+"\n" +
+"    <div class='alert alert-warning' id='information-info'>\n" +
+"        <strong>Be careful!</strong> You will need <strong>");
+    
+    private static final HtmlChunk INFO_TOTAL = new HtmlChunk("</strong> of total ");
+    
+    private static final HtmlChunk INFO_END = new HtmlChunk(" points to pass the test.\n" +
+"    </div>\n" +
+"\n");
+    
+    /**
+     * Fills in the selection lists of the matching questions with shared
+     * options when the student first uses them.
+     */
+    private static final HtmlChunk SHARED_OPTIONS_SCRIPT = new HtmlChunk("\n"
++ "    <script>\n"
++ "        $(document).on('focusin mousedown touchstart', 'select[options]', function () {\n"
++ "            var value = $(this).val();\n"
++ "            var options = $('#' + $(this).attr('options')).children().clone();\n"
++ "            $(this).removeAttr('options').empty().append(options).val(value);\n"
++ "        });\n"
++ "    </script>\n");
+    
+    private static final HtmlChunk PAGE_END = new HtmlChunk("\n\n" +
+"    <div style='margin:25px 0 25px 0;'>\n" +
+"        <form class='form-horizontal' role='form' points='10'>\n" +
+"            <div class='form-group'>\n" +
+"                <div class='col-sm-offset-5 col-sm-1'>\n" +
+"                    <button id='submitBtn' type='button' onclick='test()' class='btn btn-default'>Submit</button>\n" +
+"                </div>\n" +
+"            </div>\n" +
+"        </form>\n" +
+"    </div>\n" +
+"</div>\n" +
+"</body>\n" +
+"</html>");
+    
+    private final Test test;
+    
+    private final RenderOptions options;
+    
+    /**
+     * @param test Test to render.
+     */
+    public PageRenderer(Test test) {
+        this(test, null);
+    }
+    
+    /**
+     * @param test Test to render.
+     * @param options Options of the page, null for the default ones.
+     */
+    public PageRenderer(Test test, RenderOptions options) {
+        this.test = test;
+        this.options = options != null ? options : new RenderOptions();
+    }
+    
+    /**
+     * Computes the hash of the page generated with the options. It is the
+     * hash written at the beginning of the generated page.
+     * @return Hash of the generated page.
+     */
+    public long pageHash() {
+        return pageHash(test.contentHash(), options);
+    }
+    
+    private static long pageHash(long contentHash, RenderOptions options) {
+        return new ContentHash().add(contentHash).add(options.contentHash()).get();
+    }
+    
+    /**
+     * @param hash Hash of the page (see pageHash()).
+     * @return Beginning of the page with the given hash, used to check
+     * whether a written page is up to date.
+     */
+    static String pageStart(String hash) {
+        return PAGE_START.getText() + hash + HEAD_START.getText().substring(0, 4);
+    }
+    
+    /**
+     * Renders the whole page into a string.
+     * @return The page.
+     */
+    public String toHTML() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            render(sb);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Renders the page as a sequence of UTF-8 encoded buffers. The static parts
+     * of the page are shared pre-encoded chunks, only the dynamic fragments
+     * are encoded.
+     * @return Buffers that together form the page.
+     */
+    public ByteBuffer[] toByteBuffers() {
+        ChunkedOutput out = new ChunkedOutput();
+        try {
+            render(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteBuffers();
+    }
+    
+    /**
+     * Writes the whole test page into the given output as UTF-8.
+     * @param out Stream to write the page to, it is flushed but not closed.
+     * @throws IOException 
+     */
+    public void render(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        render(writer);
+        writer.flush();
+    }
+    
+    /**
+     * Writes the whole test page straight into the output, so that the time
+     * and memory needed stay linear in the size of the page. If the options 
+     * contain a fragment cache, the fragments of the questions are taken from
+     * it if they did not change since the previous rendering.
+     * @param out Output to append the page to.
+     * @throws IOException 
+     */
+    public void render(Appendable out) throws IOException {
+        render(out, null);
+    }
+    
+    /**
+     * Writes the page of a variant of the test (see VariantGenerator), or of
+     * the whole test if the variant is null. The questions of a variant are
+     * written from their shared templates, the fragment cache is not used.
+     * Of a test split into pages (see RenderOptions.setPageSize()) only the
+     * first page is written, with the answer key of the whole test, the 
+     * variants are never split. The fragments of a test with at least
+     * RenderOptions.getParallelThreshold() questions are rendered on the
+     * render pool of the options, if it has one.
+     * @param out Output to append the page to.
+     * @param variant Variant of the test, null for the whole test.
+     * @throws IOException 
+     */
+    public void render(Appendable out, Variant variant) throws IOException {
+        String title = test.getTitle();
+        List<AbstractMap.SimpleEntry<String, Question>> questions = test.getQuestions();
+        FragmentCache cache = variant == null ? options.getFragmentCache() : null;
+        String totalPoints = Integer.toString(variant == null ? test.getTotalPoints() : variant.getTotalPoints());
+        String passingMinimum = Integer.toString(variant == null ? test.getPassingMinimum() : variant.getPassingMinimum());
+        long optionsHash = options.contentHash();
+        long[] questionHashes = new long[questions.size()];
+        long hash = pageHash(test.contentHash(questionHashes), options);
+        if (variant != null) {
+            hash = new ContentHash().add(hash).add(variant.contentHash()).get();
+        }
+        if (cache != null) {
+            for (int i = 0; i < questionHashes.length; i++) {
+                questionHashes[i] = new ContentHash().add(questionHashes[i]).add(optionsHash).get();
+            }
+        }
+        int pageCount = new TestPages(test, options).getPageCount();
+        int pageSize = pageCount > 1 ? options.getPageSize() : questions.size();
+        String[] scripts = null;
+        String[] fragments = null;
+        if (variant == null && options.isParallel(questions.size())) {
+            scripts = new String[questions.size()];
+            fragments = new String[pageSize];
+            renderFragments(questions, cache != null ? questionHashes : null, scripts, 0, fragments, options);
+        }
+        
+        PAGE_START.appendTo(out);
+        out.append(ContentHash.toHex(hash));
+        HEAD_START.appendTo(out);
+        Escaper.appendText(out, title);
+        TITLE_END.appendTo(out);
+        if (options.getAssets() != null) {
+            out.append(options.getAssets().getTags());
+        } else {
+            ASSETS.appendTo(out);
+        }
+        SCRIPT_START.appendTo(out);
+        out.append(totalPoints);
+        SCRIPT_LIMIT.appendTo(out);
+        out.append(passingMinimum);
+        SCRIPT_KEY.appendTo(out);
+        if (variant != null) {
+            for (int i = 0; i < variant.getQuestionCount(); i++) {
+                out.append(i > 0 ? ",\n            " : "\n            ").append(variant.getScript(i));
+            }
+        } else {
+            int index = 0;
+            for (AbstractMap.SimpleEntry<String, Question> q : questions) {
+                String js = scripts != null ? scripts[index] : cache != null 
+                        ? cache.get(q.getKey(), q.getValue(), questionHashes[index], options).getJs() 
+                        : q.getValue().toJS(q.getKey());
+                out.append(index > 0 ? ",\n            " : "\n            ").append(js);
+                index++;
+            }
+        }
+        SCRIPT_END.appendTo(out);
+        Escaper.appendText(out, title);
+        HEADER_END.appendTo(out);
+        out.append(passingMinimum);
+        INFO_MINIMUM.appendTo(out);
+        out.append(passingMinimum);
+        INFO_TOTAL.appendTo(out);
+        out.append(totalPoints);
+        INFO_END.appendTo(out);
+        if (variant != null) {
+            for (int i = 0; i < variant.getQuestionCount(); i++) {
+                out.append("\n");
+                variant.renderQuestion(i, out);
+            }
+        } else {
+            if (pageCount > 1) {
+                out.append("\n    <div id='page1' data-loaded='true'>");
+            }
+            int index = 0;
+            for (AbstractMap.SimpleEntry<String, Question> q : questions.subList(0, pageSize)) {
+                out.append("\n");
+                if (fragments != null) {
+                    out.append(fragments[index]);
+                } else if (cache != null) {
+                    out.append(cache.get(q.getKey(), q.getValue(), questionHashes[index], options).getHtml());
+                } else {
+                    q.getValue().render(q.getKey(), out, options);
+                }
+                index++;
+            }
+            if (pageCount > 1) {
+                out.append("\n    </div>\n");
+                TestPages.appendPager(out, pageCount);
+            }
+        }
+        if (options.isSharedMatchingOptions()) {
+            SHARED_OPTIONS_SCRIPT.appendTo(out);
+        }
+        PAGE_END.appendTo(out);
+        
+        if (cache != null && cache.size() > questions.size()) {
+            Set<String> ids = new HashSet<>();
+            for (AbstractMap.SimpleEntry<String, Question> q : questions) {
+                ids.add(q.getKey());
+            }
+            cache.retain(ids);
+        }
+    }
+    
+    /**
+     * Renders the fragments of the questions on the render pool of the
+     * options, each into its own string. The fragments are rendered 
+     * independently of each other, the caller appends them in the order of
+     * the questions, so the page is the same as if they were rendered
+     * sequentially.
+     * @param questions Questions of the test.
+     * @param hashes Hashes of the questions and the options (indexed from the
+     * first question), null if the fragment cache is not used.
+     * @param scripts Array for the scripts of the questions from the first
+     * one, null if the scripts are not needed.
+     * @param htmlFrom Index of the first question whose HTML is rendered.
+     * @param html Array for the HTML of the questions from htmlFrom.
+     * @param options Options of the page, with a render pool.
+     * @throws IOException 
+     */
+    static void renderFragments(List<AbstractMap.SimpleEntry<String, Question>> questions, long[] hashes,
+            String[] scripts, int htmlFrom, String[] html, RenderOptions options) throws IOException {
+        FragmentCache cache = hashes != null ? options.getFragmentCache() : null;
+        int scriptTo = scripts != null ? scripts.length : 0;
+        int htmlTo = htmlFrom + html.length;
+        int from = scripts != null ? 0 : htmlFrom;
+        int to = Math.max(scriptTo, htmlTo);
+        List<Callable<Void>> tasks = new ArrayList<>(to - from);
+        int index = from;
+        for (AbstractMap.SimpleEntry<String, Question> q : questions.subList(from, to)) {
+            String id = q.getKey();
+            Question question = q.getValue();
+            int i = index++;
+            boolean script = i < scriptTo;
+            boolean fragment = i >= htmlFrom && i < htmlTo;
+            tasks.add(() -> {
+                if (cache != null) {
+                    FragmentCache.Fragment cached = cache.get(id, question, hashes[i], options);
+                    if (script) {
+                        scripts[i] = cached.getJs();
+                    }
+                    if (fragment) {
+                        html[i - htmlFrom] = cached.getHtml();
+                    }
+                } else {
+                    if (script) {
+                        scripts[i] = question.toJS(id);
+                    }
+                    if (fragment) {
+                        html[i - htmlFrom] = question.toHTML(id, options);
+                    }
+                }
+                return null;
+            });
+        }
+        // the results are written by the tasks, Future.get() makes them visible here
+        for (Future<Void> result : options.getRenderPool().invokeAll(tasks)) {
+            getRendered(result);
+        }
+    }
+    
+    private static void getRendered(Future<Void> result) throws IOException {
+        try {
+            result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Rendering of the test was interrupted.");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Rendering of a question failed.", cause);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package language.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import language.metrics.Composition;
+import language.metrics.Phase;
+
+/**
+ * Writes the page of a test into a file, with the scripts of the other pages
+ * of a test split into pages next to it (see TestPages.getPagePath()). The
+ * files are rewritten only if they do not contain the pages generated from
+ * the same content with the same options.
+ * @author Milan
+ */
+public class PageWriter {
+    
+    private final Test test;
+    
+    private final RenderOptions options;
+    
+    /**
+     * @param test Test to write.
+     * @param options Options of the page, null for the default ones.
+     */
+    public PageWriter(Test test, RenderOptions options) {
+        this.test = test;
+        this.options = options != null ? options : new RenderOptions();
+    }
+    
+    /**
+     * Writes the page into the file using a single gathering write of its
+     * chunks. An existing file is overwritten.
+     * @param path Path of the file.
+     * @throws IOException 
+     */
+    public void writeTo(Path path) throws IOException {
+        writeTo(path, Composition.DISABLED);
+    }
+    
+    /**
+     * Writes the page like writeTo(path) and records the durations of
+     * rendering and writing it and its size in the composition.
+     * @param path Path of the file.
+     * @param composition Metrics of the composition of the test.
+     * @throws IOException 
+     */
+    public void writeTo(Path path, Composition composition) throws IOException {
+        // the other pages are written first, so the first page is never newer than them
+        PageRenderer renderer = new PageRenderer(test, options);
+        TestPages pages = new TestPages(test, options);
+        int pageCount = pages.getPageCount();
+        long hash = pageCount > 1 ? renderer.pageHash() : 0;
+        for (int page = 2; page <= pageCount; page++) {
+            composition.begin(Phase.RENDER);
+            StringBuilder script = new StringBuilder();
+            pages.renderPage(page, script, hash);
+            byte[] bytes = script.toString().getBytes(StandardCharsets.UTF_8);
+            composition.end(Phase.RENDER);
+            composition.addRenderedBytes(bytes.length);
+            composition.begin(Phase.WRITE);
+            Files.write(TestPages.getPagePath(path, page), bytes);
+            composition.end(Phase.WRITE);
+        }
+        composition.begin(Phase.RENDER);
+        ByteBuffer[] buffers = renderer.toByteBuffers();
+        composition.end(Phase.RENDER);
+        for (ByteBuffer buffer : buffers) {
+            composition.addRenderedBytes(buffer.remaining());
+        }
+        composition.begin(Phase.WRITE);
+        try (FileChannel channel = FileChannel.open(path, 
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChunkedOutput.writeFully(channel, buffers);
+        }
+        composition.end(Phase.WRITE);
+    }
+    
+    /**
+     * Writes the page into the file only if the file does not already contain
+     * the page generated from the same content (the content hash is stored
+     * at the beginning of each generated page).
+     * @param path Path of the file.
+     * @return True if the file was written, false if it was up to date.
+     * @throws IOException 
+     */
+    public boolean writeIfChanged(Path path) throws IOException {
+        return writeIfChanged(path, Composition.DISABLED);
+    }
+    
+    /**
+     * Writes the page like writeIfChanged(path) and records the durations of
+     * rendering and writing it and its size in the composition.
+     * @param path Path of the file.
+     * @param composition Metrics of the composition of the test.
+     * @return True if the file was written, false if it was up to date.
+     * @throws IOException 
+     */
+    public boolean writeIfChanged(Path path, Composition composition) throws IOException {
+        if (isUpToDate(path)) {
+            return false;
+        }
+        writeTo(path, composition);
+        return true;
+    }
+    
+    /**
+     * @param path Path of a generated page.
+     * @return True if the file, and the scripts of the other pages of a test
+     * split into pages, contain the pages generated from the current content
+     * of the test with the same options.
+     * @throws IOException 
+     */
+    public boolean isUpToDate(Path path) throws IOException {
+        String hex = ContentHash.toHex(new PageRenderer(test, options).pageHash());
+        if (!startsWith(path, PageRenderer.pageStart(hex))) {
+            return false;
+        }
+        for (int page = 2; page <= new TestPages(test, options).getPageCount(); page++) {
+            if (!startsWith(TestPages.getPagePath(path, page), TestPages.pageStamp(hex))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean startsWith(Path path, String start) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        byte[] expected = start.getBytes(StandardCharsets.UTF_8);
+        byte[] actual = new byte[expected.length];
+        int read = 0;
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while (read < actual.length && (n = in.read(actual, read, actual.length - read)) > 0) {
+                read += n;
+            }
+        }
+        return read == expected.length && Arrays.equals(expected, actual);
+    }
+}
@@ -1,7 +1,12 @@
 package language.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import language.builder.ErrorHandlingUtils;
 import language.builder.ParsingException;
 
@@ -11,6 +16,17 @@ import language.builder.ParsingException;
  */
 public abstract class Question {
     
+    /**
+     * Types of the questions in the packed answer key.
+     */
+    static final int KEY_SINGLE = 1;
+    
+    static final int KEY_MULTIPLE = 2;
+    
+    static final int KEY_OPEN = 3;
+    
+    static final int KEY_PAIRING = 4;
+    
     protected String text;
     
     protected int points;
@@ -19,15 +35,137 @@ public abstract class Question {
     
     protected List<Answer> answers = new LinkedList<>();
     
-    public abstract String toHTML(String id);
+    /**
+     * Writes the HTML representation of the question straight into the output,
+     * without building intermediate strings.
+     * @param id Identifier of the question in the generated page.
+     * @param out Output to append the HTML to.
+     * @throws IOException 
+     */
+    public abstract void render(String id, Appendable out) throws IOException;
+    
+    /**
+     * Writes the HTML representation of the question rendered with the given
+     * options. Question types not affected by the options render the same way
+     * as without them.
+     * @param id Identifier of the question in the generated page.
+     * @param out Output to append the HTML to.
+     * @param options Options of the page.
+     * @throws IOException 
+     */
+    public void render(String id, Appendable out, RenderOptions options) throws IOException {
+        render(id, out);
+    }
+    
+    public String toHTML(String id) {
+        return toHTML(id, new RenderOptions());
+    }
     
+    public String toHTML(String id, RenderOptions options) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            render(id, sb, options);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders the question into a template whose items (answers or options)
+     * can be shown in a different order. Question types without reorderable
+     * items return the whole question as a single part.
+     * @param id Identifier of the question in the generated page.
+     * @param options Options of the page.
+     * @return Template of the question.
+     */
+    public QuestionTemplate toTemplate(String id, RenderOptions options) {
+        return new QuestionTemplate(toHTML(id, options));
+    }
+
+    /**
+     * Returns the entry of the question in the packed answer key of the page,
+     * a JS array [type, id, points, data...] read by the scoring script of
+     * the page (see Test), so the form of the question carries no answers.
+     * @param id Identifier of the question in the generated page.
+     * @return JS array literal.
+     */
     public abstract String toJS(String id);
+    
+    /**
+     * Starts the entry of the answer key: [type,'id',points
+     */
+    StringBuilder startKey(int type, String id) {
+        StringBuilder key = new StringBuilder(32).append('[').append(type).append(',');
+        Escaper.appendJsString(key, id);
+        return key.append(',').append(points);
+    }
+    
+    /**
+     * Entry of an option question, the correct answers are a bitmask split
+     * into 32-bit words (bit i of word i / 32 for the answer i): 
+     * [type,'id',points,[words]]
+     */
+    String optionKey(int type, String id) {
+        int[] words = correctAnswers();
+        StringBuilder key = startKey(type, id).append(",[");
+        for (int i = 0; i < words.length; i++) {
+            key.append(i > 0 ? "," : "").append(Integer.toUnsignedString(words[i]));
+        }
+        return key.append("]]").toString();
+    }
+    
+    /**
+     * @return Bitmask of the correct answers split into 32-bit words, bit i
+     * of word i / 32 is set for the correct answer i.
+     */
+    int[] correctAnswers() {
+        int[] words = new int[(answers.size() >> 5) + 1];
+        int index = 0;
+        for (Answer answer : answers) {
+            if (answer.isCorrect()) {
+                words[index >> 5] |= 1 << index;
+            }
+            index++;
+        }
+        return words;
+    }
+
+    /**
+     * Computes a hash of the whole content of the question (its type, text, 
+     * points, answers and pairs). The hash is stable between runs, so it can
+     * be used to find out whether the question changed.
+     * @return Content hash of the question.
+     */
+    public long contentHash() {
+        ContentHash hash = new ContentHash();
+        hashContent(hash);
+        return hash.get();
+    }
+    
+    /**
+     * Adds the content of the question to the hash. Subclasses with additional
+     * properties have to add them too.
+     * @param hash Hash to add the content to.
+     */
+    protected void hashContent(ContentHash hash) {
+        hash.add(getClass().getName()).add(text).add(points);
+        hash.add(answers.size());
+        for (Answer a : answers) {
+            hash.add(a.getText()).add(a.isCorrect());
+        }
+        hash.add(pairs.size());
+        for (MatchingPair mp : pairs) {
+            hash.add(mp.getLeft()).add(mp.getRight());
+        }
+    }
 
     public String getText() {
         return text;
     }
 
     public void setText(String text) {
+        checkModifiable();
         this.text = text;
     }
 
@@ -36,6 +174,7 @@ public abstract class Question {
     }
 
     public void setPoints(int points) {
+        checkModifiable();
         this.points = points;
     }
 
@@ -44,10 +183,12 @@ public abstract class Question {
     }
 
     public void setPairs(List<MatchingPair> pairs) {
+        checkModifiable();
         this.pairs = pairs;
     }
     
     public void addPair(MatchingPair pair) {
+        checkModifiable();
         this.pairs.add(pair);
     }
     
@@ -56,34 +197,59 @@ public abstract class Question {
     }
 
     public void setAnswers(List<Answer> answers) {
+        checkModifiable();
         this.answers = answers;
     }
     
     public void addAnswer(Answer answer) {
+        checkModifiable();
         answers.add(answer);
     }
     
+    /**
+     * Returns an immutable copy of the question, this question stays
+     * modifiable. It is called by Test.freeze() after the test was validated.
+     * The copy keeps its answers and pairs in arrays read through read-only
+     * lists and its content hash is computed once.
+     * @return The frozen copy, this question if it is already frozen.
+     */
+    public abstract Question frozenCopy();
+    
+    public boolean isFrozen() {
+        return false;
+    }
+    
+    /**
+     * Called by the setters, the frozen questions throw
+     * IllegalStateException.
+     */
+    protected void checkModifiable() {
+    }
+    
+    /**
+     * @return Exception thrown by the setters of a frozen question.
+     */
+    IllegalStateException frozenException() {
+        return new IllegalStateException("The question '" + text + "' is frozen, it cannot be modified.");
+    }
+    
     public boolean validate(ErrorHandlingUtils errorHandling) throws ParsingException {
         boolean correct = true;
-        List<String> usedAnswers = new LinkedList<>();
+        Set<String> usedAnswers = new HashSet<>();
         for (Answer a : answers) {
-            if (usedAnswers.contains(a.getText())) {
+            if (!usedAnswers.add(a.getText())) {
                 errorHandling.reportError(a, 
                         new ParsingException("In the same question '" + text + "' there are two identical answers: '" + a.getText() + "'! Remove one."));
                 correct = false;
-            } else {
-                usedAnswers.add(a.getText());
             }
         }
-        usedAnswers.clear();
+        Set<AbstractMap.SimpleEntry<String, String>> usedPairs = new HashSet<>();
         for (MatchingPair mp : pairs) {
-            if (usedAnswers.contains(mp.getLeft() + mp.getRight())) {
+            if (!usedPairs.add(new AbstractMap.SimpleEntry<>(mp.getLeft(), mp.getRight()))) {
                 errorHandling.reportError(mp, 
                         new ParsingException("In the same question '" + text + "' there are two identical matching pairs: '" + mp.getLeft() + "' <-> '" + mp.getRight() + "'!"
                                 + " Remove one."));
                 correct = false;
-            } else {
-                usedAnswers.add(mp.getLeft() + mp.getRight());
             }
         }
         
@@ -0,0 +1,107 @@
+package language.model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rendered question split into fixed parts and reorderable items (answers or
+ * matching options). The template is immutable and its parts are encoded only
+ * once, so one template of a question can be shared by any number of variants
+ * rendering the items in their own order (see VariantGenerator).
+ * @author Milan
+ */
+public final class QuestionTemplate {
+
+    /**
+     * Fixed parts, the items are inserted between each two of them.
+     */
+    private final HtmlChunk[] parts;
+
+    /**
+     * For each insertion whether only the first of the (reordered) items is
+     * inserted.
+     */
+    private final boolean[] firstOnly;
+
+    private final HtmlChunk[] items;
+
+    /**
+     * Template of a question without reorderable items.
+     * @param html Rendered question.
+     */
+    public QuestionTemplate(String html) {
+        this(new HtmlChunk[]{new HtmlChunk(html)}, new boolean[0], new HtmlChunk[0]);
+    }
+
+    private QuestionTemplate(HtmlChunk[] parts, boolean[] firstOnly, HtmlChunk[] items) {
+        this.parts = parts;
+        this.firstOnly = firstOnly;
+        this.items = items;
+    }
+
+    public int getItemCount() {
+        return items.length;
+    }
+
+    /**
+     * Writes the question with the items in the given order.
+     * @param out Output to append the question to.
+     * @param order Indices of the items in the order they are shown, null for
+     * the original order.
+     * @throws IOException
+     */
+    public void render(Appendable out, int[] order) throws IOException {
+        parts[0].appendTo(out);
+        for (int i = 0; i < firstOnly.length; i++) {
+            int count = firstOnly[i] ? Math.min(1, items.length) : items.length;
+            for (int j = 0; j < count; j++) {
+                items[order == null ? j : order[j]].appendTo(out);
+            }
+            parts[i + 1].appendTo(out);
+        }
+    }
+
+    /**
+     * Collects the parts of a template. The question writes its fixed parts
+     * into text() and marks the places of the items in between.
+     */
+    static final class Builder {
+
+        private final List<HtmlChunk> parts = new ArrayList<>();
+
+        private final List<Boolean> firstOnly = new ArrayList<>();
+
+        private final List<HtmlChunk> items = new ArrayList<>();
+
+        private StringBuilder text = new StringBuilder();
+
+        StringBuilder text() {
+            return text;
+        }
+
+        /**
+         * Marks the place of the items.
+         * @param first True to insert only the first of the items.
+         */
+        void insertItems(boolean first) {
+            parts.add(new HtmlChunk(text.toString()));
+            firstOnly.add(first);
+            text = new StringBuilder();
+        }
+
+        void addItem(CharSequence item) {
+            items.add(new HtmlChunk(item.toString()));
+        }
+
+        QuestionTemplate build() {
+            parts.add(new HtmlChunk(text.toString()));
+            boolean[] first = new boolean[firstOnly.size()];
+            for (int i = 0; i < first.length; i++) {
+                first[i] = firstOnly.get(i);
+            }
+            return new QuestionTemplate(parts.toArray(new HtmlChunk[parts.size()]), first, 
+                    items.toArray(new HtmlChunk[items.size()]));
+        }
+    }
+}
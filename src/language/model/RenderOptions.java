@@ -0,0 +1,134 @@
+package language.model;
+
+import java.util.concurrent.ForkJoinPool;
+import language.assets.AssetBundle;
+
+/**
+ * Options of the generated page. Options that change the generated page are
+ * a part of its hash, so pages generated with different options are never
+ * considered the same.
+ * @author Milan
+ */
+public class RenderOptions {
+    
+    /**
+     * Default smallest number of the questions rendered in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 500;
+    
+    /**
+     * If true, the options of each matching question are written only once
+     * per question and the selection lists are filled in by the browser.
+     */
+    private boolean sharedMatchingOptions = false;
+    
+    /**
+     * Cache of the rendered question fragments, null if the questions should
+     * always be rendered.
+     */
+    private FragmentCache fragmentCache;
+    
+    /**
+     * Bundled assets used instead of the separate stylesheets and scripts,
+     * null to refer to them separately.
+     */
+    private AssetBundle assets;
+    
+    /**
+     * Number of the questions on a page, the page of a larger test contains
+     * only its first questions and loads the others when the student pages
+     * through them. 0 to write all the questions into the page.
+     */
+    private int pageSize = 0;
+    
+    /**
+     * Pool rendering the fragments of the questions in parallel, null to
+     * render them sequentially. The page is the same either way, so the pool
+     * is not a part of its hash.
+     */
+    private ForkJoinPool renderPool;
+    
+    /**
+     * Smallest number of the rendered questions worth the parallel rendering,
+     * fewer questions are rendered sequentially even if there is a pool.
+     */
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    public boolean isSharedMatchingOptions() {
+        return sharedMatchingOptions;
+    }
+
+    public void setSharedMatchingOptions(boolean sharedMatchingOptions) {
+        this.sharedMatchingOptions = sharedMatchingOptions;
+    }
+
+    public FragmentCache getFragmentCache() {
+        return fragmentCache;
+    }
+
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+    
+    public AssetBundle getAssets() {
+        return assets;
+    }
+
+    public void setAssets(AssetBundle assets) {
+        this.assets = assets;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("The page size cannot be negative: " + pageSize);
+        }
+        this.pageSize = pageSize;
+    }
+
+    public ForkJoinPool getRenderPool() {
+        return renderPool;
+    }
+
+    public void setRenderPool(ForkJoinPool renderPool) {
+        this.renderPool = renderPool;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 1) {
+            throw new IllegalArgumentException("The parallel threshold has to be positive: " + parallelThreshold);
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+    
+    /**
+     * @param questions Number of the questions to render.
+     * @return True if the questions should be rendered on the render pool.
+     * A pool of a single thread would only add the copying of the fragments,
+     * so it is not used.
+     */
+    public boolean isParallel(int questions) {
+        return renderPool != null && renderPool.getParallelism() > 1 && questions >= parallelThreshold;
+    }
+    
+    /**
+     * @return Hash of the options that change the generated page.
+     */
+    public long contentHash() {
+        return new ContentHash().add(sharedMatchingOptions).add(assets != null ? assets.contentHash() : 0L)
+                .add(pageSize).get();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderOptions{" + "sharedMatchingOptions=" + sharedMatchingOptions + ", fragmentCache=" + fragmentCache + ", assets=" + assets + ", pageSize=" + pageSize 
+                + ", renderPool=" + renderPool + ", parallelThreshold=" + parallelThreshold + '}';
+    }
+}
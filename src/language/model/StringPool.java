@@ -0,0 +1,47 @@
+package language.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pool of the texts of a question bank, so that a text repeated in many
+ * questions (e.g. "True", "None of the above") is kept in the model only
+ * once. Unlike String.intern() the pool is scoped: it is given to a builder
+ * or an importer and its strings are released together with it. The texts
+ * of the model are compared by equals(), so the pooled instances change
+ * nothing but the memory.
+ * @author Milan
+ */
+public class StringPool {
+
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the pooled instance of the text, the text itself if it is new.
+     * @param text Text to pool, null is returned as it is.
+     * @return Pooled text equal to the given one.
+     */
+    public String intern(String text) {
+        if (text == null) {
+            return null;
+        }
+        String pooled = strings.get(text);
+        if (pooled == null) {
+            pooled = strings.putIfAbsent(text, text);
+            if (pooled == null) {
+                return text;
+            }
+        }
+        return pooled;
+    }
+
+    /**
+     * @return Number of the distinct texts in the pool.
+     */
+    public int size() {
+        return strings.size();
+    }
+
+    public void clear() {
+        strings.clear();
+    }
+}
@@ -1,10 +1,22 @@
 package language.model;
 
+import java.util.AbstractList;
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import language.builder.ErrorHandlingUtils;
 import language.builder.ParsingException;
+import language.grading.AnswerKey;
+import language.grading.GradingResult;
+import language.grading.Submission;
 
 /**
  * Models the whole test.
@@ -18,34 +30,86 @@ public class Test {
     
     private int minPoints;
     
-    private List<AbstractMap.SimpleEntry<String, Question>> questions = new LinkedList<>();
+    private List<AbstractMap.SimpleEntry<String, Question>> questions;
+    
+    /**
+     * Immutable state of a frozen test (see freeze()), null while the test can
+     * be modified. It is held in a final field, so a frozen test is safely 
+     * published to other threads without synchronization.
+     */
+    private final Frozen frozen;
+    
+    /**
+     * Answer key compiled on the first grading.
+     */
+    private volatile AnswerKey answerKey;
 
     public Test(String title, int minPoints) {
         this.title = title;
         this.minPoints = minPoints;
+        this.questions = new LinkedList<>();
+        this.frozen = null;
+    }
+    
+    private Test(Frozen frozen) {
+        this.frozen = frozen;
+    }
+    
+    /**
+     * Produces the immutable form of the test, to be called after the test was
+     * validated. It holds frozen copies of the questions (see 
+     * Question.frozenCopy()), so this test and its questions stay modifiable.
+     * The total points and the content hash are computed once. The frozen 
+     * test can be shared by threads without synchronization, any attempt to
+     * modify it throws IllegalStateException.
+     * @return The frozen test (this test if it is already frozen).
+     */
+    public Test freeze() {
+        if (frozen != null) {
+            return this;
+        }
+        return new Test(new Frozen(title, minPoints, questions));
+    }
+    
+    public boolean isFrozen() {
+        return frozen != null;
+    }
+    
+    private void checkNotFrozen() {
+        if (frozen != null) {
+            throw new IllegalStateException("The test '" + frozen.title + "' is frozen, it cannot be modified.");
+        }
     }
 
     public String getTitle() {
-        return title;
+        return frozen != null ? frozen.title : title;
     }
 
     public void setTitle(String title) {
+        checkNotFrozen();
         this.title = title;
     }
 
     public int getMinPoints() {
-        return minPoints;
+        return frozen != null ? frozen.minPoints : minPoints;
     }
 
     public void setMinPoints(int minPoints) {
+        checkNotFrozen();
         this.minPoints = minPoints;
+        this.answerKey = null;
     }
 
+    /**
+     * @return Questions of the test with their identifiers, read-only if the
+     * test is frozen.
+     */
     public List<AbstractMap.SimpleEntry<String, Question>> getQuestions() {
-        return questions;
+        return frozen != null ? frozen.entries : questions;
     }
     
     public Question getLastQuestion() {
+        List<AbstractMap.SimpleEntry<String, Question>> questions = getQuestions();
         if (questions.isEmpty()) {
             throw new RuntimeException("You tried to add answer/pair before you added a question. First define a question, then add answers/pairs!");
         } else {
@@ -54,280 +118,210 @@ public class Test {
     }
 
     public void setQuestions(List<AbstractMap.SimpleEntry<String, Question>> questions) {
+        checkNotFrozen();
         this.questions = questions;
+        this.answerKey = null;
     }
     
     public void addQuestion(Question question) {
+        checkNotFrozen();
         AbstractMap.SimpleEntry<String, Question> entry 
                 = new AbstractMap.SimpleEntry<>("question" + (questions.size() + 1), question);
         this.questions.add(entry);
+        this.answerKey = null;
     }
     
     public int getTotalPoints() {
-        return questions.stream().map((q) -> q.getValue().getPoints()).reduce(0, (a, b) -> a + b);
+        if (frozen != null) {
+            return frozen.totalPoints;
+        }
+        return totalPoints(questions);
+    }
+    
+    private static int totalPoints(List<AbstractMap.SimpleEntry<String, Question>> questions) {
+        int total = 0;
+        for (AbstractMap.SimpleEntry<String, Question> q : questions) {
+            total += q.getValue().getPoints();
+        }
+        return total;
     }
     
     public int getPassingMinimum() {
-        return this.minPoints;
+        return getMinPoints();
+    }
+
+    /**
+     * Returns the answer key of the test, it is compiled on the first call.
+     * Changes of the test itself drop the key, but if questions or their 
+     * answers are modified later, the key has to be dropped by calling 
+     * setQuestions(getQuestions()).
+     * @return Compiled answer key.
+     */
+    public AnswerKey getAnswerKey() {
+        AnswerKey key = answerKey;
+        if (key == null) {
+            key = new AnswerKey(this);
+            answerKey = key;
+        }
+        return key;
+    }
+    
+    /**
+     * Grades the submission using the same rules as the generated page.
+     * @param submission Answers of a student.
+     * @return Points for each question, total points and the pass/fail result
+     * against the passing minimum.
+     */
+    public GradingResult grade(Submission submission) {
+        return getAnswerKey().grade(submission);
+    }
+    
+    /**
+     * Computes a hash of the whole content of the test, including all its
+     * questions and the version of the page template. The same definition
+     * always has the same hash, so it identifies the generated page.
+     * @return Content hash of the test.
+     */
+    public long contentHash() {
+        if (frozen != null) {
+            return frozen.contentHash;
+        }
+        return contentHash(new long[questions.size()]);
+    }
+    
+    /**
+     * Computes the content hash and the hashes of the questions, which are
+     * stored into the array.
+     * @param questionHashes Array for the hashes of the questions.
+     * @return Content hash of the test.
+     */
+    long contentHash(long[] questionHashes) {
+        if (frozen != null) {
+            System.arraycopy(frozen.questionHashes, 0, questionHashes, 0, questionHashes.length);
+            return frozen.contentHash;
+        }
+        return contentHash(title, minPoints, questions, questionHashes);
+    }
+    
+    private static long contentHash(String title, int minPoints, List<AbstractMap.SimpleEntry<String, Question>> questions, 
+            long[] questionHashes) {
+        ContentHash hash = new ContentHash().add(PageRenderer.PAGE_VERSION).add(title).add(minPoints).add(questions.size());
+        int index = 0;
+        for (AbstractMap.SimpleEntry<String, Question> q : questions) {
+            questionHashes[index] = q.getValue().contentHash();
+            hash.add(q.getKey()).add(questionHashes[index]);
+            index++;
+        }
+        return hash.get();
     }
 
     @Override
     public String toString() {
-        return "Test{" + "title=" + title + ", minPoints=" + minPoints + ", questions=" + questions + '}';
+        return "Test{" + "title=" + getTitle() + ", minPoints=" + getMinPoints() + ", questions=" + getQuestions() 
+                + ", frozen=" + isFrozen() + '}';
     }
     
+    /**
+     * Renders the page of the test with the default options (see
+     * PageRenderer).
+     * @return The page.
+     */
     public String toHTML() {
-        String totalling = questions.stream().map((q) -> {            
-            return "                    total += " + q.getValue().toJS(q.getKey()) + ";\n";
-        }).reduce("", (a, b) -> a + b);
-        
-        String questionsHTML = questions.stream().map((q) -> q.getValue().toHTML(q.getKey())).reduce("", (a, b) -> a + "\n" + b);
-        
-        String retVal = "<!DOCTYPE html>\n"
-+ "<html lang = 'en'>\n\n"
-+ "<head>\n"
-+ "    <title>" + title + "</title>\n\n"
-+ "    <meta charset = 'utf-8'>\n"
-+ "    <meta http-equiv = 'X-UA-Compatible' content = 'IE = edge'>\n"
-+ "    <meta name = 'viewport' content = 'width = device-width, initial-scale = 1'>\n\n\n"
-+ "    <!-- Bootstrap Core CSS -->\n"
-+ "    <link rel='stylesheet' href='css/bootstrap.min.css' type='text/css'>\n\n"
-+ "    <!-- Custom Fonts -->\n"
-+ "    <link href='http://fonts.googleapis.com/css?family=Open+Sans:300italic,400italic,600italic,700italic,800italic,400,300,600,700,800' rel='stylesheet' type='text/css'>\n"
-+ "    <link href='http://fonts.googleapis.com/css?family=Merriweather:400,300,300italic,400italic,700,700italic,900,900italic' rel='stylesheet' type='text/css'>\n"
-+ "    <link rel='stylesheet' href='font-awesome/css/font-awesome.min.css' type='text/css'>\n\n"
-+ "    <!-- Plugin CSS -->\n"
-+ "    <link rel='stylesheet' href='css/animate.min.css' type='text/css'>\n\n"
-+ "    <!-- Custom CSS -->\n"
-+ "    <link rel='stylesheet' href='css/creative.css' type='text/css'>\n\n"
-+ "    <!-- HTML5 shim and Respond.js for IE8 support of HTML5 elements and media queries -->\n"
-+ "    <!-- WARNING: Respond.js doesn't work if you view the page via file:// -->\n\n"
-+ "    <!--[if lt IE 9]>\n"
-+ "    <![endif]-->\n"
-+ "    <!-- jQuery -->\n"
-+ "    <script src='js/jquery.js'></script>\n\n"
-+ "    <!-- Bootstrap Core JavaScript -->\n"
-+ "    <script src='js/bootstrap.min.js'></script>\n\n"
-+ "    <!-- Plugin JavaScript -->\n"
-+ "    <script src='js/jquery.easing.min.js'></script>\n"
-+ "    <script src='js/jquery.fittext.js'></script>\n"
-+ "    <script src='js/wow.min.js'></script>\n\n"
-+ "    <script src='js/bootbox.min.js'></script>\n"
-+ "    <!-- Custom Theme JavaScript -->\n"
-+ "    <script src='js/creative.js'></script>\n\n"
-+ "    <script>\n"
-+ "        function test() {\n"
-+ "            bootbox.confirm('Are you sure you want to end your test?', function(result) {\n"
-+ "                if (result) {\n"
-+ "                    window.scrollTo(0, 0);\n"
-+ "                    $('#submitBtn').hide();\n"
-+ "                    full = " + getTotalPoints()+ ";\n"
-+ "                    limit = " + getPassingMinimum() + ";\n"
-+ "                    total = 0;\n"
-+ totalling
-+ "\n"
-+ "                    $('input').each(function (index, value) {\n"
-+ "                        $(value).attr('disabled', true);\n"
-+ "                    });\n"
-+ "                    $('select').each(function (index, value) {\n"
-+ "                        $(value).attr('disabled', true);\n"
-+ "                    });\n\n"
-+ "                    $('#information-info').hide();\n"
-+ "                    if (total >= limit) {\n"
-+ "                        $('#success-points').text(total + '/' + full);\n"
-+ "                        $('#success-info').fadeIn();\n"
-+ "                    } else {\n"
-+ "                        $('#failure-points').text(total + '/' + full);\n"
-+ "                        $('#failure-info').fadeIn();\n"
-+ "                    }\n"
-+ "                }\n"
-+ "            });\n"
-+ "        }\n\n"
-+ "        function testMultipleChoice(id) {\n"
-+ "            selected = $(id);\n"
-+ "            possiblePoints = parseFloat($(selected).attr('points'));\n\n"
-+ "            allCorrect = selectedCorrect = 0;\n"
-+ "            selectedIncorrect = false;\n\n"
-+ "            $('input', selected).each(function (index, value) {\n"
-+ "                toBeSelected = $.parseJSON($(value).attr('correct'));\n"
-+ "                if (toBeSelected) {\n" +
-"                    $(value).parent().parent().addClass('has-success');\n" +
-"                } else {\n" +
-"                    $(value).parent().parent().addClass('has-error');\n" +
-"                }"
-+ "                checked = $(value).is(':checked');\n"
-+ "                if (toBeSelected) {\n"
-+ "                    allCorrect += 1; // increment all\n"
-+ "                    if (checked) {\n"
-+ "                        selectedCorrect+= 1; // increment points\n"
-+ "                    }\n"
-+ "                } else {\n"
-+ "                    if (checked) {\n"
-+ "                        selectedIncorrect = true;\n"
-+ "                    }\n"
-+ "                }\n"
-+ "            });\n\n"
-+ "            points = 0;\n"
-+ "            if (!selectedIncorrect) {\n"
-+ "                points = (selectedCorrect * possiblePoints) / allCorrect;\n"
-+ "                points = (Math.round(points * 100) / 100);\n"
-+ "            }\n"
-+ "            $('.points', selected).text(points + '/' + possiblePoints);\n"
-+ "            return points;\n"
-+ "        }\n\n"
-+ "        function testSingleChoice(id) {\n"
-+ "            selected = $(id);\n" +
-"            possiblePoints = parseFloat($(selected).attr('points'));\n" +
-"\n" +
-"            selectedCorrect = false;\n" +
-"\n" +
-"            $('input', selected).each(function (index, value) {\n" +
-"                correct = $.parseJSON($(value).attr('correct'));\n" +
-"                if (correct) {\n" +
-"                    $(value).parent().parent().addClass('has-success');\n" +
-"                } else {\n" +
-"                    $(value).parent().parent().addClass('has-error');\n" +
-"                }\n" +
-"                if ($(value).is(':checked')) {\n" +
-"                    if (correct) {\n" +
-"                        selectedCorrect = true;\n" +
-"                    } else {\n" +
-"                        selectedCorrect = false;\n" +
-"                    }\n" +
-"                }\n" +
-"            });" +
-"\n" +
-"            points = selectedCorrect ? possiblePoints : 0;\n" +
-"            points = (Math.round(points * 100) / 100);\n" +
-"\n" +
-"            $('.points', selected).text(points + '/' + possiblePoints);\n" +
-"\n" +
-"            return points;\n" +
-"        }\n" +
-"\n" +
-"        function testFreeAnswer(id) {\n" +
-"            selected = $(id);\n" +
-"            possiblePoints = parseFloat($(selected).attr('points'));\n" +
-"\n" +
-"            correctAnswer = $('input', selected).attr('correctAnswer');\n" +
-"            answer = $('input', selected).val();\n" +
-"            caseSensitive = $.parseJSON($('input', selected).attr('caseSensitive'));\n" +
-"\n" +
-"            if (!caseSensitive) {\n" +
-"                answer = answer.toLocaleUpperCase();\n" +
-"                correctAnswer = correctAnswer.toLocaleUpperCase();\n" +
-"            }\n" +
-"\n" +
-"            $('input', selected).parent().addClass((correctAnswer == answer) ? 'has-success' : 'has-error');\n" +
-"\n" +
-"            points = (correctAnswer == answer) ? possiblePoints : 0;\n" +
-"            points = (Math.round(points * 100) / 100);\n" +
-"            $('.points', selected).text(points + '/' + possiblePoints);\n" +
-"\n" +
-"            return points;\n" +
-"        }\n" +
-"\n" +
-"        function testPairingAnswer(id) {\n" +
-"            selected = $(id);\n" +
-"            possiblePoints = parseFloat($(selected).attr('points'));\n" +
-"\n" +
-"            allQuestions = correctMatches= 0;\n" +
-"\n" +
-"            $('select', selected).each(function (index, value) {\n" +
-"                allQuestions += 1;\n" +
-"                selectedValue = $(value).val();\n" +
-"                correctValue = $(value).attr('correct');\n" +
-"                if (selectedValue == correctValue) {\n" +
-"                    correctMatches += 1;\n" +
-"                    $(value).parent().addClass('has-success');\n" +
-"                } else {\n" +
-"                    $(value).parent().addClass('has-error');\n" +
-"                }\n" +
-"            });\n" +
-"\n" +
-"            points = (correctMatches * possiblePoints) / allQuestions;\n" +
-"            points = (Math.round(points * 100) / 100);\n" +
-"            $('.points', selected).text(points + '/' + possiblePoints);\n" +
-"\n" +
-"            return points;\n" +
-"        }\n" +
-"    </script>\n" +
-"\n" +
-"    <style>\n" +
-"        .slimFont {\n" +
-"            min-height: 20px;\n" +
-"            padding-left: 20px;\n" +
-"            margin-bottom: 0;\n" +
-"            font-weight: 400;\n" +
-"            cursor: pointer;\n" +
-"        }\n" +
-"        .questionHeader {\n" +
-"            padding: 10px;\n" +
-"            margin-bottom: 5px;\n" +
-"            border: 1px solid transparent;\n" +
-"            border-radius: 4px;\n" +
-"\n" +
-"            background-color: #e0ebf0;\n" +
-"            border-color: #c6cfe9;\n" +
-"        }\n" +
-"    </style>\n" +
-"</head>\n" +
-"\n" +
-"<body>\n" +
-"<div class = 'container'>\n" +
-"<h1 class='text-center'>" + title + "</h1>\n" +
-"\n" +
-"    <div class='alert alert-success collapse' id='success-info'>\n" +
-"        <strong>Congratulations!</strong> You have passed with <strong id='success-points'></strong> points.\n" +
-"    </div>\n" +
-"\n" +
-"    <div class='alert alert-danger collapse' id='failure-info'>\n" +
-"        <strong>Failure!</strong> You have failed with <strong id='failure-points'></strong> points (passing limit was at least " + getPassingMinimum() + " points).\n" +
-"    </div>\n" +
-"\n" +
-"    <div class='alert alert-warning' id='information-info'>\n" +
-"        <strong>Be careful!</strong> You will need <strong>" + getPassingMinimum() + "</strong> of total " + getTotalPoints() + " points to pass the test.\n" +
-"    </div>\n" +
-"\n" +
-     questionsHTML +
-"\n\n" +
-"    <div style='margin:25px 0 25px 0;'>\n" +
-"        <form class='form-horizontal' role='form' points='10'>\n" +
-"            <div class='form-group'>\n" +
-"                <div class='col-sm-offset-5 col-sm-1'>\n" +
-"                    <button id='submitBtn' type='button' onclick='test()' class='btn btn-default'>Submit</button>\n" +
-"                </div>\n" +
-"            </div>\n" +
-"        </form>\n" +
-"    </div>\n" +
-"</div>\n" +
-"</body>\n" +
-"</html>";
-    
-        return retVal;
+        return new PageRenderer(this).toHTML();
     }
     
     public boolean validate(ErrorHandlingUtils errorHandling) throws ParsingException {
+        return validate(errorHandling, null);
+    }
+    
+    /**
+     * Validates the test. If a pool is given, the questions are validated
+     * in parallel on it, their errors are buffered and reported in the same
+     * order as in the sequential validation.
+     * @param errorHandling Error handling to report the errors to.
+     * @param pool Pool for the parallel validation, null to validate sequentially.
+     * @return True if the test is correct.
+     * @throws ParsingException 
+     */
+    public boolean validate(ErrorHandlingUtils errorHandling, ForkJoinPool pool) throws ParsingException {
+        return validate(errorHandling, pool, null);
+    }
+    
+    /**
+     * Validates the test, the questions found correct in the previous 
+     * validation with the same cache are not validated again.
+     * @param errorHandling Error handling to report the errors to.
+     * @param pool Pool for the parallel validation, null to validate sequentially.
+     * @param cache Questions known to be correct, null to validate all of them.
+     * @return True if the test is correct.
+     * @throws ParsingException 
+     */
+    public boolean validate(ErrorHandlingUtils errorHandling, ForkJoinPool pool, ValidationCache cache) throws ParsingException {
         boolean correct = true;
-        if (minPoints > getTotalPoints() || minPoints < 0) {
+        String title = getTitle();
+        int minPoints = getMinPoints();
+        List<AbstractMap.SimpleEntry<String, Question>> questions = getQuestions();
+        int totalPoints = getTotalPoints();
+        if (minPoints > totalPoints || minPoints < 0) {
             errorHandling.reportError(this, 
-                    new ParsingException("Minimal points for the success in the test '" + title + "' has to be in range 0-" + getTotalPoints() 
+                    new ParsingException("Minimal points for the success in the test '" + title + "' has to be in range 0-" + totalPoints 
                             + " (total possible points for the test), you have stated " + minPoints + "! Fix it please!"));
             correct = false;
         }
         
-        List<String> usedQuestions = new LinkedList<>();
+        long[] hashes = null;
+        boolean[] known = new boolean[questions.size()];
+        if (cache != null) {
+            hashes = new long[questions.size()];
+            int index = 0;
+            for (AbstractMap.SimpleEntry<String, Question> quest : questions) {
+                hashes[index] = quest.getValue().contentHash();
+                known[index] = cache.isCorrect(hashes[index]);
+                index++;
+            }
+        }
+        
+        List<ErrorHandlingUtils> buffers = null;
+        List<Future<Boolean>> results = null;
+        if (pool != null) {
+            buffers = new ArrayList<>(questions.size());
+            List<Callable<Boolean>> tasks = new ArrayList<>(questions.size());
+            int index = 0;
+            for (AbstractMap.SimpleEntry<String, Question> quest : questions) {
+                Question q = quest.getValue();
+                ErrorHandlingUtils buffer = errorHandling.buffer();
+                buffers.add(buffer);
+                tasks.add(known[index++] ? () -> true : () -> q.validate(buffer));
+            }
+            results = pool.invokeAll(tasks);
+        }
+        
+        Set<Long> correctQuestions = cache != null ? new HashSet<>() : null;
+        
+        Set<String> usedQuestions = new HashSet<>();
+        int index = 0;
         for (AbstractMap.SimpleEntry<String, Question> quest : questions) {
             Question q = quest.getValue();
-            if (usedQuestions.contains(q.getText())) {
+            if (!usedQuestions.add(q.getText())) {
                 errorHandling.reportError(q, 
                         new ParsingException("You have defined two question with text: '" + q.getText() + "', fix it (you can have only one question with the same text)!"));
                 correct = false;
+            }
+            boolean tempCorrectQuestion;
+            if (pool != null) {
+                buffers.get(index).replay();
+                tempCorrectQuestion = getResult(results.get(index));
             } else {
-                usedQuestions.add(q.getText());
+                tempCorrectQuestion = known[index] || q.validate(errorHandling);
+            }
+            if (tempCorrectQuestion && correctQuestions != null) {
+                correctQuestions.add(hashes[index]);
             }
-            boolean tempCorrectQuestion = q.validate(errorHandling);
             correct = correct && tempCorrectQuestion;
+            index++;
+        }
+        if (cache != null) {
+            cache.update(correctQuestions);
         }
         
         if (title.trim().isEmpty()) {
@@ -341,4 +335,104 @@ public class Test {
         }
         return correct;
     }
+    
+    private static boolean getResult(Future<Boolean> result) throws ParsingException {
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ParsingException("Validation of the test was interrupted.", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ParsingException) {
+                throw (ParsingException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new ParsingException("Validation of a question failed.", cause);
+        }
+    }
+    
+    /**
+     * Immutable state of a frozen test. The questions are kept in arrays,
+     * getQuestions() reads them through a read-only list.
+     */
+    private static final class Frozen {
+        
+        private final String title;
+        
+        private final int minPoints;
+        
+        private final String[] ids;
+        
+        private final Question[] questions;
+        
+        private final List<AbstractMap.SimpleEntry<String, Question>> entries;
+        
+        private final int totalPoints;
+        
+        private final long[] questionHashes;
+        
+        private final long contentHash;
+
+        private Frozen(String title, int minPoints, List<AbstractMap.SimpleEntry<String, Question>> questions) {
+            this.title = title;
+            this.minPoints = minPoints;
+            this.ids = new String[questions.size()];
+            this.questions = new Question[questions.size()];
+            int index = 0;
+            for (AbstractMap.SimpleEntry<String, Question> entry : questions) {
+                ids[index] = entry.getKey();
+                this.questions[index] = entry.getValue().frozenCopy();
+                index++;
+            }
+            this.entries = new FrozenQuestions(this);
+            this.totalPoints = totalPoints(entries);
+            this.questionHashes = new long[ids.length];
+            this.contentHash = contentHash(title, minPoints, entries, questionHashes);
+        }
+    }
+    
+    /**
+     * Read-only list of the questions of a frozen test, the entries are
+     * created when they are read.
+     */
+    private static final class FrozenQuestions extends AbstractList<AbstractMap.SimpleEntry<String, Question>> 
+            implements RandomAccess {
+        
+        private final Frozen frozen;
+
+        private FrozenQuestions(Frozen frozen) {
+            this.frozen = frozen;
+        }
+
+        @Override
+        public AbstractMap.SimpleEntry<String, Question> get(int index) {
+            return new FrozenEntry(frozen.ids[index], frozen.questions[index]);
+        }
+
+        @Override
+        public int size() {
+            return frozen.ids.length;
+        }
+    }
+    
+    /**
+     * Entry of a frozen test, its question cannot be replaced.
+     */
+    private static final class FrozenEntry extends AbstractMap.SimpleEntry<String, Question> {
+
+        private static final long serialVersionUID = 1L;
+
+        private FrozenEntry(String id, Question question) {
+            super(id, question);
+        }
+
+        @Override
+        public Question setValue(Question value) {
+            throw new UnsupportedOperationException("The test is frozen, its questions cannot be replaced.");
+        }
+    }
 }
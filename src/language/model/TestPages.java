@@ -0,0 +1,234 @@
+package language.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.List;
+
+/**
+ * Splits the page of a test into pages (see RenderOptions.setPageSize()).
+ * The first page is rendered by PageRenderer with the answer key of the whole
+ * test and the pager, each other page is a script next to it that passes the
+ * questions of the page to the first page when the student opens it.
+ * @author Milan
+ */
+public class TestPages {
+    
+    /**
+     * Navigation between the pages of a test split into pages, it loads the
+     * next pages on demand (see renderPage(int, Appendable)).
+     */
+    private static final HtmlChunk PAGER_START = new HtmlChunk("\n"
++ "\n"
++ "    <div class='text-center' id='pager' style='margin:25px 0 25px 0;'>\n"
++ "        <button type='button' class='btn btn-default' id='previous-page' onclick='showPage(page - 1)'>&laquo; Previous</button>\n"
++ "        <strong id='page-number' style='margin:0 15px 0 15px;'></strong>\n"
++ "        <button type='button' class='btn btn-default' id='next-page' onclick='showPage(page + 1)'>Next &raquo;</button>\n"
++ "    </div>\n"
++ "\n"
++ "    <script>\n"
++ "        var page = 1;\n"
++ "        var pages = ");
+    
+    private static final HtmlChunk PAGER_END = new HtmlChunk(";\n"
++ "        // the pages after the first one are scripts next to the page: name.page2.js, name.page3.js, ...\n"
++ "        var base = location.pathname.split('/').pop().replace(/\\.html$/, '');\n"
++ "        var waiting = {};\n"
++ "\n"
++ "        function loadPage(n, done) {\n"
++ "            var element = document.getElementById('page' + n);\n"
++ "            if (element.getAttribute('data-loaded')) {\n"
++ "                done();\n"
++ "                return;\n"
++ "            }\n"
++ "            if (waiting[n]) {\n"
++ "                waiting[n].push(done);\n"
++ "                return;\n"
++ "            }\n"
++ "            waiting[n] = [done];\n"
++ "            var script = document.createElement('script');\n"
++ "            script.src = base + '.page' + n + '.js';\n"
++ "            script.onerror = function () {\n"
++ "                delete waiting[n];\n"
++ "                element.innerHTML = \"<div class='alert alert-danger'>The questions of the page \" + n + \" could not be loaded.</div>\";\n"
++ "                element.style.display = '';\n"
++ "            };\n"
++ "            document.getElementsByTagName('head')[0].appendChild(script);\n"
++ "        }\n"
++ "\n"
++ "        // called by the script of the page, the answers of the other pages stay in their hidden elements\n"
++ "        function pageLoaded(n, html) {\n"
++ "            var element = document.getElementById('page' + n);\n"
++ "            element.innerHTML = html;\n"
++ "            element.setAttribute('data-loaded', 'true');\n"
++ "            var callbacks = waiting[n] || [];\n"
++ "            delete waiting[n];\n"
++ "            for (var i = 0; i < callbacks.length; i++) {\n"
++ "                callbacks[i]();\n"
++ "            }\n"
++ "        }\n"
++ "\n"
++ "        function showPage(n) {\n"
++ "            if (n < 1 || n > pages) {\n"
++ "                return;\n"
++ "            }\n"
++ "            loadPage(n, function () {\n"
++ "                document.getElementById('page' + page).style.display = 'none';\n"
++ "                document.getElementById('page' + n).style.display = '';\n"
++ "                page = n;\n"
++ "                updatePager();\n"
++ "                window.scrollTo(0, 0);\n"
++ "                if (n < pages) {\n"
++ "                    loadPage(n + 1, function () {});\n"
++ "                }\n"
++ "            });\n"
++ "        }\n"
++ "\n"
++ "        function updatePager() {\n"
++ "            document.getElementById('page-number').textContent = page + '/' + pages;\n"
++ "            document.getElementById('previous-page').disabled = page == 1;\n"
++ "            document.getElementById('next-page').disabled = page == pages;\n"
++ "        }\n"
++ "\n"
++ "        // the whole test is scored, so all the pages are loaded and shown first\n"
++ "        loadPages = function (done) {\n"
++ "            var remaining = pages;\n"
++ "            for (var n = 1; n <= pages; n++) {\n"
++ "                loadPage(n, function () {\n"
++ "                    if (--remaining == 0) {\n"
++ "                        for (var i = 1; i <= pages; i++) {\n"
++ "                            document.getElementById('page' + i).style.display = '';\n"
++ "                        }\n"
++ "                        document.getElementById('pager').style.display = 'none';\n"
++ "                        done();\n"
++ "                    }\n"
++ "                });\n"
++ "            }\n"
++ "        };\n"
++ "\n"
++ "        updatePager();\n"
++ "        loadPage(2, function () {});\n"
++ "    </script>\n");
+    
+    private final Test test;
+    
+    private final RenderOptions options;
+    
+    /**
+     * @param test Test to split.
+     * @param options Options of the page, null for the default ones.
+     */
+    public TestPages(Test test, RenderOptions options) {
+        this.test = test;
+        this.options = options != null ? options : new RenderOptions();
+    }
+    
+    /**
+     * @return Number of the pages the test is split into, 1 if all the
+     * questions are in the first page.
+     */
+    public int getPageCount() {
+        int pageSize = options.getPageSize();
+        int size = test.getQuestions().size();
+        return pageSize > 0 && size > pageSize ? (size + pageSize - 1) / pageSize : 1;
+    }
+    
+    /**
+     * Writes the script of a page after the first one. The page loads the
+     * script when the student opens it, the script passes the questions of
+     * the page to pageLoaded(). The answer key is a part of the first page,
+     * so the scripts hold only the questions. The script starts with a
+     * comment holding the hash of the first page, so that PageWriter can
+     * check every page.
+     * @param page Number of the page, from 2 to getPageCount().
+     * @param out Output to append the script to.
+     * @throws IOException 
+     */
+    public void renderPage(int page, Appendable out) throws IOException {
+        renderPage(page, out, new PageRenderer(test, options).pageHash());
+    }
+    
+    /**
+     * @param hash Hash of the first page (see PageRenderer.pageHash()).
+     * @return Beginning of the scripts of the pages of the first page with
+     * the given hash.
+     */
+    static String pageStamp(String hash) {
+        return "// " + hash + "\n";
+    }
+    
+    void renderPage(int page, Appendable out, long hash) throws IOException {
+        int pageCount = getPageCount();
+        if (page < 2 || page > pageCount) {
+            throw new IndexOutOfBoundsException("The test has no page " + page + " to load, it has " + pageCount + " pages.");
+        }
+        List<AbstractMap.SimpleEntry<String, Question>> questions = test.getQuestions();
+        FragmentCache cache = options.getFragmentCache();
+        long optionsHash = options.contentHash();
+        int from = (page - 1) * options.getPageSize();
+        int to = Math.min(questions.size(), from + options.getPageSize());
+        long[] hashes = null;
+        if (cache != null) {
+            hashes = new long[to];
+            int index = from;
+            for (AbstractMap.SimpleEntry<String, Question> q : questions.subList(from, to)) {
+                hashes[index++] = new ContentHash().add(q.getValue().contentHash()).add(optionsHash).get();
+            }
+        }
+        String[] fragments = null;
+        if (options.isParallel(to - from)) {
+            fragments = new String[to - from];
+            PageRenderer.renderFragments(questions, hashes, null, from, fragments, options);
+        }
+        StringBuilder html = new StringBuilder();
+        int index = from;
+        for (AbstractMap.SimpleEntry<String, Question> q : questions.subList(from, to)) {
+            html.append("\n");
+            if (fragments != null) {
+                html.append(fragments[index - from]);
+            } else if (cache != null) {
+                html.append(cache.get(q.getKey(), q.getValue(), hashes[index], options).getHtml());
+            } else {
+                q.getValue().render(q.getKey(), html, options);
+            }
+            index++;
+        }
+        StringBuilder script = new StringBuilder(html.length() + html.length() / 8 + 64);
+        script.append(pageStamp(ContentHash.toHex(hash))).append("pageLoaded(").append(page).append(", ");
+        Escaper.appendJsString(script, html);
+        out.append(script).append(");\n");
+    }
+    
+    /**
+     * Writes the hidden elements of the pages after the first one and the
+     * navigation between the pages into the first page.
+     * @param out Output to append the pager to.
+     * @param pageCount Number of the pages.
+     * @throws IOException 
+     */
+    static void appendPager(Appendable out, int pageCount) throws IOException {
+        for (int page = 2; page <= pageCount; page++) {
+            out.append("    <div id='page").append(Integer.toString(page)).append("' style='display:none'></div>\n");
+        }
+        PAGER_START.appendTo(out);
+        out.append(Integer.toString(pageCount));
+        PAGER_END.appendTo(out);
+    }
+    
+    /**
+     * Returns the path of the script of a page after the first one, the first
+     * page loads the script from the same directory: test.html loads 
+     * test.page2.js, test.page3.js and so on.
+     * @param path Path (or the name) of the first page.
+     * @param page Number of the page.
+     * @return Path of the script of the page.
+     */
+    public static String getPagePath(String path, int page) {
+        String base = path.endsWith(".html") ? path.substring(0, path.length() - ".html".length()) : path;
+        return base + ".page" + page + ".js";
+    }
+    
+    static Path getPagePath(Path path, int page) {
+        return path.resolveSibling(getPagePath(path.getFileName().toString(), page));
+    }
+}
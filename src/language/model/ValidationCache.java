@@ -0,0 +1,39 @@
+package language.model;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Remembers the questions of a test that were found correct, so that when the
+ * edited test is validated again only the questions whose content changed
+ * are validated (see TestWatcher). The correctness of a question depends only
+ * on its content, the questions are identified by their content hashes. The
+ * checks of the whole test (e.g. duplicate questions) are always done.
+ * @author Milan
+ */
+public class ValidationCache {
+
+    private volatile Set<Long> correct = Collections.emptySet();
+
+    /**
+     * @param hash Content hash of a question.
+     * @return True if the question was correct in the last validation.
+     */
+    public boolean isCorrect(long hash) {
+        return correct.contains(hash);
+    }
+
+    /**
+     * Replaces the remembered questions by the correct questions of the last
+     * validation, so the cache does not grow with the edits.
+     * @param hashes Content hashes of the correct questions.
+     */
+    void update(Set<Long> hashes) {
+        this.correct = new HashSet<>(hashes);
+    }
+
+    public int size() {
+        return correct.size();
+    }
+}
@@ -0,0 +1,189 @@
+package language.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single pass lexer of the .test language. It reads the file through its own
+ * buffer and keeps only the token being read. Comments (// and /* *&#47;) and
+ * white space are skipped.
+ * @author Milan
+ */
+final class Lexer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader in;
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private int line = 1;
+
+    private int column = 1;
+
+    private final StringBuilder text = new StringBuilder();
+
+    Lexer(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next token.
+     * @return The token, END at the end of the file and ERROR for malformed
+     * input.
+     * @throws IOException
+     */
+    Token next() throws IOException {
+        int c = skipWhitespaceAndComments();
+        int startLine = line;
+        int startColumn = column - 1;
+        if (c < 0) {
+            return new Token(Token.Type.END, "", startLine, startColumn + 1);
+        }
+        switch (c) {
+            case '(':
+                return new Token(Token.Type.LEFT_PARENTHESIS, "(", startLine, startColumn);
+            case ')':
+                return new Token(Token.Type.RIGHT_PARENTHESIS, ")", startLine, startColumn);
+            case ',':
+                return new Token(Token.Type.COMMA, ",", startLine, startColumn);
+            case ';':
+                return new Token(Token.Type.SEMICOLON, ";", startLine, startColumn);
+            case '"':
+                return readString(startLine, startColumn);
+            default:
+        }
+        text.setLength(0);
+        if (c == '-' || isDigit(c)) {
+            text.append((char) c);
+            while (isDigit(peek())) {
+                text.append((char) read());
+            }
+            if (text.length() == 1 && c == '-') {
+                return new Token(Token.Type.ERROR, "Expected a number after '-'.", startLine, startColumn);
+            }
+            if (text.length() > 10 || Long.parseLong(text.toString()) != (int) Long.parseLong(text.toString())) {
+                return new Token(Token.Type.ERROR, "The number " + text + " is too large.", startLine, startColumn);
+            }
+            return new Token(Token.Type.NUMBER, text.toString(), startLine, startColumn);
+        }
+        if (Character.isJavaIdentifierStart(c)) {
+            text.append((char) c);
+            while (peek() >= 0 && Character.isJavaIdentifierPart(peek())) {
+                text.append((char) read());
+            }
+            return new Token(Token.Type.IDENTIFIER, text.toString(), startLine, startColumn);
+        }
+        return new Token(Token.Type.ERROR, "Unexpected character '" + (char) c + "'.", startLine, startColumn);
+    }
+
+    private Token readString(int startLine, int startColumn) throws IOException {
+        text.setLength(0);
+        while (true) {
+            int c = read();
+            if (c < 0 || c == '\n') {
+                return new Token(Token.Type.ERROR, "The text is not closed, add the closing quotation mark.", startLine, startColumn);
+            } else if (c == '"') {
+                return new Token(Token.Type.STRING, text.toString(), startLine, startColumn);
+            } else if (c == '\\') {
+                int escapeColumn = column - 1;
+                c = read();
+                switch (c) {
+                    case '"':
+                    case '\'':
+                    case '\\':
+                        text.append((char) c);
+                        break;
+                    case 'n':
+                        text.append('\n');
+                        break;
+                    case 't':
+                        text.append('\t');
+                        break;
+                    case 'r':
+                        text.append('\r');
+                        break;
+                    case 'u':
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(read(), 16);
+                            if (digit < 0) {
+                                return new Token(Token.Type.ERROR, "Malformed escape sequence \\u in the text.", line, escapeColumn);
+                            }
+                            code = code * 16 + digit;
+                        }
+                        text.append((char) code);
+                        break;
+                    default:
+                        return new Token(Token.Type.ERROR, "Unknown escape sequence in the text, use \\\" for a quotation mark and \\\\ for a backslash.",
+                                line, escapeColumn);
+                }
+            } else if (c != '\r') {
+                text.append((char) c);
+            }
+        }
+    }
+
+    private int skipWhitespaceAndComments() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == '/' && peek() == '/') {
+                while (c >= 0 && c != '\n') {
+                    c = read();
+                }
+            } else if (c == '/' && peek() == '*') {
+                read();
+                int previous = 0;
+                c = read();
+                while (c >= 0 && !(previous == '*' && c == '/')) {
+                    previous = c;
+                    c = read();
+                }
+            } else if (c < 0 || !Character.isWhitespace(c) && c != '\uFEFF') {
+                return c;
+            }
+        }
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Reads the next character and moves the position.
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        char c = buffer[position++];
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        limit = in.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
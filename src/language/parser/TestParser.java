@@ -0,0 +1,349 @@
+package language.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import language.builder.ParsingException;
+import language.io.TestImporter;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+
+/**
+ * Parser of .test files, the external form of the test definitions. It knows
+ * the same functions as the expression builders and accepts both of their
+ * styles, a sequence of calls as in TestBuilder:
+ * <pre>
+ * create_test("Biology test", 20);
+ * multiple_choice_question("Which of the following are herbivores?", 10);
+ * incorrect_answer("Lion");
+ * correct_answer("Sheep");
+ * open_answer_question("What does a cat say?", 20, "Meow");
+ * </pre>
+ * and nested calls as in NestedFunctionsTestBuilder:
+ * <pre>
+ * create_test("Biology test", 20,
+ *     pairing_question("Combine males and females:", 10,
+ *         pair("Lion", "Lioness"),
+ *         pair("Bull", "Cow")));
+ * </pre>
+ * The open answer question takes an optional fourth argument YES or NO for
+ * its case sensitivity. The semicolons are optional, comments are written as
+ * in Java.
+ *
+ * The file is lexed and parsed in a single pass straight into the model and
+ * each created object is registered with its line and column, so no stack
+ * traces are needed to report the errors. The files are imported like the
+ * other question banks (see TestImporter).
+ * @author Milan
+ */
+public class TestParser extends TestImporter {
+
+    private static final String CREATE_TEST = "create_test";
+
+    private static final String SINGLE_CHOICE_QUESTION = "single_choice_question";
+
+    private static final String MULTIPLE_CHOICE_QUESTION = "multiple_choice_question";
+
+    private static final String OPEN_ANSWER_QUESTION = "open_answer_question";
+
+    private static final String PAIRING_QUESTION = "pairing_question";
+
+    private static final String CORRECT_ANSWER = "correct_answer";
+
+    private static final String INCORRECT_ANSWER = "incorrect_answer";
+
+    private static final String PAIR = "pair";
+
+    @Override
+    protected void parse(Reader in, Test test, Consumer<Question> questions) throws IOException, ParsingException {
+        new Parser(new Lexer(in), test, questions).parse();
+    }
+
+    /**
+     * State of a single parse.
+     */
+    private class Parser {
+
+        private final Lexer lexer;
+
+        private final Test test;
+
+        private final Consumer<Question> questions;
+
+        private Token token;
+
+        /**
+         * Whether create_test was already called.
+         */
+        private boolean created;
+
+        /**
+         * Last question, it is passed on when the next one starts, so that the
+         * answers of the following calls can still be added to it.
+         */
+        private Question question;
+
+        /**
+         * Whether the last question call was wrong, the answers and pairs
+         * following it are skipped without further errors.
+         */
+        private boolean skipped;
+
+        /**
+         * Number of the enclosing wrong calls, the calls inside them are not
+         * performed.
+         */
+        private int ignored;
+
+        Parser(Lexer lexer, Test test, Consumer<Question> questions) {
+            this.lexer = lexer;
+            this.test = test;
+            this.questions = questions;
+        }
+
+        void parse() throws IOException, ParsingException {
+            advance();
+            while (token.getType() != Token.Type.END) {
+                Token name = expect(Token.Type.IDENTIFIER, "a function call");
+                call(name, false);
+                if (token.getType() == Token.Type.SEMICOLON) {
+                    advance();
+                }
+            }
+            flush();
+        }
+
+        /**
+         * Parses the arguments of a call and performs it. The values come
+         * first, the nested calls follow them.
+         * @param name Name of the function.
+         * @param nested True if the call is an argument of another call.
+         */
+        private void call(Token name, boolean nested) throws IOException, ParsingException {
+            expect(Token.Type.LEFT_PARENTHESIS, "'(' after the name of the function");
+            List<Token> values = new ArrayList<>(4);
+            boolean performed = false;
+            boolean valid = false;
+            if (token.getType() != Token.Type.RIGHT_PARENTHESIS) {
+                do {
+                    Token argument = token;
+                    advance();
+                    if (argument.getType() == Token.Type.IDENTIFIER && token.getType() == Token.Type.LEFT_PARENTHESIS) {
+                        if (!performed) {
+                            valid = perform(name, values, nested);
+                            performed = true;
+                        }
+                        if (valid) {
+                            call(argument, true);
+                        } else {
+                            // the nested calls of a wrong call are only checked for syntax
+                            ignored++;
+                            call(argument, true);
+                            ignored--;
+                        }
+                    } else if (isValue(argument)) {
+                        if (performed) {
+                            reportError(argument.getLine(), argument.getColumn(), "The value " + argument.describe()
+                                    + " has to come before the nested calls of '" + name.getText() + "'.");
+                        } else {
+                            values.add(argument);
+                        }
+                    } else {
+                        throw error(argument, "a value or a function call");
+                    }
+                } while (accept(Token.Type.COMMA));
+            }
+            expect(Token.Type.RIGHT_PARENTHESIS, "',' or ')'");
+            if (!performed) {
+                perform(name, values, nested);
+            }
+        }
+
+        /**
+         * Creates the model object of the call.
+         * @return True if the call was correct and its nested calls can be
+         * performed.
+         */
+        private boolean perform(Token name, List<Token> values, boolean nested) throws ParsingException {
+            if (ignored > 0) {
+                return false;
+            }
+            switch (name.getText()) {
+                case CREATE_TEST:
+                    if (created || nested) {
+                        reportError(name.getLine(), name.getColumn(), "The file can define only a single test, '"
+                                + CREATE_TEST + "' has to be called only once and not nested.");
+                        return false;
+                    }
+                    created = true;
+                    if (!checkArguments(name, values, "SN", "title, minimal points")) {
+                        return false;
+                    }
+                    register(test, name.getLine(), name.getColumn());
+                    test.setTitle(values.get(0).getText());
+                    test.setMinPoints(Integer.parseInt(values.get(1).getText()));
+                    return true;
+                case SINGLE_CHOICE_QUESTION:
+                case MULTIPLE_CHOICE_QUESTION:
+                case PAIRING_QUESTION:
+                    return startQuestion(name, values, "SN", "text, points");
+                case OPEN_ANSWER_QUESTION:
+                    return startQuestion(name, values, values.size() > 3 ? "SNSB" : "SNS", "text, points, correct answer[, YES or NO]");
+                case CORRECT_ANSWER:
+                case INCORRECT_ANSWER:
+                    if (!checkQuestion(name) || !checkArguments(name, values, "S", "text")) {
+                        return false;
+                    }
+                    question.addAnswer(register(new Answer(pooled(values.get(0).getText()), CORRECT_ANSWER.equals(name.getText())),
+                            name.getLine(), name.getColumn()));
+                    return true;
+                case PAIR:
+                    if (!checkQuestion(name) || !checkArguments(name, values, "SS", "first item, second item")) {
+                        return false;
+                    }
+                    question.addPair(register(new MatchingPair(pooled(values.get(0).getText()), pooled(values.get(1).getText())),
+                            name.getLine(), name.getColumn()));
+                    return true;
+                default:
+                    reportError(name.getLine(), name.getColumn(), "Unknown function '" + name.getText() + "', use " + CREATE_TEST + ", "
+                            + SINGLE_CHOICE_QUESTION + ", " + MULTIPLE_CHOICE_QUESTION + ", " + OPEN_ANSWER_QUESTION + ", "
+                            + PAIRING_QUESTION + ", " + CORRECT_ANSWER + ", " + INCORRECT_ANSWER + " or " + PAIR + ".");
+                    return false;
+            }
+        }
+
+        private boolean startQuestion(Token name, List<Token> values, String types, String parameters) throws ParsingException {
+            flush();
+            skipped = true;
+            if (!checkArguments(name, values, types, parameters)) {
+                return false;
+            }
+            String text = pooled(values.get(0).getText());
+            int points = Integer.parseInt(values.get(1).getText());
+            Question created;
+            switch (name.getText()) {
+                case SINGLE_CHOICE_QUESTION:
+                    created = new SingleOptionQuestion(text, points);
+                    break;
+                case MULTIPLE_CHOICE_QUESTION:
+                    created = new MultipleOptionsQuestion(text, points);
+                    break;
+                case PAIRING_QUESTION:
+                    created = new MatchingPairsQuestion(text, points);
+                    break;
+                default:
+                    OpenQuestion open = new OpenQuestion(text, points);
+                    open.setCaseSensitive(values.size() > 3 && isYes(values.get(3)));
+                    Token answer = values.get(2);
+                    open.addAnswer(register(new Answer(pooled(answer.getText()), true), answer.getLine(), answer.getColumn()));
+                    created = open;
+            }
+            question = register(created, name.getLine(), name.getColumn());
+            skipped = false;
+            return true;
+        }
+
+        private void flush() {
+            if (question != null) {
+                questions.accept(question);
+                question = null;
+            }
+        }
+
+        private boolean checkQuestion(Token name) throws ParsingException {
+            if (question == null) {
+                if (!skipped) {
+                    reportError(name.getLine(), name.getColumn(), "There is no question '" + name.getText()
+                            + "' belongs to, define the question first.");
+                }
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Checks the values of the call.
+         * @param types Expected types, S for text, N for number and B for YES
+         * or NO.
+         * @param parameters Names of the parameters for the error message.
+         * @return True if the values are correct.
+         */
+        private boolean checkArguments(Token name, List<Token> values, String types, String parameters) throws ParsingException {
+            boolean correct = values.size() == types.length();
+            for (int i = 0; correct && i < types.length(); i++) {
+                Token value = values.get(i);
+                switch (types.charAt(i)) {
+                    case 'S':
+                        correct = value.getType() == Token.Type.STRING;
+                        break;
+                    case 'N':
+                        correct = value.getType() == Token.Type.NUMBER;
+                        break;
+                    default:
+                        correct = value.getType() == Token.Type.IDENTIFIER;
+                }
+            }
+            if (!correct) {
+                reportError(name.getLine(), name.getColumn(), "Function '" + name.getText() + "' has to be called with ("
+                        + parameters + "), texts in quotation marks and whole numbers.");
+            }
+            return correct;
+        }
+
+        private boolean isValue(Token argument) {
+            switch (argument.getType()) {
+                case STRING:
+                case NUMBER:
+                    return true;
+                case IDENTIFIER:
+                    return isYes(argument) || isNo(argument);
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isYes(Token token) {
+            return "YES".equals(token.getText()) || "true".equals(token.getText());
+        }
+
+        private boolean isNo(Token token) {
+            return "NO".equals(token.getText()) || "false".equals(token.getText());
+        }
+
+        private void advance() throws IOException, ParsingException {
+            token = lexer.next();
+            if (token.getType() == Token.Type.ERROR) {
+                throw syntaxError(token.getLine(), token.getColumn(), token.getText());
+            }
+        }
+
+        private boolean accept(Token.Type type) throws IOException, ParsingException {
+            if (token.getType() == type) {
+                advance();
+                return true;
+            }
+            return false;
+        }
+
+        private Token expect(Token.Type type, String expected) throws IOException, ParsingException {
+            Token current = token;
+            if (current.getType() != type) {
+                throw error(current, expected);
+            }
+            advance();
+            return current;
+        }
+
+        private ParsingException error(Token found, String expected) {
+            return syntaxError(found.getLine(), found.getColumn(), "Expected " + expected + " but found " + found.describe() + ".");
+        }
+    }
+}
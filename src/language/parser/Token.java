@@ -0,0 +1,76 @@
+package language.parser;
+
+/**
+ * Token of the .test language with its position in the file.
+ * @author Milan
+ */
+final class Token {
+
+    /**
+     * Kinds of the tokens.
+     */
+    enum Type {
+        IDENTIFIER, STRING, NUMBER, LEFT_PARENTHESIS, RIGHT_PARENTHESIS, COMMA, SEMICOLON, END,
+        /**
+         * Malformed input, the text is the description of the problem.
+         */
+        ERROR
+    }
+
+    private final Type type;
+
+    /**
+     * Text of the token, the value without quotes and escapes for strings.
+     */
+    private final String text;
+
+    private final int line;
+
+    private final int column;
+
+    Token(Type type, String text, int line, int column) {
+        this.type = type;
+        this.text = text;
+        this.line = line;
+        this.column = column;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    String getText() {
+        return text;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return The token as it is named in the error messages.
+     */
+    String describe() {
+        switch (type) {
+            case IDENTIFIER:
+                return "'" + text + "'";
+            case STRING:
+                return "text \"" + text + "\"";
+            case NUMBER:
+                return "number " + text;
+            case END:
+                return "the end of the file";
+            default:
+                return "'" + text + "'";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Token{" + "type=" + type + ", text=" + text + ", line=" + line + ", column=" + column + '}';
+    }
+}
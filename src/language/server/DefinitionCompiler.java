@@ -0,0 +1,177 @@
+package language.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * Compiles single test definitions in memory and loads them in their own
+ * class loader, so that an edited definition can be composed again in the
+ * running JVM. The compiler and its file manager (with the opened classpath)
+ * are created once and reused for all the compilations.
+ * @author Milan
+ */
+final class DefinitionCompiler {
+
+    private final JavaCompiler compiler;
+
+    private final StandardJavaFileManager fileManager;
+
+    private final List<String> options;
+
+    /**
+     * @param sourceRoots Directories with the sources, the classes the
+     * definitions use are resolved from them if they are not on the classpath
+     * (only the definition itself is loaded).
+     * @throws IllegalStateException If the JVM has no Java compiler (it is
+     * not a JDK).
+     */
+    DefinitionCompiler(List<Path> sourceRoots) {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("There is no Java compiler, run on a JDK to watch the Java definitions.");
+        }
+        this.fileManager = compiler.getStandardFileManager(null, null, null);
+        StringBuilder sourcePath = new StringBuilder();
+        for (Path root : sourceRoots) {
+            if (sourcePath.length() > 0) {
+                sourcePath.append(File.pathSeparator);
+            }
+            sourcePath.append(root.toAbsolutePath());
+        }
+        this.options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                "-sourcepath", sourcePath.toString(), "-proc:none", "-implicit:none");
+    }
+
+    /**
+     * Compiles the source and loads the class of the given name.
+     * @param source File of the source (used in the reported errors).
+     * @param content Content of the source.
+     * @param className Fully qualified name of the class in the source.
+     * @return The loaded class, or null if the source has errors (they are
+     * printed).
+     */
+    Class<?> compile(Path source, String content, String className) {
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        MemoryFileManager memory = new MemoryFileManager(fileManager, classes);
+        JavaFileObject unit = new SourceFile(source.toUri(), content);
+        Boolean success = compiler.getTask(null, memory, diagnostics, options, null, Collections.singletonList(unit)).call();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                String file = diagnostic.getSource() != null ? diagnostic.getSource().getName() : source.toString();
+                System.err.println(diagnostic.getMessage(null) + System.lineSeparator() + "\t at " + file + ":" + diagnostic.getLineNumber());
+            }
+        }
+        if (!success || !classes.containsKey(className)) {
+            return null;
+        }
+        Map<String, byte[]> bytes = new HashMap<>();
+        for (Map.Entry<String, ByteArrayOutputStream> entry : classes.entrySet()) {
+            bytes.put(entry.getKey(), entry.getValue().toByteArray());
+        }
+        try {
+            return new MemoryClassLoader(getClass().getClassLoader(), bytes).loadClass(className);
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Source held in memory.
+     */
+    private static class SourceFile extends SimpleJavaFileObject {
+
+        private final String content;
+
+        SourceFile(URI uri, String content) {
+            super(uri, Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+    }
+
+    /**
+     * Keeps the compiled classes in memory instead of writing them.
+     */
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ByteArrayOutputStream> classes;
+
+        MemoryFileManager(StandardJavaFileManager fileManager, Map<String, ByteArrayOutputStream> classes) {
+            super(fileManager);
+            this.classes = classes;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                FileObject sibling) throws IOException {
+            if (location != StandardLocation.CLASS_OUTPUT || kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            URI uri = URI.create("memory:///" + className.replace('.', '/') + kind.extension);
+            return new SimpleJavaFileObject(uri, kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    classes.put(className, out);
+                    return out;
+                }
+            };
+        }
+    }
+
+    /**
+     * Loads the compiled classes itself (even if older versions of them are
+     * on the classpath), the other classes are loaded by the parent.
+     */
+    private static class MemoryClassLoader extends ClassLoader {
+
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(ClassLoader parent, Map<String, byte[]> classes) {
+            super(parent);
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    byte[] bytes = classes.get(name);
+                    if (bytes == null) {
+                        return super.loadClass(name, resolve);
+                    }
+                    loaded = defineClass(name, bytes, 0, bytes.length);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package language.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import language.model.ContentHash;
+
+/**
+ * Immutable in-memory response body served by the TestServer. The compressed
+ * copy is created once, when the resource is created, so serving it is only
+ * a copy of the prepared bytes.
+ * @author Milan
+ */
+final class Resource {
+
+    private final byte[] body;
+
+    /**
+     * Gzip compressed body, null if the compression does not pay off.
+     */
+    private final byte[] gzipped;
+
+    private final String contentType;
+
+    private final String cacheControl;
+
+    private final String etag;
+
+    private final String gzipEtag;
+
+    /**
+     * @param body Content of the resource.
+     * @param contentType Value of the Content-Type header.
+     * @param cacheControl Value of the Cache-Control header.
+     * @param hash Hash of the content, used for the ETag.
+     * @param compress Whether the content type is worth compressing.
+     */
+    Resource(byte[] body, String contentType, String cacheControl, long hash, boolean compress) {
+        this.body = body;
+        this.contentType = contentType;
+        this.cacheControl = cacheControl;
+        this.etag = "\"" + ContentHash.toHex(hash) + "\"";
+        this.gzipEtag = "\"" + ContentHash.toHex(hash) + "-gzip\"";
+        byte[] compressed = compress ? gzip(body) : null;
+        this.gzipped = compressed != null && compressed.length < body.length ? compressed : null;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(body);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    byte[] getBody(boolean gzip) {
+        return gzip && gzipped != null ? gzipped : body;
+    }
+
+    boolean hasGzip() {
+        return gzipped != null;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    String getCacheControl() {
+        return cacheControl;
+    }
+
+    String getEtag(boolean gzip) {
+        return gzip && gzipped != null ? gzipEtag : etag;
+    }
+
+    /**
+     * Weak comparison of the entity tags from the If-None-Match header with
+     * the tags of this resource, both encodings represent the same content.
+     * @param ifNoneMatch Value of the If-None-Match header, may be null.
+     * @return True if the client already has the current content.
+     */
+    boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
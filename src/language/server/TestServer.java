@@ -0,0 +1,478 @@
+package language.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import language.builder.BatchCompiler;
+import language.builder.NestedFunctionsTestBuilder;
+import language.builder.ParsingException;
+import language.builder.TestBuilder;
+import language.model.ContentHash;
+import language.model.PageRenderer;
+import language.model.RenderOptions;
+import language.model.Test;
+import language.model.TestPages;
+
+/**
+ * Embedded HTTP server serving the generated tests from memory. The pages are
+ * rendered once when they are published, the static assets (css, js, fonts,
+ * images) are read once when they are loaded, and both are kept together with
+ * their gzip compressed copies. Every request is then only a copy of prepared
+ * bytes. The responses carry strong ETags derived from the content and
+ * conditional GETs are answered with 304 Not Modified.
+ *
+ * Usage: TestServer [-p port] [-a assetDirectory] [-t threads] [package ...]
+ *
+ * The test definitions are found the same way as in BatchCompiler, each of
+ * them is served as /fully.qualified.ClassName.html.
+ * @author Milan
+ */
+public class TestServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * The pages may change when they are published again, the client has to
+     * revalidate them (cheaply, thanks to the ETag).
+     */
+    private static final String PAGE_CACHE_CONTROL = "no-cache";
+
+    /**
+     * The fingerprinted bundles (see AssetBundle) never change under their
+     * names, they can be cached for a year without revalidation.
+     */
+    private static final String FINGERPRINTED_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    /**
+     * Other assets keep their names when they change, so they are revalidated
+     * like the pages.
+     */
+    private static final String ASSET_CACHE_CONTROL = "no-cache";
+
+    private static final Pattern FINGERPRINTED = Pattern.compile("tests-[0-9a-f]{16}\\.(css|js)");
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("css", "text/css; charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=utf-8");
+        CONTENT_TYPES.put("map", "application/json; charset=utf-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("otf", "font/otf");
+        CONTENT_TYPES.put("eot", "application/vnd.ms-fontobject");
+    }
+
+    private static final String HTML_CONTENT_TYPE = "text/html; charset=utf-8";
+
+    /**
+     * Path of the stream of server-sent events that tell the open pages to
+     * reload (see setLiveReload()).
+     */
+    public static final String LIVE_RELOAD_PATH = "/live-reload";
+
+    /**
+     * Script added to the pages in the live reload mode, the page reloads
+     * itself when it is published again.
+     */
+    private static final byte[] LIVE_RELOAD_SCRIPT = ("<script>new EventSource('" + LIVE_RELOAD_PATH + "')"
+            + ".addEventListener('reload', function (e) { if (e.data === location.pathname) { location.reload(); } });</script>\n")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] BODY_END = "</body>".getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor;
+
+    private volatile boolean liveReload;
+
+    /**
+     * Open streams of the reload events.
+     */
+    private final List<HttpExchange> liveClients = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param address Address to listen on.
+     * @param threads Number of threads serving the requests.
+     * @throws IOException
+     */
+    public TestServer(InetSocketAddress address, int threads) throws IOException {
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+    }
+
+    /**
+     * Renders the test and serves it on the given path. A test published on
+     * the same path before is replaced.
+     * @param path Path of the page, e.g. "/test.html".
+     * @param test Correct (validated) test.
+     * @param options Options of the page, null for the default ones.
+     */
+    public void publish(String path, Test test, RenderOptions options) {
+        PageRenderer renderer = new PageRenderer(test, options);
+        long hash = renderer.pageHash();
+        ByteBuffer[] buffers = renderer.toByteBuffers();
+        int size = 0;
+        for (ByteBuffer buffer : buffers) {
+            size += buffer.remaining();
+        }
+        byte[] body = new byte[size];
+        int position = 0;
+        for (ByteBuffer buffer : buffers) {
+            int length = buffer.remaining();
+            buffer.get(body, position, length);
+            position += length;
+        }
+        if (liveReload) {
+            body = addLiveReload(body);
+            hash = new ContentHash().add(hash).add(LIVE_RELOAD_SCRIPT).get();
+        }
+        // the other pages are published first, so the first page never loads an old one
+        TestPages pages = new TestPages(test, options);
+        int pageCount = pages.getPageCount();
+        for (int page = 2; page <= pageCount; page++) {
+            StringBuilder script = new StringBuilder();
+            try {
+                pages.renderPage(page, script);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            resources.put(TestPages.getPagePath(path, page), new Resource(script.toString().getBytes(StandardCharsets.UTF_8),
+                    CONTENT_TYPES.get("js"), PAGE_CACHE_CONTROL, new ContentHash().add(hash).add(page).get(), true));
+        }
+        removePages(path, pageCount + 1);
+        Resource resource = new Resource(body, HTML_CONTENT_TYPE, PAGE_CACHE_CONTROL, hash, true);
+        Resource previous = resources.put(path, resource);
+        if (liveReload && previous != null && !previous.getEtag(false).equals(resource.getEtag(false))) {
+            reload(path);
+        }
+    }
+
+    public void publish(String path, Test test) {
+        publish(path, test, null);
+    }
+
+    /**
+     * @param path Path of the page.
+     * @return True if there was a page on the path.
+     */
+    public boolean unpublish(String path) {
+        if (resources.remove(path) == null) {
+            return false;
+        }
+        removePages(path, 2);
+        if (liveReload) {
+            reload(path);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the scripts of the pages of a test split into pages, starting
+     * with the given page.
+     */
+    private void removePages(String path, int first) {
+        int page = first;
+        while (resources.remove(TestPages.getPagePath(path, page)) != null) {
+            page++;
+        }
+    }
+
+    /**
+     * Switches on the live reload: the pages published from now on contain a
+     * script listening to the server, and when a page is published again
+     * with a different content, its open copies reload themselves (see 
+     * TestWatcher).
+     * @param liveReload True to reload the open pages.
+     */
+    public void setLiveReload(boolean liveReload) {
+        this.liveReload = liveReload;
+    }
+
+    public boolean isLiveReload() {
+        return liveReload;
+    }
+
+    private static byte[] addLiveReload(byte[] body) {
+        int end = lastIndexOf(body, BODY_END);
+        if (end < 0) {
+            end = body.length;
+        }
+        byte[] page = new byte[body.length + LIVE_RELOAD_SCRIPT.length];
+        System.arraycopy(body, 0, page, 0, end);
+        System.arraycopy(LIVE_RELOAD_SCRIPT, 0, page, end, LIVE_RELOAD_SCRIPT.length);
+        System.arraycopy(body, end, page, end + LIVE_RELOAD_SCRIPT.length, body.length - end);
+        return page;
+    }
+
+    private static int lastIndexOf(byte[] array, byte[] part) {
+        for (int i = array.length - part.length; i >= 0; i--) {
+            int j = 0;
+            while (j < part.length && array[i + j] == part[j]) {
+                j++;
+            }
+            if (j == part.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sends the reload event of the page to all the open pages, each of them
+     * reloads itself if it is the page.
+     * @param path Path of the page.
+     */
+    private synchronized void reload(String path) {
+        byte[] event = ("event: reload\ndata: " + path + "\n\n").getBytes(StandardCharsets.UTF_8);
+        for (HttpExchange client : liveClients) {
+            try {
+                OutputStream out = client.getResponseBody();
+                out.write(event);
+                out.flush();
+            } catch (IOException ex) {
+                // the page was closed
+                liveClients.remove(client);
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Starts the stream of the reload events. The exchange stays open after
+     * the handler returns, so it does not block a thread of the server.
+     */
+    private void openLiveStream(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "text/event-stream; charset=utf-8");
+        headers.set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        out.write(": live reload\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        liveClients.add(exchange);
+    }
+
+    /**
+     * Loads the static assets of known types from the directory (and its
+     * subdirectories) into memory. They are served on the paths relative to
+     * the directory, the same way the generated pages reference them.
+     * @param directory Directory with the assets (normally html/).
+     * @return Number of loaded assets.
+     * @throws IOException
+     */
+    public int loadAssets(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.filter(Files::isRegularFile).forEach(files::add);
+        }
+        int loaded = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String contentType = dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+            if (contentType == null) {
+                continue;
+            }
+            byte[] body = Files.readAllBytes(file);
+            String path = "/" + directory.relativize(file).toString().replace('\\', '/');
+            String cacheControl = FINGERPRINTED.matcher(name).matches() ? FINGERPRINTED_CACHE_CONTROL
+                    : ASSET_CACHE_CONTROL;
+            resources.put(path, new Resource(body, contentType, cacheControl,
+                    new ContentHash().add(body).get(), isCompressible(contentType)));
+            loaded++;
+        }
+        return loaded;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.contains("javascript") || contentType.contains("json")
+                || contentType.contains("svg") || contentType.equals("font/ttf") || contentType.equals("font/otf")
+                || contentType.contains("fontobject");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops the server, waiting at most the given time for the exchanges in
+     * progress to finish.
+     * @param delay Time to wait in seconds.
+     */
+    public void stop(int delay) {
+        for (HttpExchange client : liveClients) {
+            client.close();
+        }
+        liveClients.clear();
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (liveReload && LIVE_RELOAD_PATH.equals(exchange.getRequestURI().getPath())
+                && "GET".equals(exchange.getRequestMethod())) {
+            try {
+                openLiveStream(exchange);
+            } catch (IOException ex) {
+                exchange.close();
+            }
+            return;
+        }
+        try {
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            Headers headers = exchange.getResponseHeaders();
+            if (!head && !"GET".equals(method)) {
+                headers.set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Resource resource = resources.get(exchange.getRequestURI().getPath());
+            if (resource == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            Headers request = exchange.getRequestHeaders();
+            boolean gzip = resource.hasGzip() && acceptsGzip(request.get("Accept-Encoding"));
+            headers.set("ETag", resource.getEtag(gzip));
+            headers.set("Cache-Control", resource.getCacheControl());
+            if (resource.hasGzip()) {
+                headers.set("Vary", "Accept-Encoding");
+            }
+            if (resource.matches(request.getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            byte[] body = resource.getBody(gzip);
+            headers.set("Content-Type", resource.getContentType());
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+            }
+            if (head) {
+                headers.set("Content-Length", Integer.toString(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean acceptsGzip(List<String> acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String header : acceptEncoding) {
+            for (String coding : header.split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                    continue;
+                }
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=") && isZero(parameter.substring(2))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZero(String quality) {
+        try {
+            return Double.parseDouble(quality) == 0;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, ParsingException, ReflectiveOperationException {
+        int port = DEFAULT_PORT;
+        Path assets = Paths.get("html");
+        int threads = Runtime.getRuntime().availableProcessors() * 2;
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-p".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("-a".equals(args[i]) && i + 1 < args.length) {
+                assets = Paths.get(args[++i]);
+            } else if ("-t".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                packages.add(args[i]);
+            }
+        }
+
+        TestServer server = new TestServer(new InetSocketAddress(port), threads);
+        int loaded = server.loadAssets(assets);
+        int published = 0;
+        for (Class<?> definition : BatchCompiler.discover(packages)) {
+            Object builder = definition.getConstructor().newInstance();
+            Test test;
+            RenderOptions options;
+            if (builder instanceof TestBuilder) {
+                test = ((TestBuilder) builder).build();
+                options = ((TestBuilder) builder).getSettings().getRenderOptions();
+            } else {
+                test = ((NestedFunctionsTestBuilder) builder).build();
+                options = ((NestedFunctionsTestBuilder) builder).getSettings().getRenderOptions();
+            }
+            if (test == null) {
+                System.err.println("Skipping " + definition.getName() + ", there were some errors in its definition.");
+                continue;
+            }
+            String path = "/" + definition.getName() + ".html";
+            server.publish(path, test, options);
+            System.out.println("http://localhost:" + port + path);
+            published++;
+        }
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(1)));
+        System.out.println("Serving " + published + " tests and " + loaded + " assets on port " + port + ".");
+    }
+}
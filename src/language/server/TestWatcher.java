@@ -0,0 +1,380 @@
+package language.server;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import language.builder.BatchCompiler;
+import language.builder.BuildSettings;
+import language.builder.NestedFunctionsTestBuilder;
+import language.builder.ParsingException;
+import language.builder.TestBuilder;
+import language.io.TestImporter;
+import language.model.ContentHash;
+import language.model.FragmentCache;
+import language.model.PageRenderer;
+import language.model.RenderOptions;
+import language.model.StringPool;
+import language.model.Test;
+import language.model.ValidationCache;
+
+/**
+ * Watch mode for writing tests: serves the test definitions (Java builders
+ * and question banks) found in the watched directories and regenerates the
+ * page of a definition as soon as its file is saved. The open pages reload
+ * themselves when their content changes (see TestServer.setLiveReload()).
+ *
+ * Each file keeps its FragmentCache and ValidationCache between the builds,
+ * so only the edited questions are validated and rendered again. Java
+ * definitions are compiled in memory and loaded in a fresh class loader
+ * (see DefinitionCompiler), the question banks are imported directly. A file
+ * saved without a change of its content is not built at all.
+ * @author Milan
+ */
+public class TestWatcher {
+
+    /**
+     * Time to wait for more events after the first one, editors often write
+     * a file in several steps.
+     */
+    private static final long DEBOUNCE_MILLIS = 10;
+
+    private static final Pattern PACKAGE = Pattern.compile("^\\s*package\\s+([\\w.]+)\\s*;", Pattern.MULTILINE);
+
+    /**
+     * Quick check of a Java source before it is compiled, only the builders
+     * can be test definitions.
+     */
+    private static final Pattern DEFINITION = Pattern.compile("extends\\s+(?:[\\w.]+\\.)?(?:TestBuilder|NestedFunctionsTestBuilder)\\b");
+
+    private final TestServer server;
+
+    private final List<Path> roots;
+
+    private DefinitionCompiler compiler;
+
+    private boolean compilerChecked;
+
+    /**
+     * Built pages by their source files.
+     */
+    private final Map<Path, Page> pages = new HashMap<>();
+
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * @param server Server to publish the pages on, live reload is switched
+     * on.
+     * @param roots Watched directories.
+     */
+    public TestWatcher(TestServer server, List<Path> roots) {
+        this.server = server;
+        this.roots = roots;
+        server.setLiveReload(true);
+    }
+
+    /**
+     * Builds and publishes all the definitions in the watched directories.
+     * @return Number of the published pages.
+     * @throws IOException
+     */
+    public int buildAll() throws IOException {
+        for (Path root : roots) {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.filter(TestWatcher::isWatched).forEach(this::build);
+            }
+        }
+        return pages.size();
+    }
+
+    /**
+     * Watches the directories and rebuilds the changed files until the
+     * thread is interrupted.
+     * @throws IOException
+     */
+    public void watch() throws IOException {
+        try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            for (Path root : roots) {
+                register(watcher, root);
+            }
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= collect(watcher, key, changed);
+                    key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (overflow) {
+                    // some events were lost, build everything (unchanged files are skipped)
+                    buildAll();
+                    for (Path file : new ArrayList<>(pages.keySet())) {
+                        if (!Files.exists(file)) {
+                            remove(file);
+                        }
+                    }
+                } else {
+                    for (Path file : changed) {
+                        if (Files.exists(file)) {
+                            build(file);
+                        } else {
+                            remove(file);
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Collects the changed files of the key and registers the new
+     * directories.
+     * @return True if some events were lost.
+     */
+    private boolean collect(WatchService watcher, WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = directories.get(key);
+        boolean overflow = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+            Path file = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(file)) {
+                register(watcher, file);
+                try (Stream<Path> files = Files.walk(file)) {
+                    files.filter(TestWatcher::isWatched).forEach(changed::add);
+                }
+            } else if (isWatched(file) || pages.containsKey(file)) {
+                changed.add(file);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    private void register(WatchService watcher, Path root) throws IOException {
+        try (Stream<Path> tree = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) tree.filter(Files::isDirectory)::iterator) {
+                WatchKey key = directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, directory);
+            }
+        }
+    }
+
+    private static boolean isWatched(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(file) && (name.endsWith(".java") || name.endsWith(".csv")
+                || name.endsWith(".json") || name.endsWith(".xml") || name.endsWith(".test"));
+    }
+
+    /**
+     * Builds the file and publishes its page if it changed.
+     * @param file Source of the definition.
+     */
+    private void build(Path file) {
+        long start = System.nanoTime();
+        byte[] source;
+        try {
+            source = Files.readAllBytes(file);
+        } catch (NoSuchFileException ex) {
+            remove(file);
+            return;
+        } catch (IOException ex) {
+            System.err.println("Cannot read " + file + ": " + ex.getMessage());
+            return;
+        }
+        long sourceHash = new ContentHash().add(source).get();
+        Page page = pages.get(file);
+        if (page != null && page.sourceHash == sourceHash) {
+            return;
+        }
+        String content = new String(source, StandardCharsets.UTF_8);
+        boolean java = file.getFileName().toString().endsWith(".java");
+        if (java && page == null && !DEFINITION.matcher(content).find()) {
+            return;
+        }
+        if (page == null) {
+            String path;
+            if (java) {
+                path = "/" + getClassName(file, content) + ".html";
+            } else {
+                String name = file.getFileName().toString();
+                path = "/" + name.substring(0, name.lastIndexOf('.')) + ".html";
+            }
+            page = new Page(path);
+        }
+        page.sourceHash = sourceHash;
+        try {
+            boolean built = java ? buildDefinition(file, content, page) : buildBank(file, content, page);
+            if (!built) {
+                System.err.println("Skipping " + file + ", there were some errors in its definition.");
+                return;
+            }
+        } catch (IOException | ParsingException | ReflectiveOperationException | RuntimeException ex) {
+            System.err.println("Skipping " + file + ": " + ex);
+            return;
+        }
+        if (pages.put(file, page) == null) {
+            System.out.println("http://localhost:" + server.getAddress().getPort() + page.path);
+        }
+        long pageHash = new PageRenderer(page.test, page.options).pageHash();
+        if (pageHash != page.pageHash) {
+            page.pageHash = pageHash;
+            server.publish(page.path, page.test, page.options);
+            System.out.println(String.format("%-9s %-50s %6d ms", "PUBLISHED", file, (System.nanoTime() - start) / 1000000));
+        }
+    }
+
+    /**
+     * Compiles the Java definition and composes its test.
+     * @return False if the file is not a definition or there were errors.
+     */
+    private boolean buildDefinition(Path file, String content, Page page) throws ReflectiveOperationException, ParsingException {
+        if (getCompiler() == null) {
+            return false;
+        }
+        Class<?> definition = getCompiler().compile(file, content, getClassName(file, content));
+        if (definition == null || !BatchCompiler.isDefinition(definition)) {
+            return false;
+        }
+        Object builder = definition.getConstructor().newInstance();
+        BuildSettings settings = builder instanceof TestBuilder ? ((TestBuilder) builder).getSettings()
+                : ((NestedFunctionsTestBuilder) builder).getSettings();
+        settings.setValidationCache(page.validationCache);
+        if (settings.getStringPool() == null) {
+            settings.setStringPool(new StringPool());
+        }
+        page.test = builder instanceof TestBuilder ? ((TestBuilder) builder).build()
+                : ((NestedFunctionsTestBuilder) builder).build();
+        RenderOptions builderOptions = settings.getRenderOptions();
+        page.options.setSharedMatchingOptions(builderOptions.isSharedMatchingOptions());
+        page.options.setAssets(builderOptions.getAssets());
+        page.options.setPageSize(builderOptions.getPageSize());
+        page.options.setRenderPool(builderOptions.getRenderPool());
+        page.options.setParallelThreshold(builderOptions.getParallelThreshold());
+        return page.test != null;
+    }
+
+    /**
+     * Imports the question bank, its repeated texts are pooled for the time
+     * of the import.
+     * @return False if there were errors.
+     */
+    private boolean buildBank(Path file, String content, Page page) throws IOException, ParsingException {
+        TestImporter importer = TestImporter.forFile(file);
+        importer.getSettings().setValidationCache(page.validationCache);
+        importer.getSettings().setStringPool(new StringPool());
+        page.test = importer.load(new StringReader(content), file.toString());
+        return page.test != null;
+    }
+
+    private void remove(Path file) {
+        Page page = pages.remove(file);
+        if (page != null && server.unpublish(page.path)) {
+            System.out.println(String.format("%-9s %-50s", "REMOVED", file));
+        }
+    }
+
+    /**
+     * @return The compiler, or null if the JVM cannot compile (the Java
+     * definitions are not built then).
+     */
+    private DefinitionCompiler getCompiler() {
+        if (!compilerChecked) {
+            compilerChecked = true;
+            try {
+                compiler = new DefinitionCompiler(roots);
+            } catch (IllegalStateException ex) {
+                System.err.println(ex.getMessage());
+            }
+        }
+        return compiler;
+    }
+
+    private static String getClassName(Path file, String content) {
+        String name = file.getFileName().toString();
+        name = name.substring(0, name.length() - ".java".length());
+        Matcher matcher = PACKAGE.matcher(content);
+        return matcher.find() ? matcher.group(1) + "." + name : name;
+    }
+
+    /**
+     * Page of a single source file with the state kept between its builds.
+     */
+    private static class Page {
+
+        private final String path;
+
+        private final FragmentCache fragmentCache = new FragmentCache();
+
+        private final ValidationCache validationCache = new ValidationCache();
+
+        private final RenderOptions options = new RenderOptions();
+
+        private Test test;
+
+        private long sourceHash;
+
+        private long pageHash;
+
+        Page(String path) {
+            this.path = path;
+            options.setFragmentCache(fragmentCache);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = TestServer.DEFAULT_PORT;
+        Path assets = Paths.get("html");
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-p".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("-a".equals(args[i]) && i + 1 < args.length) {
+                assets = Paths.get(args[++i]);
+            } else {
+                roots.add(Paths.get(args[i]));
+            }
+        }
+        if (roots.isEmpty()) {
+            roots.add(Paths.get("src"));
+        }
+
+        TestServer server = new TestServer(new InetSocketAddress(port), Runtime.getRuntime().availableProcessors());
+        TestWatcher watcher = new TestWatcher(server, roots);
+        int loaded = server.loadAssets(assets);
+        int published = watcher.buildAll();
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> server.stop(0)));
+        System.out.println("Serving " + published + " tests and " + loaded + " assets on port " + port
+                + ", watching " + roots + " for changes.");
+        watcher.watch();
+    }
+}
@@ -0,0 +1,172 @@
+package language.variant;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import language.model.ChunkedOutput;
+import language.model.ContentHash;
+import language.model.PageRenderer;
+
+/**
+ * Variant of a test given to a single student: which questions are shown, in
+ * which order, and in which order their answers (or matching options) are
+ * shown. The variant holds only these indices, the questions and their
+ * rendered templates are shared with the generator and all its variants.
+ * @author Milan
+ */
+public final class Variant {
+
+    private final VariantGenerator generator;
+
+    private final long seed;
+
+    /**
+     * Indices of the shown questions in the test, in the order they are shown.
+     */
+    private final int[] questions;
+
+    /**
+     * For each shown question the order of its items, null for the original order.
+     */
+    private final int[][] orders;
+
+    private final int totalPoints;
+
+    private final int passingMinimum;
+
+    Variant(VariantGenerator generator, long seed, int[] questions, int[][] orders, int totalPoints, int passingMinimum) {
+        this.generator = generator;
+        this.seed = seed;
+        this.questions = questions;
+        this.orders = orders;
+        this.totalPoints = totalPoints;
+        this.passingMinimum = passingMinimum;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getQuestionCount() {
+        return questions.length;
+    }
+
+    /**
+     * @param position Position of the question in the variant.
+     * @return Index of the question in the test.
+     */
+    public int getQuestion(int position) {
+        return questions[position];
+    }
+
+    /**
+     * @param position Position of the question in the variant.
+     * @return Indices of the answers (or matching options, in the order of
+     * MatchingPairsQuestion.getAllMatchingOptions()) in the order they are
+     * shown, null if they are shown in the original order.
+     */
+    public int[] getOrder(int position) {
+        return orders[position];
+    }
+
+    public int getTotalPoints() {
+        return totalPoints;
+    }
+
+    public int getPassingMinimum() {
+        return passingMinimum;
+    }
+
+    /**
+     * @param position Position of the question in the variant.
+     * @return Identifier of the question in the page (the same as in the
+     * page of the whole test).
+     */
+    public String getId(int position) {
+        return generator.getId(questions[position]);
+    }
+
+    /**
+     * @param position Position of the question in the variant.
+     * @return Entry of the question in the answer key of the page.
+     */
+    public String getScript(int position) {
+        return generator.getScript(questions[position]);
+    }
+
+    /**
+     * Writes the question at the given position with its items in the order
+     * of the variant.
+     * @param position Position of the question in the variant.
+     * @param out Output to append the question to.
+     * @throws IOException
+     */
+    public void renderQuestion(int position, Appendable out) throws IOException {
+        generator.getTemplate(questions[position]).render(out, orders[position]);
+    }
+
+    /**
+     * @return Hash of the shown questions and orders.
+     */
+    public long contentHash() {
+        ContentHash hash = new ContentHash().add(seed).add(questions.length);
+        for (int i = 0; i < questions.length; i++) {
+            hash.add(questions[i]);
+            int[] order = orders[i];
+            hash.add(order == null ? -1 : order.length);
+            if (order != null) {
+                for (int item : order) {
+                    hash.add(item);
+                }
+            }
+        }
+        return hash.get();
+    }
+
+    public void render(Appendable out) throws IOException {
+        new PageRenderer(generator.getTest(), generator.getOptions()).render(out, this);
+    }
+
+    public String toHTML() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            render(sb);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Renders the page of the variant as a sequence of UTF-8 encoded buffers.
+     * The fixed parts of the page and of the questions are shared buffers, only
+     * the few dynamic values are encoded for the variant.
+     * @return Buffers that together form the page.
+     */
+    public ByteBuffer[] toByteBuffers() {
+        ChunkedOutput out = new ChunkedOutput();
+        try {
+            render(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteBuffers();
+    }
+
+    public void writeTo(Path path) throws IOException {
+        ByteBuffer[] buffers = toByteBuffers();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ChunkedOutput.writeFully(channel, buffers);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Variant{" + "seed=" + seed + ", questions=" + questions.length + ", totalPoints=" + totalPoints
+                + ", passingMinimum=" + passingMinimum + '}';
+    }
+}
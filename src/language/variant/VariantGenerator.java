@@ -0,0 +1,269 @@
+package language.variant;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import language.grading.GradingResult;
+import language.grading.Submission;
+import language.model.ContentHash;
+import language.model.Question;
+import language.model.QuestionTemplate;
+import language.model.RenderOptions;
+import language.model.Test;
+
+/**
+ * Generates variants of a test for individual students. Each variant is
+ * derived deterministically from a seed: the questions can be drawn from the
+ * test as from a pool and shuffled, and so can the answers of the option
+ * questions and the options of the matching questions. The same generator
+ * settings and seed always give the same variant, so a variant can be
+ * regenerated from its seed when the student's submission is graded.
+ *
+ * The questions are rendered into templates once, when the generator is
+ * created; the variants only hold the indices and share the templates, so
+ * the model is never copied per student and many variants can be rendered
+ * in parallel.
+ * @author Milan
+ */
+public class VariantGenerator {
+
+    private final Test test;
+
+    private final RenderOptions options;
+
+    private final String[] ids;
+
+    private final String[] scripts;
+
+    private final int[] points;
+
+    private final QuestionTemplate[] templates;
+
+    private int questionCount;
+
+    private boolean shuffleQuestions = true;
+
+    private boolean shuffleAnswers = true;
+
+    /**
+     * @param test Correct (validated) test.
+     * @param options Options of the pages, null for the default ones.
+     */
+    public VariantGenerator(Test test, RenderOptions options) {
+        this.test = test;
+        this.options = options != null ? options : new RenderOptions();
+        List<AbstractMap.SimpleEntry<String, Question>> questions = test.getQuestions();
+        int n = questions.size();
+        this.ids = new String[n];
+        this.scripts = new String[n];
+        this.points = new int[n];
+        this.templates = new QuestionTemplate[n];
+        int index = 0;
+        for (AbstractMap.SimpleEntry<String, Question> q : questions) {
+            ids[index] = q.getKey();
+            scripts[index] = q.getValue().toJS(q.getKey());
+            points[index] = q.getValue().getPoints();
+            templates[index] = q.getValue().toTemplate(q.getKey(), this.options);
+            index++;
+        }
+        this.questionCount = n;
+    }
+
+    public VariantGenerator(Test test) {
+        this(test, null);
+    }
+
+    /**
+     * Sets the number of questions drawn for each variant, by default all the
+     * questions of the test are used. The passing minimum of a variant is
+     * scaled to its total points.
+     * @param questionCount Number of questions in a variant.
+     */
+    public void setQuestionCount(int questionCount) {
+        if (questionCount < 1 || questionCount > ids.length) {
+            throw new IllegalArgumentException("The number of questions in a variant has to be between 1 and "
+                    + ids.length + ", not " + questionCount + ".");
+        }
+        this.questionCount = questionCount;
+    }
+
+    public int getQuestionCount() {
+        return questionCount;
+    }
+
+    /**
+     * @param shuffleQuestions False to keep the drawn questions in the order
+     * of the test.
+     */
+    public void setShuffleQuestions(boolean shuffleQuestions) {
+        this.shuffleQuestions = shuffleQuestions;
+    }
+
+    /**
+     * @param shuffleAnswers False to keep the answers and matching options in
+     * the original order.
+     */
+    public void setShuffleAnswers(boolean shuffleAnswers) {
+        this.shuffleAnswers = shuffleAnswers;
+    }
+
+    public Test getTest() {
+        return test;
+    }
+
+    public RenderOptions getOptions() {
+        return options;
+    }
+
+    String getId(int question) {
+        return ids[question];
+    }
+
+    String getScript(int question) {
+        return scripts[question];
+    }
+
+    QuestionTemplate getTemplate(int question) {
+        return templates[question];
+    }
+
+    /**
+     * Derives a seed from an identifier of the student, so that the variant
+     * can be found again without storing the seed.
+     * @param studentId Identifier of the student.
+     * @return Seed of the student's variant.
+     */
+    public static long seedOf(String studentId) {
+        return new ContentHash().add(studentId.getBytes(StandardCharsets.UTF_8)).get();
+    }
+
+    /**
+     * Creates the variant for the given seed. Calling it again with the same
+     * seed (on a generator with the same settings) regenerates the same
+     * variant.
+     * @param seed Seed of the variant.
+     * @return The variant.
+     */
+    public Variant generate(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int n = ids.length;
+
+        int[] pool = new int[n];
+        for (int i = 0; i < n; i++) {
+            pool[i] = i;
+        }
+        if (questionCount < n || shuffleQuestions) {
+            // partial Fisher-Yates, the first questionCount elements are drawn
+            for (int i = 0; i < questionCount; i++) {
+                swap(pool, i, i + random.nextInt(n - i));
+            }
+        }
+        int[] questions = Arrays.copyOf(pool, questionCount);
+        if (!shuffleQuestions) {
+            Arrays.sort(questions);
+        }
+
+        int[][] orders = new int[questionCount][];
+        int total = 0;
+        for (int i = 0; i < questionCount; i++) {
+            int items = templates[questions[i]].getItemCount();
+            if (shuffleAnswers && items > 1) {
+                orders[i] = permutation(items, random);
+            }
+            total += points[questions[i]];
+        }
+
+        int passingMinimum = test.getPassingMinimum();
+        int fullPoints = test.getTotalPoints();
+        if (total != fullPoints && fullPoints > 0) {
+            // rounded up, so that drawing questions never makes passing easier
+            passingMinimum = (int) ((passingMinimum * (long) total + fullPoints - 1) / fullPoints);
+        }
+        return new Variant(this, seed, questions, orders, total, passingMinimum);
+    }
+
+    private static int[] permutation(int size, SplittableRandom random) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            swap(order, i, random.nextInt(i + 1));
+        }
+        return order;
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int tmp = array[i];
+        array[i] = array[j];
+        array[j] = tmp;
+    }
+
+    /**
+     * Regenerates the variant of the seed and grades the submission of its
+     * student.
+     * @param seed Seed of the student's variant.
+     * @param submission Answers in the order of the variant (questions, answers
+     * and options as they were shown).
+     * @return Points for each question of the variant and the total.
+     */
+    public GradingResult grade(long seed, Submission submission) {
+        return test.getAnswerKey().grade(generate(seed), submission);
+    }
+
+    /**
+     * Generates and writes the variants for the given seeds in parallel. The
+     * variant of a seed is written into the file named after the seed.
+     * @param seeds Seeds of the variants.
+     * @param outputDirectory Directory to write the variants to.
+     * @param threads Number of threads.
+     * @return Files with the variants, in the order of the seeds.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public List<Path> writeAll(long[] seeds, Path outputDirectory, int threads) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Path>> futures = new ArrayList<>(seeds.length);
+            for (long seed : seeds) {
+                futures.add(executor.submit(() -> {
+                    Path output = getOutput(outputDirectory, seed);
+                    generate(seed).writeTo(output);
+                    return output;
+                }));
+            }
+            List<Path> outputs = new ArrayList<>(seeds.length);
+            for (Future<Path> future : futures) {
+                try {
+                    outputs.add(future.get());
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        throw (IOException) ex.getCause();
+                    }
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            return outputs;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param outputDirectory Directory of the variants.
+     * @param seed Seed of a variant.
+     * @return File the variant of the seed is written to.
+     */
+    public static Path getOutput(Path outputDirectory, long seed) {
+        return outputDirectory.resolve("variant-" + ContentHash.toHex(seed) + ".html");
+    }
+}
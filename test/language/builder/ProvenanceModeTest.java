@@ -0,0 +1,99 @@
+package language.builder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import org.junit.After;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Locations of the errors of the definitions in each provenance mode.
+ * @author Milan
+ */
+public class ProvenanceModeTest {
+
+    /**
+     * Line of the invalid question in WrongTest.
+     */
+    private static final int WRONG_LINE = 36;
+
+    private static class WrongTest extends TestBuilder {
+
+        private int definitions;
+
+        WrongTest(ProvenanceMode provenance) {
+            super(provenance);
+        }
+
+        @Override
+        protected void define() {
+            definitions++;
+            create_test("Wrong test", 0);
+            single_choice_question("Which one?", 1);
+            incorrect_answer("No");
+        }
+    }
+
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private PrintStream systemErr;
+
+    @Before
+    public void captureErrors() throws UnsupportedEncodingException {
+        systemErr = System.err;
+        System.setErr(new PrintStream(errors, true, "UTF-8"));
+    }
+
+    @After
+    public void restoreErrors() {
+        System.setErr(systemErr);
+    }
+
+    private String errors() throws UnsupportedEncodingException {
+        return errors.toString("UTF-8");
+    }
+
+    private WrongTest build(ProvenanceMode provenance) throws ParsingException {
+        WrongTest definition = new WrongTest(provenance);
+        assertNull(definition.build());
+        return definition;
+    }
+
+    @org.junit.Test
+    public void defaultIsEager() {
+        String value = System.getProperty(ProvenanceMode.PROPERTY);
+        System.clearProperty(ProvenanceMode.PROPERTY);
+        try {
+            assertEquals(ProvenanceMode.EAGER, ProvenanceMode.getDefault());
+        } finally {
+            if (value != null) {
+                System.setProperty(ProvenanceMode.PROPERTY, value);
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void eagerReportsTheLine() throws ParsingException, UnsupportedEncodingException {
+        build(ProvenanceMode.EAGER);
+        assertTrue(errors(), errors().contains("ProvenanceModeTest.java:" + WRONG_LINE));
+    }
+
+    @org.junit.Test
+    public void lazyReportsTheLineWithoutRunningTheDefinitionAgain()
+            throws ParsingException, UnsupportedEncodingException {
+        WrongTest definition = build(ProvenanceMode.LAZY);
+        assertTrue(errors(), errors().contains("ProvenanceModeTest.java:" + WRONG_LINE));
+        assertEquals(1, definition.definitions);
+    }
+
+    @org.junit.Test
+    public void offReportsNoLine() throws ParsingException, UnsupportedEncodingException {
+        build(ProvenanceMode.OFF);
+        assertFalse(errors(), errors().isEmpty());
+        assertFalse(errors(), errors().contains("ProvenanceModeTest.java"));
+    }
+}
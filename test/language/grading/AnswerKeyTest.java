@@ -0,0 +1,184 @@
+package language.grading;
+
+import java.util.List;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+import language.variant.Variant;
+import language.variant.VariantGenerator;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Grading has to give the same points as the scoring script of the generated
+ * page (score, scoreOptions, scorePairs and scoreText in Test), the expected
+ * values follow the rules of the script.
+ * @author Milan
+ */
+public class AnswerKeyTest {
+
+    private static final double EXACT = 0;
+
+    private static SingleOptionQuestion single(int points, boolean... correct) {
+        SingleOptionQuestion question = new SingleOptionQuestion("Single", points);
+        for (int i = 0; i < correct.length; i++) {
+            question.addAnswer(new Answer("answer " + i, correct[i]));
+        }
+        return question;
+    }
+
+    private static MultipleOptionsQuestion multiple(int points, boolean... correct) {
+        MultipleOptionsQuestion question = new MultipleOptionsQuestion("Multiple", points);
+        for (int i = 0; i < correct.length; i++) {
+            question.addAnswer(new Answer("answer " + i, correct[i]));
+        }
+        return question;
+    }
+
+    private static MatchingPairsQuestion pairing(int points, int pairs) {
+        MatchingPairsQuestion question = new MatchingPairsQuestion("Pairing", points);
+        for (int i = 0; i < pairs; i++) {
+            question.addPair(new MatchingPair("left " + i, "right " + i));
+        }
+        return question;
+    }
+
+    private static AnswerKey key(language.model.Question... questions) {
+        Test test = new Test("Test", 0);
+        for (language.model.Question question : questions) {
+            test.addQuestion(question);
+        }
+        return new AnswerKey(test);
+    }
+
+    @org.junit.Test
+    public void lastCheckedAnswerDecidesSingleChoice() {
+        AnswerKey key = key(single(5, false, true, false));
+        assertEquals(5, key.grade(0, new Submission(1).select(0, 0, 1)), EXACT);
+        assertEquals(0, key.grade(0, new Submission(1).select(0, 1, 2)), EXACT);
+        assertEquals(0, key.grade(0, new Submission(1)), EXACT);
+    }
+
+    @org.junit.Test
+    public void incorrectAnswerZeroesMultipleChoice() {
+        AnswerKey key = key(multiple(4, true, true, false));
+        assertEquals(4, key.grade(0, new Submission(1).select(0, 0, 1)), EXACT);
+        assertEquals(2, key.grade(0, new Submission(1).select(0, 1)), EXACT);
+        assertEquals(0, key.grade(0, new Submission(1).select(0, 0, 1, 2)), EXACT);
+        assertEquals(0, key.grade(0, new Submission(1)), EXACT);
+    }
+
+    @org.junit.Test
+    public void pointsAreRoundedToHundredthsLikeMathRound() {
+        // Math.round(points * 100) / 100 of JS, the halves are rounded up
+        assertEquals(3.33, key(multiple(10, true, true, true, false)).grade(0, new Submission(1).select(0, 0)), EXACT);
+        assertEquals(6.67, key(multiple(10, true, true, true, false)).grade(0, new Submission(1).select(0, 0, 2)), EXACT);
+        boolean[] eightCorrect = {true, true, true, true, true, true, true, true, false};
+        assertEquals(0.13, key(multiple(1, eightCorrect)).grade(0, new Submission(1).select(0, 3)), EXACT);
+        assertEquals(6.67, key(pairing(10, 3)).grade(0, new Submission(1).match(0, correctOptions(pairing(10, 3), 2))), EXACT);
+    }
+
+    @org.junit.Test
+    public void untouchedSelectionListCountsAsFirstOption() {
+        MatchingPairsQuestion question = pairing(6, 3);
+        List<String> options = question.getAllMatchingOptions();
+        AnswerKey key = key(question);
+        // exactly one pair has the first shown option as its right side
+        assertEquals(2, key.grade(0, new Submission(1)), EXACT);
+        int[] allFirst = {0, 0, 0};
+        assertEquals(2, key.grade(0, new Submission(1).match(0, allFirst)), EXACT);
+        int[] firstPairOnly = {options.indexOf("right 0")};
+        // the other pairs were not touched, they have the first option selected
+        double expected = 2 + (options.get(0).equals("right 1") ? 2 : 0) + (options.get(0).equals("right 2") ? 2 : 0);
+        assertEquals(expected, key.grade(0, new Submission(1).match(0, firstPairOnly)), EXACT);
+    }
+
+    @org.junit.Test
+    public void untouchedSelectionListOfVariantCountsAsFirstShownOption() {
+        MatchingPairsQuestion question = pairing(6, 3);
+        List<String> options = question.getAllMatchingOptions();
+        Test test = new Test("Test", 0);
+        test.addQuestion(question);
+        VariantGenerator generator = new VariantGenerator(test);
+        // a variant where counting the untouched lists as the first original
+        // option gives other points than counting them as the first shown one
+        Variant variant = generator.generate(0);
+        boolean firstOriginalIsCorrect = options.get(0).equals("right 0");
+        for (long seed = 1; options.get(variant.getOrder(0)[0]).equals("right 0") == firstOriginalIsCorrect; seed++) {
+            variant = generator.generate(seed);
+        }
+        int[] order = variant.getOrder(0);
+        // only the first pair was matched, with its correct option as it was shown
+        int shown = 0;
+        while (!options.get(order[shown]).equals("right 0")) {
+            shown++;
+        }
+        String first = options.get(order[0]);
+        double expected = 2 + (first.equals("right 1") ? 2 : 0) + (first.equals("right 2") ? 2 : 0);
+        assertEquals(expected, test.getAnswerKey().grade(variant, new Submission(1).match(0, shown)).getTotal(), EXACT);
+    }
+
+    @org.junit.Test
+    public void pairsAreMatchedByValues() {
+        MatchingPairsQuestion question = pairing(3, 3);
+        AnswerKey key = key(question);
+        assertEquals(3, key.grade(0, new Submission(1).match(0, "right 0", "right 1", "right 2")), EXACT);
+        assertEquals(1, key.grade(0, new Submission(1).match(0, "right 0", "unknown", "right 1")), EXACT);
+        assertEquals(-1, key.getOptionIndex(0, "unknown"));
+        assertEquals(question.getAllMatchingOptions().indexOf("right 2"), key.getOptionIndex(0, "right 2"));
+    }
+
+    @org.junit.Test
+    public void openAnswersAreNormalizedAsTheQuestionSets() {
+        OpenQuestion question = new OpenQuestion("Open", 2, new Answer("Žltá  ruža", true));
+        question.setIgnoreDiacritics(true);
+        question.setNormalizeWhitespace(true);
+        AnswerKey key = key(question);
+        assertEquals(2, key.grade(0, new Submission(1).answer(0, " zlta ruza ")), EXACT);
+        assertEquals(0, key.grade(0, new Submission(1).answer(0, "zlta")), EXACT);
+        assertEquals(0, key.grade(0, new Submission(1)), EXACT);
+    }
+
+    @org.junit.Test
+    public void regularExpressionsMatchTheWholeAnswer() {
+        OpenQuestion question = new OpenQuestion("Open", 1, new Answer("colou?r|grey", true));
+        question.setRegularExpression(true);
+        AnswerKey key = key(question);
+        assertEquals(1, key.grade(0, new Submission(1).answer(0, "COLOR")), EXACT);
+        assertEquals(1, key.grade(0, new Submission(1).answer(0, "grey")), EXACT);
+        assertEquals(0, key.grade(0, new Submission(1).answer(0, "colours")), EXACT);
+    }
+
+    @org.junit.Test
+    public void totalIsTheSumOfTheRoundedPoints() {
+        Test test = new Test("Test", 10);
+        test.addQuestion(multiple(10, true, true, true, false));
+        test.addQuestion(multiple(10, true, true, true, false));
+        test.addQuestion(single(1, true, false));
+        GradingResult result = test.grade(new Submission(3).select(0, 0).select(1, 0).select(2, 0));
+        assertEquals(3.33, result.getPoints(0), EXACT);
+        assertEquals(3.33 + 3.33 + 1, result.getTotal(), EXACT);
+        assertEquals(21, result.getFullPoints());
+        assertFalse(result.isPassed());
+        assertTrue(test.grade(new Submission(3).select(0, 0, 1, 2)).isPassed());
+    }
+
+    /**
+     * @return Indices of the correct options of the first pairs of the
+     * question, the other pairs get an option that is not theirs.
+     */
+    private static int[] correctOptions(MatchingPairsQuestion question, int correctPairs) {
+        List<String> options = question.getAllMatchingOptions();
+        int[] selected = new int[question.getPairs().size()];
+        for (int p = 0; p < selected.length; p++) {
+            int correct = options.indexOf(question.getPairs().get(p).getRight());
+            selected[p] = p < correctPairs ? correct : (correct + 1) % options.size();
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,184 @@
+package language.grading;
+
+import java.util.Locale;
+import java.util.Random;
+import language.model.Answer;
+import language.model.OpenQuestion;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Normalization of the open answers and the tolerance of typos, the edit
+ * distance is checked against the plain dynamic programming.
+ * @author Milan
+ */
+public class AnswerMatcherTest {
+
+    private static final char[] ALPHABET = {'a', 'b', 'c', ' ', 'é', 'ž', '中'};
+
+    private static AnswerMatcher matcher(String correct, int maxEditDistance) {
+        OpenQuestion question = new OpenQuestion("Open", 1, new Answer(correct, true), true);
+        question.setMaxEditDistance(maxEditDistance);
+        return new AnswerMatcher(question, Locale.ROOT);
+    }
+
+    /**
+     * Edit distance by the textbook dynamic programming over the whole matrix.
+     */
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1, d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String random(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The text with a few random insertions, deletions and
+     * substitutions, so that its distance is around the tested limits.
+     */
+    private static String typos(Random random, String text, int count) {
+        StringBuilder sb = new StringBuilder(text);
+        for (int i = 0; i < count; i++) {
+            int at = random.nextInt(sb.length() + 1);
+            char c = ALPHABET[random.nextInt(ALPHABET.length)];
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.insert(at, c);
+                    break;
+                case 1:
+                    if (at < sb.length()) {
+                        sb.deleteCharAt(at);
+                    }
+                    break;
+                default:
+                    if (at < sb.length()) {
+                        sb.setCharAt(at, c);
+                    }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void assertMatchesLikeReference(String correct, String answer, int maxEditDistance) {
+        boolean expected = distance(correct, answer) <= maxEditDistance;
+        assertEquals("'" + correct + "' and '" + answer + "' within " + maxEditDistance,
+                expected, matcher(correct, maxEditDistance).matches(answer));
+    }
+
+    @org.junit.Test
+    public void editDistanceIsTheReferenceOne() {
+        Random random = new Random(42);
+        // the bit vectors hold 64 characters, the longer answers use the DP
+        int[] lengths = {1, 2, 7, 31, 63, 64, 65, 100};
+        for (int length : lengths) {
+            for (int i = 0; i < 200; i++) {
+                String correct = random(random, length);
+                int limit = 1 + random.nextInt(4);
+                assertMatchesLikeReference(correct, typos(random, correct, random.nextInt(2 * limit + 2)), limit);
+                assertMatchesLikeReference(correct, random(random, length + random.nextInt(3) - 1), limit);
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void emptyStringsAreAtTheirLengthsDistance() {
+        assertTrue(matcher("", 2).matches(""));
+        assertTrue(matcher("", 2).matches("ab"));
+        assertFalse(matcher("", 2).matches("abc"));
+        assertTrue(matcher("ab", 2).matches(""));
+        assertTrue(matcher("ab", 2).matches(null));
+        assertFalse(matcher("abc", 2).matches(""));
+    }
+
+    @org.junit.Test
+    public void distanceOverTheLimitStopsEarly() {
+        // differs right from the start, the computation ends long before the
+        // end of the answer, but only when the rest cannot get under the limit
+        String correct = repeat('a', 40) + repeat('b', 40);
+        assertFalse(matcher(correct, 3).matches(repeat('c', 80)));
+        assertFalse(matcher(correct.substring(0, 60), 3).matches(repeat('c', 60)));
+        assertTrue(matcher(correct, 3).matches("ccc" + correct.substring(3)));
+        assertTrue(matcher(correct.substring(0, 60), 3).matches("ccc" + correct.substring(3, 60)));
+        assertFalse(matcher(correct, 3).matches("cccc" + correct.substring(4)));
+        // the lengths alone exceed the limit
+        assertFalse(matcher(correct, 3).matches(correct.substring(4)));
+    }
+
+    @org.junit.Test
+    public void exactMatchingIgnoresNoTypo() {
+        assertTrue(matcher("Meow", 0).matches("Meow"));
+        assertFalse(matcher("Meow", 0).matches("Meov"));
+        assertTrue(matcher("Meow", 1).matches("Meov"));
+    }
+
+    @org.junit.Test
+    public void diacriticsAreRemovedWhenIgnored() {
+        OpenQuestion question = new OpenQuestion("Open", 1, new Answer("Žltá ruža", true));
+        question.setIgnoreDiacritics(true);
+        AnswerMatcher matcher = new AnswerMatcher(question, Locale.ROOT);
+        assertEquals("ZLTA RUZA", matcher.normalize("žltá ruža"));
+        assertTrue(matcher.matches("zlta ruza"));
+        // decomposed marks and letters beyond Latin-1 are removed as well
+        assertTrue(matcher.matches("Žltá ruža"));
+        assertEquals("ΑΘΗΝΑ", matcher.normalize("Αθήνα"));
+
+        AnswerMatcher exact = new AnswerMatcher(new OpenQuestion("Open", 1, new Answer("Žltá ruža", true)),
+                Locale.ROOT);
+        assertFalse(exact.matches("zlta ruza"));
+        // both forms of the same letters are the same answer
+        assertTrue(exact.matches("Žltá ruža"));
+    }
+
+    @org.junit.Test
+    public void whitespaceIsCollapsedWhenNormalized() {
+        OpenQuestion question = new OpenQuestion("Open", 1, new Answer(" red  rose ", true), true);
+        question.setNormalizeWhitespace(true);
+        AnswerMatcher matcher = new AnswerMatcher(question, Locale.ROOT);
+        assertEquals("red rose", matcher.normalize("\tred 　rose\n"));
+        assertEquals("red rose", matcher.normalize("red rose"));
+        assertEquals("", matcher.normalize(" ﻿ "));
+        assertTrue(matcher.matches("red\r\nrose"));
+        assertFalse(matcher.matches("redrose"));
+
+        AnswerMatcher exact = new AnswerMatcher(new OpenQuestion("Open", 1, new Answer("red rose", true), true),
+                Locale.ROOT);
+        assertFalse(exact.matches("red  rose"));
+    }
+
+    @org.junit.Test
+    public void caseIsIgnoredUnlessSensitive() {
+        AnswerMatcher insensitive = new AnswerMatcher(new OpenQuestion("Open", 1, new Answer("Meow", true)),
+                Locale.ROOT);
+        assertTrue(insensitive.matches("mEOW"));
+        AnswerMatcher sensitive = new AnswerMatcher(new OpenQuestion("Open", 1, new Answer("Meow", true), true),
+                Locale.ROOT);
+        assertFalse(sensitive.matches("meow"));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
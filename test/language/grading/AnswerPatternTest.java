@@ -0,0 +1,152 @@
+package language.grading;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import language.model.Answer;
+import language.model.OpenQuestion;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Regular expressions of the open answers: the constructs read the same way
+ * by Java and JS are accepted and translated, so that Java matches what the
+ * page matches, the others are rejected.
+ * @author Milan
+ */
+public class AnswerPatternTest {
+
+    private static final String WHITESPACE = "\\t\\n\\u000B\\f\\r \\u00A0\\u1680\\u2000-\\u200A\\u2028\\u2029\\u202F\\u205F\\u3000\\uFEFF";
+
+    private static final String WORD_I = "[\\w\\u017F\\u212A]";
+
+    private static void assertTranslated(String regex, String java) {
+        assertEquals(regex, java, AnswerPattern.compile(regex, false).pattern());
+    }
+
+    private static void assertTranslated(String regex, String java, String caseInsensitiveJava) {
+        assertTranslated(regex, java);
+        assertEquals(regex, caseInsensitiveJava, AnswerPattern.compile(regex, true).pattern());
+    }
+
+    private static void assertRejected(String regex, String description, int index) {
+        try {
+            AnswerPattern.compile(regex, false);
+            fail("'" + regex + "' has to be rejected.");
+        } catch (PatternSyntaxException ex) {
+            assertEquals(regex, description, ex.getDescription());
+            assertEquals(regex, index, ex.getIndex());
+        }
+    }
+
+    @org.junit.Test
+    public void literalsAndQuantifiersAreKept() {
+        assertTranslated("colou?r", "colou?r");
+        assertTranslated("a|b", "a|b");
+        assertTranslated("a*?b+?c??", "a*?b+?c??");
+        assertTranslated("a{2}b{2,}c{2,3}?", "a{2}b{2,}c{2,3}?");
+        assertTranslated("(a)(?:b)", "(a)(?:b)");
+        assertTranslated("a(?=b)(?!c)", "a(?=b)(?!c)");
+        assertTranslated("ž中", "ž中");
+        // the other ASCII characters are escaped, & would start an intersection in a class
+        assertTranslated("a&b", "a\\&b");
+        assertTranslated("[a&&b]", "[a\\&\\&b]");
+    }
+
+    @org.junit.Test
+    public void escapesAreTranslatedToTheirCharacters() {
+        assertTranslated("\\t\\n\\r\\f", "\\\t\\\n\\\r\\\f");
+        assertTranslated("\\x41\\u00e9", "Aé");
+        assertTranslated("\\.\\*\\/\\$", "\\.\\*\\/\\$");
+    }
+
+    @org.junit.Test
+    public void classesAreThoseOfJs() {
+        assertTranslated("a.b", "a[^\\n\\r\\u2028\\u2029]b");
+        assertTranslated("[a-c]", "[a-c]");
+        assertTranslated("[^a-c]", "(?:(?![a-c])(?s:.))");
+        assertTranslated("\\d\\D", "\\d\\D");
+        assertTranslated("\\w\\W", "\\w[^\\w]", WORD_I + "[^\\w\\u017F\\u212A]");
+        assertTranslated("\\s\\S", "[" + WHITESPACE + "][^" + WHITESPACE + "]");
+        assertTranslated("[\\d\\W-]", "[\\d[^\\w]\\-]", "[\\d[^\\w\\u017F\\u212A]\\-]");
+    }
+
+    @org.junit.Test
+    public void anchorsAreThoseOfJs() {
+        assertTranslated("^a$", "^a\\z");
+        assertTranslated("\\ba\\B",
+                "(?:(?<=\\w)(?!\\w)|(?<!\\w)(?=\\w))a(?:(?<=\\w)(?=\\w)|(?<!\\w)(?!\\w))",
+                "(?:(?<=" + WORD_I + ")(?!" + WORD_I + ")|(?<!" + WORD_I + ")(?=" + WORD_I + "))a"
+                + "(?:(?<=" + WORD_I + ")(?=" + WORD_I + ")|(?<!" + WORD_I + ")(?!" + WORD_I + "))");
+    }
+
+    @org.junit.Test
+    public void translationMatchesLikeJs() {
+        // $ does not match before a final line terminator
+        assertFalse(AnswerPattern.compile("a$", false).matcher("a\n").matches());
+        // . does not match the line separators
+        assertFalse(AnswerPattern.compile("a.b", false).matcher("a b").matches());
+        assertTrue(AnswerPattern.compile("a.b", false).matcher("aéb").matches());
+        // \s matches the byte order mark and the no-break space
+        assertTrue(AnswerPattern.compile("a\\s\\sb", false).matcher("a﻿ b").matches());
+        // the long s and the Kelvin sign are word characters when the case is ignored
+        assertTrue(AnswerPattern.compile("\\w", true).matcher("ſ").matches());
+        assertFalse(AnswerPattern.compile("\\w", false).matcher("ſ").matches());
+        assertTrue(AnswerPattern.compile("[^a]", false).matcher("\n").matches());
+        assertTrue(AnswerPattern.compile("ŽLTÁ", true).matcher("žltá").matches());
+    }
+
+    @org.junit.Test
+    public void otherSyntaxIsRejected() {
+        String groups = "Only the groups (...), (?:...), (?=...) and (?!...) are supported, not inline flags, "
+                + "lookbehinds, named or atomic groups";
+        assertRejected("(?i)a", groups, 1);
+        assertRejected("(?<=a)b", groups, 1);
+        assertRejected("(?<n>a)", groups, 1);
+        assertRejected("(?>a)", groups, 1);
+        assertRejected("a*+", "Possessive and repeated quantifiers are not supported", 2);
+        String escapes = "is not supported, only \\d \\D \\w \\W \\s \\S \\b \\B \\t \\n \\r \\f "
+                + "\\xhh \\uhhhh and the escapes of ^ $ \\ . * + ? ( ) [ ] { } | / are";
+        assertRejected("\\p{L}", "Escape \\p " + escapes, 0);
+        assertRejected("\\A", "Escape \\A " + escapes, 0);
+        assertRejected("a\\Z", "Escape \\Z " + escapes, 1);
+        assertRejected("(a)\\1", "Backreferences and octal escapes are not supported", 3);
+        assertRejected("[[a]]", "Unescaped '[' in a class, nested classes and intersections are not supported", 1);
+        assertRejected("[\\b]", "Escape \\b is not supported in a class", 1);
+        assertRejected("[a-\\d]", "A range cannot start or end with a class like \\d, \\w or \\s", 1);
+        assertRejected("[a-b-c]", "Unescaped '-' in a class, write it first, last or as '\\-'", 4);
+        assertRejected("\\ud800", "Escaped surrogate character, write the character itself", 0);
+        assertRejected("\ud800", "Unpaired surrogate character", 0);
+    }
+
+    @org.junit.Test
+    public void malformedPatternsAreRejected() {
+        assertRejected("*a", "Dangling meta character '*', there is nothing to repeat", 0);
+        assertRejected("a}", "Unescaped '}', write it as '\\}'", 1);
+        assertRejected("^*", "An assertion cannot be repeated", 1);
+        assertRejected("a{3,1}", "Illegal repetition range, the minimum is greater than the maximum", 1);
+        assertRejected("a{x", "Malformed repetition, expected a count of up to 6 digits", 2);
+        assertRejected("a{1234567}", "Malformed repetition, expected a count of up to 6 digits", 2);
+        assertRejected("a{1", "Malformed repetition, use {n}, {n,} or {n,m}, or escape the '{'", 1);
+        assertRejected("\\u00", "Expected 4 hexadecimal digits", 2);
+        assertRejected("[]", "Empty character class", 1);
+        assertRejected("[b-a]", "Illegal character range, it ends before it starts", 1);
+        assertRejected("[a", "Unclosed character class", 0);
+        assertRejected("(a", "Unclosed group", 0);
+        assertRejected("a)", "Unmatched closing ')'", 1);
+        assertRejected("\\", "Unexpected backslash at the end", 0);
+    }
+
+    @org.junit.Test
+    public void answersAreNormalizedBeforeTheyAreCompiled() {
+        OpenQuestion question = new OpenQuestion("Open", 1, new Answer("Žlt[aá] ruža", true));
+        question.setRegularExpression(true);
+        question.setIgnoreDiacritics(true);
+        Pattern pattern = AnswerMatcher.compilePattern(question, question.getAnswers().get(0).getText());
+        assertEquals("Zlt[aa] ruza", pattern.pattern());
+        assertTrue((pattern.flags() & Pattern.CASE_INSENSITIVE) != 0);
+        // the page gets the answer as it was written, it normalizes it itself
+        assertEquals("[3,'q',1,10,['Žlt[aá] ruža'],0]", question.toJS("q"));
+    }
+}
@@ -0,0 +1,203 @@
+package language.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import language.model.Answer;
+import language.model.MatchingPair;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.PageRenderer;
+import language.model.SingleOptionQuestion;
+import language.model.StringPool;
+import language.model.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests read back from the binary format have to be the same tests, with the
+ * same content hash and the same page as the written ones.
+ * @author Milan
+ */
+public class BinaryTestReaderTest {
+
+    private static Test sample(String title) {
+        Test test = new Test(title, -3);
+        SingleOptionQuestion single = new SingleOptionQuestion("Single", 2);
+        single.addAnswer(new Answer("True", true));
+        single.addAnswer(new Answer("False", false));
+        test.addQuestion(single);
+        MultipleOptionsQuestion multiple = new MultipleOptionsQuestion("Multiple <b>&</b> 'quoted'", 300);
+        multiple.addAnswer(new Answer("True", true));
+        multiple.addAnswer(new Answer("Žluťoučký kůň", true));
+        multiple.addAnswer(new Answer("False", false));
+        test.addQuestion(multiple);
+        OpenQuestion open = new OpenQuestion("Open", -1);
+        open.addAnswer(new Answer("Praha", true));
+        open.setCaseSensitive(true);
+        open.setIgnoreDiacritics(true);
+        open.setNormalizeWhitespace(true);
+        open.setMaxEditDistance(2);
+        test.addQuestion(open);
+        OpenQuestion regex = new OpenQuestion("Regex", 1);
+        regex.addAnswer(new Answer("[0-9]+", true));
+        regex.setRegularExpression(true);
+        test.addQuestion(regex);
+        MatchingPairsQuestion pairing = new MatchingPairsQuestion("Pairing", 4);
+        pairing.addPair(new MatchingPair("one", "1"));
+        pairing.addPair(new MatchingPair("two", "2"));
+        test.addQuestion(pairing);
+        return test;
+    }
+
+    private static byte[] write(Test... tests) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (BinaryTestWriter writer = new BinaryTestWriter(bytes)) {
+            for (Test test : tests) {
+                writer.write(test);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Test> read(byte[] bytes, StringPool stringPool) throws IOException {
+        try (BinaryTestReader reader = new BinaryTestReader(new ByteArrayInputStream(bytes), stringPool)) {
+            return reader.readAll();
+        }
+    }
+
+    private static String page(Test test) throws IOException {
+        StringBuilder out = new StringBuilder();
+        new PageRenderer(test).render(out);
+        return out.toString();
+    }
+
+    @org.junit.Test
+    public void roundTripKeepsContentHashAndPage() throws IOException {
+        Test test = sample("Round trip");
+        Test read = read(write(test), null).get(0);
+        assertEquals(test.contentHash(), read.contentHash());
+        assertEquals(page(test), page(read));
+    }
+
+    @org.junit.Test
+    public void roundTripKeepsQuestionsAndFlags() throws IOException {
+        Test read = read(write(sample("Round trip")), null).get(0);
+        assertEquals("Round trip", read.getTitle());
+        assertEquals(-3, read.getMinPoints());
+        assertEquals(5, read.getQuestions().size());
+        assertTrue(read.getQuestions().get(0).getValue() instanceof SingleOptionQuestion);
+        MultipleOptionsQuestion multiple = (MultipleOptionsQuestion) read.getQuestions().get(1).getValue();
+        assertEquals(300, multiple.getPoints());
+        assertEquals("Žluťoučký kůň", multiple.getAnswers().get(1).getText());
+        assertFalse(multiple.getAnswers().get(2).isCorrect());
+        OpenQuestion open = (OpenQuestion) read.getQuestions().get(2).getValue();
+        assertEquals(-1, open.getPoints());
+        assertTrue(open.isCaseSensitive());
+        assertTrue(open.isIgnoreDiacritics());
+        assertTrue(open.isNormalizeWhitespace());
+        assertFalse(open.isRegularExpression());
+        assertEquals(2, open.getMaxEditDistance());
+        OpenQuestion regex = (OpenQuestion) read.getQuestions().get(3).getValue();
+        assertTrue(regex.isRegularExpression());
+        assertFalse(regex.isCaseSensitive());
+        assertEquals(0, regex.getMaxEditDistance());
+        MatchingPairsQuestion pairing = (MatchingPairsQuestion) read.getQuestions().get(4).getValue();
+        assertEquals("two", pairing.getPairs().get(1).getLeft());
+        assertEquals("2", pairing.getPairs().get(1).getRight());
+    }
+
+    @org.junit.Test
+    public void testsAreReadInTheWrittenOrder() throws IOException {
+        List<Test> read = read(write(sample("First"), sample("Second"), new Test("Empty", 0)), null);
+        assertEquals(3, read.size());
+        assertEquals("First", read.get(0).getTitle());
+        assertEquals("Second", read.get(1).getTitle());
+        assertEquals(0, read.get(2).getQuestions().size());
+    }
+
+    @org.junit.Test
+    public void repeatedTextsAreReadAsOneInstance() throws IOException {
+        List<Test> read = read(write(sample("First"), sample("Second")), null);
+        String first = read.get(0).getQuestions().get(0).getValue().getAnswers().get(0).getText();
+        assertSame(first, read.get(0).getQuestions().get(1).getValue().getAnswers().get(0).getText());
+        assertSame(first, read.get(1).getQuestions().get(0).getValue().getAnswers().get(0).getText());
+    }
+
+    @org.junit.Test
+    public void pooledReadersShareTheTexts() throws IOException {
+        StringPool pool = new StringPool();
+        Test first = read(write(sample("First")), pool).get(0);
+        Test second = read(write(sample("Second")), pool).get(0);
+        assertSame(first.getQuestions().get(0).getValue().getText(), second.getQuestions().get(0).getValue().getText());
+    }
+
+    @org.junit.Test
+    public void readsVersionOneWithoutEditDistance() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(BinaryFormat.MAGIC);
+        bytes.write(1);
+        bytes.write(BinaryFormat.TEST);
+        writeNewString(bytes, "Old");
+        bytes.write(0);
+        bytes.write(1);
+        bytes.write(BinaryFormat.OPEN);
+        writeNewString(bytes, "Open");
+        bytes.write(2 << 1);
+        bytes.write(BinaryFormat.CASE_SENSITIVE);
+        bytes.write(1);
+        writeNewString(bytes, "Answer");
+        bytes.write(1);
+        bytes.write(0);
+        Test read = read(bytes.toByteArray(), null).get(0);
+        OpenQuestion open = (OpenQuestion) read.getQuestions().get(0).getValue();
+        assertEquals(2, open.getPoints());
+        assertTrue(open.isCaseSensitive());
+        assertEquals(0, open.getMaxEditDistance());
+        assertEquals("Answer", open.getAnswers().get(0).getText());
+    }
+
+    private static void writeNewString(ByteArrayOutputStream bytes, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        bytes.write(0);
+        bytes.write(utf8.length);
+        bytes.write(utf8);
+    }
+
+    @org.junit.Test
+    public void rejectsOtherStreams() throws IOException {
+        try {
+            read("<html>".getBytes(StandardCharsets.UTF_8), null);
+            fail("A stream without the magic has to be rejected.");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("binary format"));
+        }
+    }
+
+    @org.junit.Test
+    public void rejectsTruncatedStreams() throws IOException {
+        byte[] bytes = write(sample("Truncated"));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+        try {
+            read(truncated, null);
+            fail("A truncated stream has to be rejected.");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @org.junit.Test
+    public void emptyStreamHasNoTests() throws IOException {
+        try (BinaryTestReader reader = new BinaryTestReader(new ByteArrayInputStream(write()))) {
+            assertNull(reader.read());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package language.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import language.builder.ParsingException;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.StringPool;
+import language.model.Test;
+import language.parser.TestParser;
+import org.junit.After;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Imports of CSV question banks and the errors reported for their records.
+ * @author Milan
+ */
+public class CsvTestImporterTest {
+
+    static final String BIOLOGY = "test,Biology test,20\r\n"
+            + "# herbivores\r\n"
+            + "question,multiple,10,Which of the following are herbivores?\r\n"
+            + "answer,false,Lion\r\n"
+            + "answer,true,Sheep\r\n"
+            + "question,open,20,\"What does a cat say, \"\"exactly\"\"?\",yes\r\n"
+            + "answer,true,Meow\r\n"
+            + "\r\n"
+            + "question,matching,10,\"Combine males\nand females:\"\r\n"
+            + "pair,Lion,Lioness\r\n"
+            + "pair,Bull,Cow\r\n";
+
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private PrintStream systemErr;
+
+    @Before
+    public void captureErrors() throws UnsupportedEncodingException {
+        systemErr = System.err;
+        System.setErr(new PrintStream(errors, true, "UTF-8"));
+    }
+
+    @After
+    public void restoreErrors() {
+        System.setErr(systemErr);
+    }
+
+    private String errors() throws UnsupportedEncodingException {
+        return errors.toString("UTF-8");
+    }
+
+    private static Test load(TestImporter importer, String content) throws IOException, ParsingException {
+        return importer.load(new StringReader(content), "biology.csv");
+    }
+
+    @org.junit.Test
+    public void recordsGiveTheTest() throws IOException, ParsingException {
+        Test test = load(new CsvTestImporter(), BIOLOGY);
+        assertNotNull(errors(), test);
+        assertEquals("Biology test", test.getTitle());
+        assertEquals(20, test.getMinPoints());
+        assertEquals(3, test.getQuestions().size());
+        MultipleOptionsQuestion multiple = (MultipleOptionsQuestion) test.getQuestions().get(0).getValue();
+        assertEquals(10, multiple.getPoints());
+        assertFalse(multiple.getAnswers().get(0).isCorrect());
+        assertTrue(multiple.getAnswers().get(1).isCorrect());
+        OpenQuestion open = (OpenQuestion) test.getQuestions().get(1).getValue();
+        assertEquals("What does a cat say, \"exactly\"?", open.getText());
+        assertTrue(open.isCaseSensitive());
+        MatchingPairsQuestion pairing = (MatchingPairsQuestion) test.getQuestions().get(2).getValue();
+        assertEquals("Combine males\nand females:", pairing.getText());
+        assertEquals("Cow", pairing.getPairs().get(1).getRight());
+    }
+
+    @org.junit.Test
+    public void sameBankInOtherFormatsGivesTheSameTest() throws IOException, ParsingException {
+        Test csv = load(new CsvTestImporter(), BIOLOGY);
+        Test json = new JsonTestImporter().load(new StringReader(JsonTestImporterTest.BIOLOGY), "biology.json");
+        Test parsed = new TestParser().load(new StringReader("create_test(\"Biology test\", 20);\n"
+                + "multiple_choice_question(\"Which of the following are herbivores?\", 10);\n"
+                + "incorrect_answer(\"Lion\");\n"
+                + "correct_answer(\"Sheep\");\n"
+                + "open_answer_question(\"What does a cat say, \\\"exactly\\\"?\", 20, \"Meow\", YES);\n"
+                + "pairing_question(\"Combine males\\nand females:\", 10);\n"
+                + "pair(\"Lion\", \"Lioness\");\n"
+                + "pair(\"Bull\", \"Cow\");\n"), "biology.test");
+        assertNotNull(errors(), json);
+        assertNotNull(errors(), parsed);
+        assertEquals(csv.contentHash(), json.contentHash());
+        assertEquals(csv.contentHash(), parsed.contentHash());
+    }
+
+    @org.junit.Test
+    public void wrongRecordsAreReportedWithTheirLines() throws IOException, ParsingException {
+        CsvTestImporter importer = new CsvTestImporter();
+        Test test = load(importer, "test,Test,0\n"
+                + "question,essay,1,Describe it\n"
+                + "answer,true,Ignored\n"
+                + "question,single,one,Which one?\n"
+                + "question,single,1,Which one?\n"
+                + "answer,maybe,Yes\n"
+                + "answer,true,Yes\n"
+                + "answer,false,No\n"
+                + "note,Something\n"
+                + "pair,Left\n");
+        assertNull(test);
+        assertFalse(importer.isCorrect());
+        String errors = errors();
+        assertTrue(errors, errors.contains("Unknown type of question 'essay'"));
+        assertTrue(errors, errors.contains("biology.csv:2"));
+        assertTrue(errors, errors.contains("The points have to be a whole number, not 'one'."));
+        assertTrue(errors, errors.contains("biology.csv:4"));
+        assertTrue(errors, errors.contains("has to be stated as correct or not (true or false), not 'maybe'."));
+        assertTrue(errors, errors.contains("biology.csv:6"));
+        assertTrue(errors, errors.contains("Unknown kind of record 'note'"));
+        assertTrue(errors, errors.contains("biology.csv:9"));
+        assertTrue(errors, errors.contains("The record has 2 values, the expected format is 'pair,left,right'."));
+        assertTrue(errors, errors.contains("biology.csv:10"));
+        // the answer of the wrong question is skipped without an error
+        assertEquals(errors, 5, importer.getErrorHandling().getErrorCount());
+    }
+
+    @org.junit.Test
+    public void answerWithoutQuestionIsReported() throws IOException, ParsingException {
+        load(new CsvTestImporter(), "test,Test,0\nanswer,true,Yes\n");
+        assertTrue(errors(), errors().contains("There is no question the answer belongs to"));
+        assertTrue(errors(), errors().contains("biology.csv:2"));
+    }
+
+    @org.junit.Test
+    public void invalidQuestionIsReportedAtItsRecord() throws IOException, ParsingException {
+        Test test = load(new CsvTestImporter(), "test,Test,0\n"
+                + "\n"
+                + "question,single,1,Which one?\n"
+                + "answer,false,No\n");
+        assertNull(test);
+        assertTrue(errors(), errors().contains("biology.csv:3"));
+    }
+
+    @org.junit.Test
+    public void unclosedQuoteStopsTheImport() throws IOException {
+        try {
+            load(new CsvTestImporter(), "test,Test,0\nquestion,single,1,\"Which one?\nanswer,true,Yes\n");
+            fail("An unclosed quoted value has to stop the import.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("The quoted value is not closed."));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("biology.csv:2"));
+        }
+    }
+
+    @org.junit.Test
+    public void streamPassesOnlyValidQuestions() throws IOException, ParsingException {
+        CsvTestImporter importer = new CsvTestImporter();
+        List<Question> questions = new ArrayList<>();
+        Test test = importer.stream(new StringReader(BIOLOGY + "question,single,1,Which one?\nanswer,true,Yes\n"),
+                "biology.csv", questions::add);
+        assertEquals("Biology test", test.getTitle());
+        assertEquals(0, test.getQuestions().size());
+        assertEquals(3, questions.size());
+        assertFalse(importer.isCorrect());
+        // the quoted text of the matching question spans two lines
+        assertTrue(errors(), errors().contains("biology.csv:13"));
+    }
+
+    @org.junit.Test
+    public void pooledImportsShareTheTexts() throws IOException, ParsingException {
+        StringPool pool = new StringPool();
+        CsvTestImporter first = new CsvTestImporter();
+        first.getSettings().setStringPool(pool);
+        CsvTestImporter second = new CsvTestImporter();
+        second.getSettings().setStringPool(pool);
+        Test one = load(first, BIOLOGY);
+        Test other = load(second, BIOLOGY);
+        assertSame(one.getQuestions().get(0).getValue().getAnswers().get(0).getText(),
+                other.getQuestions().get(0).getValue().getAnswers().get(0).getText());
+    }
+
+    @org.junit.Test
+    public void importerIsChosenByTheExtension() {
+        assertTrue(TestImporter.forFile(Paths.get("bank.CSV")) instanceof CsvTestImporter);
+        assertTrue(TestImporter.forFile(Paths.get("bank.json")) instanceof JsonTestImporter);
+        assertTrue(TestImporter.forFile(Paths.get("bank.xml")) instanceof MoodleXmlImporter);
+        assertTrue(TestImporter.forFile(Paths.get("bank.test")) instanceof TestParser);
+        try {
+            TestImporter.forFile(Paths.get("bank.txt"));
+            fail("An unknown format has to be rejected.");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package language.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import language.builder.ParsingException;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Test;
+import org.junit.After;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Imports of JSON question banks and the errors reported for their objects.
+ * @author Milan
+ */
+public class JsonTestImporterTest {
+
+    static final String BIOLOGY = "{\n"
+            + "  \"title\": \"Biology test\",\n"
+            + "  \"minPoints\": 20,\n"
+            + "  \"author\": {\"name\": \"unknown\", \"tags\": [1, true, null]},\n"
+            + "  \"questions\": [\n"
+            + "    {\"answers\": [{\"text\": \"Lion\", \"correct\": false}, {\"correct\": true, \"text\": \"Sheep\"}],\n"
+            + "     \"type\": \"multiple\", \"text\": \"Which of the following are herbivores?\", \"points\": 10},\n"
+            + "    {\"type\": \"open\", \"text\": \"What does a cat say, \\\"exactly\\\"?\", \"points\": 20, \"caseSensitive\": true,\n"
+            + "     \"answers\": [{\"text\": \"Meow\", \"correct\": true}]},\n"
+            + "    {\"type\": \"matching\", \"text\": \"Combine males\\nand females:\", \"points\": 10,\n"
+            + "     \"pairs\": [{\"left\": \"Lion\", \"right\": \"Lioness\"}, {\"left\": \"Bull\", \"right\": \"Cow\"}]}\n"
+            + "  ]\n"
+            + "}\n";
+
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private PrintStream systemErr;
+
+    @Before
+    public void captureErrors() throws UnsupportedEncodingException {
+        systemErr = System.err;
+        System.setErr(new PrintStream(errors, true, "UTF-8"));
+    }
+
+    @After
+    public void restoreErrors() {
+        System.setErr(systemErr);
+    }
+
+    private String errors() throws UnsupportedEncodingException {
+        return errors.toString("UTF-8");
+    }
+
+    private static Test load(TestImporter importer, String content) throws IOException, ParsingException {
+        return importer.load(new StringReader(content), "biology.json");
+    }
+
+    @org.junit.Test
+    public void documentGivesTheTest() throws IOException, ParsingException {
+        Test test = load(new JsonTestImporter(), BIOLOGY);
+        assertNotNull(errors(), test);
+        assertEquals("Biology test", test.getTitle());
+        assertEquals(20, test.getMinPoints());
+        assertEquals(3, test.getQuestions().size());
+        MultipleOptionsQuestion multiple = (MultipleOptionsQuestion) test.getQuestions().get(0).getValue();
+        assertEquals("Which of the following are herbivores?", multiple.getText());
+        assertFalse(multiple.getAnswers().get(0).isCorrect());
+        assertEquals("Sheep", multiple.getAnswers().get(1).getText());
+        assertTrue(multiple.getAnswers().get(1).isCorrect());
+        OpenQuestion open = (OpenQuestion) test.getQuestions().get(1).getValue();
+        assertEquals("What does a cat say, \"exactly\"?", open.getText());
+        assertTrue(open.isCaseSensitive());
+        MatchingPairsQuestion pairing = (MatchingPairsQuestion) test.getQuestions().get(2).getValue();
+        assertEquals("Combine males\nand females:", pairing.getText());
+        assertEquals("Lioness", pairing.getPairs().get(0).getRight());
+    }
+
+    @org.junit.Test
+    public void matchingOfOpenAnswersIsImported() throws IOException, ParsingException {
+        Test test = load(new JsonTestImporter(), "{\"questions\": [{\"type\": \"open\", \"text\": \"Capital of Czechia?\",\n"
+                + "  \"points\": 1, \"ignoreDiacritics\": true, \"normalizeWhitespace\": true, \"maxEditDistance\": 1,\n"
+                + "  \"answers\": [{\"text\": \"Praha\", \"correct\": true}]},\n"
+                + " {\"type\": \"open\", \"text\": \"A number?\", \"points\": 1, \"regularExpression\": true,\n"
+                + "  \"answers\": [{\"text\": \"[0-9]+\", \"correct\": true}]}]}");
+        assertNotNull(errors(), test);
+        assertEquals("biology", test.getTitle());
+        OpenQuestion open = (OpenQuestion) test.getQuestions().get(0).getValue();
+        assertFalse(open.isCaseSensitive());
+        assertTrue(open.isIgnoreDiacritics());
+        assertTrue(open.isNormalizeWhitespace());
+        assertFalse(open.isRegularExpression());
+        assertEquals(1, open.getMaxEditDistance());
+        assertTrue(((OpenQuestion) test.getQuestions().get(1).getValue()).isRegularExpression());
+    }
+
+    @org.junit.Test
+    public void wrongObjectsAreReportedWithTheirLines() throws IOException, ParsingException {
+        JsonTestImporter importer = new JsonTestImporter();
+        Test test = load(importer, "{\"questions\": [\n"
+                + "  {\"type\": \"essay\", \"text\": \"Describe it\", \"points\": 1},\n"
+                + "  {\"text\": \"No type\", \"points\": 1},\n"
+                + "  {\"type\": \"single\", \"text\": \"Which one?\", \"points\": 1, \"caseSensitive\": true},\n"
+                + "  {\"type\": \"matching\", \"text\": \"Combine\", \"points\": 1, \"regularExpression\": true},\n"
+                + "  {\"type\": \"single\", \"text\": \"Which other?\", \"points\": 1, \"answers\": [\n"
+                + "    {\"correct\": true},\n"
+                + "    {\"text\": \"Yes\", \"correct\": true}, {\"text\": \"No\"}]},\n"
+                + "  {\"type\": \"matching\", \"text\": \"Combine them\", \"points\": 1, \"pairs\": [\n"
+                + "    {\"left\": \"Lion\"},\n"
+                + "    {\"left\": \"Bull\", \"right\": \"Cow\"}, {\"left\": \"Ram\", \"right\": \"Ewe\"}]}\n"
+                + "]}");
+        assertNull(test);
+        assertFalse(importer.isCorrect());
+        String errors = errors();
+        assertTrue(errors, errors.contains("Unknown type of question 'essay'"));
+        assertTrue(errors, errors.contains("biology.json:2"));
+        assertTrue(errors, errors.contains("Every question has to state its type and text."));
+        assertTrue(errors, errors.contains("biology.json:3"));
+        assertTrue(errors, errors.contains("Only open questions can state the case sensitivity, question 'Which one?' cannot."));
+        assertTrue(errors, errors.contains("biology.json:4"));
+        assertTrue(errors, errors.contains("Only open questions can state how their answers are matched, question 'Combine' cannot."));
+        assertTrue(errors, errors.contains("biology.json:5"));
+        assertTrue(errors, errors.contains("Every answer has to have text."));
+        assertTrue(errors, errors.contains("biology.json:7"));
+        assertTrue(errors, errors.contains("Every pair has to have the left and the right side."));
+        assertTrue(errors, errors.contains("biology.json:10"));
+        assertEquals(errors, 6, importer.getErrorHandling().getErrorCount());
+    }
+
+    @org.junit.Test
+    public void malformedDocumentStopsTheImport() throws IOException {
+        try {
+            load(new JsonTestImporter(), "{\"title\": \"Test\",\n\"minPoints\" 0}");
+            fail("A missing colon has to stop the import.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Expected ':' after the name of the member."));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("biology.json:2"));
+        }
+    }
+
+    @org.junit.Test
+    public void unfinishedDocumentStopsTheImport() throws IOException {
+        try {
+            load(new JsonTestImporter(), "{\"title\": \"Test\",\n\"questions\": [\n");
+            fail("An unfinished document has to stop the import.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Unexpected end of the JSON document."));
+        }
+    }
+}
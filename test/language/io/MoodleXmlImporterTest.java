@@ -0,0 +1,194 @@
+package language.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import language.builder.ParsingException;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+import org.junit.After;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Imports of Moodle XML question banks, the mapping of the Moodle question
+ * types and the errors reported for the questions.
+ * @author Milan
+ */
+public class MoodleXmlImporterTest {
+
+    private static final String BIOLOGY = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<quiz>\n"
+            + "  <question type=\"category\">\n"
+            + "    <category><text>$course$/top/Biology test</text></category>\n"
+            + "  </question>\n"
+            + "  <question type=\"description\">\n"
+            + "    <questiontext format=\"html\"><text>Read carefully.</text></questiontext>\n"
+            + "  </question>\n"
+            + "  <question type=\"multichoice\">\n"
+            + "    <name><text>Herbivores</text></name>\n"
+            + "    <questiontext format=\"html\"><text><![CDATA[Which of the <b>following</b> are herbivores?]]></text></questiontext>\n"
+            + "    <defaultgrade>10.0000000</defaultgrade>\n"
+            + "    <answer fraction=\"-50\"><text>Lion</text></answer>\n"
+            + "    <answer fraction=\"50\"><text>Sheep</text></answer>\n"
+            + "    <answer fraction=\"50\"><text>Cow</text></answer>\n"
+            + "    <single>false</single>\n"
+            + "  </question>\n"
+            + "  <question type=\"truefalse\">\n"
+            + "    <questiontext><text>A bat is a bird.</text></questiontext>\n"
+            + "    <answer fraction=\"0\"><text>true</text></answer>\n"
+            + "    <answer fraction=\"100\"><text>false</text></answer>\n"
+            + "  </question>\n"
+            + "  <question type=\"shortanswer\">\n"
+            + "    <questiontext><text>What does a cat say?</text></questiontext>\n"
+            + "    <defaultgrade>20</defaultgrade>\n"
+            + "    <usecase>1</usecase>\n"
+            + "    <answer fraction=\"100\"><text>Meow</text></answer>\n"
+            + "    <answer fraction=\"50\"><text>Mew</text></answer>\n"
+            + "  </question>\n"
+            + "  <question type=\"matching\">\n"
+            + "    <questiontext><text>Combine males and females:</text></questiontext>\n"
+            + "    <subquestion><text>Lion</text><answer><text>Lioness</text></answer></subquestion>\n"
+            + "    <subquestion><text>Bull</text><answer><text>Cow</text></answer></subquestion>\n"
+            + "    <subquestion><text></text><answer><text>Mare</text></answer></subquestion>\n"
+            + "  </question>\n"
+            + "</quiz>\n";
+
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private PrintStream systemErr;
+
+    @Before
+    public void captureErrors() throws UnsupportedEncodingException {
+        systemErr = System.err;
+        System.setErr(new PrintStream(errors, true, "UTF-8"));
+    }
+
+    @After
+    public void restoreErrors() {
+        System.setErr(systemErr);
+    }
+
+    private String errors() throws UnsupportedEncodingException {
+        return errors.toString("UTF-8");
+    }
+
+    private static Test load(TestImporter importer, String content) throws IOException, ParsingException {
+        return importer.load(new StringReader(content), "biology.xml");
+    }
+
+    @org.junit.Test
+    public void questionTypesAreMapped() throws IOException, ParsingException {
+        Test test = load(new MoodleXmlImporter(), BIOLOGY);
+        assertNotNull(errors(), test);
+        assertEquals("Biology test", test.getTitle());
+        assertEquals(4, test.getQuestions().size());
+
+        MultipleOptionsQuestion multiple = (MultipleOptionsQuestion) test.getQuestions().get(0).getValue();
+        assertEquals("Which of the <b>following</b> are herbivores?", multiple.getText());
+        assertEquals(10, multiple.getPoints());
+        assertEquals(3, multiple.getAnswers().size());
+        assertFalse(multiple.getAnswers().get(0).isCorrect());
+        assertTrue(multiple.getAnswers().get(1).isCorrect());
+        assertTrue(multiple.getAnswers().get(2).isCorrect());
+
+        SingleOptionQuestion single = (SingleOptionQuestion) test.getQuestions().get(1).getValue();
+        assertEquals(1, single.getPoints());
+        assertEquals("false", single.getAnswers().get(1).getText());
+        assertTrue(single.getAnswers().get(1).isCorrect());
+
+        OpenQuestion open = (OpenQuestion) test.getQuestions().get(2).getValue();
+        assertEquals(20, open.getPoints());
+        assertTrue(open.isCaseSensitive());
+        // only the fully correct answers are accepted
+        assertEquals(1, open.getAnswers().size());
+        assertEquals("Meow", open.getAnswers().get(0).getText());
+
+        MatchingPairsQuestion pairing = (MatchingPairsQuestion) test.getQuestions().get(3).getValue();
+        // the subquestion without text is only an additional wrong option
+        assertEquals(2, pairing.getPairs().size());
+        assertEquals("Bull", pairing.getPairs().get(1).getLeft());
+        assertEquals("Cow", pairing.getPairs().get(1).getRight());
+    }
+
+    @org.junit.Test
+    public void wrongQuestionsAreReportedWithTheirLines() throws IOException, ParsingException {
+        MoodleXmlImporter importer = new MoodleXmlImporter();
+        Test test = load(importer, "<quiz>\n"
+                + "  <question type=\"essay\">\n"
+                + "    <questiontext><text>Describe it.</text></questiontext>\n"
+                + "  </question>\n"
+                + "  <question type=\"shortanswer\">\n"
+                + "    <questiontext><text>What does a cat say?</text></questiontext>\n"
+                + "    <defaultgrade>many</defaultgrade>\n"
+                + "    <answer fraction=\"100\"><text>Meow</text></answer>\n"
+                + "  </question>\n"
+                + "</quiz>\n");
+        assertNull(test);
+        assertFalse(importer.isCorrect());
+        String errors = errors();
+        assertTrue(errors, errors.contains("Moodle question type 'essay' is not supported"));
+        assertTrue(errors, errors.contains("biology.xml:2"));
+        assertTrue(errors, errors.contains("The default grade of the question has to be a number, not 'many'."));
+        assertTrue(errors, errors.contains("biology.xml:5"));
+    }
+
+    @org.junit.Test
+    public void invalidQuestionIsReportedAtItsElement() throws IOException, ParsingException {
+        Test test = load(new MoodleXmlImporter(), "<quiz>\n"
+                + "\n"
+                + "  <question type=\"multichoice\">\n"
+                + "    <questiontext><text>Which one?</text></questiontext>\n"
+                + "    <answer fraction=\"0\"><text>No</text></answer>\n"
+                + "  </question>\n"
+                + "</quiz>\n");
+        assertNull(test);
+        assertTrue(errors(), errors().contains("biology.xml:3"));
+    }
+
+    @org.junit.Test
+    public void otherDocumentsAreRejected() throws IOException {
+        try {
+            load(new MoodleXmlImporter(), "<html><body/></html>");
+            fail("A document that is not a question bank has to be rejected.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("its root element is 'html' instead of 'quiz'"));
+        }
+    }
+
+    @org.junit.Test
+    public void malformedDocumentStopsTheImport() throws IOException {
+        try {
+            load(new MoodleXmlImporter(), "<quiz>\n<question type=\"truefalse\">\n</quiz>\n");
+            fail("A malformed document has to stop the import.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Malformed Moodle XML"));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("biology.xml:3"));
+        }
+    }
+
+    @org.junit.Test
+    public void externalEntitiesAreNotResolved() throws IOException {
+        try {
+            Test test = load(new MoodleXmlImporter(), "<?xml version=\"1.0\"?>\n"
+                    + "<!DOCTYPE quiz [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>\n"
+                    + "<quiz><question type=\"shortanswer\"><questiontext><text>&secret;</text></questiontext>\n"
+                    + "<answer fraction=\"100\"><text>x</text></answer></question></quiz>\n");
+            if (test != null) {
+                assertFalse(test.getQuestions().get(0).getValue().getText().contains("root:"));
+            }
+        } catch (ParsingException ex) {
+            // rejecting the document is fine as well
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package language.model;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Escaping of the texts for the text of an element, an attribute and a JS
+ * string literal in a script element.
+ * @author Milan
+ */
+public class EscaperTest {
+
+    private static String text(String value) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Escaper.appendText(sb, value);
+        return sb.toString();
+    }
+
+    private static String attribute(String value) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        Escaper.appendAttribute(sb, value);
+        return sb.toString();
+    }
+
+    private static String js(String value) {
+        return Escaper.appendJsString(new StringBuilder(), value).toString();
+    }
+
+    /**
+     * Reads the JS string literal the way JS does for the escapes the
+     * Escaper writes.
+     */
+    private static String parseJs(String literal) {
+        assertTrue(literal, literal.startsWith("'") && literal.endsWith("'") && literal.length() >= 2);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < literal.length() - 1; i++) {
+            char c = literal.charAt(i);
+            assertFalse(literal, c == '\'' || c < 0x20 || c == '\u2028' || c == '\u2029' || c == '<');
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = literal.charAt(++i);
+            switch (e) {
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'x':
+                    sb.append((char) Integer.parseInt(literal.substring(i + 1, i + 3), 16));
+                    i += 2;
+                    break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(literal.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    sb.append(e);
+            }
+        }
+        return sb.toString();
+    }
+
+    @org.junit.Test
+    public void textEscapesOnlyTheMarkup() throws IOException {
+        assertEquals("Tom &amp; Jerry &lt;b&gt; 'quoted' \"double\"", text("Tom & Jerry <b> 'quoted' \"double\""));
+        assertEquals("", text(""));
+    }
+
+    @org.junit.Test
+    public void attributeEscapesBothQuotes() throws IOException {
+        assertEquals("it&#39;s &quot;here&quot; &amp; &lt;there&gt;", attribute("it's \"here\" & <there>"));
+    }
+
+    @org.junit.Test
+    public void scriptCannotBeEndedByTheString() {
+        assertEquals("'\\x3c/script>\\x3c!-- -->'", js("</script><!-- -->"));
+        assertEquals("'\\x3cSCRIPT'", js("<SCRIPT"));
+    }
+
+    @org.junit.Test
+    public void quotesAndBackslashesAreEscaped() {
+        assertEquals("'it\\'s \"a\\\\b\"'", js("it's \"a\\b\""));
+    }
+
+    @org.junit.Test
+    public void lineTerminatorsAreEscaped() {
+        // U+2028 and U+2029 end a string literal in older JS
+        assertEquals("'a\\nb\\rc\\u2028d\\u2029e'", js("a\nb\rc\u2028d\u2029e"));
+    }
+
+    @org.junit.Test
+    public void controlCharactersAreEscaped() {
+        assertEquals("'\\u0000\\u0009\\u001f\\u000b'", js("\u0000\t\u001f\u000b"));
+        assertEquals("' ~\u007f\u00e9\u4e2d'", js(" ~\u007f\u00e9\u4e2d"));
+    }
+
+    @org.junit.Test
+    public void literalGivesBackTheValue() {
+        Random random = new Random(7);
+        char[] interesting = {'\'', '"', '\\', '<', '>', '&', '/', '\n', '\r', '\t', '\u0000', '\u2028', '\u2029',
+            'a', ' ', '\u00e9', '\ud83d', '\ude00'};
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder value = new StringBuilder();
+            for (int j = random.nextInt(20); j > 0; j--) {
+                value.append(random.nextBoolean() ? interesting[random.nextInt(interesting.length)]
+                        : (char) random.nextInt(0x3000));
+            }
+            assertEquals(value.toString(), parseJs(js(value.toString())));
+        }
+    }
+
+    @org.junit.Test
+    public void writersGetTheSameOutput() throws IOException {
+        String value = "it's <b>\n\u2028 & \"done\"";
+        StringWriter writer = new StringWriter();
+        Escaper.appendText(writer, value);
+        writer.append('|');
+        Escaper.appendAttribute(writer, value);
+        writer.append('|');
+        Escaper.appendJsString(writer, value);
+        assertEquals(text(value) + "|" + attribute(value) + "|" + js(value), writer.toString());
+    }
+}
@@ -0,0 +1,110 @@
+package language.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import language.builder.ParsingException;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import test.BiologyTest;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * The page of the Biology test has to stay the same byte for byte whichever
+ * way it is rendered or written. biology.html is the page generated by the
+ * streaming renderer, a change of the page has to regenerate it (and change
+ * PAGE_VERSION if the pages of older versions should not be kept).
+ * @author Milan
+ */
+public class GoldenPageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static byte[] golden() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = GoldenPageTest.class.getResourceAsStream("biology.html")) {
+            assertNotNull("biology.html is missing", in);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static Test biology() throws ParsingException {
+        Test test = new BiologyTest().build();
+        assertNotNull(test);
+        return test;
+    }
+
+    private static void assertGolden(byte[] page) throws IOException {
+        // compared as text first, so that a failure shows the difference
+        assertEquals(new String(golden(), StandardCharsets.UTF_8), new String(page, StandardCharsets.UTF_8));
+        assertArrayEquals(golden(), page);
+    }
+
+    @org.junit.Test
+    public void pageIsTheGoldenOne() throws IOException, ParsingException {
+        assertGolden(biology().toHTML().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @org.junit.Test
+    public void mutableTestGivesTheSamePage() throws IOException, ParsingException {
+        BiologyTest definition = new BiologyTest();
+        definition.build();
+        Test mutable = new Test(definition.getTest().getTitle(), definition.getTest().getMinPoints());
+        for (AbstractMap.SimpleEntry<String, Question> q : definition.getTest().getQuestions()) {
+            mutable.addQuestion(q.getValue());
+        }
+        assertGolden(mutable.toHTML().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @org.junit.Test
+    public void streamedPageIsTheGoldenOne() throws IOException, ParsingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PageRenderer(biology()).render(out);
+        assertGolden(out.toByteArray());
+    }
+
+    @org.junit.Test
+    public void encodedChunksAreTheGoldenPage() throws IOException, ParsingException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : new PageRenderer(biology()).toByteBuffers()) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes);
+        }
+        assertGolden(out.toByteArray());
+    }
+
+    @org.junit.Test
+    public void writtenPageIsTheGoldenOne() throws IOException, ParsingException {
+        Path path = folder.getRoot().toPath().resolve("biology.html");
+        new PageWriter(biology(), null).writeTo(path);
+        assertGolden(Files.readAllBytes(path));
+    }
+
+    @org.junit.Test
+    public void cachedFragmentsGiveTheGoldenPage() throws IOException, ParsingException {
+        RenderOptions options = new RenderOptions();
+        options.setFragmentCache(new FragmentCache());
+        Test test = biology();
+        StringBuilder cold = new StringBuilder();
+        new PageRenderer(test, options).render(cold);
+        assertEquals(3, options.getFragmentCache().size());
+        StringBuilder warm = new StringBuilder();
+        new PageRenderer(biology(), options).render(warm);
+        assertGolden(cold.toString().getBytes(StandardCharsets.UTF_8));
+        assertGolden(warm.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
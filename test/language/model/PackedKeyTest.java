@@ -0,0 +1,84 @@
+package language.model;
+
+import java.io.IOException;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Layout of the answer key written into the page, one packed entry per
+ * question: [type, 'id', points, data...].
+ * @author Milan
+ */
+public class PackedKeyTest {
+
+    private static <T extends Question> T options(T question, boolean... correct) {
+        for (int i = 0; i < correct.length; i++) {
+            question.addAnswer(new Answer("answer " + i, correct[i]));
+        }
+        return question;
+    }
+
+    @org.junit.Test
+    public void singleChoiceKeepsTheCorrectAnswerInABitmask() {
+        assertEquals("[1,'q',5,[2]]", options(new SingleOptionQuestion("Single", 5), false, true, false).toJS("q"));
+    }
+
+    @org.junit.Test
+    public void multipleChoiceSplitsTheBitmaskIntoWords() {
+        assertEquals("[2,'q',4,[5]]", options(new MultipleOptionsQuestion("Multiple", 4), true, false, true).toJS("q"));
+        boolean[] correct = new boolean[35];
+        correct[0] = true;
+        correct[31] = true;
+        correct[33] = true;
+        // the words are unsigned, bit 31 does not make the first one negative
+        assertEquals("[2,'q',1,[2147483649,2]]", options(new MultipleOptionsQuestion("Multiple", 1), correct).toJS("q"));
+        assertEquals("[2,'q',1,[0]]", options(new MultipleOptionsQuestion("Multiple", 1), new boolean[31]).toJS("q"));
+    }
+
+    @org.junit.Test
+    public void openQuestionKeepsItsFlagsAnswersAndDistance() {
+        OpenQuestion question = new OpenQuestion("Open", 3, new Answer("Meow", true));
+        question.addAnswer(new Answer("it's </script>", true));
+        assertEquals("[3,'q',3,0,['Meow','it\\'s \\x3c/script>'],0]", question.toJS("q"));
+        question.setCaseSensitive(true);
+        question.setIgnoreDiacritics(true);
+        question.setNormalizeWhitespace(true);
+        question.setMaxEditDistance(2);
+        assertEquals("[3,'q',3,7,['Meow','it\\'s \\x3c/script>'],2]", question.toJS("q"));
+        question.setRegularExpression(true);
+        question.setMaxEditDistance(0);
+        assertEquals("[3,'q',3,15,['Meow','it\\'s \\x3c/script>'],0]", question.toJS("q"));
+    }
+
+    @org.junit.Test
+    public void pairingKeepsTheCorrectOptionOfEachPair() {
+        MatchingPairsQuestion question = new MatchingPairsQuestion("Pairing", 6);
+        question.addPair(new MatchingPair("Lion", "Lioness"));
+        question.addPair(new MatchingPair("Bull", "Cow"));
+        question.addPair(new MatchingPair("Ox", "Cow"));
+        List<String> options = question.getAllMatchingOptions();
+        assertEquals(2, options.size());
+        assertEquals("[4,'q',6,[" + options.indexOf("Lioness") + "," + options.indexOf("Cow") + ","
+                + options.indexOf("Cow") + "]]", question.toJS("q"));
+    }
+
+    @org.junit.Test
+    public void pageHoldsOneEntryPerQuestion() throws IOException {
+        Test test = new Test("Test", 3);
+        test.addQuestion(options(new SingleOptionQuestion("Single", 1), true, false));
+        test.addQuestion(new OpenQuestion("Open", 2, new Answer("Meow", true)));
+        String page = test.toHTML();
+        assertTrue(page, page.contains("        var key = [\n"
+                + "            [1,'question1',1,[1]],\n"
+                + "            [3,'question2',2,0,['Meow'],0]\n"
+                + "        ];\n"));
+        // the answers are only in the key, not in the markup
+        assertEquals(page.indexOf("Meow"), page.lastIndexOf("Meow"));
+    }
+
+    @org.junit.Test
+    public void emptyTestHasAnEmptyKey() {
+        assertTrue(new Test("Test", 0).toHTML().contains("        var key = [\n        ];\n"));
+    }
+}
@@ -0,0 +1,153 @@
+package language.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A test split into pages is written as the first page, with the answer key
+ * of the whole test, and a script for each other page: name.page2.js,
+ * name.page3.js and so on.
+ * @author Milan
+ */
+public class PagingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Test test(int questions) {
+        Test test = new Test("Test", 0);
+        for (int i = 0; i < questions; i++) {
+            test.addQuestion(new OpenQuestion("Question " + i, 1, new Answer("answer " + i, true)));
+        }
+        return test;
+    }
+
+    private static RenderOptions pages(int pageSize) {
+        RenderOptions options = new RenderOptions();
+        options.setPageSize(pageSize);
+        return options;
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the test and checks the files and the questions of each page.
+     * @return The first page.
+     */
+    private String write(int questions, int pageSize, int pageCount) throws IOException {
+        Test test = test(questions);
+        RenderOptions options = pages(pageSize);
+        assertEquals(pageCount, new TestPages(test, options).getPageCount());
+        Path path = folder.newFolder().toPath().resolve("test.html");
+        new PageWriter(test, options).writeTo(path);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("test.html");
+        for (int page = 2; page <= pageCount; page++) {
+            expected.add("test.page" + page + ".js");
+        }
+        List<String> files = new ArrayList<>();
+        for (String file : path.getParent().toFile().list()) {
+            files.add(file);
+        }
+        files.sort(null);
+        expected.sort(null);
+        assertEquals(expected, files);
+
+        String first = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        assertEquals(Math.min(questions, pageSize), count(first, "questionHeader' role"));
+        String hex = ContentHash.toHex(new PageRenderer(test, options).pageHash());
+        for (int page = 2; page <= pageCount; page++) {
+            String script = new String(Files.readAllBytes(path.resolveSibling("test.page" + page + ".js")),
+                    StandardCharsets.UTF_8);
+            assertTrue(script, script.startsWith("// " + hex + "\npageLoaded(" + page + ", '"));
+            assertTrue(script, script.endsWith("');\n"));
+            int from = (page - 1) * pageSize;
+            int to = Math.min(questions, from + pageSize);
+            assertEquals(script, to - from, count(script, "questionHeader\\' role"));
+            assertTrue(script, script.contains("id=\\'question" + (from + 1) + "\\'"));
+            assertTrue(script, script.contains("id=\\'question" + to + "\\'"));
+            assertFalse(script, script.contains("id=\\'question" + (to + 1) + "\\'"));
+            // the answers are only in the key of the first page
+            assertFalse(script, script.contains("answer " + from));
+        }
+        // the key of the whole test is on the first page
+        for (int i = 0; i < questions; i++) {
+            assertTrue(first.contains("['answer " + i + "']"));
+        }
+        return first;
+    }
+
+    private static void assertPager(String page, int pageCount) {
+        assertTrue(page, page.contains("\n    <div id='page1' data-loaded='true'>"));
+        for (int n = 2; n <= pageCount; n++) {
+            assertTrue(page, page.contains("    <div id='page" + n + "' style='display:none'></div>\n"));
+        }
+        assertFalse(page, page.contains("<div id='page" + (pageCount + 1) + "'"));
+        assertTrue(page, page.contains("        var pages = " + pageCount + ";\n"));
+    }
+
+    @org.junit.Test
+    public void pageOfOneQuestion() throws IOException {
+        assertPager(write(4, 1, 4), 4);
+    }
+
+    @org.junit.Test
+    public void exactMultipleHasNoPartialPage() throws IOException {
+        assertPager(write(6, 3, 2), 2);
+        assertPager(write(9, 3, 3), 3);
+    }
+
+    @org.junit.Test
+    public void lastPageHoldsTheRest() throws IOException {
+        assertPager(write(7, 3, 3), 3);
+    }
+
+    @org.junit.Test
+    public void testSmallerThanAPageIsNotSplit() throws IOException {
+        for (int questions : Arrays.asList(0, 2, 3)) {
+            String page = write(questions, 3, 1);
+            assertFalse(page, page.contains("id='page1'"));
+            assertFalse(page, page.contains("var pages"));
+        }
+        assertEquals(1, new TestPages(test(5), pages(0)).getPageCount());
+        assertEquals(1, new TestPages(test(5), null).getPageCount());
+    }
+
+    @org.junit.Test
+    public void pagePathReplacesTheExtension() {
+        assertEquals("test.page2.js", TestPages.getPagePath("test.html", 2));
+        assertEquals("dir/biology.page10.js", TestPages.getPagePath("dir/biology.html", 10));
+        assertEquals("test.page3.js", TestPages.getPagePath("test", 3));
+    }
+
+    @org.junit.Test
+    public void onlyTheOtherPagesHaveScripts() throws IOException {
+        TestPages pages = new TestPages(test(5), pages(2));
+        for (int page : new int[] {0, 1, 4}) {
+            try {
+                pages.renderPage(page, new StringBuilder());
+                fail("page " + page);
+            } catch (IndexOutOfBoundsException ex) {
+                assertEquals("The test has no page " + page + " to load, it has 3 pages.", ex.getMessage());
+            }
+        }
+    }
+}
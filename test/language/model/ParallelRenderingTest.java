@@ -0,0 +1,123 @@
+package language.model;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Rendering the fragments of the questions in parallel has to give the same
+ * page as rendering them one after another.
+ * @author Milan
+ */
+public class ParallelRenderingTest {
+
+    private static final int QUESTIONS = 1200;
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void stopPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * @return Test with all the kinds of questions and texts to escape.
+     */
+    static Test test(int questions) {
+        Test test = new Test("Parallel <test>", questions / 2);
+        for (int i = 0; i < questions; i++) {
+            switch (i % 4) {
+                case 0:
+                    SingleOptionQuestion single = new SingleOptionQuestion("Single " + i + " 'quoted'", 1);
+                    single.addAnswer(new Answer("yes & " + i, true));
+                    single.addAnswer(new Answer("no", false));
+                    test.addQuestion(single);
+                    break;
+                case 1:
+                    MultipleOptionsQuestion multiple = new MultipleOptionsQuestion("Multiple " + i, 2);
+                    multiple.addAnswer(new Answer("a " + i, true));
+                    multiple.addAnswer(new Answer("b", true));
+                    multiple.addAnswer(new Answer("</script>", false));
+                    test.addQuestion(multiple);
+                    break;
+                case 2:
+                    test.addQuestion(new OpenQuestion("Open " + i, 3, new Answer("Answer " + i, true)));
+                    break;
+                default:
+                    MatchingPairsQuestion pairing = new MatchingPairsQuestion("Pairing " + i, 4);
+                    pairing.addPair(new MatchingPair("left " + i, "right " + i));
+                    pairing.addPair(new MatchingPair("other", "žltá"));
+                    test.addQuestion(pairing);
+            }
+        }
+        return test;
+    }
+
+    private static RenderOptions parallel(RenderOptions options) {
+        options.setRenderPool(pool);
+        options.setParallelThreshold(1);
+        assertTrue(options.isParallel(QUESTIONS));
+        return options;
+    }
+
+    private static String render(Test test, RenderOptions options) throws IOException {
+        StringBuilder page = new StringBuilder();
+        new PageRenderer(test, options).render(page);
+        return page.toString();
+    }
+
+    @org.junit.Test
+    public void parallelPageIsTheSerialOne() throws IOException {
+        Test test = test(QUESTIONS);
+        String serial = render(test, new RenderOptions());
+        assertEquals(serial, render(test, parallel(new RenderOptions())));
+        assertEquals(serial, render(test.freeze(), parallel(new RenderOptions())));
+    }
+
+    @org.junit.Test
+    public void parallelSharedOptionsAreTheSerialOnes() throws IOException {
+        Test test = test(QUESTIONS);
+        RenderOptions options = new RenderOptions();
+        options.setSharedMatchingOptions(true);
+        RenderOptions parallel = parallel(new RenderOptions());
+        parallel.setSharedMatchingOptions(true);
+        assertEquals(render(test, options), render(test, parallel));
+    }
+
+    @org.junit.Test
+    public void parallelCachedPageIsTheSerialOne() throws IOException {
+        Test test = test(QUESTIONS);
+        String serial = render(test, new RenderOptions());
+        RenderOptions options = parallel(new RenderOptions());
+        options.setFragmentCache(new FragmentCache());
+        assertEquals(serial, render(test, options));
+        assertEquals(QUESTIONS, options.getFragmentCache().size());
+        assertEquals(serial, render(test, options));
+    }
+
+    @org.junit.Test
+    public void parallelPagesAreTheSerialOnes() throws IOException {
+        Test test = test(QUESTIONS);
+        RenderOptions options = new RenderOptions();
+        options.setPageSize(500);
+        RenderOptions parallel = parallel(new RenderOptions());
+        parallel.setPageSize(500);
+        assertEquals(render(test, options), render(test, parallel));
+        assertEquals(3, new TestPages(test, parallel).getPageCount());
+        for (int page = 2; page <= 3; page++) {
+            StringBuilder serial = new StringBuilder();
+            new TestPages(test, options).renderPage(page, serial);
+            StringBuilder script = new StringBuilder();
+            new TestPages(test, parallel).renderPage(page, script);
+            assertEquals(serial.toString(), script.toString());
+        }
+    }
+}
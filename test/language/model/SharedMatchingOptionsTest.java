@@ -0,0 +1,117 @@
+package language.model;
+
+import java.io.IOException;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * With shared matching options the options of a matching question are
+ * written once into its datalist and the selection lists hold only the first
+ * option until the page fills them in.
+ * @author Milan
+ */
+public class SharedMatchingOptionsTest {
+
+    private static MatchingPairsQuestion pairing() {
+        MatchingPairsQuestion question = new MatchingPairsQuestion("Combine <them>:", 6);
+        question.addPair(new MatchingPair("Lion", "Lioness"));
+        question.addPair(new MatchingPair("Bull", "Cow's"));
+        question.addPair(new MatchingPair("Tiger", "Tigress"));
+        return question;
+    }
+
+    private static RenderOptions shared(boolean shared) {
+        RenderOptions options = new RenderOptions();
+        options.setSharedMatchingOptions(shared);
+        return options;
+    }
+
+    private static String option(List<String> options, int index) throws IOException {
+        StringBuilder text = new StringBuilder();
+        Escaper.appendText(text, options.get(index));
+        return "                        <option value='" + index + "'>" + text + "</option>\n";
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @org.junit.Test
+    public void optionsAreWrittenOnceIntoTheDatalist() throws IOException {
+        MatchingPairsQuestion question = pairing();
+        List<String> options = question.getAllMatchingOptions();
+        String html = question.toHTML("question7", shared(true));
+        assertTrue(html, html.contains("            <datalist id='question7-options'>\n"
+                + option(options, 0) + option(options, 1) + option(options, 2)
+                + "            </datalist>\n"));
+        assertEquals(html, 3, count(html, "<select class='form-control' options='question7-options'>\n"
+                + option(options, 0) + "                    </select>"));
+        // each option once in the datalist, the first one in every list too
+        assertEquals(html, 3 + 1, count(html, option(options, 0)));
+        assertEquals(html, 1, count(html, option(options, 1)));
+        assertEquals(html, 1, count(html, option(options, 2)));
+    }
+
+    @org.junit.Test
+    public void everyListHasAllOptionsWithoutSharing() throws IOException {
+        MatchingPairsQuestion question = pairing();
+        List<String> options = question.getAllMatchingOptions();
+        String html = question.toHTML("question7", shared(false));
+        assertFalse(html, html.contains("datalist"));
+        assertFalse(html, html.contains("options='"));
+        assertEquals(html, 3, count(html, "<select class='form-control'>\n"
+                + option(options, 0) + option(options, 1) + option(options, 2) + "                    </select>"));
+    }
+
+    @org.junit.Test
+    public void pageFillsTheListsInOnlyWithSharedOptions() throws IOException {
+        Test test = new Test("Test", 0);
+        test.addQuestion(pairing());
+        test.addQuestion(pairing());
+        StringBuilder shared = new StringBuilder();
+        new PageRenderer(test, shared(true)).render(shared);
+        StringBuilder full = new StringBuilder();
+        new PageRenderer(test, shared(false)).render(full);
+        String script = "$(document).on('focusin mousedown touchstart', 'select[options]', function () {";
+        assertEquals(1, count(shared.toString(), script));
+        assertEquals(0, count(full.toString(), script));
+    }
+
+    @org.junit.Test
+    public void sharedQuestionGrowsLinearlyWithThePairs() {
+        MatchingPairsQuestion question = new MatchingPairsQuestion("Combine", 40);
+        for (int i = 0; i < 40; i++) {
+            question.addPair(new MatchingPair("left " + i, "right " + i));
+        }
+        // 40 options once and 40 lists of one option, instead of 40 lists of 40 options
+        assertTrue(question.toHTML("q", shared(true)).length() * 4 < question.toHTML("q", shared(false)).length());
+    }
+
+    @org.junit.Test
+    public void keyIsTheSameInBothModes() throws IOException {
+        Test test = new Test("Test", 0);
+        test.addQuestion(pairing());
+        StringBuilder shared = new StringBuilder();
+        new PageRenderer(test, shared(true)).render(shared);
+        StringBuilder full = new StringBuilder();
+        new PageRenderer(test, shared(false)).render(full);
+        String key = "        var key = [\n            " + pairing().toJS("question1") + "\n        ];\n";
+        assertTrue(shared.toString(), shared.toString().contains(key));
+        assertTrue(full.toString(), full.toString().contains(key));
+    }
+
+    @org.junit.Test
+    public void modeIsPartOfThePageHash() {
+        Test test = new Test("Test", 0);
+        test.addQuestion(pairing());
+        assertNotEquals(new PageRenderer(test, shared(true)).pageHash(), new PageRenderer(test, shared(false)).pageHash());
+        assertEquals(new PageRenderer(test).pageHash(), new PageRenderer(test, shared(false)).pageHash());
+    }
+}
@@ -0,0 +1,67 @@
+package language.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A generated test is rewritten only when one of its pages is missing or
+ * was generated from other content or with other options.
+ * @author Milan
+ */
+public class WriteIfChangedTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Test test(int questions) {
+        Test test = new Test("Test", 0);
+        for (int i = 0; i < questions; i++) {
+            test.addQuestion(new OpenQuestion("Question " + i, 1, new Answer("answer " + i, true)));
+        }
+        return test;
+    }
+
+    private static RenderOptions pages(int pageSize) {
+        RenderOptions options = new RenderOptions();
+        options.setPageSize(pageSize);
+        return options;
+    }
+
+    @org.junit.Test
+    public void unchangedTestIsNotRewritten() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("test.html");
+        assertTrue(new PageWriter(test(5), pages(2)).writeIfChanged(path));
+        assertFalse(new PageWriter(test(5), pages(2)).writeIfChanged(path));
+        assertTrue(new PageWriter(test(5), pages(3)).writeIfChanged(path));
+        assertTrue(new PageWriter(test(6), pages(3)).writeIfChanged(path));
+    }
+
+    @org.junit.Test
+    public void everyPageIsChecked() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("test.html");
+        RenderOptions options = pages(2);
+        PageWriter writer = new PageWriter(test(5), options);
+        writer.writeTo(path);
+        assertTrue(writer.isUpToDate(path));
+
+        Path last = path.resolveSibling(TestPages.getPagePath("test.html", 3));
+        byte[] generated = Files.readAllBytes(last);
+        // the script of an older version of the test, generated from other content
+        StringBuilder older = new StringBuilder();
+        new TestPages(test(6), options).renderPage(3, older);
+        Files.write(last, older.toString().getBytes(StandardCharsets.UTF_8));
+        assertFalse(writer.isUpToDate(path));
+        assertTrue(writer.writeIfChanged(path));
+        assertArrayEquals(generated, Files.readAllBytes(last));
+
+        Files.delete(last);
+        assertFalse(writer.isUpToDate(path));
+    }
+}
@@ -0,0 +1,215 @@
+package language.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import language.builder.ParsingException;
+import language.model.MatchingPairsQuestion;
+import language.model.MultipleOptionsQuestion;
+import language.model.OpenQuestion;
+import language.model.Question;
+import language.model.SingleOptionQuestion;
+import language.model.Test;
+import org.junit.After;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The .test files have to give the same model as the expression builders and
+ * report their errors with the line and column of the call.
+ * @author Milan
+ */
+public class TestParserTest {
+
+    private static final String SEQUENCE = "// Biology test\n"
+            + "create_test(\"Biology test\", 20);\n"
+            + "multiple_choice_question(\"Which of the following are herbivores?\", 10);\n"
+            + "incorrect_answer(\"Lion\");\n"
+            + "correct_answer(\"Sheep\");\n"
+            + "single_choice_question(\"Which one is a bird?\", 5)\n"
+            + "correct_answer(\"Owl\")\n"
+            + "incorrect_answer(\"Bat\")\n"
+            + "/* the answer is\n   case sensitive */\n"
+            + "open_answer_question(\"What does a cat say?\", 2, \"Meow\", YES);\n"
+            + "pairing_question(\"Combine males and females:\", 10);\n"
+            + "pair(\"Lion\", \"Lioness\");\n"
+            + "pair(\"Bull\", \"Cow\");\n";
+
+    private static final String NESTED = "create_test(\"Biology test\", 20,\n"
+            + "    multiple_choice_question(\"Which of the following are herbivores?\", 10,\n"
+            + "        incorrect_answer(\"Lion\"),\n"
+            + "        correct_answer(\"Sheep\")),\n"
+            + "    single_choice_question(\"Which one is a bird?\", 5,\n"
+            + "        correct_answer(\"Owl\"),\n"
+            + "        incorrect_answer(\"Bat\")),\n"
+            + "    open_answer_question(\"What does a cat say?\", 2, \"Meow\", YES),\n"
+            + "    pairing_question(\"Combine males and females:\", 10,\n"
+            + "        pair(\"Lion\", \"Lioness\"),\n"
+            + "        pair(\"Bull\", \"Cow\")));\n";
+
+    private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+
+    private PrintStream systemErr;
+
+    @Before
+    public void captureErrors() throws UnsupportedEncodingException {
+        systemErr = System.err;
+        System.setErr(new PrintStream(errors, true, "UTF-8"));
+    }
+
+    @After
+    public void restoreErrors() {
+        System.setErr(systemErr);
+    }
+
+    private String errors() throws UnsupportedEncodingException {
+        return errors.toString("UTF-8");
+    }
+
+    private static Test load(TestParser parser, String content) throws IOException, ParsingException {
+        return parser.load(new StringReader(content), "biology.test");
+    }
+
+    private static Question question(Test test, int index) {
+        return test.getQuestions().get(index).getValue();
+    }
+
+    @org.junit.Test
+    public void sequenceOfCallsGivesTheTest() throws IOException, ParsingException {
+        TestParser parser = new TestParser();
+        Test test = load(parser, SEQUENCE);
+        assertNotNull(errors(), test);
+        assertTrue(parser.isCorrect());
+        assertEquals("", errors());
+        assertTrue(test.isFrozen());
+        assertEquals("Biology test", test.getTitle());
+        assertEquals(20, test.getMinPoints());
+        assertEquals(4, test.getQuestions().size());
+
+        MultipleOptionsQuestion multiple = (MultipleOptionsQuestion) question(test, 0);
+        assertEquals("Which of the following are herbivores?", multiple.getText());
+        assertEquals(10, multiple.getPoints());
+        assertEquals("Lion", multiple.getAnswers().get(0).getText());
+        assertFalse(multiple.getAnswers().get(0).isCorrect());
+        assertTrue(multiple.getAnswers().get(1).isCorrect());
+
+        SingleOptionQuestion single = (SingleOptionQuestion) question(test, 1);
+        assertEquals(2, single.getAnswers().size());
+        assertEquals("Owl", single.getAnswers().get(0).getText());
+
+        OpenQuestion open = (OpenQuestion) question(test, 2);
+        assertEquals(2, open.getPoints());
+        assertEquals("Meow", open.getAnswers().get(0).getText());
+        assertTrue(open.isCaseSensitive());
+
+        MatchingPairsQuestion pairing = (MatchingPairsQuestion) question(test, 3);
+        assertEquals(2, pairing.getPairs().size());
+        assertEquals("Bull", pairing.getPairs().get(1).getLeft());
+        assertEquals("Cow", pairing.getPairs().get(1).getRight());
+    }
+
+    @org.junit.Test
+    public void nestedCallsGiveTheSameTest() throws IOException, ParsingException {
+        Test sequence = load(new TestParser(), SEQUENCE);
+        Test nested = load(new TestParser(), NESTED);
+        assertNotNull(errors(), nested);
+        assertEquals(sequence.contentHash(), nested.contentHash());
+    }
+
+    @org.junit.Test
+    public void titleOfTheFileIsUsedWithoutCreateTest() throws IOException, ParsingException {
+        Test test = new TestParser().read(new StringReader("open_answer_question(\"Capital of France?\", 1, \"Paris\")"),
+                "dir/geography.test");
+        assertEquals("geography", test.getTitle());
+        assertFalse(((OpenQuestion) question(test, 0)).isCaseSensitive());
+    }
+
+    @org.junit.Test
+    public void unknownFunctionIsReportedAtItsPosition() throws IOException, ParsingException {
+        TestParser parser = new TestParser();
+        Test test = load(parser, "create_test(\"Test\", 0);\n"
+                + "single_choice_question(\"Question\", 1);\n"
+                + "  right_answer(\"Yes\");\n"
+                + "correct_answer(\"No\");\n");
+        assertNull(test);
+        assertFalse(parser.isCorrect());
+        assertTrue(errors(), errors().contains("Unknown function 'right_answer'"));
+        assertTrue(errors(), errors().contains("biology.test:3:3"));
+    }
+
+    @org.junit.Test
+    public void secondCreateTestIsReported() throws IOException, ParsingException {
+        TestParser parser = new TestParser();
+        Test test = load(parser, "create_test(\"Test\", 0);\n"
+                + "open_answer_question(\"Question\", 1, \"Answer\");\n"
+                + "create_test(\"Other\", 0);\n");
+        assertNull(test);
+        assertTrue(errors(), errors().contains("'create_test' has to be called only once"));
+        assertTrue(errors(), errors().contains("biology.test:3:1"));
+    }
+
+    @org.junit.Test
+    public void wrongArgumentsAreReported() throws IOException, ParsingException {
+        TestParser parser = new TestParser();
+        Test test = load(parser, "create_test(\"Test\", 0);\n"
+                + "single_choice_question(\"Question\", \"one\");\n"
+                + "correct_answer(\"Yes\");\n"
+                + "multiple_choice_question(\"Other\", 2);\n"
+                + "correct_answer(\"A\");\n"
+                + "incorrect_answer(\"B\");\n");
+        assertNull(test);
+        assertTrue(errors(), errors().contains("Function 'single_choice_question' has to be called with (text, points)"));
+        assertTrue(errors(), errors().contains("biology.test:2:1"));
+        // the answers of the wrong question are skipped without further errors
+        assertFalse(errors(), errors().contains("There is no question"));
+        assertEquals(errors(), 1, parser.getErrorHandling().getErrorCount());
+    }
+
+    @org.junit.Test
+    public void answerWithoutQuestionIsReported() throws IOException, ParsingException {
+        load(new TestParser(), "create_test(\"Test\", 0);\n"
+                + "correct_answer(\"Yes\");\n");
+        assertTrue(errors(), errors().contains("There is no question 'correct_answer' belongs to"));
+        assertTrue(errors(), errors().contains("biology.test:2:1"));
+    }
+
+    @org.junit.Test
+    public void invalidQuestionIsReportedAtItsCall() throws IOException, ParsingException {
+        TestParser parser = new TestParser();
+        Test test = load(parser, "create_test(\"Test\", 0);\n"
+                + "\n"
+                + "    single_choice_question(\"Question\", 1);\n"
+                + "    incorrect_answer(\"No\");\n");
+        assertNull(test);
+        assertTrue(errors(), errors().contains("biology.test:3:5"));
+    }
+
+    @org.junit.Test
+    public void malformedFileStopsTheImport() throws IOException {
+        try {
+            load(new TestParser(), "create_test(\"Test\", 0);\n"
+                    + "single_choice_question(\"Question\" 1);\n");
+            fail("A missing comma has to stop the import.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Expected ',' or ')'"));
+            assertTrue(ex.getMessage(), ex.getMessage().contains("biology.test:2:35"));
+        }
+    }
+
+    @org.junit.Test
+    public void unterminatedTextStopsTheImport() throws IOException {
+        try {
+            load(new TestParser(), "create_test(\"Test, 0);\n");
+            fail("An unterminated text has to stop the import.");
+        } catch (ParsingException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("biology.test:1:13"));
+        }
+    }
+}